@@ -21,8 +21,14 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+import org.apache.ibatis.cache.admission.AdmissionPolicy;
+import org.apache.ibatis.cache.compressor.Compressor;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.serializer.JavaSerializer;
+import org.apache.ibatis.cache.serializer.Serializer;
+import org.apache.ibatis.cache.weigher.ObjectSizeWeigher;
+import org.apache.ibatis.cache.weigher.Weigher;
 
 /**
  * @author Clinton Begin
@@ -38,12 +44,97 @@ public @interface CacheNamespace {
 
   long flushInterval() default 0;
 
+  /**
+   * Milliseconds after which an entry expires once written, 0 for never.
+   * @since 3.5.0
+   */
+  long expireAfterWrite() default 0;
+
+  /**
+   * Milliseconds after which an entry expires once it was last read or written, 0 for never.
+   * @since 3.5.0
+   */
+  long expireAfterAccess() default 0;
+
+  /**
+   * Milliseconds before the write expiration of an entry from which a read reloads it in the background, 0 for never.
+   * @since 3.5.0
+   */
+  long refreshAhead() default 0;
+
+  /**
+   * Milliseconds after the write expiration of an entry during which it is still returned while being reloaded.
+   * @since 3.5.0
+   */
+  long maxStale() default 0;
+
   int size() default 1024;
 
+  /**
+   * Total weight of the entries over which the least recently used ones are evicted, 0 for no limit.
+   * @since 3.5.0
+   */
+  long maxWeight() default 0;
+
+  /**
+   * Weigher used when {@link #maxWeight()} is set.
+   * @since 3.5.0
+   */
+  Class<? extends Weigher> weigher() default ObjectSizeWeigher.class;
+
   boolean readWrite() default true;
   
   boolean blocking() default false;
 
+  /**
+   * Serializer used to copy cached objects when {@link #readWrite()} is true.
+   * @since 3.5.0
+   */
+  Class<? extends Serializer> serializer() default JavaSerializer.class;
+
+  /**
+   * Compressor of the serialized values when {@link #readWrite()} is true, none unless set.
+   * @since 3.5.0
+   */
+  Class<? extends Compressor> compressor() default Compressor.class;
+
+  /**
+   * Size in bytes from which serialized values are compressed, 0 for the default of 1024.
+   * @since 3.5.0
+   */
+  int compressionThreshold() default 0;
+
+  /**
+   * Policy deciding which loaded results are cached, none unless set or {@link #admissionThreshold()} is set.
+   * @since 3.5.0
+   */
+  Class<? extends AdmissionPolicy> admission() default AdmissionPolicy.class;
+
+  /**
+   * Number of loads of a result from which it is cached, 0 to cache every result.
+   * @since 3.5.0
+   */
+  int admissionThreshold() default 0;
+
+  /**
+   * Number of loads over which the loads of a result are counted, 0 for the default of the admission policy.
+   * @since 3.5.0
+   */
+  int admissionWindow() default 0;
+
+  /**
+   * Parameter property whose value selects the partition of the entries, or {@code _databaseId}, none unless set.
+   * @since 3.5.0
+   */
+  String partitionBy() default "";
+
+  /**
+   * Number of partitions, besides the default one, over which the least recently used partition is dropped, 0 for
+   * the default of 1000.
+   * @since 3.5.0
+   */
+  int maxPartitions() default 0;
+
   /**
    * Property values for a implementation object.
    * @since 3.4.2
@@ -33,4 +33,12 @@ public @interface Many {
 
   FetchType fetchType() default FetchType.DEFAULT;
 
+  /**
+   * The columns of the nested select results that hold the values of the result column. Required with
+   * {@link FetchType#BATCH}: the nested select is then called with a list of parameters, at the end of the result set
+   * or, when lazy loading is enabled, for a group of result objects.
+   * @since 3.5.0
+   */
+  String foreignColumn() default "";
+
 }
@@ -63,4 +63,32 @@ public @interface Options {
   String keyColumn() default "";
   
   String resultSets() default "";
+
+  /**
+   * Comma separated names of the tables the statement reads, or writes if it is not a select.
+   * Used for table level invalidation of the second level cache instead of parsing the SQL.
+   * @since 3.5.0
+   */
+  String tables() default "";
+
+  /**
+   * Milliseconds after which the results cached by the statement expire, overriding the expire after write time of
+   * the cache. Only used if the cache of the namespace expires entries.
+   * @since 3.5.0
+   */
+  long expireAfterWrite() default -1;
+
+  /**
+   * Number of batched executions of the statement after which the batch executor flushes, overriding the
+   * {@code batchFlushSize} setting.
+   * @since 3.5.0
+   */
+  int batchFlushSize() default -1;
+
+  /**
+   * Estimated bytes of batched parameters after which the batch executor flushes, overriding the
+   * {@code batchFlushBytes} setting.
+   * @since 3.5.0
+   */
+  long batchFlushBytes() default -1;
 }
@@ -18,6 +18,8 @@ package org.apache.ibatis.binding;
 import org.apache.ibatis.annotations.Flush;
 import org.apache.ibatis.annotations.MapKey;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.result.DefaultMapResultHandler;
+import org.apache.ibatis.executor.result.DefaultResultContext;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.mapping.StatementType;
@@ -34,6 +36,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Clinton Begin
@@ -49,9 +52,17 @@ public class MapperMethod {
   public MapperMethod(Class<?> mapperInterface, Method method, Configuration config) {
     this.command = new SqlCommand(config, mapperInterface, method);
     this.method = new MethodSignature(config, mapperInterface, method);
+    if (this.method.returnsFuture()
+        && (command.getType() == SqlCommandType.FLUSH || this.method.hasResultHandler() || this.method.returnsCursor())) {
+      throw new BindingException("Mapper method '" + mapperInterface.getName() + "." + method.getName()
+          + "' cannot return a CompletableFuture: flushes, result handlers and cursors are not supported asynchronously.");
+    }
   }
 
   public Object execute(SqlSession sqlSession, Object[] args) {
+    if (method.returnsFuture()) {
+      return executeAsync(sqlSession, args);
+    }
     Object result;
     switch (command.getType()) {
       case INSERT: {
@@ -101,6 +112,33 @@ public class MapperMethod {
     return result;
   }
 
+  private CompletableFuture<?> executeAsync(SqlSession sqlSession, Object[] args) {
+    Object param = method.convertArgsToSqlCommandParam(args);
+    switch (command.getType()) {
+      case INSERT:
+        return sqlSession.insertAsync(command.getName(), param).thenApply(this::rowCountResult);
+      case UPDATE:
+        return sqlSession.updateAsync(command.getName(), param).thenApply(this::rowCountResult);
+      case DELETE:
+        return sqlSession.deleteAsync(command.getName(), param).thenApply(this::rowCountResult);
+      case SELECT:
+        if (method.returnsMany() || method.returnsMap()) {
+          RowBounds rowBounds = method.hasRowBounds() ? method.extractRowBounds(args) : RowBounds.DEFAULT;
+          Configuration config = sqlSession.getConfiguration();
+          return sqlSession.selectListAsync(command.getName(), param, rowBounds)
+              .thenApply(list -> method.returnsMany() ? convertToReturnType(config, list) : convertToMap(config, list));
+        }
+        return sqlSession.selectOneAsync(command.getName(), param).thenApply(result -> {
+          if (method.returnsOptional() && (result == null || !method.getReturnType().equals(result.getClass()))) {
+            return Optional.ofNullable(result);
+          }
+          return result;
+        });
+      default:
+        throw new BindingException("Unknown execution method for: " + command.getName());
+    }
+  }
+
   private Object rowCountResult(int rowCount) {
     final Object result;
     if (method.returnsVoid()) {
@@ -143,15 +181,30 @@ public class MapperMethod {
     } else {
       result = sqlSession.<E>selectList(command.getName(), param);
     }
+    return convertToReturnType(sqlSession.getConfiguration(), result);
+  }
+
+  private <E> Object convertToReturnType(Configuration config, List<E> list) {
     // issue #510 Collections & arrays support
-    if (!method.getReturnType().isAssignableFrom(result.getClass())) {
+    if (!method.getReturnType().isAssignableFrom(list.getClass())) {
       if (method.getReturnType().isArray()) {
-        return convertToArray(result);
+        return convertToArray(list);
       } else {
-        return convertToDeclaredCollection(sqlSession.getConfiguration(), result);
+        return convertToDeclaredCollection(config, list);
       }
     }
-    return result;
+    return list;
+  }
+
+  private <K, V> Map<K, V> convertToMap(Configuration config, List<V> list) {
+    DefaultMapResultHandler<K, V> mapResultHandler = new DefaultMapResultHandler<>(method.getMapKey(),
+        config.getObjectFactory(), config.getObjectWrapperFactory(), config.getReflectorFactory());
+    DefaultResultContext<V> context = new DefaultResultContext<>();
+    for (V o : list) {
+      context.nextResultObject(o);
+      mapResultHandler.handleResult(context);
+    }
+    return mapResultHandler.getMappedResults();
   }
 
   private <T> Cursor<T> executeForCursor(SqlSession sqlSession, Object[] args) {
@@ -276,6 +329,7 @@ public class MapperMethod {
     private final boolean returnsVoid;
     private final boolean returnsCursor;
     private final boolean returnsOptional;
+    private final boolean returnsFuture;
     private final Class<?> returnType;
     private final String mapKey;
     private final Integer resultHandlerIndex;
@@ -284,18 +338,24 @@ public class MapperMethod {
 
     public MethodSignature(Configuration configuration, Class<?> mapperInterface, Method method) {
       Type resolvedReturnType = TypeParameterResolver.resolveReturnType(method, mapperInterface);
+      this.returnsFuture = CompletableFuture.class.equals(method.getReturnType());
+      if (this.returnsFuture) {
+        // the other properties describe the result of the future
+        resolvedReturnType = resolvedReturnType instanceof ParameterizedType
+            ? ((ParameterizedType) resolvedReturnType).getActualTypeArguments()[0] : Object.class;
+      }
       if (resolvedReturnType instanceof Class<?>) {
         this.returnType = (Class<?>) resolvedReturnType;
       } else if (resolvedReturnType instanceof ParameterizedType) {
         this.returnType = (Class<?>) ((ParameterizedType) resolvedReturnType).getRawType();
       } else {
-        this.returnType = method.getReturnType();
+        this.returnType = this.returnsFuture ? Object.class : method.getReturnType();
       }
-      this.returnsVoid = void.class.equals(this.returnType);
+      this.returnsVoid = void.class.equals(this.returnType) || (this.returnsFuture && Void.class.equals(this.returnType));
       this.returnsMany = configuration.getObjectFactory().isCollection(this.returnType) || this.returnType.isArray();
       this.returnsCursor = Cursor.class.equals(this.returnType);
       this.returnsOptional = Optional.class.equals(this.returnType);
-      this.mapKey = getMapKey(method);
+      this.mapKey = getMapKey(method, this.returnsFuture ? this.returnType : method.getReturnType());
       this.returnsMap = this.mapKey != null;
       this.rowBoundsIndex = getUniqueParamIndex(method, RowBounds.class);
       this.resultHandlerIndex = getUniqueParamIndex(method, ResultHandler.class);
@@ -355,6 +415,16 @@ public class MapperMethod {
       return returnsOptional;
     }
 
+    /**
+     * return whether return type is {@code java.util.concurrent.CompletableFuture}, in which case the other
+     * properties describe the result of the future
+     * @return return {@code true}, if return type is {@code java.util.concurrent.CompletableFuture}
+     * @since 3.5.0
+     */
+    public boolean returnsFuture() {
+      return returnsFuture;
+    }
+
     private Integer getUniqueParamIndex(Method method, Class<?> paramType) {
       Integer index = null;
       final Class<?>[] argTypes = method.getParameterTypes();
@@ -370,9 +440,9 @@ public class MapperMethod {
       return index;
     }
 
-    private String getMapKey(Method method) {
+    private String getMapKey(Method method, Class<?> returnType) {
       String mapKey = null;
-      if (Map.class.isAssignableFrom(method.getReturnType())) {
+      if (Map.class.isAssignableFrom(returnType)) {
         final MapKey mapKeyAnnotation = method.getAnnotation(MapKey.class);
         if (mapKeyAnnotation != null) {
           mapKey = mapKeyAnnotation.value();
@@ -26,6 +26,9 @@ import java.util.Set;
 import java.util.StringTokenizer;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.admission.AdmissionPolicy;
+import org.apache.ibatis.cache.admission.FrequencyAdmission;
 import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.executor.ErrorContext;
@@ -44,6 +47,8 @@ import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.mapping.SqlSource;
 import org.apache.ibatis.mapping.StatementType;
 import org.apache.ibatis.reflection.MetaClass;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
 import org.apache.ibatis.scripting.LanguageDriver;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.type.JdbcType;
@@ -128,20 +133,70 @@ public class MapperBuilderAssistant extends BaseBuilder {
       boolean readWrite,
       boolean blocking,
       Properties props) {
-    Cache cache = new CacheBuilder(currentNamespace)
+    return useNewCache(newCacheBuilder()
         .implementation(valueOrDefault(typeClass, PerpetualCache.class))
         .addDecorator(valueOrDefault(evictionClass, LruCache.class))
         .clearInterval(flushInterval)
         .size(size)
         .readWrite(readWrite)
         .blocking(blocking)
-        .properties(props)
-        .build();
+        .properties(props));
+  }
+
+  /**
+   * @return a builder of the cache of the current namespace, to be passed to {@link #useNewCache(CacheBuilder)}
+   * @since 3.5.0
+   */
+  public CacheBuilder newCacheBuilder() {
+    return new CacheBuilder(currentNamespace);
+  }
+
+  /**
+   * Builds the cache of the current namespace, with its metrics, and makes it the cache of the next statements.
+   *
+   * @param cacheBuilder a builder created by {@link #newCacheBuilder()}
+   * @since 3.5.0
+   */
+  public Cache useNewCache(CacheBuilder cacheBuilder) {
+    CacheMetrics metrics = new CacheMetrics(currentNamespace);
+    Cache cache = cacheBuilder.metrics(metrics).build();
     configuration.addCache(cache);
+    configuration.addCacheMetrics(metrics);
     currentCache = cache;
     return cache;
   }
 
+  /**
+   * Sets the policy deciding which loaded results are put in the cache of the current namespace.
+   *
+   * @param admissionClass the policy, null for {@link FrequencyAdmission}
+   * @param admissionThreshold the number of loads of a result from which it is cached
+   * @param admissionWindow the number of loads over which the loads of a result are counted
+   * @since 3.5.0
+   */
+  public void useCacheAdmission(Class<? extends AdmissionPolicy> admissionClass, Integer admissionThreshold,
+      Integer admissionWindow) {
+    configuration.addCacheAdmissionPolicy(currentNamespace,
+        newAdmissionPolicy(valueOrDefault(admissionClass, FrequencyAdmission.class), admissionThreshold, admissionWindow));
+  }
+
+  private AdmissionPolicy newAdmissionPolicy(Class<? extends AdmissionPolicy> admissionClass, Integer threshold, Integer window) {
+    AdmissionPolicy admissionPolicy;
+    try {
+      admissionPolicy = admissionClass.getConstructor().newInstance();
+    } catch (Exception e) {
+      throw new BuilderException("Could not instantiate cache admission policy (" + admissionClass + "). Cause: " + e, e);
+    }
+    MetaObject metaPolicy = SystemMetaObject.forObject(admissionPolicy);
+    if (threshold != null && metaPolicy.hasSetter("threshold")) {
+      metaPolicy.setValue("threshold", threshold);
+    }
+    if (window != null && metaPolicy.hasSetter("window")) {
+      metaPolicy.setValue("window", window);
+    }
+    return admissionPolicy;
+  }
+
   public ParameterMap addParameterMap(String id, Class<?> parameterClass, List<ParameterMapping> parameterMappings) {
     id = applyCurrentNamespace(id, false);
     ParameterMap parameterMap = new ParameterMap.Builder(configuration, id, parameterClass, parameterMappings).build();
@@ -267,6 +322,100 @@ public class MapperBuilderAssistant extends BaseBuilder {
       String databaseId,
       LanguageDriver lang,
       String resultSets) {
+    return addMappedStatement(
+      id, sqlSource, statementType, sqlCommandType, fetchSize, timeout,
+      parameterMap, parameterType, resultMap, resultType, resultSetType,
+      flushCache, useCache, resultOrdered, keyGenerator, keyProperty,
+      keyColumn, databaseId, lang, resultSets, null);
+  }
+
+  public MappedStatement addMappedStatement(
+      String id,
+      SqlSource sqlSource,
+      StatementType statementType,
+      SqlCommandType sqlCommandType,
+      Integer fetchSize,
+      Integer timeout,
+      String parameterMap,
+      Class<?> parameterType,
+      String resultMap,
+      Class<?> resultType,
+      ResultSetType resultSetType,
+      boolean flushCache,
+      boolean useCache,
+      boolean resultOrdered,
+      KeyGenerator keyGenerator,
+      String keyProperty,
+      String keyColumn,
+      String databaseId,
+      LanguageDriver lang,
+      String resultSets,
+      String tables) {
+    return addMappedStatement(
+      id, sqlSource, statementType, sqlCommandType, fetchSize, timeout,
+      parameterMap, parameterType, resultMap, resultType, resultSetType,
+      flushCache, useCache, resultOrdered, keyGenerator, keyProperty,
+      keyColumn, databaseId, lang, resultSets, tables, null);
+  }
+
+  public MappedStatement addMappedStatement(
+      String id,
+      SqlSource sqlSource,
+      StatementType statementType,
+      SqlCommandType sqlCommandType,
+      Integer fetchSize,
+      Integer timeout,
+      String parameterMap,
+      Class<?> parameterType,
+      String resultMap,
+      Class<?> resultType,
+      ResultSetType resultSetType,
+      boolean flushCache,
+      boolean useCache,
+      boolean resultOrdered,
+      KeyGenerator keyGenerator,
+      String keyProperty,
+      String keyColumn,
+      String databaseId,
+      LanguageDriver lang,
+      String resultSets,
+      String tables,
+      Long expireAfterWrite) {
+    return addMappedStatement(
+      id, sqlSource, statementType, sqlCommandType, fetchSize, timeout,
+      parameterMap, parameterType, resultMap, resultType, resultSetType,
+      flushCache, useCache, resultOrdered, keyGenerator, keyProperty,
+      keyColumn, databaseId, lang, resultSets, tables, expireAfterWrite, null, null);
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public MappedStatement addMappedStatement(
+      String id,
+      SqlSource sqlSource,
+      StatementType statementType,
+      SqlCommandType sqlCommandType,
+      Integer fetchSize,
+      Integer timeout,
+      String parameterMap,
+      Class<?> parameterType,
+      String resultMap,
+      Class<?> resultType,
+      ResultSetType resultSetType,
+      boolean flushCache,
+      boolean useCache,
+      boolean resultOrdered,
+      KeyGenerator keyGenerator,
+      String keyProperty,
+      String keyColumn,
+      String databaseId,
+      LanguageDriver lang,
+      String resultSets,
+      String tables,
+      Long expireAfterWrite,
+      Integer batchFlushSize,
+      Long batchFlushBytes) {
 
     if (unresolvedCacheRef) {
       throw new IncompleteElementException("Cache-ref not yet resolved");
@@ -287,6 +436,10 @@ public class MapperBuilderAssistant extends BaseBuilder {
         .lang(lang)
         .resultOrdered(resultOrdered)
         .resultSets(resultSets)
+        .tables(tables)
+        .expireAfterWrite(expireAfterWrite)
+        .batchFlushSize(batchFlushSize)
+        .batchFlushBytes(batchFlushBytes)
         .resultMaps(getStatementResultMaps(resultMap, resultType, id))
         .resultSetType(resultSetType)
         .flushCacheRequired(valueOrDefault(flushCache, !isSelect))
@@ -373,6 +526,29 @@ public class MapperBuilderAssistant extends BaseBuilder {
       String resultSet,
       String foreignColumn,
       boolean lazy) {
+    return buildResultMapping(resultType, property, column, javaType, jdbcType, nestedSelect, nestedResultMap, notNullColumn,
+        columnPrefix, typeHandler, flags, resultSet, foreignColumn, lazy, false);
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public ResultMapping buildResultMapping(
+      Class<?> resultType,
+      String property,
+      String column,
+      Class<?> javaType,
+      JdbcType jdbcType,
+      String nestedSelect,
+      String nestedResultMap,
+      String notNullColumn,
+      String columnPrefix,
+      Class<? extends TypeHandler<?>> typeHandler,
+      List<ResultFlag> flags,
+      String resultSet,
+      String foreignColumn,
+      boolean lazy,
+      boolean batch) {
     Class<?> javaTypeClass = resolveResultJavaType(resultType, property, javaType);
     TypeHandler<?> typeHandlerInstance = resolveTypeHandler(javaTypeClass, typeHandler);
     List<ResultMapping> composites = parseCompositeColumnName(column);
@@ -388,6 +564,7 @@ public class MapperBuilderAssistant extends BaseBuilder {
         .columnPrefix(columnPrefix)
         .foreignColumn(foreignColumn)
         .lazy(lazy)
+        .batch(batch)
         .build();
   }
 
@@ -34,6 +34,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.ibatis.annotations.Arg;
 import org.apache.ibatis.annotations.CacheNamespace;
@@ -66,6 +67,8 @@ import org.apache.ibatis.builder.CacheRefResolver;
 import org.apache.ibatis.builder.IncompleteElementException;
 import org.apache.ibatis.builder.MapperBuilderAssistant;
 import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.cache.admission.AdmissionPolicy;
+import org.apache.ibatis.cache.compressor.Compressor;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
@@ -190,7 +193,31 @@ public class MapperAnnotationBuilder {
       Integer size = cacheDomain.size() == 0 ? null : cacheDomain.size();
       Long flushInterval = cacheDomain.flushInterval() == 0 ? null : cacheDomain.flushInterval();
       Properties props = convertToProperties(cacheDomain.properties());
-      assistant.useNewCache(cacheDomain.implementation(), cacheDomain.eviction(), flushInterval, size, cacheDomain.readWrite(), cacheDomain.blocking(), props);
+      assistant.useNewCache(assistant.newCacheBuilder()
+          .implementation(cacheDomain.implementation())
+          .addDecorator(cacheDomain.eviction())
+          .clearInterval(flushInterval)
+          .expireAfterWrite(cacheDomain.expireAfterWrite() == 0 ? null : cacheDomain.expireAfterWrite())
+          .expireAfterAccess(cacheDomain.expireAfterAccess() == 0 ? null : cacheDomain.expireAfterAccess())
+          .refreshAhead(cacheDomain.refreshAhead() == 0 ? null : cacheDomain.refreshAhead())
+          .maxStale(cacheDomain.maxStale() == 0 ? null : cacheDomain.maxStale())
+          .size(size)
+          .maxWeight(cacheDomain.maxWeight() == 0 ? null : cacheDomain.maxWeight())
+          .weigher(cacheDomain.weigher())
+          .readWrite(cacheDomain.readWrite())
+          .serializer(cacheDomain.serializer())
+          .compressor(cacheDomain.compressor() == Compressor.class ? null : cacheDomain.compressor())
+          .compressionThreshold(cacheDomain.compressionThreshold() == 0 ? null : cacheDomain.compressionThreshold())
+          .blocking(cacheDomain.blocking())
+          .partitionBy(cacheDomain.partitionBy().isEmpty() ? null : cacheDomain.partitionBy())
+          .maxPartitions(cacheDomain.maxPartitions() == 0 ? null : cacheDomain.maxPartitions())
+          .properties(props));
+      Class<? extends AdmissionPolicy> admission = cacheDomain.admission() == AdmissionPolicy.class ? null : cacheDomain.admission();
+      Integer admissionThreshold = cacheDomain.admissionThreshold() == 0 ? null : cacheDomain.admissionThreshold();
+      if (admission != null || admissionThreshold != null) {
+        assistant.useCacheAdmission(admission, admissionThreshold,
+            cacheDomain.admissionWindow() == 0 ? null : cacheDomain.admissionWindow());
+      }
     }
   }
 
@@ -385,7 +412,12 @@ public class MapperAnnotationBuilder {
           null,
           languageDriver,
           // ResultSets
-          options != null ? nullOrEmpty(options.resultSets()) : null);
+          options != null ? nullOrEmpty(options.resultSets()) : null,
+          // Tables
+          options != null ? nullOrEmpty(options.tables()) : null,
+          options != null && options.expireAfterWrite() > -1 ? options.expireAfterWrite() : null,
+          options != null && options.batchFlushSize() > -1 ? options.batchFlushSize() : null,
+          options != null && options.batchFlushBytes() > -1 ? options.batchFlushBytes() : null);
     }
   }
   
@@ -417,6 +449,16 @@ public class MapperAnnotationBuilder {
   private Class<?> getReturnType(Method method) {
     Class<?> returnType = method.getReturnType();
     Type resolvedReturnType = TypeParameterResolver.resolveReturnType(method, type);
+    if (CompletableFuture.class.equals(returnType)) {
+      // the statement maps the result of the future
+      resolvedReturnType = resolvedReturnType instanceof ParameterizedType
+          ? ((ParameterizedType) resolvedReturnType).getActualTypeArguments()[0] : Object.class;
+      if (resolvedReturnType instanceof ParameterizedType) {
+        returnType = (Class<?>) ((ParameterizedType) resolvedReturnType).getRawType();
+      } else {
+        returnType = Object.class;
+      }
+    }
     if (resolvedReturnType instanceof Class) {
       returnType = (Class<?>) resolvedReturnType;
       if (returnType.isArray()) {
@@ -565,8 +607,9 @@ public class MapperAnnotationBuilder {
           typeHandler,
           flags,
           null,
-          null,
-          isLazy(result));
+          hasNestedSelect(result) ? nullOrEmpty(foreignColumn(result)) : null,
+          isLazy(result),
+          isBatch(result));
       resultMappings.add(resultMapping);
     }
   }
@@ -584,14 +627,27 @@ public class MapperAnnotationBuilder {
 
   private boolean isLazy(Result result) {
     boolean isLazy = configuration.isLazyLoadingEnabled();
-    if (result.one().select().length() > 0 && FetchType.DEFAULT != result.one().fetchType()) {
+    if (result.one().select().length() > 0 && FetchType.DEFAULT != result.one().fetchType()
+        && FetchType.BATCH != result.one().fetchType()) {
       isLazy = result.one().fetchType() == FetchType.LAZY;
-    } else if (result.many().select().length() > 0 && FetchType.DEFAULT != result.many().fetchType()) {
+    } else if (result.many().select().length() > 0 && FetchType.DEFAULT != result.many().fetchType()
+        && FetchType.BATCH != result.many().fetchType()) {
       isLazy = result.many().fetchType() == FetchType.LAZY;
     }
     return isLazy;
   }
   
+  private boolean isBatch(Result result) {
+    if (result.one().select().length() > 0) {
+      return result.one().fetchType() == FetchType.BATCH;
+    }
+    return result.many().select().length() > 0 && result.many().fetchType() == FetchType.BATCH;
+  }
+
+  private String foreignColumn(Result result) {
+    return result.one().select().length() > 0 ? result.one().foreignColumn() : result.many().foreignColumn();
+  }
+
   private boolean hasNestedSelect(Result result) {
     if (result.one().select().length() > 0 && result.many().select().length() > 0) {
       throw new BuilderException("Cannot use both @One and @Many annotations in the same @Result");
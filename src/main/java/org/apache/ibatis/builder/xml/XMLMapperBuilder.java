@@ -33,6 +33,10 @@ import org.apache.ibatis.builder.IncompleteElementException;
 import org.apache.ibatis.builder.MapperBuilderAssistant;
 import org.apache.ibatis.builder.ResultMapResolver;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.admission.AdmissionPolicy;
+import org.apache.ibatis.cache.compressor.Compressor;
+import org.apache.ibatis.cache.serializer.Serializer;
+import org.apache.ibatis.cache.weigher.Weigher;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.mapping.Discriminator;
@@ -208,8 +212,33 @@ public class XMLMapperBuilder extends BaseBuilder {
       Integer size = context.getIntAttribute("size");
       boolean readWrite = !context.getBooleanAttribute("readOnly", false);
       boolean blocking = context.getBooleanAttribute("blocking", false);
+      String serializer = context.getStringAttribute("serializer", "JAVA_SERIALIZER");
+      Class<? extends Serializer> serializerClass = typeAliasRegistry.resolveAlias(serializer);
       Properties props = context.getChildrenAsProperties();
-      builderAssistant.useNewCache(typeClass, evictionClass, flushInterval, size, readWrite, blocking, props);
+      builderAssistant.useNewCache(builderAssistant.newCacheBuilder()
+          .implementation(typeClass)
+          .addDecorator(evictionClass)
+          .clearInterval(flushInterval)
+          .expireAfterWrite(context.getLongAttribute("expireAfterWrite"))
+          .expireAfterAccess(context.getLongAttribute("expireAfterAccess"))
+          .refreshAhead(context.getLongAttribute("refreshAhead"))
+          .maxStale(context.getLongAttribute("maxStale"))
+          .size(size)
+          .maxWeight(context.getLongAttribute("maxWeight"))
+          .weigher(typeAliasRegistry.<Weigher>resolveAlias(context.getStringAttribute("weigher")))
+          .readWrite(readWrite)
+          .serializer(serializerClass)
+          .compressor(typeAliasRegistry.<Compressor>resolveAlias(context.getStringAttribute("compressor")))
+          .compressionThreshold(context.getIntAttribute("compressionThreshold"))
+          .blocking(blocking)
+          .partitionBy(context.getStringAttribute("partitionBy"))
+          .maxPartitions(context.getIntAttribute("maxPartitions"))
+          .properties(props));
+      Class<? extends AdmissionPolicy> admissionClass = typeAliasRegistry.resolveAlias(context.getStringAttribute("admission"));
+      Integer admissionThreshold = context.getIntAttribute("admissionThreshold");
+      if (admissionClass != null || admissionThreshold != null) {
+        builderAssistant.useCacheAdmission(admissionClass, admissionThreshold, context.getIntAttribute("admissionWindow"));
+      }
     }
   }
 
@@ -391,11 +420,13 @@ public class XMLMapperBuilder extends BaseBuilder {
     String typeHandler = context.getStringAttribute("typeHandler");
     String resultSet = context.getStringAttribute("resultSet");
     String foreignColumn = context.getStringAttribute("foreignColumn");
-    boolean lazy = "lazy".equals(context.getStringAttribute("fetchType", configuration.isLazyLoadingEnabled() ? "lazy" : "eager"));
+    String fetchType = context.getStringAttribute("fetchType");
+    boolean batch = nestedSelect != null && "batch".equals(fetchType);
+    boolean lazy = fetchType == null || batch ? configuration.isLazyLoadingEnabled() : "lazy".equals(fetchType);
     Class<?> javaTypeClass = resolveClass(javaType);
     Class<? extends TypeHandler<?>> typeHandlerClass = resolveClass(typeHandler);
     JdbcType jdbcTypeEnum = resolveJdbcType(jdbcType);
-    return builderAssistant.buildResultMapping(resultType, property, column, javaTypeClass, jdbcTypeEnum, nestedSelect, nestedResultMap, notNullColumn, columnPrefix, typeHandlerClass, flags, resultSet, foreignColumn, lazy);
+    return builderAssistant.buildResultMapping(resultType, property, column, javaTypeClass, jdbcTypeEnum, nestedSelect, nestedResultMap, notNullColumn, columnPrefix, typeHandlerClass, flags, resultSet, foreignColumn, lazy, batch);
   }
 
   private String processNestedResultMappings(XNode context, List<ResultMapping> resultMappings, Class<?> enclosingType) throws Exception {
@@ -0,0 +1,73 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Optional extension of {@link Cache} for providers whose lookups involve I/O, for instance a cache kept by another
+ * process.
+ *
+ * The asynchronous selects of a {@code SqlSession} look entries up with {@link #getObjectAsync(Object)} so that no
+ * thread waits for the cache. Entries are still written with {@link Cache#putObject(Object, Object)} when the session
+ * commits, implementations may just queue the write.
+ *
+ * <pre>
+ * &lt;cache type="com.example.SidecarCache"/&gt;
+ * </pre>
+ *
+ * @since 3.5.0
+ */
+public interface AsyncCache extends Cache {
+
+  /**
+   * @param key The key
+   * @return A future completed with the object stored in the cache, or with null if there is none
+   */
+  CompletableFuture<Object> getObjectAsync(Object key);
+
+  /**
+   * The asynchronous version of {@link Cache#lookupObject(Object)}, decorators should look their delegate up.
+   *
+   * @param key The key
+   * @return A future completed with the object stored in the cache and the refresh asked for
+   */
+  default CompletableFuture<CacheLookup> lookupObjectAsync(Object key) {
+    return getObjectAsync(key).thenApply(CacheLookup::of);
+  }
+
+  /**
+   * Looks an entry up asynchronously if the cache supports it, or synchronously otherwise.
+   */
+  static CompletableFuture<Object> getObjectAsync(Cache cache, Object key) {
+    if (cache instanceof AsyncCache) {
+      return ((AsyncCache) cache).getObjectAsync(key);
+    }
+    return CompletableFuture.completedFuture(cache.getObject(key));
+  }
+
+  /**
+   * Looks an entry up with {@link #lookupObjectAsync(Object)} if the cache supports it, or with
+   * {@link Cache#lookupObject(Object)} otherwise.
+   */
+  static CompletableFuture<CacheLookup> lookupObjectAsync(Cache cache, Object key) {
+    if (cache instanceof AsyncCache) {
+      return ((AsyncCache) cache).lookupObjectAsync(key);
+    }
+    return CompletableFuture.completedFuture(cache.lookupObject(key));
+  }
+
+}
@@ -15,6 +15,7 @@
  */
 package org.apache.ibatis.cache;
 
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 
 /**
@@ -52,12 +53,39 @@ public interface Cache {
    */
   void putObject(Object key, Object value);
 
+  /**
+   * Optional. Puts an entry with an expiration of its own, which the core does for statements that override the
+   * expire after write time of their namespace and when it restores cache snapshots. Caches that do not expire entries
+   * one by one can keep this implementation, decorators should pass the metadata to their delegate.
+   *
+   * @param key The key
+   * @param value The result of a select.
+   * @param metadata The expiration of the entry
+   * @since 3.5.0
+   */
+  default void putObject(Object key, Object value, EntryMetadata metadata) {
+    putObject(key, value);
+  }
+
   /**
    * @param key The key
    * @return The object stored in the cache.
    */
   Object getObject(Object key);
 
+  /**
+   * Optional. Reads an entry like {@link #getObject(Object)}, which is how the core reads the second level cache, and
+   * returns it with the refresh of the entry it asks for, if any. Caches that do not refresh entries ahead of their
+   * expiration can keep this implementation, decorators should look their delegate up.
+   *
+   * @param key The key
+   * @return The object stored in the cache, with the refresh asked for
+   * @since 3.5.0
+   */
+  default CacheLookup lookupObject(Object key) {
+    return CacheLookup.of(getObject(key));
+  }
+
   /**
    * As of 3.3.0 this method is only called during a rollback 
    * for any previous value that was missing in the cache.
@@ -85,7 +113,44 @@ public interface Cache {
    * @return The number of elements stored in the cache (not its capacity).
    */
   int getSize();
-  
+
+  /**
+   * Optional. This method is only called by the core when cache snapshots are enabled. Decorators should return the
+   * keys of their delegate.
+   *
+   * @return A copy of the keys of the elements stored in the cache, or null if the cache cannot list them
+   * @since 3.5.0
+   */
+  default Set<Object> getKeys() {
+    return null;
+  }
+
+  /**
+   * Optional. This method is only called by the core when cache snapshots are enabled. Unlike
+   * {@link #getObject(Object)}, it must have no side effect: no statistics, no change of the eviction order, no lock
+   * and no expiration restarted. Caches that list their keys should implement it, decorators should peek their
+   * delegate.
+   *
+   * @param key The key
+   * @return The object stored in the cache, or null if there is none or if the cache cannot peek
+   * @since 3.5.0
+   */
+  default Object peekObject(Object key) {
+    return null;
+  }
+
+  /**
+   * Optional. This method is only called by the core when cache snapshots are enabled. Like
+   * {@link #peekObject(Object)}, it must have no side effect. Decorators should peek their delegate.
+   *
+   * @param key The key
+   * @return The expiration of the entry, or null if there is no entry or if it has none of its own
+   * @since 3.5.0
+   */
+  default EntryMetadata peekMetadata(Object key) {
+    return null;
+  }
+
   /** 
    * Optional. As of 3.2.6 this method is no longer called by the core.
    *  
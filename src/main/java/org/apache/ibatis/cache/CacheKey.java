@@ -16,35 +16,58 @@
 package org.apache.ibatis.cache;
 
 import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.ibatis.reflection.ArrayUtil;
 
 /**
+ * Key of the first and second level caches.
+ *
+ * Components are hashed into a 128 bit fingerprint as they are added. Two keys are compared by their fingerprints
+ * first and only keys with the same fingerprint compare their components. The fingerprint is not a cryptographic hash,
+ * so it never decides equality on its own: large arrays, lists and sets of strings, numbers, dates or enums are not
+ * retained by the key but replaced by the SHA-256 digest of their content, which is compared instead.
+ *
+ * Like their {@code equals()} methods, lists are compared regardless of their implementation and sets regardless of
+ * their iteration order.
+ *
  * @author Clinton Begin
  */
 public class CacheKey implements Cloneable, Serializable {
 
-  private static final long serialVersionUID = 1146682552656046210L;
+  private static final long serialVersionUID = -1565402454349262386L;
 
   public static final CacheKey NULL_CACHE_KEY = new NullCacheKey();
 
-  private static final int DEFAULT_MULTIPLYER = 37;
-  private static final int DEFAULT_HASHCODE = 17;
+  private static final Object[] NO_COMPONENTS = new Object[0];
+  private static final int MAX_RETAINED_ELEMENTS = 32;
 
-  private final int multiplier;
-  private int hashcode;
-  private long checksum;
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  private static final long NULL = 0x9e3779b97f4a7c15L;
+  private static final long TRUE = 0x61c8864680b583ebL;
+  private static final long FALSE = 0x3c6ef372fe94f82aL;
+  private static final long LIST = 0x7f4a7c159e3779b9L;
+  private static final long SET = 0x1b873593cc9e2d51L;
+
+  private long h1;
+  private long h2;
+  private int words;
   private int count;
   // 8/21/2017 - Sonarlint flags this as needing to be marked transient.  While true if content is not serializable, this is not always true and thus should not be marked transient.
-  private List<Object> updateList;
+  private Object[] components;
 
   public CacheKey() {
-    this.hashcode = DEFAULT_HASHCODE;
-    this.multiplier = DEFAULT_MULTIPLYER;
-    this.count = 0;
-    this.updateList = new ArrayList<>();
+    this.components = NO_COMPONENTS;
   }
 
   public CacheKey(Object[] objects) {
@@ -53,19 +76,15 @@ public class CacheKey implements Cloneable, Serializable {
   }
 
   public int getUpdateCount() {
-    return updateList.size();
+    return count;
   }
 
   public void update(Object object) {
-    int baseHashCode = object == null ? 1 : ArrayUtil.hashCode(object); 
-
-    count++;
-    checksum += baseHashCode;
-    baseHashCode *= count;
-
-    hashcode = multiplier * hashcode + baseHashCode;
-
-    updateList.add(object);
+    boolean strong = hash(object);
+    if (count == components.length) {
+      components = Arrays.copyOf(components, Math.max(8, count << 1));
+    }
+    components[count++] = strong && isLarge(object) ? new Digest(object) : object;
   }
 
   public void updateAll(Object[] objects) {
@@ -85,20 +104,17 @@ public class CacheKey implements Cloneable, Serializable {
 
     final CacheKey cacheKey = (CacheKey) object;
 
-    if (hashcode != cacheKey.hashcode) {
-      return false;
-    }
-    if (checksum != cacheKey.checksum) {
+    if (h1 != cacheKey.h1 || h2 != cacheKey.h2) {
       return false;
     }
     if (count != cacheKey.count) {
       return false;
     }
 
-    for (int i = 0; i < updateList.size(); i++) {
-      Object thisObject = updateList.get(i);
-      Object thatObject = cacheKey.updateList.get(i);
-      if (!ArrayUtil.equals(thisObject, thatObject)) {
+    for (int i = 0; i < count; i++) {
+      Object thisObject = components[i];
+      Object thatObject = cacheKey.components[i];
+      if (!componentEquals(thisObject, thatObject)) {
         return false;
       }
     }
@@ -107,14 +123,15 @@ public class CacheKey implements Cloneable, Serializable {
 
   @Override
   public int hashCode() {
-    return hashcode;
+    return (int) fmix(h1 ^ h2);
   }
 
   @Override
   public String toString() {
-    StringBuilder returnValue = new StringBuilder().append(hashcode).append(':').append(checksum);
-    for (Object object : updateList) {
-      returnValue.append(':').append(ArrayUtil.toString(object));
+    StringBuilder returnValue = new StringBuilder().append(hashCode()).append(':')
+        .append(Long.toHexString(h1)).append(Long.toHexString(h2));
+    for (int i = 0; i < count; i++) {
+      returnValue.append(':').append(ArrayUtil.toString(components[i]));
     }
     return returnValue.toString();
   }
@@ -122,8 +139,351 @@ public class CacheKey implements Cloneable, Serializable {
   @Override
   public CacheKey clone() throws CloneNotSupportedException {
     CacheKey clonedCacheKey = (CacheKey) super.clone();
-    clonedCacheKey.updateList = new ArrayList<>(updateList);
+    clonedCacheKey.components = count == 0 ? NO_COMPONENTS : Arrays.copyOf(components, count);
     return clonedCacheKey;
   }
 
+  /**
+   * Adds the object to the fingerprint.
+   *
+   * @return true if the object was hashed by content, which makes the fingerprint reliable for it
+   */
+  private boolean hash(Object object) {
+    if (object == null) {
+      mix(NULL);
+      return true;
+    }
+    Class<?> type = object.getClass();
+    if (type == String.class) {
+      String string = (String) object;
+      int length = string.length();
+      mix(typeHash(type) ^ length);
+      int i = 0;
+      for (; i + 3 < length; i += 4) {
+        mix((long) string.charAt(i) | (long) string.charAt(i + 1) << 16
+            | (long) string.charAt(i + 2) << 32 | (long) string.charAt(i + 3) << 48);
+      }
+      long tail = 0;
+      for (int shift = 0; i < length; i++, shift += 16) {
+        tail |= (long) string.charAt(i) << shift;
+      }
+      mix(tail);
+      return true;
+    }
+    if (type == Integer.class || type == Long.class || type == Short.class || type == Byte.class) {
+      mix(typeHash(type));
+      mix(((Number) object).longValue());
+      return true;
+    }
+    if (type == Double.class || type == Float.class) {
+      mix(typeHash(type));
+      mix(Double.doubleToLongBits(((Number) object).doubleValue()));
+      return true;
+    }
+    if (type == Boolean.class) {
+      mix((Boolean) object ? TRUE : FALSE);
+      return true;
+    }
+    if (type == Character.class) {
+      mix(typeHash(type));
+      mix((Character) object);
+      return true;
+    }
+    if (object instanceof Date) {
+      mix(typeHash(type));
+      mix(((Date) object).getTime());
+      // subclasses such as Timestamp compare more than the time
+      return type == Date.class;
+    }
+    if (object instanceof Enum) {
+      mix(typeHash(((Enum<?>) object).getDeclaringClass()));
+      return hash(((Enum<?>) object).name());
+    }
+    if (object instanceof CacheKey) {
+      CacheKey cacheKey = (CacheKey) object;
+      mix(cacheKey.h1);
+      mix(cacheKey.h2);
+      mix(cacheKey.count);
+      return false;
+    }
+    if (type.isArray()) {
+      return hashArray(object, type.getComponentType());
+    }
+    if (object instanceof List) {
+      List<?> list = (List<?>) object;
+      mix(LIST ^ list.size());
+      boolean strong = true;
+      for (Object element : list) {
+        strong &= hash(element);
+      }
+      return strong;
+    }
+    if (object instanceof Set) {
+      Set<?> set = (Set<?>) object;
+      mix(SET ^ set.size());
+      // order independent, like Set.hashCode()
+      long sum1 = 0;
+      long sum2 = 0;
+      boolean strong = true;
+      for (Object element : set) {
+        CacheKey elementKey = new CacheKey();
+        strong &= elementKey.hash(element);
+        sum1 += fmix(elementKey.h1);
+        sum2 += fmix(elementKey.h2);
+      }
+      mix(sum1);
+      mix(sum2);
+      return strong;
+    }
+    mix(typeHash(type));
+    mix(object.hashCode());
+    return false;
+  }
+
+  private boolean hashArray(Object array, Class<?> componentType) {
+    if (componentType == byte.class) {
+      byte[] bytes = (byte[]) array;
+      mix(typeHash(byte[].class) ^ bytes.length);
+      int i = 0;
+      for (; i + 7 < bytes.length; i += 8) {
+        long word = 0;
+        for (int j = 7; j >= 0; j--) {
+          word = (word << 8) | (bytes[i + j] & 0xFF);
+        }
+        mix(word);
+      }
+      long tail = 0;
+      for (int shift = 0; i < bytes.length; i++, shift += 8) {
+        tail |= (long) (bytes[i] & 0xFF) << shift;
+      }
+      mix(tail);
+      return true;
+    }
+    if (componentType == int.class) {
+      int[] ints = (int[]) array;
+      mix(typeHash(int[].class) ^ ints.length);
+      for (int element : ints) {
+        mix(element);
+      }
+      return true;
+    }
+    if (componentType == long.class) {
+      long[] longs = (long[]) array;
+      mix(typeHash(long[].class) ^ longs.length);
+      for (long element : longs) {
+        mix(element);
+      }
+      return true;
+    }
+    if (componentType.isPrimitive()) {
+      int length = Array.getLength(array);
+      mix(typeHash(array.getClass()) ^ length);
+      for (int i = 0; i < length; i++) {
+        Object element = Array.get(array, i);
+        if (element instanceof Double || element instanceof Float) {
+          mix(Double.doubleToLongBits(((Number) element).doubleValue()));
+        } else if (element instanceof Boolean) {
+          mix((Boolean) element ? TRUE : FALSE);
+        } else if (element instanceof Character) {
+          mix((Character) element);
+        } else {
+          mix(((Number) element).longValue());
+        }
+      }
+      return true;
+    }
+    Object[] elements = (Object[]) array;
+    mix(typeHash(array.getClass()) ^ elements.length);
+    boolean strong = true;
+    for (Object element : elements) {
+      strong &= hash(element);
+    }
+    return strong;
+  }
+
+  private static boolean componentEquals(Object thisObject, Object thatObject) {
+    if ((thisObject instanceof List && thatObject instanceof List) || (thisObject instanceof Set && thatObject instanceof Set)) {
+      return thisObject.equals(thatObject);
+    }
+    return ArrayUtil.equals(thisObject, thatObject);
+  }
+
+  private static boolean isLarge(Object object) {
+    if (object instanceof List || object instanceof Set) {
+      return ((Collection<?>) object).size() > MAX_RETAINED_ELEMENTS;
+    }
+    return object != null && object.getClass().isArray()
+        && Array.getLength(object) > MAX_RETAINED_ELEMENTS;
+  }
+
+  /**
+   * The name hash is stable across JVMs, unlike the identity hash of the class, so that persisted keys stay valid.
+   */
+  private static long typeHash(Class<?> type) {
+    return type.getName().hashCode();
+  }
+
+  /**
+   * One half block round of MurmurHash3 x64 128, alternating the two lanes.
+   */
+  private void mix(long k) {
+    if ((words++ & 1) == 0) {
+      k *= C1;
+      k = Long.rotateLeft(k, 31);
+      k *= C2;
+      h1 ^= k;
+      h1 = Long.rotateLeft(h1, 27);
+      h1 += h2;
+      h1 = h1 * 5 + 0x52dce729;
+    } else {
+      k *= C2;
+      k = Long.rotateLeft(k, 33);
+      k *= C1;
+      h2 ^= k;
+      h2 = Long.rotateLeft(h2, 31);
+      h2 += h1;
+      h2 = h2 * 5 + 0x38495ab5;
+    }
+  }
+
+  private static long fmix(long k) {
+    k ^= k >>> 33;
+    k *= 0xff51afd7ed558ccdL;
+    k ^= k >>> 33;
+    k *= 0xc4ceb9fe1a85ec53L;
+    k ^= k >>> 33;
+    return k;
+  }
+
+  /**
+   * Stands for a large component, by the SHA-256 digest of its content.
+   */
+  private static final class Digest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final byte[] bytes;
+
+    Digest(Object object) {
+      MessageDigest digest = newDigest();
+      write(digest, object);
+      this.bytes = digest.digest();
+    }
+
+    @Override
+    public boolean equals(Object object) {
+      return object instanceof Digest && MessageDigest.isEqual(bytes, ((Digest) object).bytes);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(bytes);
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder hex = new StringBuilder("sha256:");
+      for (byte b : bytes) {
+        hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return hex.toString();
+    }
+
+    private static MessageDigest newDigest() {
+      try {
+        return MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new CacheException("SHA-256 is not available.  Cause: " + e, e);
+      }
+    }
+
+    /**
+     * Writes an unambiguous encoding of a value hashed by content: a tag, the type, the length and the elements.
+     */
+    private static void write(MessageDigest digest, Object object) {
+      if (object == null) {
+        digest.update((byte) 0);
+      } else if (object instanceof List) {
+        List<?> list = (List<?>) object;
+        digest.update((byte) 1);
+        writeInt(digest, list.size());
+        for (Object element : list) {
+          write(digest, element);
+        }
+      } else if (object instanceof Set) {
+        Set<?> set = (Set<?>) object;
+        digest.update((byte) 2);
+        writeInt(digest, set.size());
+        // the digests of the elements are sorted so that the iteration order does not matter
+        List<byte[]> elementDigests = new ArrayList<>(set.size());
+        for (Object element : set) {
+          MessageDigest elementDigest = newDigest();
+          write(elementDigest, element);
+          elementDigests.add(elementDigest.digest());
+        }
+        elementDigests.sort(Digest::compare);
+        for (byte[] elementDigest : elementDigests) {
+          digest.update(elementDigest);
+        }
+      } else if (object.getClass().isArray()) {
+        digest.update((byte) 3);
+        writeString(digest, object.getClass().getName());
+        int length = Array.getLength(object);
+        writeInt(digest, length);
+        if (object instanceof byte[]) {
+          digest.update((byte[]) object);
+        } else {
+          for (int i = 0; i < length; i++) {
+            write(digest, Array.get(object, i));
+          }
+        }
+      } else {
+        digest.update((byte) 4);
+        if (object instanceof Enum) {
+          writeString(digest, ((Enum<?>) object).getDeclaringClass().getName());
+          writeString(digest, ((Enum<?>) object).name());
+        } else {
+          writeString(digest, object.getClass().getName());
+          writeString(digest, scalarValue(object));
+        }
+      }
+    }
+
+    private static String scalarValue(Object object) {
+      if (object instanceof Double) {
+        return Long.toString(Double.doubleToLongBits((Double) object));
+      } else if (object instanceof Float) {
+        return Integer.toString(Float.floatToIntBits((Float) object));
+      } else if (object instanceof Date) {
+        return Long.toString(((Date) object).getTime());
+      }
+      return object.toString();
+    }
+
+    private static void writeString(MessageDigest digest, String string) {
+      writeInt(digest, string.length());
+      for (int i = 0; i < string.length(); i++) {
+        char c = string.charAt(i);
+        digest.update((byte) (c >>> 8));
+        digest.update((byte) c);
+      }
+    }
+
+    private static void writeInt(MessageDigest digest, int value) {
+      digest.update((byte) (value >>> 24));
+      digest.update((byte) (value >>> 16));
+      digest.update((byte) (value >>> 8));
+      digest.update((byte) value);
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+      for (int i = 0; i < a.length; i++) {
+        int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+        if (diff != 0) {
+          return diff;
+        }
+      }
+      return 0;
+    }
+  }
+
 }
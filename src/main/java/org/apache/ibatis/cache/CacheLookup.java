@@ -0,0 +1,67 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * The result of {@link Cache#lookupObject(Object)}: the cached value, and the refresh of the entry that the lookup
+ * asked for, if any.
+ *
+ * @since 3.5.0
+ */
+public final class CacheLookup {
+
+  private static final CacheLookup MISS = new CacheLookup(null, null);
+
+  private final Object value;
+  private final RefreshRequest refreshRequest;
+
+  /**
+   * @param refreshRequest the refresh asked for by the lookup, or null
+   */
+  public CacheLookup(Object value, RefreshRequest refreshRequest) {
+    this.value = value;
+    this.refreshRequest = refreshRequest;
+  }
+
+  /**
+   * @return a lookup of the value that asks for no refresh
+   */
+  public static CacheLookup of(Object value) {
+    return value == null ? MISS : new CacheLookup(value, null);
+  }
+
+  /**
+   * @return the cached value, or null on a miss
+   */
+  public Object getValue() {
+    return value;
+  }
+
+  /**
+   * @return the refresh asked for by the lookup, which the caller must either make or cancel, or null
+   */
+  public RefreshRequest getRefreshRequest() {
+    return refreshRequest;
+  }
+
+  /**
+   * @return a lookup of another value with the same refresh request, for decorators that transform the values
+   */
+  public CacheLookup withValue(Object value) {
+    return value == this.value ? this : new CacheLookup(value, refreshRequest);
+  }
+
+}
@@ -0,0 +1,199 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.apache.ibatis.cache.weigher.ObjectSizeWeigher;
+import org.apache.ibatis.cache.weigher.Weigher;
+
+/**
+ * Statistics of a second level cache. The caches built by the {@code CacheBuilder} feed them and the ones of the
+ * mapper namespaces are available with {@code Configuration.getCacheMetrics(String)}.
+ *
+ * Counters are striped so that recording from many sessions at once does not contend, and reading them never
+ * blocks the cache.
+ *
+ * @since 3.5.0
+ */
+public class CacheMetrics {
+
+  private static final int MIN_SAMPLES = 16;
+  private static final int SAMPLE_RATE = 64;
+
+  private final String id;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder puts = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder expirations = new LongAdder();
+  private final LongAdder compressions = new LongAdder();
+  private final LongAdder uncompressedBytes = new LongAdder();
+  private final LongAdder compressedBytes = new LongAdder();
+  private final LatencyHistogram loadTimes = new LatencyHistogram();
+  private final Weigher sampleWeigher = new ObjectSizeWeigher();
+  private final LongAdder sampledBytes = new LongAdder();
+  private final LongAdder sampledEntries = new LongAdder();
+  private volatile LongSupplier estimatedBytes = () -> 0;
+
+  public CacheMetrics(String id) {
+    this.id = id;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public void recordHit() {
+    hits.increment();
+  }
+
+  public void recordMiss() {
+    misses.increment();
+  }
+
+  /**
+   * Counts a put and weighs the entry now and then to estimate the average size of the entries.
+   */
+  public void recordPut(Object key, Object value) {
+    puts.increment();
+    if (sampledEntries.sum() < MIN_SAMPLES || ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0) {
+      sampledBytes.add(sampleWeigher.weigh(key, value));
+      sampledEntries.increment();
+    }
+  }
+
+  public void recordEviction() {
+    evictions.increment();
+  }
+
+  public void recordExpiration() {
+    expirations.increment();
+  }
+
+  /**
+   * @param originalBytes size of a serialized value
+   * @param storedBytes size of the value once compressed, or of the value as it is if it was not worth compressing
+   */
+  public void recordCompression(int originalBytes, int storedBytes) {
+    compressions.increment();
+    uncompressedBytes.add(originalBytes);
+    compressedBytes.add(storedBytes);
+  }
+
+  /**
+   * @param nanos time elapsed between a cache miss and the put of the value loaded from the database
+   */
+  public void recordLoadTime(long nanos) {
+    loadTimes.record(nanos);
+  }
+
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  public long getRequestCount() {
+    return getHitCount() + getMissCount();
+  }
+
+  public double getHitRatio() {
+    long hitCount = getHitCount();
+    long requestCount = hitCount + getMissCount();
+    return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+  }
+
+  public long getPutCount() {
+    return puts.sum();
+  }
+
+  /**
+   * @return the number of entries removed to make room for others, or because the garbage collector reclaimed them
+   */
+  public long getEvictionCount() {
+    return evictions.sum();
+  }
+
+  public long getExpirationCount() {
+    return expirations.sum();
+  }
+
+  /**
+   * @return the total size of the serialized values before compression divided by their size after, or 1 if the
+   *         cache does not compress
+   */
+  public double getCompressionRatio() {
+    long stored = compressedBytes.sum();
+    return stored == 0 ? 1 : (double) uncompressedBytes.sum() / stored;
+  }
+
+  /**
+   * @return the average size of the values stored by a compressed cache
+   */
+  public long getAverageCompressedBytes() {
+    long count = compressions.sum();
+    return count == 0 ? 0 : compressedBytes.sum() / count;
+  }
+
+  public LatencyHistogram getLoadTimes() {
+    return loadTimes;
+  }
+
+  /**
+   * @return the average size in bytes of a sample of the entries put in the cache
+   */
+  public long getAverageEntryBytes() {
+    long entries = sampledEntries.sum();
+    return entries == 0 ? 0 : sampledBytes.sum() / entries;
+  }
+
+  /**
+   * @return the estimated number of bytes taken by the entries of the cache
+   */
+  public long getEstimatedBytes() {
+    return estimatedBytes.getAsLong();
+  }
+
+  public void setEstimatedBytes(LongSupplier estimatedBytes) {
+    this.estimatedBytes = estimatedBytes;
+  }
+
+  public void reset() {
+    hits.reset();
+    misses.reset();
+    puts.reset();
+    evictions.reset();
+    expirations.reset();
+    compressions.reset();
+    uncompressedBytes.reset();
+    compressedBytes.reset();
+    loadTimes.reset();
+  }
+
+  @Override
+  public String toString() {
+    return id + " [hits=" + getHitCount() + ", misses=" + getMissCount() + ", puts=" + getPutCount() + ", evictions="
+        + getEvictionCount() + ", expirations=" + getExpirationCount() + ", compressionRatio=" + getCompressionRatio()
+        + ", estimatedBytes=" + getEstimatedBytes()
+        + ", loadTimes={" + loadTimes + "}]";
+  }
+
+}
@@ -0,0 +1,90 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * The expiration of a single cache entry, given with {@link Cache#putObject(Object, Object, EntryMetadata)} and read
+ * back with {@link Cache#peekMetadata(Object)}.
+ *
+ * Only the caches that expire entries one by one, like {@link org.apache.ibatis.cache.decorators.ExpiringCache}, use
+ * it. Other caches ignore it and decorators pass it to their delegate.
+ *
+ * @since 3.5.0
+ */
+public final class EntryMetadata {
+
+  private static final long UNSET = -1;
+
+  private final long writeTime;
+  private final long expireAfterWrite;
+  private final RefreshRequest refreshRequest;
+
+  private EntryMetadata(long writeTime, long expireAfterWrite, RefreshRequest refreshRequest) {
+    this.writeTime = writeTime;
+    this.expireAfterWrite = expireAfterWrite;
+    this.refreshRequest = refreshRequest;
+  }
+
+  /**
+   * @param expireAfterWrite milliseconds after the write after which the entry expires, whatever the expiration of
+   *     the cache
+   */
+  public static EntryMetadata expireAfterWrite(long expireAfterWrite) {
+    return new EntryMetadata(UNSET, expireAfterWrite, null);
+  }
+
+  /**
+   * @param writeTime the time the entry was first written, in milliseconds since the epoch. The entry expires as if
+   *     it had been put then.
+   */
+  public static EntryMetadata writtenAt(long writeTime) {
+    return new EntryMetadata(writeTime, UNSET, null);
+  }
+
+  /**
+   * The value is dropped if the entry was removed, or the cache cleared, since the refresh was requested, because it
+   * may have been read before that change.
+   *
+   * @param refreshRequest the request of the refresh that reloaded the value
+   * @param expireAfterWrite milliseconds after the write after which the entry expires, or null for the expiration
+   *     of the cache
+   */
+  public static EntryMetadata refreshed(RefreshRequest refreshRequest, Long expireAfterWrite) {
+    return new EntryMetadata(UNSET, expireAfterWrite == null ? UNSET : expireAfterWrite, refreshRequest);
+  }
+
+  /**
+   * @return the time the entry was written, or -1 for the time of the put
+   */
+  public long getWriteTime() {
+    return writeTime;
+  }
+
+  /**
+   * @return the milliseconds after the write after which the entry expires, or -1 for the expiration of the cache
+   */
+  public long getExpireAfterWrite() {
+    return expireAfterWrite;
+  }
+
+  /**
+   * @return the request of the refresh that reloaded the value, or null if it was not refreshed
+   */
+  public RefreshRequest getRefreshRequest() {
+    return refreshRequest;
+  }
+
+}
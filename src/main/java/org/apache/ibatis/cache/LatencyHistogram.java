@@ -0,0 +1,130 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations in nanoseconds with power of two buckets: a duration {@code d} is counted in the bucket
+ * {@code floor(log2(d))}. Recording is lock-free and the reported percentiles are accurate to a factor of two,
+ * which is enough to tell a cache whose loads take microseconds from one whose loads take seconds.
+ *
+ * @since 3.5.0
+ */
+public class LatencyHistogram {
+
+  private static final int BUCKETS = 64;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+  private final LongAdder totalTime = new LongAdder();
+  private final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);
+
+  public LatencyHistogram() {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    buckets[bucketOf(nanos)].increment();
+    totalTime.add(nanos);
+    maxTime.accumulate(nanos);
+  }
+
+  public long getCount() {
+    long count = 0;
+    for (LongAdder bucket : buckets) {
+      count += bucket.sum();
+    }
+    return count;
+  }
+
+  public long getTotalTime() {
+    return totalTime.sum();
+  }
+
+  public long getMaxTime() {
+    return maxTime.get();
+  }
+
+  public long getMeanTime() {
+    long count = getCount();
+    return count == 0 ? 0 : totalTime.sum() / count;
+  }
+
+  /**
+   * @param percentile a value between 0 and 100
+   * @return the upper bound, in nanoseconds, of the bucket holding the given percentile of the durations
+   */
+  public long getPercentile(double percentile) {
+    long[] counts = getBucketCounts();
+    long count = 0;
+    for (long bucketCount : counts) {
+      count += bucketCount;
+    }
+    if (count == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(count * Math.min(Math.max(percentile, 0), 100) / 100);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= Math.max(rank, 1)) {
+        return Math.min(upperBoundOf(i), getMaxTime());
+      }
+    }
+    return getMaxTime();
+  }
+
+  /**
+   * @return the number of durations of each bucket, the bucket {@code i} holding the ones from {@code 2^i}
+   *         (or zero for the first bucket) up to {@code 2^(i+1) - 1} nanoseconds
+   */
+  public long[] getBucketCounts() {
+    long[] counts = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets[i].sum();
+    }
+    return counts;
+  }
+
+  public void reset() {
+    for (LongAdder bucket : buckets) {
+      bucket.reset();
+    }
+    totalTime.reset();
+    maxTime.reset();
+  }
+
+  private static int bucketOf(long nanos) {
+    return 63 - Long.numberOfLeadingZeros(nanos | 1);
+  }
+
+  private static long upperBoundOf(int bucket) {
+    return bucket == 63 ? Long.MAX_VALUE : (1L << (bucket + 1)) - 1;
+  }
+
+  @Override
+  public String toString() {
+    return "count=" + getCount() + ", mean=" + getMeanTime() + "ns, p50=" + getPercentile(50) + "ns, p99="
+        + getPercentile(99) + "ns, max=" + getMaxTime() + "ns";
+  }
+
+}
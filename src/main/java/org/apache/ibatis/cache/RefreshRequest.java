@@ -0,0 +1,32 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+/**
+ * The refresh of a cache entry asked for by a lookup, see {@link CacheLookup#getRefreshRequest()}. Until the entry is
+ * reloaded, or the request canceled, no other lookup asks for it. The reloaded value is put with
+ * {@link EntryMetadata#refreshed(RefreshRequest, Long)}.
+ *
+ * @since 3.5.0
+ */
+public interface RefreshRequest {
+
+  /**
+   * Lets a later lookup ask for the refresh again. Must be called when the requested refresh is not made.
+   */
+  void cancel();
+
+}
@@ -0,0 +1,223 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Finds the tables an SQL statement reads and writes.
+ *
+ * This is a lexical scan, not a full SQL parser: table names are the identifiers that follow FROM, JOIN, INTO,
+ * UPDATE, DELETE and TRUNCATE. It errs on the side of finding too many tables (column names after
+ * {@code ON DUPLICATE KEY UPDATE}, common table expression names...) which only costs some extra invalidation.
+ * Schema and quotes are removed and names are lower cased.
+ */
+final class SqlTableParser {
+
+  private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+      "select", "from", "where", "join", "inner", "outer", "left", "right", "full", "cross", "natural", "on",
+      "using", "group", "order", "having", "limit", "offset", "fetch", "union", "intersect", "except", "minus",
+      "into", "values", "set", "as", "for", "with", "window", "start", "connect", "lateral", "straight_join",
+      "only", "returning", "partition", "tablesample", "unnest", "table", "lock", "nowait", "skip"));
+
+  private final List<String> tokens;
+  private final Set<String> read = new LinkedHashSet<>();
+  private final Set<String> written = new LinkedHashSet<>();
+
+  private SqlTableParser(String sql) {
+    this.tokens = tokenize(sql);
+  }
+
+  /**
+   * @return the tables the statement reads, empty when none could be found
+   */
+  static Set<String> readTables(String sql) {
+    SqlTableParser parser = new SqlTableParser(sql);
+    parser.parse();
+    return Collections.unmodifiableSet(parser.read);
+  }
+
+  /**
+   * @return the tables the statement writes, empty when none could be found
+   */
+  static Set<String> writtenTables(String sql) {
+    SqlTableParser parser = new SqlTableParser(sql);
+    parser.parse();
+    return Collections.unmodifiableSet(parser.written);
+  }
+
+  /**
+   * @return the table name without schema nor quotes, in lower case
+   */
+  static String normalize(String identifier) {
+    String name = identifier.trim();
+    int dot = lastDotOutsideQuotes(name);
+    if (dot >= 0) {
+      name = name.substring(dot + 1);
+    }
+    if (name.length() >= 2 && isOpeningQuote(name.charAt(0))) {
+      name = name.substring(1, name.length() - 1);
+    }
+    return name.toLowerCase(Locale.ENGLISH);
+  }
+
+  private void parse() {
+    for (int i = 0; i < tokens.size(); i++) {
+      String token = tokens.get(i).toLowerCase(Locale.ENGLISH);
+      if ("from".equals(token)) {
+        boolean deleteFrom = i > 0 && "delete".equalsIgnoreCase(tokens.get(i - 1));
+        i = tableList(i + 1, deleteFrom ? written : read);
+      } else if ("join".equals(token) || "using".equals(token)) {
+        i = table(i + 1, read);
+      } else if ("into".equals(token) || "update".equals(token)) {
+        i = table(i + 1, written);
+      } else if ("delete".equals(token)) {
+        // multiple table syntax: DELETE t1, t2 FROM ...
+        if (i + 1 < tokens.size() && !"from".equalsIgnoreCase(tokens.get(i + 1))) {
+          i = tableList(i + 1, written);
+        }
+      } else if ("truncate".equals(token)) {
+        int next = i + 1;
+        if (next < tokens.size() && "table".equalsIgnoreCase(tokens.get(next))) {
+          next++;
+        }
+        i = table(next, written);
+      }
+    }
+  }
+
+  /**
+   * Reads a comma separated list of tables with their optional aliases.
+   * @return the index of the last consumed token
+   */
+  private int tableList(int start, Set<String> tables) {
+    int i = start;
+    while (i < tokens.size() && isIdentifier(tokens.get(i))) {
+      tables.add(normalize(tokens.get(i)));
+      i++;
+      if (i < tokens.size() && "as".equalsIgnoreCase(tokens.get(i))) {
+        i++;
+      }
+      if (i < tokens.size() && isIdentifier(tokens.get(i))) {
+        // alias
+        i++;
+      }
+      if (i < tokens.size() && ",".equals(tokens.get(i))) {
+        i++;
+      } else {
+        break;
+      }
+    }
+    return i - 1;
+  }
+
+  private int table(int start, Set<String> tables) {
+    if (start < tokens.size() && isIdentifier(tokens.get(start))) {
+      tables.add(normalize(tokens.get(start)));
+      return start;
+    }
+    return start - 1;
+  }
+
+  private static boolean isIdentifier(String token) {
+    char first = token.charAt(0);
+    if (isOpeningQuote(first)) {
+      return true;
+    }
+    return (Character.isLetter(first) || first == '_' || first == '#' || first == '@')
+        && !KEYWORDS.contains(token.toLowerCase(Locale.ENGLISH));
+  }
+
+  private static boolean isOpeningQuote(char c) {
+    return c == '"' || c == '`' || c == '[';
+  }
+
+  private static int lastDotOutsideQuotes(String name) {
+    char quote = 0;
+    int dot = -1;
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (isOpeningQuote(c)) {
+        quote = c == '[' ? ']' : c;
+      } else if (c == '.') {
+        dot = i;
+      }
+    }
+    return dot;
+  }
+
+  /**
+   * Splits the statement in identifiers (including qualified and quoted ones) and single character symbols,
+   * skipping white spaces, string literals and comments.
+   */
+  private static List<String> tokenize(String sql) {
+    List<String> tokens = new ArrayList<>();
+    int length = sql.length();
+    int i = 0;
+    while (i < length) {
+      char c = sql.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '\'') {
+        i = skipQuoted(sql, i, '\'');
+      } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+        int end = sql.indexOf('\n', i);
+        i = end < 0 ? length : end + 1;
+      } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+        int end = sql.indexOf("*/", i + 2);
+        i = end < 0 ? length : end + 2;
+      } else if (isIdentifierPart(c) || isOpeningQuote(c)) {
+        int start = i;
+        while (i < length) {
+          char current = sql.charAt(i);
+          if (isOpeningQuote(current)) {
+            i = skipQuoted(sql, i, current == '[' ? ']' : current);
+          } else if (isIdentifierPart(current) || current == '.') {
+            i++;
+          } else {
+            break;
+          }
+        }
+        tokens.add(sql.substring(start, i));
+      } else {
+        tokens.add(String.valueOf(c));
+        i++;
+      }
+    }
+    return tokens;
+  }
+
+  private static boolean isIdentifierPart(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#' || c == '@';
+  }
+
+  private static int skipQuoted(String sql, int start, char closing) {
+    int end = sql.indexOf(closing, start + 1);
+    return end < 0 ? sql.length() : end + 1;
+  }
+
+}
@@ -0,0 +1,193 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+
+/**
+ * Version counters used for table level invalidation of the second level caches.
+ *
+ * Every cached query result is stored under a key that includes the current version of each table the query reads.
+ * Committing a write increments the versions of the tables it wrote, so the entries that depend on them can no longer
+ * be found and are eventually evicted, while the entries read from other tables stay valid.
+ *
+ * Queries whose tables are unknown depend on a version of their cache instead, which is incremented by any write
+ * statement of the namespace.
+ *
+ * @since 3.5.0
+ */
+public class TableVersions {
+
+  private static final int MAX_PARSED_STATEMENTS = 10000;
+
+  private final ConcurrentMap<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, AtomicLong> cacheVersions = new ConcurrentHashMap<>();
+  private final ConcurrentMap<MappedStatement, Set<String>> declaredTables = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Set<String>> readTables = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Set<String>> writtenTables = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the tables a statement reads when it is a select, or writes when it is an insert, update or delete.
+   * They are taken from the {@code tables} attribute of the statement or found in its SQL.
+   *
+   * @return the tables or null if they are unknown
+   */
+  public Set<String> getTables(MappedStatement ms, BoundSql boundSql) {
+    if (ms.getTables() != null) {
+      return declaredTables.computeIfAbsent(ms, TableVersions::normalize);
+    }
+    if (ms.getStatementType() == StatementType.CALLABLE) {
+      // a procedure can touch any table
+      return null;
+    }
+    SqlCommandType commandType = ms.getSqlCommandType();
+    if (commandType != SqlCommandType.SELECT && commandType != SqlCommandType.INSERT
+        && commandType != SqlCommandType.UPDATE && commandType != SqlCommandType.DELETE) {
+      return null;
+    }
+    boolean isSelect = commandType == SqlCommandType.SELECT;
+    ConcurrentMap<String, Set<String>> parsedTables = isSelect ? readTables : writtenTables;
+    String sql = boundSql.getSql();
+    Set<String> tables = parsedTables.get(sql);
+    if (tables == null) {
+      tables = isSelect ? SqlTableParser.readTables(sql) : SqlTableParser.writtenTables(sql);
+      if (parsedTables.size() < MAX_PARSED_STATEMENTS) {
+        parsedTables.put(sql, tables);
+      }
+    }
+    return tables.isEmpty() ? null : tables;
+  }
+
+  /**
+   * @return a copy of the key that also contains the current versions of the tables, or of the cache if they are
+   *     unknown
+   */
+  public CacheKey stamp(CacheKey key, Cache cache, Set<String> tables) {
+    CacheKey stamped;
+    try {
+      stamped = key.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new CacheException("Error stamping cache key " + key + ".  Cause: " + e, e);
+    }
+    if (tables == null) {
+      stamped.update(versionOf(cacheVersions, cache.getId()));
+    } else {
+      for (String table : tables) {
+        stamped.update(versionOf(tableVersions, table));
+      }
+    }
+    return stamped;
+  }
+
+  public long getVersion(String table) {
+    return versionOf(tableVersions, SqlTableParser.normalize(table));
+  }
+
+  /**
+   * Invalidates all the entries read from the tables, in any cache, and the entries of the caches whose tables are
+   * unknown.
+   */
+  public void increment(Collection<Cache> caches, Collection<String> tables) {
+    for (String table : tables) {
+      increment(tableVersions, table);
+    }
+    for (Cache cache : caches) {
+      increment(cacheVersions, cache.getId());
+    }
+  }
+
+  public void increment(String... tables) {
+    for (String table : tables) {
+      increment(tableVersions, SqlTableParser.normalize(table));
+    }
+  }
+
+  /**
+   * @return a copy of the versions of the tables
+   */
+  public Map<String, Long> getTableVersions() {
+    return copyOf(tableVersions);
+  }
+
+  /**
+   * @return a copy of the versions of the caches whose tables are unknown
+   */
+  public Map<String, Long> getCacheVersions() {
+    return copyOf(cacheVersions);
+  }
+
+  /**
+   * Raises the versions to at least the given ones. Used when a cache snapshot is loaded, so that its stamped keys
+   * can only be found until the next write of their tables.
+   */
+  public void restore(Map<String, Long> tableVersions, Map<String, Long> cacheVersions) {
+    restore(this.tableVersions, tableVersions);
+    restore(this.cacheVersions, cacheVersions);
+  }
+
+  private static Map<String, Long> copyOf(ConcurrentMap<String, AtomicLong> versions) {
+    Map<String, Long> copy = new HashMap<>();
+    for (Map.Entry<String, AtomicLong> version : versions.entrySet()) {
+      copy.put(version.getKey(), version.getValue().get());
+    }
+    return copy;
+  }
+
+  private static void restore(ConcurrentMap<String, AtomicLong> versions, Map<String, Long> restored) {
+    for (Map.Entry<String, Long> version : restored.entrySet()) {
+      versions.computeIfAbsent(version.getKey(), k -> new AtomicLong()).accumulateAndGet(version.getValue(), Math::max);
+    }
+  }
+
+  private static long versionOf(ConcurrentMap<String, AtomicLong> versions, String name) {
+    AtomicLong version = versions.get(name);
+    return version == null ? 0L : version.get();
+  }
+
+  private static void increment(ConcurrentMap<String, AtomicLong> versions, String name) {
+    versions.computeIfAbsent(name, k -> new AtomicLong()).incrementAndGet();
+  }
+
+  /**
+   * @return the name of the table as the tables of a statement are returned, without schema nor quotes and in lower
+   *     case
+   */
+  public static String normalize(String table) {
+    return SqlTableParser.normalize(table);
+  }
+
+  private static Set<String> normalize(MappedStatement ms) {
+    Set<String> normalized = new LinkedHashSet<>();
+    for (String table : ms.getTables()) {
+      normalized.add(SqlTableParser.normalize(table));
+    }
+    return Collections.unmodifiableSet(normalized);
+  }
+
+}
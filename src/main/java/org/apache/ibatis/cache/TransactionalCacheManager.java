@@ -15,10 +15,17 @@
  */
 package org.apache.ibatis.cache;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.invalidation.InvalidationBus;
+import org.apache.ibatis.session.Configuration;
 
 /**
  * @author Clinton Begin
@@ -26,33 +33,146 @@ import org.apache.ibatis.cache.decorators.TransactionalCache;
 public class TransactionalCacheManager {
 
   private final Map<Cache, TransactionalCache> transactionalCaches = new HashMap<>();
+  private final Set<String> invalidatedTables = new HashSet<>();
+  private final Set<Cache> invalidatedCaches = new HashSet<>();
+  private final Set<String> clearedCaches = new HashSet<>();
+  private TableVersions tableVersions;
+  private final Configuration configuration;
+  private final InvalidationBus invalidationBus;
+
+  public TransactionalCacheManager() {
+    this(null);
+  }
+
+  /**
+   * @param configuration the configuration providing the bus that sends the invalidations to the other nodes on
+   *          commit and the admission policies of the caches, may be null
+   * @since 3.5.0
+   */
+  public TransactionalCacheManager(Configuration configuration) {
+    this.configuration = configuration;
+    this.invalidationBus = configuration == null ? null : configuration.getInvalidationBus();
+  }
 
   public void clear(Cache cache) {
     getTransactionalCache(cache).clear();
+    if (invalidationBus != null) {
+      clearedCaches.add(cache.getId());
+    }
+  }
+
+  /**
+   * Clears, on commit, a partition of a partitioned cache. The other nodes are told to clear the whole cache.
+   *
+   * @since 3.5.0
+   */
+  public void clear(Cache cache, Object partition) {
+    getTransactionalCache(cache).clear(partition);
+    if (invalidationBus != null) {
+      clearedCaches.add(cache.getId());
+    }
+  }
+
+  /**
+   * Invalidates, on commit, the entries read from the tables and the entries of the cache whose tables are unknown.
+   *
+   * @param cache the cache of the statement that wrote the tables, may be null
+   * @since 3.5.0
+   */
+  public void invalidate(TableVersions tableVersions, Cache cache, Set<String> tables) {
+    this.tableVersions = tableVersions;
+    invalidatedTables.addAll(tables);
+    if (cache != null) {
+      invalidatedCaches.add(cache);
+    }
+  }
+
+  /**
+   * @param tables the tables read by a query or null if they are unknown
+   * @return true if the cached result of the query may be stale because of a pending invalidation
+   * @since 3.5.0
+   */
+  public boolean isInvalidated(Cache cache, Set<String> tables) {
+    if (tables == null) {
+      return invalidatedCaches.contains(cache);
+    }
+    for (String table : tables) {
+      if (invalidatedTables.contains(table)) {
+        return true;
+      }
+    }
+    return false;
   }
 
   public Object getObject(Cache cache, CacheKey key) {
     return getTransactionalCache(cache).getObject(key);
   }
   
+  /**
+   * @return the lookup of the entry, which may ask for a refresh of it
+   * @since 3.5.0
+   */
+  public CacheLookup lookupObject(Cache cache, CacheKey key) {
+    return getTransactionalCache(cache).lookupObject(key);
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public CompletableFuture<CacheLookup> lookupObjectAsync(Cache cache, CacheKey key) {
+    return getTransactionalCache(cache).lookupObjectAsync(key);
+  }
+
   public void putObject(Cache cache, CacheKey key, Object value) {
     getTransactionalCache(cache).putObject(key, value);
   }
 
+  /**
+   * @param expireAfterWrite milliseconds after the commit after which the entry expires
+   * @since 3.5.0
+   */
+  public void putObject(Cache cache, CacheKey key, Object value, long expireAfterWrite) {
+    getTransactionalCache(cache).putObject(key, value, EntryMetadata.expireAfterWrite(expireAfterWrite));
+  }
+
   public void commit() {
+    if (tableVersions != null) {
+      tableVersions.increment(invalidatedCaches, invalidatedTables);
+    }
+    if (invalidationBus != null) {
+      publishInvalidations();
+    }
+    resetInvalidations();
     for (TransactionalCache txCache : transactionalCaches.values()) {
       txCache.commit();
     }
   }
 
   public void rollback() {
+    resetInvalidations();
     for (TransactionalCache txCache : transactionalCaches.values()) {
       txCache.rollback();
     }
   }
 
+  private void resetInvalidations() {
+    tableVersions = null;
+    invalidatedTables.clear();
+    invalidatedCaches.clear();
+    clearedCaches.clear();
+  }
+
+  private void publishInvalidations() {
+    List<String> invalidatedCacheIds = new ArrayList<>();
+    for (Cache cache : invalidatedCaches) {
+      invalidatedCacheIds.add(cache.getId());
+    }
+    invalidationBus.publish(clearedCaches, invalidatedCacheIds, invalidatedTables);
+  }
+
   private TransactionalCache getTransactionalCache(Cache cache) {
-    return transactionalCaches.computeIfAbsent(cache, TransactionalCache::new);
+    return transactionalCaches.computeIfAbsent(cache, c -> new TransactionalCache(c,
+        configuration == null ? null : configuration.getCacheAdmissionPolicy(c.getId())));
   }
 
 }
@@ -0,0 +1,37 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.admission;
+
+/**
+ * SPI consulted by the second level cache before a result loaded from the database is staged to be cached.
+ *
+ * A policy is shared by all the sessions using the cache of a namespace. Implementations must be thread safe and
+ * have a public no-args constructor.
+ *
+ * @since 3.5.0
+ * @see org.apache.ibatis.cache.decorators.TransactionalCache
+ */
+public interface AdmissionPolicy {
+
+  /**
+   * Records that the result of the key was just loaded and tells whether it is worth caching.
+   *
+   * @param key The cache key of the result
+   * @return true if the result should be put in the cache on commit
+   */
+  boolean admit(Object key);
+
+}
@@ -0,0 +1,75 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.admission;
+
+import org.apache.ibatis.cache.decorators.FrequencySketch;
+
+/**
+ * Admits the keys loaded at least {@code threshold} times within the last {@code window} loads.
+ *
+ * The loads are counted in the {@link FrequencySketch} of {@link org.apache.ibatis.cache.decorators.TinyLfuCache},
+ * with four 4-bit counters per key of the window. Every {@code window} loads the counters are halved, so that keys
+ * that stop being requested lose their admission. The sketch may overestimate the frequency of a key, never
+ * underestimate it.
+ *
+ * @since 3.5.0
+ */
+public class FrequencyAdmission implements AdmissionPolicy {
+
+  private static final int MAXIMUM_COUNT = 15;
+
+  private int threshold = 2;
+  private int window = 10000;
+
+  private FrequencySketch sketch;
+  private int loads;
+
+  public int getThreshold() {
+    return threshold;
+  }
+
+  public synchronized void setThreshold(int threshold) {
+    this.threshold = Math.min(Math.max(threshold, 1), MAXIMUM_COUNT);
+  }
+
+  public int getWindow() {
+    return window;
+  }
+
+  public synchronized void setWindow(int window) {
+    this.window = Math.max(window, 1);
+    sketch = null;
+  }
+
+  @Override
+  public synchronized boolean admit(Object key) {
+    if (threshold <= 1 || key == null) {
+      return true;
+    }
+    if (sketch == null) {
+      // sixteen counters per long, four per key; the sketch ages on its own only after 2.5 windows of increments
+      sketch = new FrequencySketch(Math.max(window, 64) / 4);
+      loads = 0;
+    }
+    if (++loads >= window) {
+      loads = 0;
+      sketch.age();
+    }
+    sketch.increment(key);
+    return sketch.frequency(key) >= threshold;
+  }
+
+}
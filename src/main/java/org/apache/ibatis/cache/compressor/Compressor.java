@@ -0,0 +1,43 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.compressor;
+
+/**
+ * SPI used by the second level cache to compress serialized values.
+ *
+ * Implementations must be thread safe and have a public no-args constructor.
+ *
+ * @since 3.5.0
+ * @see org.apache.ibatis.cache.decorators.CompressedCache
+ */
+public interface Compressor {
+
+  /**
+   * @param bytes The bytes to compress
+   * @return The compressed bytes, which may be larger than the input for incompressible data
+   */
+  byte[] compress(byte[] bytes);
+
+  /**
+   * @param bytes Array holding bytes produced by {@link #compress(byte[])}
+   * @param offset Position of the compressed bytes in the array
+   * @param length Number of compressed bytes
+   * @param originalLength The length of the original bytes
+   * @return The original bytes
+   */
+  byte[] decompress(byte[] bytes, int offset, int length, int originalLength);
+
+}
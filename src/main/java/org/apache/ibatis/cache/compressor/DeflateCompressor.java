@@ -0,0 +1,78 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.compressor;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.apache.ibatis.cache.CacheException;
+
+/**
+ * Compresses with the JDK's deflate implementation at its fastest level. It usually compresses more than
+ * {@link LzCompressor} but takes several times longer.
+ *
+ * @since 3.5.0
+ */
+public class DeflateCompressor implements Compressor {
+
+  @Override
+  public byte[] compress(byte[] bytes) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+    try {
+      deflater.setInput(bytes);
+      deflater.finish();
+      byte[] buffer = new byte[Math.max(64, bytes.length / 2)];
+      int length = 0;
+      while (!deflater.finished()) {
+        if (length == buffer.length) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        length += deflater.deflate(buffer, length, buffer.length - length);
+      }
+      return Arrays.copyOf(buffer, length);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  @Override
+  public byte[] decompress(byte[] bytes, int offset, int length, int originalLength) {
+    Inflater inflater = new Inflater(true);
+    try {
+      inflater.setInput(bytes, offset, length);
+      byte[] result = new byte[originalLength];
+      int position = 0;
+      while (position < originalLength) {
+        int inflated = inflater.inflate(result, position, originalLength - position);
+        if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        position += inflated;
+      }
+      if (position != originalLength) {
+        throw new CacheException("Error decompressing cache value: expected " + originalLength + " bytes but got " + position);
+      }
+      return result;
+    } catch (DataFormatException e) {
+      throw new CacheException("Error decompressing cache value.  Cause: " + e, e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+}
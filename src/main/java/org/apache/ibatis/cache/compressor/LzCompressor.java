@@ -0,0 +1,152 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.compressor;
+
+import java.util.Arrays;
+
+import org.apache.ibatis.cache.CacheException;
+
+/**
+ * Fast LZ77 compressor writing the LZ4 block format: sequences of literals followed by a copy of at least four bytes
+ * found up to 64KB before. Matches are found through a hash table of the last position of every four byte prefix,
+ * without any search, which makes it several times faster than deflate at the cost of a lower ratio.
+ *
+ * @since 3.5.0
+ */
+public class LzCompressor implements Compressor {
+
+  private static final int MIN_MATCH = 4;
+  private static final int LAST_LITERALS = 5;
+  private static final int MAX_OFFSET = 65535;
+  private static final int HASH_LOG = 12;
+
+  @Override
+  public byte[] compress(byte[] src) {
+    int length = src.length;
+    byte[] dst = new byte[length + length / 255 + 16];
+    int[] table = new int[1 << HASH_LOG];
+    int matchLimit = length - LAST_LITERALS;
+    int anchor = 0;
+    int ip = 0;
+    int op = 0;
+    while (ip + MIN_MATCH <= matchLimit) {
+      int sequence = readInt(src, ip);
+      int hash = (sequence * -1640531535) >>> (32 - HASH_LOG);
+      // positions are stored plus one so that zero means empty
+      int ref = table[hash] - 1;
+      table[hash] = ip + 1;
+      if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != sequence) {
+        ip++;
+        continue;
+      }
+      int matchLength = MIN_MATCH;
+      while (ip + matchLength < matchLimit && src[ref + matchLength] == src[ip + matchLength]) {
+        matchLength++;
+      }
+      op = writeSequence(dst, op, src, anchor, ip - anchor, ip - ref, matchLength);
+      ip += matchLength;
+      anchor = ip;
+    }
+    op = writeSequence(dst, op, src, anchor, length - anchor, 0, 0);
+    return Arrays.copyOf(dst, op);
+  }
+
+  @Override
+  public byte[] decompress(byte[] src, int offset, int length, int originalLength) {
+    byte[] dst = new byte[originalLength];
+    int end = offset + length;
+    int ip = offset;
+    int op = 0;
+    try {
+      while (true) {
+        int token = src[ip++] & 0xff;
+        int literals = token >>> 4;
+        if (literals == 15) {
+          int b;
+          do {
+            b = src[ip++] & 0xff;
+            literals += b;
+          } while (b == 255);
+        }
+        System.arraycopy(src, ip, dst, op, literals);
+        ip += literals;
+        op += literals;
+        if (ip >= end) {
+          break;
+        }
+        int matchOffset = (src[ip++] & 0xff) | ((src[ip++] & 0xff) << 8);
+        int matchLength = token & 0xf;
+        if (matchLength == 15) {
+          int b;
+          do {
+            b = src[ip++] & 0xff;
+            matchLength += b;
+          } while (b == 255);
+        }
+        matchLength += MIN_MATCH;
+        int ref = op - matchOffset;
+        if (ref < 0 || matchOffset == 0) {
+          throw new CacheException("Error decompressing cache value: invalid offset " + matchOffset);
+        }
+        // the copy may overlap its own output, so it goes byte by byte
+        for (int i = 0; i < matchLength; i++) {
+          dst[op++] = dst[ref++];
+        }
+      }
+    } catch (IndexOutOfBoundsException e) {
+      throw new CacheException("Error decompressing cache value: corrupted input", e);
+    }
+    if (op != originalLength) {
+      throw new CacheException("Error decompressing cache value: expected " + originalLength + " bytes but got " + op);
+    }
+    return dst;
+  }
+
+  private static int writeSequence(byte[] dst, int op, byte[] src, int literalStart, int literals, int offset, int matchLength) {
+    int tokenPosition = op++;
+    int token = Math.min(literals, 15) << 4;
+    if (literals >= 15) {
+      op = writeLength(dst, op, literals - 15);
+    }
+    System.arraycopy(src, literalStart, dst, op, literals);
+    op += literals;
+    if (matchLength > 0) {
+      dst[op++] = (byte) offset;
+      dst[op++] = (byte) (offset >>> 8);
+      int extra = matchLength - MIN_MATCH;
+      token |= Math.min(extra, 15);
+      if (extra >= 15) {
+        op = writeLength(dst, op, extra - 15);
+      }
+    }
+    dst[tokenPosition] = (byte) token;
+    return op;
+  }
+
+  private static int writeLength(byte[] dst, int op, int length) {
+    while (length >= 255) {
+      dst[op++] = (byte) 255;
+      length -= 255;
+    }
+    dst[op++] = (byte) length;
+    return op;
+  }
+
+  private static int readInt(byte[] bytes, int i) {
+    return (bytes[i] & 0xff) | (bytes[i + 1] & 0xff) << 8 | (bytes[i + 2] & 0xff) << 16 | (bytes[i + 3] & 0xff) << 24;
+  }
+
+}
@@ -15,21 +15,26 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheLookup;
+import org.apache.ibatis.cache.EntryMetadata;
 import org.apache.ibatis.cache.CacheException;
 
 /**
  * Simple blocking decorator
  *
- * Simple and inefficient version of EhCache's BlockingCache decorator.
- * It sets a lock over a cache key when the element is not found in cache.
- * This way, other threads will wait until this element is filled instead of hitting the database.
+ * Single-flight version of EhCache's BlockingCache decorator.
+ * The first thread that misses a key registers an in-flight marker for it, other threads asking for the same key
+ * wait until the marker is completed by {@link #putObject(Object, Object)} or {@link #removeObject(Object)}
+ * instead of hitting the database. Markers are not owned by a thread, so they can be completed by any thread,
+ * and they are discarded as soon as they complete, so the number of markers is bounded by the number of
+ * concurrent misses rather than by the number of distinct keys ever requested.
  *
  * @author Eduardo Macarron
  *
@@ -38,11 +43,11 @@ public class BlockingCache implements Cache {
 
   private long timeout;
   private final Cache delegate;
-  private final ConcurrentHashMap<Object, ReentrantLock> locks;
+  private final ConcurrentHashMap<Object, InFlight> inFlights;
 
   public BlockingCache(Cache delegate) {
     this.delegate = delegate;
-    this.locks = new ConcurrentHashMap<>();
+    this.inFlights = new ConcurrentHashMap<>();
   }
 
   @Override
@@ -55,29 +60,63 @@ public class BlockingCache implements Cache {
     return delegate.getSize();
   }
 
+  @Override
+  public Set<Object> getKeys() {
+    return delegate.getKeys();
+  }
+
   @Override
   public void putObject(Object key, Object value) {
     try {
       delegate.putObject(key, value);
     } finally {
-      releaseLock(key);
+      complete(key);
+    }
+  }
+
+  @Override
+  public void putObject(Object key, Object value, EntryMetadata metadata) {
+    try {
+      delegate.putObject(key, value, metadata);
+    } finally {
+      complete(key);
     }
   }
 
   @Override
   public Object getObject(Object key) {
-    acquireLock(key);
+    await(key);
     Object value = delegate.getObject(key);
     if (value != null) {
-      releaseLock(key);
+      complete(key);
     }
     return value;
   }
 
+  @Override
+  public CacheLookup lookupObject(Object key) {
+    await(key);
+    CacheLookup lookup = delegate.lookupObject(key);
+    if (lookup.getValue() != null) {
+      complete(key);
+    }
+    return lookup;
+  }
+
+  @Override
+  public Object peekObject(Object key) {
+    return delegate.peekObject(key);
+  }
+
+  @Override
+  public EntryMetadata peekMetadata(Object key) {
+    return delegate.peekMetadata(key);
+  }
+
   @Override
   public Object removeObject(Object key) {
     // despite of its name, this method is called only to release locks
-    releaseLock(key);
+    complete(key);
     return null;
   }
 
@@ -91,30 +130,34 @@ public class BlockingCache implements Cache {
     return null;
   }
 
-  private ReentrantLock getLockForKey(Object key) {
-    return locks.computeIfAbsent(key, k -> new ReentrantLock());
-  }
-
-  private void acquireLock(Object key) {
-    Lock lock = getLockForKey(key);
-    if (timeout > 0) {
+  private void await(Object key) {
+    InFlight newInFlight = new InFlight();
+    while (true) {
+      InFlight inFlight = inFlights.putIfAbsent(key, newInFlight);
+      if (inFlight == null || inFlight.owner == newInFlight.owner) {
+        // either we are the first miss or this thread already started loading the key
+        return;
+      }
       try {
-        boolean acquired = lock.tryLock(timeout, TimeUnit.MILLISECONDS);
-        if (!acquired) {
-          throw new CacheException("Couldn't get a lock in " + timeout + " for the key " +  key + " at the cache " + delegate.getId());
+        if (timeout > 0) {
+          boolean completed = inFlight.latch.await(timeout, TimeUnit.MILLISECONDS);
+          if (!completed) {
+            throw new CacheException("Couldn't get a lock in " + timeout + " for the key " +  key + " at the cache " + delegate.getId());
+          }
+        } else {
+          inFlight.latch.await();
         }
       } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
         throw new CacheException("Got interrupted while trying to acquire lock for key " + key, e);
       }
-    } else {
-      lock.lock();
     }
   }
 
-  private void releaseLock(Object key) {
-    ReentrantLock lock = locks.get(key);
-    if (lock.isHeldByCurrentThread()) {
-      lock.unlock();
+  private void complete(Object key) {
+    InFlight inFlight = inFlights.remove(key);
+    if (inFlight != null) {
+      inFlight.latch.countDown();
     }
   }
 
@@ -125,4 +168,10 @@ public class BlockingCache implements Cache {
   public void setTimeout(long timeout) {
     this.timeout = timeout;
   }
+
+  private static class InFlight {
+    private final CountDownLatch latch = new CountDownLatch(1);
+    // only used to let the loading thread ask for the same key again without waiting for itself
+    private final Thread owner = Thread.currentThread();
+  }
 }
@@ -0,0 +1,185 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheLookup;
+import org.apache.ibatis.cache.EntryMetadata;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.compressor.Compressor;
+import org.apache.ibatis.cache.compressor.LzCompressor;
+
+/**
+ * Compresses the serialized values of a read-write cache.
+ *
+ * The {@code CacheBuilder} applies it under the {@link SerializedCache}, so it receives the bytes of the values.
+ * Values of at least {@code threshold} bytes are compressed, smaller ones or the ones that do not shrink are kept as
+ * they are. Every stored value starts with a flag telling which is the case, followed by the original length when
+ * it is compressed. Values that are not byte arrays go through unchanged.
+ *
+ * @since 3.5.0
+ */
+public class CompressedCache implements Cache {
+
+  private static final byte RAW = 0;
+  private static final byte COMPRESSED = 1;
+  private static final int HEADER_SIZE = 5;
+
+  private final Cache delegate;
+  private final Compressor compressor;
+  private int threshold = 1024;
+  private CacheMetrics metrics;
+
+  public CompressedCache(Cache delegate) {
+    this(delegate, new LzCompressor());
+  }
+
+  public CompressedCache(Cache delegate, Compressor compressor) {
+    this.delegate = delegate;
+    this.compressor = compressor;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public Set<Object> getKeys() {
+    return delegate.getKeys();
+  }
+
+  public int getThreshold() {
+    return threshold;
+  }
+
+  public void setThreshold(int threshold) {
+    this.threshold = threshold;
+  }
+
+  /**
+   * @param metrics metrics in which the sizes before and after compression are counted
+   */
+  public void setMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    delegate.putObject(key, value instanceof byte[] ? encode((byte[]) value) : value);
+  }
+
+  @Override
+  public void putObject(Object key, Object value, EntryMetadata metadata) {
+    delegate.putObject(key, value instanceof byte[] ? encode((byte[]) value) : value, metadata);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Object value = delegate.getObject(key);
+    return value instanceof byte[] ? decode((byte[]) value) : value;
+  }
+
+  @Override
+  public CacheLookup lookupObject(Object key) {
+    CacheLookup lookup = delegate.lookupObject(key);
+    Object value = lookup.getValue();
+    return value instanceof byte[] ? lookup.withValue(decode((byte[]) value)) : lookup;
+  }
+
+  @Override
+  public Object peekObject(Object key) {
+    Object value = delegate.peekObject(key);
+    return value instanceof byte[] ? decode((byte[]) value) : value;
+  }
+
+  @Override
+  public EntryMetadata peekMetadata(Object key) {
+    return delegate.peekMetadata(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    delegate.clear();
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+  private byte[] encode(byte[] bytes) {
+    byte[] encoded = null;
+    if (bytes.length >= threshold) {
+      byte[] compressed = compressor.compress(bytes);
+      if (compressed.length + HEADER_SIZE < bytes.length) {
+        encoded = new byte[compressed.length + HEADER_SIZE];
+        encoded[0] = COMPRESSED;
+        encoded[1] = (byte) (bytes.length >>> 24);
+        encoded[2] = (byte) (bytes.length >>> 16);
+        encoded[3] = (byte) (bytes.length >>> 8);
+        encoded[4] = (byte) bytes.length;
+        System.arraycopy(compressed, 0, encoded, HEADER_SIZE, compressed.length);
+      }
+    }
+    if (encoded == null) {
+      encoded = new byte[bytes.length + 1];
+      encoded[0] = RAW;
+      System.arraycopy(bytes, 0, encoded, 1, bytes.length);
+    }
+    if (metrics != null) {
+      metrics.recordCompression(bytes.length, encoded.length);
+    }
+    return encoded;
+  }
+
+  private byte[] decode(byte[] encoded) {
+    if (encoded.length == 0) {
+      return encoded;
+    }
+    if (encoded[0] == RAW) {
+      byte[] bytes = new byte[encoded.length - 1];
+      System.arraycopy(encoded, 1, bytes, 0, bytes.length);
+      return bytes;
+    }
+    int length = (encoded[1] & 0xff) << 24 | (encoded[2] & 0xff) << 16 | (encoded[3] & 0xff) << 8 | (encoded[4] & 0xff);
+    return compressor.decompress(encoded, HEADER_SIZE, encoded.length - HEADER_SIZE, length);
+  }
+
+}
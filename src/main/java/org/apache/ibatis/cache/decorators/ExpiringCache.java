@@ -0,0 +1,295 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Consumer;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheLookup;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.EntryMetadata;
+import org.apache.ibatis.cache.RefreshRequest;
+import org.apache.ibatis.cache.decorators.TimerWheel.Node;
+
+/**
+ * Expires each entry on its own, a given time after it was written and/or after it was last read.
+ *
+ * Unlike {@link ScheduledCache}, which clears the whole cache at once, entries are tracked in a {@link TimerWheel}
+ * so that they leave the cache one by one as their time comes. Times are in milliseconds, zero means never.
+ *
+ * The time to live of a single entry can be set with {@link EntryMetadata#expireAfterWrite(long)}, which is how
+ * statements override the expire after write time of their namespace.
+ *
+ * Entries that expire after write can be refreshed ahead of time: once an entry is read within {@code refreshAhead}
+ * milliseconds of its expiration, or after it, the read returns the current value and asks the caller to reload it.
+ * Only the reads made with {@link #lookupObject(Object)} ask for refreshes, with the {@link RefreshRequest} of the
+ * lookup. Expired entries waiting for their new value are still returned for up to {@code maxStale} milliseconds. The
+ * reloaded value is put with {@link EntryMetadata#refreshed(RefreshRequest, Long)}.
+ *
+ * Cache snapshots save the write time of the entries, read with {@link #peekMetadata(Object)}, and put them back with
+ * {@link EntryMetadata#writtenAt(long)}, so that a restart does not extend their time to live.
+ *
+ * @since 3.5.0
+ */
+public class ExpiringCache implements Cache {
+
+  private final Cache delegate;
+  private final Map<Object, Node> nodes = new HashMap<>();
+  private final TimerWheel timerWheel = new TimerWheel();
+  private final Consumer<Node> expiration = this::expire;
+  private long expireAfterWrite;
+  private long expireAfterAccess;
+  private long refreshAhead;
+  private long maxStale;
+  private CacheMetrics metrics;
+
+  public ExpiringCache(Cache delegate) {
+    this.delegate = delegate;
+  }
+
+  public long getExpireAfterWrite() {
+    return expireAfterWrite;
+  }
+
+  public void setExpireAfterWrite(long expireAfterWrite) {
+    this.expireAfterWrite = expireAfterWrite;
+  }
+
+  public long getExpireAfterAccess() {
+    return expireAfterAccess;
+  }
+
+  public void setExpireAfterAccess(long expireAfterAccess) {
+    this.expireAfterAccess = expireAfterAccess;
+  }
+
+  public long getRefreshAhead() {
+    return refreshAhead;
+  }
+
+  public void setRefreshAhead(long refreshAhead) {
+    this.refreshAhead = refreshAhead;
+  }
+
+  public long getMaxStale() {
+    return maxStale;
+  }
+
+  public void setMaxStale(long maxStale) {
+    this.maxStale = maxStale;
+  }
+
+  /**
+   * @param metrics metrics in which the expirations are counted
+   */
+  public void setMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    timerWheel.advance(currentTimeMillis(), expiration);
+    return delegate.getSize();
+  }
+
+  @Override
+  public Set<Object> getKeys() {
+    return delegate.getKeys();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    putObject(key, value, null);
+  }
+
+  @Override
+  public void putObject(Object key, Object value, EntryMetadata metadata) {
+    long now = currentTimeMillis();
+    timerWheel.advance(now, expiration);
+    Node node = nodes.get(key);
+    if (metadata != null && metadata.getRefreshRequest() != null
+        && (node == null || !node.refreshing || ((EntryRefresh) metadata.getRefreshRequest()).node != node)) {
+      // removed or cleared since the refresh was requested
+      return;
+    }
+    long timeToLive = metadata != null && metadata.getExpireAfterWrite() >= 0 ? metadata.getExpireAfterWrite()
+        : expireAfterWrite;
+    long writeTime = metadata != null && metadata.getWriteTime() >= 0 ? Math.min(metadata.getWriteTime(), now) : now;
+    long writeExpiration = timeToLive > 0 ? writeTime + timeToLive : Long.MAX_VALUE;
+    long time = removalTime(writeExpiration, now);
+    if (time <= now) {
+      // restored after its expiration
+      if (node != null) {
+        nodes.remove(key);
+        timerWheel.deschedule(node);
+      }
+      delegate.removeObject(key);
+      return;
+    }
+    if (time == Long.MAX_VALUE) {
+      if (node != null) {
+        nodes.remove(key);
+        timerWheel.deschedule(node);
+      }
+    } else {
+      if (node == null) {
+        node = new Node(key);
+        nodes.put(key, node);
+      } else {
+        timerWheel.deschedule(node);
+      }
+      node.time = time;
+      node.writeTime = writeTime;
+      node.writeExpiration = writeExpiration;
+      node.refreshing = false;
+      timerWheel.schedule(node);
+    }
+    delegate.putObject(key, value);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return getObject(key, currentTimeMillis());
+  }
+
+  @Override
+  public CacheLookup lookupObject(Object key) {
+    long now = currentTimeMillis();
+    Object value = getObject(key, now);
+    Node node = value == null ? null : nodes.get(key);
+    if (node != null && isRefreshing() && !node.refreshing && node.writeExpiration != Long.MAX_VALUE
+        && now >= node.writeExpiration - refreshAhead) {
+      node.refreshing = true;
+      return new CacheLookup(value, new EntryRefresh(node));
+    }
+    return CacheLookup.of(value);
+  }
+
+  private Object getObject(Object key, long now) {
+    timerWheel.advance(now, expiration);
+    Node node = nodes.get(key);
+    if (node != null && node.time <= now) {
+      timerWheel.deschedule(node);
+      expire(node);
+      return null;
+    }
+    Object value = delegate.getObject(key);
+    if (node != null && value != null && expireAfterAccess > 0) {
+      node.time = removalTime(node.writeExpiration, now);
+      timerWheel.reschedule(node);
+    }
+    return value;
+  }
+
+  @Override
+  public Object peekObject(Object key) {
+    Node node = nodes.get(key);
+    if (node != null && node.time <= currentTimeMillis()) {
+      return null;
+    }
+    return delegate.peekObject(key);
+  }
+
+  @Override
+  public EntryMetadata peekMetadata(Object key) {
+    Node node = nodes.get(key);
+    if (node == null || node.time <= currentTimeMillis() || node.writeExpiration == Long.MAX_VALUE) {
+      return null;
+    }
+    return EntryMetadata.writtenAt(node.writeTime);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Node node = nodes.remove(key);
+    if (node != null) {
+      timerWheel.deschedule(node);
+    }
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    nodes.clear();
+    timerWheel.clear();
+    delegate.clear();
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  @Override
+  public int hashCode() {
+    return delegate.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return delegate.equals(obj);
+  }
+
+  protected long currentTimeMillis() {
+    return System.currentTimeMillis();
+  }
+
+  private boolean isRefreshing() {
+    return refreshAhead > 0 || maxStale > 0;
+  }
+
+  private long removalTime(long writeExpiration, long now) {
+    long time = writeExpiration;
+    if (writeExpiration != Long.MAX_VALUE && isRefreshing()) {
+      time += maxStale;
+    }
+    return expireAfterAccess > 0 ? Math.min(time, now + expireAfterAccess) : time;
+  }
+
+  private void expire(Node node) {
+    nodes.remove(node.key);
+    delegate.removeObject(node.key);
+    if (metrics != null) {
+      metrics.recordExpiration();
+    }
+  }
+
+  /**
+   * The refresh of an entry, asked for by a lookup.
+   */
+  private static final class EntryRefresh implements RefreshRequest {
+    private final Node node;
+
+    EntryRefresh(Node node) {
+      this.node = node;
+    }
+
+    @Override
+    public void cancel() {
+      node.refreshing = false;
+    }
+  }
+
+}
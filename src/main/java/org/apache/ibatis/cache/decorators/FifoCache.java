@@ -17,9 +17,11 @@ package org.apache.ibatis.cache.decorators;
 
 import java.util.Deque;
 import java.util.LinkedList;
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
 
 /**
  * FIFO (first in, first out) cache decorator
@@ -31,6 +33,7 @@ public class FifoCache implements Cache {
   private final Cache delegate;
   private final Deque<Object> keyList;
   private int size;
+  private CacheMetrics metrics;
 
   public FifoCache(Cache delegate) {
     this.delegate = delegate;
@@ -48,10 +51,23 @@ public class FifoCache implements Cache {
     return delegate.getSize();
   }
 
+  @Override
+  public Set<Object> getKeys() {
+    return delegate.getKeys();
+  }
+
   public void setSize(int size) {
     this.size = size;
   }
 
+  /**
+   * @param metrics metrics in which the evictions are counted
+   * @since 3.5.0
+   */
+  public void setMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   @Override
   public void putObject(Object key, Object value) {
     cycleKeyList(key);
@@ -63,8 +79,14 @@ public class FifoCache implements Cache {
     return delegate.getObject(key);
   }
 
+  @Override
+  public Object peekObject(Object key) {
+    return delegate.peekObject(key);
+  }
+
   @Override
   public Object removeObject(Object key) {
+    keyList.remove(key);
     return delegate.removeObject(key);
   }
 
@@ -84,6 +106,9 @@ public class FifoCache implements Cache {
     if (keyList.size() > size) {
       Object oldestKey = keyList.removeFirst();
       delegate.removeObject(oldestKey);
+      if (metrics != null) {
+        metrics.recordEviction();
+      }
     }
   }
 
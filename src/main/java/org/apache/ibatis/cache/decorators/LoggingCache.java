@@ -15,24 +15,45 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.locks.ReadWriteLock;
 
+import org.apache.ibatis.cache.AsyncCache;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheLookup;
+import org.apache.ibatis.cache.EntryMetadata;
+import org.apache.ibatis.cache.CacheMetrics;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 
 /**
  * @author Clinton Begin
  */
-public class LoggingCache implements Cache {
+public class LoggingCache implements AsyncCache {
+
+  // the counters are updated without lock when the cache below is thread safe and not synchronized
+  private static final AtomicIntegerFieldUpdater<LoggingCache> REQUESTS = AtomicIntegerFieldUpdater.newUpdater(LoggingCache.class, "requests");
+  private static final AtomicIntegerFieldUpdater<LoggingCache> HITS = AtomicIntegerFieldUpdater.newUpdater(LoggingCache.class, "hits");
 
   private final Log log;
   private final Cache delegate;
-  protected int requests = 0;
-  protected int hits = 0;
+  private final CacheMetrics metrics;
+  protected volatile int requests = 0;
+  protected volatile int hits = 0;
 
   public LoggingCache(Cache delegate) {
+    this(delegate, null);
+  }
+
+  /**
+   * @param metrics metrics in which the hits, misses and puts are counted, may be null
+   * @since 3.5.0
+   */
+  public LoggingCache(Cache delegate, CacheMetrics metrics) {
     this.delegate = delegate;
+    this.metrics = metrics;
     this.log = LogFactory.getLog(getId());
   }
 
@@ -46,22 +67,70 @@ public class LoggingCache implements Cache {
     return delegate.getSize();
   }
 
+  @Override
+  public Set<Object> getKeys() {
+    return delegate.getKeys();
+  }
+
   @Override
   public void putObject(Object key, Object object) {
     delegate.putObject(key, object);
+    if (metrics != null && object != null) {
+      metrics.recordPut(key, object);
+    }
   }
 
   @Override
-  public Object getObject(Object key) {
-    requests++;
-    final Object value = delegate.getObject(key);
-    if (value != null) {
-      hits++;
+  public void putObject(Object key, Object object, EntryMetadata metadata) {
+    delegate.putObject(key, object, metadata);
+    if (metrics != null && object != null) {
+      metrics.recordPut(key, object);
     }
-    if (log.isDebugEnabled()) {
-      log.debug("Cache Hit Ratio [" + getId() + "]: " + getHitRatio());
-    }
-    return value;
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return record(delegate.getObject(key));
+  }
+
+  /**
+   * Completes immediately unless the delegate is an {@link AsyncCache}.
+   *
+   * @since 3.5.0
+   */
+  @Override
+  public CompletableFuture<Object> getObjectAsync(Object key) {
+    return AsyncCache.getObjectAsync(delegate, key).thenApply(this::record);
+  }
+
+  @Override
+  public CacheLookup lookupObject(Object key) {
+    CacheLookup lookup = delegate.lookupObject(key);
+    record(lookup.getValue());
+    return lookup;
+  }
+
+  /**
+   * Completes immediately unless the delegate is an {@link AsyncCache}.
+   *
+   * @since 3.5.0
+   */
+  @Override
+  public CompletableFuture<CacheLookup> lookupObjectAsync(Object key) {
+    return AsyncCache.lookupObjectAsync(delegate, key).thenApply(lookup -> {
+      record(lookup.getValue());
+      return lookup;
+    });
+  }
+
+  @Override
+  public Object peekObject(Object key) {
+    return delegate.peekObject(key);
+  }
+
+  @Override
+  public EntryMetadata peekMetadata(Object key) {
+    return delegate.peekMetadata(key);
   }
 
   @Override
@@ -89,6 +158,24 @@ public class LoggingCache implements Cache {
     return delegate.equals(obj);
   }
 
+  private Object record(Object value) {
+    REQUESTS.incrementAndGet(this);
+    if (value != null) {
+      HITS.incrementAndGet(this);
+    }
+    if (metrics != null) {
+      if (value != null) {
+        metrics.recordHit();
+      } else {
+        metrics.recordMiss();
+      }
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("Cache Hit Ratio [" + getId() + "]: " + getHitRatio());
+    }
+    return value;
+  }
+
   private double getHitRatio() {
     return (double) hits / (double) requests;
   }
@@ -0,0 +1,309 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Function;
+
+import org.apache.ibatis.cache.AsyncCache;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheLookup;
+import org.apache.ibatis.cache.EntryMetadata;
+import org.apache.ibatis.cache.CacheKey;
+
+/**
+ * Cache split in independent partitions, for instance one per tenant.
+ *
+ * The caching executor wraps the keys of a statement in a {@link PartitionKey} holding the value of the
+ * {@code partitionBy} property of its parameter, or the database id when it is {@code _databaseId}. Each partition is
+ * a complete cache, built on first use with the size, eviction and expiration of the namespace, so a partition only
+ * evicts its own entries and can be cleared on its own. Keys without a partition go to a default partition.
+ *
+ * Partition values must be immutable scalars, such as strings, numbers or enums. At most {@code maxPartitions}
+ * partitions, 1000 unless set, are kept besides the default one: beyond that, the least recently used partition is
+ * dropped with its entries.
+ *
+ * <pre>
+ * &lt;cache partitionBy="tenantId" size="1000"/&gt;
+ * </pre>
+ *
+ * @since 3.5.0
+ */
+public class PartitionedCache implements AsyncCache {
+
+  private static final Object DEFAULT_PARTITION = new Object();
+  private static final int DEFAULT_MAX_PARTITIONS = 1000;
+
+  private final String id;
+  private final String partitionBy;
+  private final Function<Object, Cache> partitionFactory;
+  private final ConcurrentMap<Object, Partition> partitions = new ConcurrentHashMap<>();
+  private volatile int maxPartitions = DEFAULT_MAX_PARTITIONS;
+
+  /**
+   * @param partitionFactory builds the cache of a partition, given its value or null for the default partition
+   */
+  public PartitionedCache(String id, String partitionBy, Function<Object, Cache> partitionFactory) {
+    this.id = id;
+    this.partitionBy = partitionBy;
+    this.partitionFactory = partitionFactory;
+    // fails fast on an invalid cache definition
+    partitions.put(DEFAULT_PARTITION, new Partition(partitionFactory.apply(null)));
+  }
+
+  /**
+   * @return the key of the given partition, or the key itself if the partition is null
+   */
+  public static CacheKey key(CacheKey key, Object partition) {
+    return partition == null ? key : new PartitionKey(key, partition);
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  /**
+   * @return the parameter property whose value selects the partition, or {@code _databaseId}
+   */
+  public String getPartitionBy() {
+    return partitionBy;
+  }
+
+  public int getMaxPartitions() {
+    return maxPartitions;
+  }
+
+  /**
+   * @param maxPartitions the number of partitions, besides the default one, over which the least recently used
+   *          partition is dropped
+   */
+  public void setMaxPartitions(int maxPartitions) {
+    this.maxPartitions = maxPartitions;
+    evictPartitions(null);
+  }
+
+  /**
+   * @return the partitions that are kept, without the default one
+   */
+  public Set<Object> getPartitions() {
+    Set<Object> values = new HashSet<>(partitions.keySet());
+    values.remove(DEFAULT_PARTITION);
+    return values;
+  }
+
+  @Override
+  public int getSize() {
+    int size = 0;
+    for (Partition partition : partitions.values()) {
+      size += partition.cache.getSize();
+    }
+    return size;
+  }
+
+  /**
+   * @return the number of entries of the partition
+   */
+  public int getSize(Object partition) {
+    Cache cache = existingPartition(partition);
+    return cache == null ? 0 : cache.getSize();
+  }
+
+  @Override
+  public Set<Object> getKeys() {
+    Set<Object> keys = new HashSet<>();
+    for (Partition partition : partitions.values()) {
+      Set<Object> partitionKeys = partition.cache.getKeys();
+      if (partitionKeys == null) {
+        return null;
+      }
+      keys.addAll(partitionKeys);
+    }
+    return keys;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    partitionOf(key).putObject(key, value);
+  }
+
+  @Override
+  public void putObject(Object key, Object value, EntryMetadata metadata) {
+    partitionOf(key).putObject(key, value, metadata);
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return partitionOf(key).getObject(key);
+  }
+
+  @Override
+  public CompletableFuture<Object> getObjectAsync(Object key) {
+    return AsyncCache.getObjectAsync(partitionOf(key), key);
+  }
+
+  @Override
+  public CacheLookup lookupObject(Object key) {
+    return partitionOf(key).lookupObject(key);
+  }
+
+  @Override
+  public CompletableFuture<CacheLookup> lookupObjectAsync(Object key) {
+    return AsyncCache.lookupObjectAsync(partitionOf(key), key);
+  }
+
+  @Override
+  public Object peekObject(Object key) {
+    Cache partition = existingPartition(partitionOfKey(key));
+    return partition == null ? null : partition.peekObject(key);
+  }
+
+  @Override
+  public EntryMetadata peekMetadata(Object key) {
+    Cache partition = existingPartition(partitionOfKey(key));
+    return partition == null ? null : partition.peekMetadata(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Cache partition = existingPartition(partitionOfKey(key));
+    return partition == null ? null : partition.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    for (Partition partition : partitions.values()) {
+      partition.cache.clear();
+    }
+  }
+
+  /**
+   * Clears a single partition, null for the default one.
+   */
+  public void clear(Object partition) {
+    Cache cache = existingPartition(partition);
+    if (cache != null) {
+      cache.clear();
+    }
+  }
+
+  /**
+   * Clears a partition of the cache if it is partitioned, or the whole cache otherwise.
+   */
+  public static void clear(Cache cache, Object partition) {
+    if (cache instanceof PartitionedCache) {
+      ((PartitionedCache) cache).clear(partition);
+    } else {
+      cache.clear();
+    }
+  }
+
+  /**
+   * @return true if the key belongs to the partition
+   */
+  public static boolean isInPartition(Object key, Object partition) {
+    Object keyPartition = partitionOfKey(key);
+    return partition == null ? keyPartition == null : partition.equals(keyPartition);
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  private Cache partitionOf(Object key) {
+    Object partition = partitionOfKey(key);
+    Object value = partitionValue(partition);
+    Partition used = partitions.get(value);
+    if (used == null) {
+      used = partitions.computeIfAbsent(value, v -> new Partition(partitionFactory.apply(partition)));
+      if (partitions.size() > maxPartitions + 1) {
+        evictPartitions(value);
+      }
+    }
+    used.lastUsed = System.nanoTime();
+    return used.cache;
+  }
+
+  private Cache existingPartition(Object partition) {
+    Partition existing = partitions.get(partitionValue(partition));
+    return existing == null ? null : existing.cache;
+  }
+
+  /**
+   * Drops the least recently used partitions over the max, except the default one and the one being used.
+   */
+  private synchronized void evictPartitions(Object used) {
+    while (partitions.size() > maxPartitions + 1) {
+      Map.Entry<Object, Partition> eldest = null;
+      for (Map.Entry<Object, Partition> entry : partitions.entrySet()) {
+        if (entry.getKey() != DEFAULT_PARTITION && !entry.getKey().equals(used)
+            && (eldest == null || entry.getValue().lastUsed < eldest.getValue().lastUsed)) {
+          eldest = entry;
+        }
+      }
+      if (eldest == null) {
+        return;
+      }
+      if (partitions.remove(eldest.getKey(), eldest.getValue())) {
+        eldest.getValue().cache.clear();
+      }
+    }
+  }
+
+  private static Object partitionOfKey(Object key) {
+    return key instanceof PartitionKey ? ((PartitionKey) key).getPartition() : null;
+  }
+
+  private static Object partitionValue(Object partition) {
+    return partition == null ? DEFAULT_PARTITION : partition;
+  }
+
+  private static final class Partition {
+    private final Cache cache;
+    private volatile long lastUsed = System.nanoTime();
+
+    Partition(Cache cache) {
+      this.cache = cache;
+    }
+  }
+
+  /**
+   * Key of an entry of a partition. Keys of different partitions are never equal.
+   */
+  public static final class PartitionKey extends CacheKey {
+
+    private static final long serialVersionUID = 5036407284631870113L;
+
+    private final Object partition;
+
+    private PartitionKey(CacheKey key, Object partition) {
+      super(new Object[] { partition, key });
+      this.partition = partition;
+    }
+
+    public Object getPartition() {
+      return partition;
+    }
+  }
+
+}
@@ -0,0 +1,302 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
+
+/**
+ * Memory sensitive cache decorator, a concurrent alternative to {@link SoftCache} and {@link WeakCache}.
+ *
+ * Values are held through soft references, or weak references when {@code weakReferences} is set, so the garbage
+ * collector can reclaim them under memory pressure. The entries whose value was reclaimed are removed by a single
+ * daemon thread shared by all the caches, that waits on their reference queue, instead of by the threads using the
+ * cache. The thread is started by the first write, and stops once a minute passed without writes nor reclaimed
+ * values, or when {@link #stopReclaimer()} is called; the next write starts it again. The {@code size} most recently
+ * read or written values are also kept strongly reachable in a ring, so that the hottest entries survive collections.
+ *
+ * Like {@link TinyLfuCache}, entries are held in a concurrent map by this decorator instead of in the delegate, which
+ * only supplies the cache identity, and the cache does not need to be wrapped with a {@link SynchronizedCache}.
+ *
+ * @since 3.5.0
+ */
+public class ReclaimingCache implements Cache {
+
+  private static final ReferenceQueue<Object> reclaimedValues = new ReferenceQueue<>();
+  private static final long RECLAIMER_IDLE_TIMEOUT = 60000;
+  private static final Object reclaimerLock = new Object();
+  private static volatile Thread reclaimer;
+  // set by the writes, so that the reclaimer does not stop while a write relies on it
+  private static volatile boolean written;
+
+  private final Cache delegate;
+  private final ConcurrentHashMap<Object, Entry> data = new ConcurrentHashMap<>();
+  private final AtomicLong strongLinkCount = new AtomicLong();
+  private final LongAdder reclaimedCount = new LongAdder();
+  private volatile AtomicReferenceArray<Object> strongLinks = new AtomicReferenceArray<>(256);
+  private volatile boolean weakReferences;
+  private CacheMetrics metrics;
+
+  public ReclaimingCache(Cache delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return data.size();
+  }
+
+  @Override
+  public Set<Object> getKeys() {
+    return new HashSet<>(data.keySet());
+  }
+
+  /**
+   * @param size the number of recently used values that are kept strongly reachable
+   */
+  public void setSize(int size) {
+    this.strongLinks = new AtomicReferenceArray<>(Math.max(size, 0));
+  }
+
+  public int getStrongLinkSize() {
+    return strongLinks.length();
+  }
+
+  public boolean isWeakReferences() {
+    return weakReferences;
+  }
+
+  /**
+   * @param weakReferences true to hold the values through weak instead of soft references
+   */
+  public void setWeakReferences(boolean weakReferences) {
+    this.weakReferences = weakReferences;
+  }
+
+  /**
+   * @param metrics metrics in which the reclaimed entries are counted as evictions
+   */
+  public void setMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * @return the number of entries removed because the garbage collector cleared their value
+   */
+  public long getReclaimedCount() {
+    return reclaimedCount.sum();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    if (value == null) {
+      data.remove(key);
+      return;
+    }
+    data.put(key, weakReferences ? new WeakEntry(this, key, value) : new SoftEntry(this, key, value));
+    keepStrongLink(value);
+    if (!written) {
+      written = true;
+    }
+    if (reclaimer == null) {
+      startReclaimer();
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Entry entry = data.get(key);
+    if (entry == null) {
+      return null;
+    }
+    Object value = entry.get();
+    if (value == null) {
+      // cleared but not yet dequeued by the reclaimer
+      reclaim(entry);
+      return null;
+    }
+    keepStrongLink(value);
+    return value;
+  }
+
+  @Override
+  public Object peekObject(Object key) {
+    Entry entry = data.get(key);
+    return entry == null ? null : entry.get();
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Entry entry = data.remove(key);
+    return entry == null ? null : entry.get();
+  }
+
+  @Override
+  public void clear() {
+    data.clear();
+    strongLinks = new AtomicReferenceArray<>(strongLinks.length());
+    delegate.clear();
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  private void keepStrongLink(Object value) {
+    AtomicReferenceArray<Object> links = strongLinks;
+    int length = links.length();
+    if (length > 0) {
+      links.lazySet((int) ((strongLinkCount.getAndIncrement() & Long.MAX_VALUE) % length), value);
+    }
+  }
+
+  private void reclaim(Entry entry) {
+    // the key may have been written again since
+    if (data.remove(entry.getKey(), entry)) {
+      reclaimedCount.increment();
+      if (metrics != null) {
+        metrics.recordEviction();
+      }
+    }
+  }
+
+  /**
+   * Stops the thread that removes the reclaimed entries of all the caches, for instance before the application
+   * classes are unloaded. The next write to a cache starts it again. Until then reclaimed entries are only removed
+   * when they are read.
+   */
+  public static void stopReclaimer() {
+    synchronized (reclaimerLock) {
+      if (reclaimer != null) {
+        reclaimer.interrupt();
+        reclaimer = null;
+      }
+    }
+  }
+
+  private static void startReclaimer() {
+    synchronized (reclaimerLock) {
+      if (reclaimer == null) {
+        Thread thread = new Thread(ReclaimingCache::runReclaimer, "mybatis-cache-reclaimer");
+        thread.setDaemon(true);
+        thread.start();
+        reclaimer = thread;
+      }
+    }
+  }
+
+  private static void runReclaimer() {
+    try {
+      while (true) {
+        Reference<?> reference = reclaimedValues.remove(RECLAIMER_IDLE_TIMEOUT);
+        if (reference == null) {
+          synchronized (reclaimerLock) {
+            if (reclaimer != Thread.currentThread()) {
+              // stopped
+              return;
+            }
+            // cleared before checking the writes: a write that still saw this thread is seen here
+            reclaimer = null;
+            reference = reclaimedValues.poll();
+            if (reference == null && !written) {
+              return;
+            }
+            written = false;
+            reclaimer = Thread.currentThread();
+          }
+          if (reference == null) {
+            continue;
+          }
+        }
+        if (reference instanceof Entry) {
+          Entry entry = (Entry) reference;
+          entry.getCache().reclaim(entry);
+        }
+      }
+    } catch (InterruptedException e) {
+      // stopped
+    }
+  }
+
+  private interface Entry {
+    Object get();
+
+    Object getKey();
+
+    ReclaimingCache getCache();
+  }
+
+  private static final class SoftEntry extends SoftReference<Object> implements Entry {
+    private final ReclaimingCache cache;
+    private final Object key;
+
+    SoftEntry(ReclaimingCache cache, Object key, Object value) {
+      super(value, reclaimedValues);
+      this.cache = cache;
+      this.key = key;
+    }
+
+    @Override
+    public Object getKey() {
+      return key;
+    }
+
+    @Override
+    public ReclaimingCache getCache() {
+      return cache;
+    }
+  }
+
+  private static final class WeakEntry extends WeakReference<Object> implements Entry {
+    private final ReclaimingCache cache;
+    private final Object key;
+
+    WeakEntry(ReclaimingCache cache, Object key, Object value) {
+      super(value, reclaimedValues);
+      this.cache = cache;
+      this.key = key;
+    }
+
+    @Override
+    public Object getKey() {
+      return key;
+    }
+
+    @Override
+    public ReclaimingCache getCache() {
+      return cache;
+    }
+  }
+
+}
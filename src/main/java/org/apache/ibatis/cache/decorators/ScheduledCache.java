@@ -15,6 +15,7 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
@@ -26,7 +27,7 @@ public class ScheduledCache implements Cache {
 
   private final Cache delegate;
   protected long clearInterval;
-  protected long lastClear;
+  protected volatile long lastClear;
 
   public ScheduledCache(Cache delegate) {
     this.delegate = delegate;
@@ -49,6 +50,11 @@ public class ScheduledCache implements Cache {
     return delegate.getSize();
   }
 
+  @Override
+  public Set<Object> getKeys() {
+    return delegate.getKeys();
+  }
+
   @Override
   public void putObject(Object key, Object object) {
     clearWhenStale();
@@ -60,6 +66,11 @@ public class ScheduledCache implements Cache {
     return clearWhenStale() ? null : delegate.getObject(key);
   }
 
+  @Override
+  public Object peekObject(Object key) {
+    return System.currentTimeMillis() - lastClear > clearInterval ? null : delegate.peekObject(key);
+  }
+
   @Override
   public Object removeObject(Object key) {
     clearWhenStale();
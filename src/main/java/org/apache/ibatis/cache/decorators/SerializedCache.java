@@ -15,18 +15,20 @@
  */
 package org.apache.ibatis.cache.decorators;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.ObjectStreamClass;
 import java.io.Serializable;
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheLookup;
+import org.apache.ibatis.cache.EntryMetadata;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.serializer.JavaSerializer;
+import org.apache.ibatis.cache.serializer.Serializer;
 import org.apache.ibatis.io.Resources;
 
 /**
@@ -35,9 +37,15 @@ import org.apache.ibatis.io.Resources;
 public class SerializedCache implements Cache {
 
   private final Cache delegate;
+  private final Serializer serializer;
 
   public SerializedCache(Cache delegate) {
+    this(delegate, new JavaSerializer());
+  }
+
+  public SerializedCache(Cache delegate, Serializer serializer) {
     this.delegate = delegate;
+    this.serializer = serializer;
   }
 
   @Override
@@ -50,19 +58,43 @@ public class SerializedCache implements Cache {
     return delegate.getSize();
   }
 
+  @Override
+  public Set<Object> getKeys() {
+    return delegate.getKeys();
+  }
+
   @Override
   public void putObject(Object key, Object object) {
-    if (object == null || object instanceof Serializable) {
-      delegate.putObject(key, serialize((Serializable) object));
-    } else {
-      throw new CacheException("SharedCache failed to make a copy of a non-serializable object: " + object);
-    }
+    delegate.putObject(key, serialize(object));
+  }
+
+  @Override
+  public void putObject(Object key, Object object, EntryMetadata metadata) {
+    delegate.putObject(key, serialize(object), metadata);
   }
 
   @Override
   public Object getObject(Object key) {
     Object object = delegate.getObject(key);
-    return object == null ? null : deserialize((byte[]) object);
+    return object == null ? null : serializer.deserialize((byte[]) object);
+  }
+
+  @Override
+  public CacheLookup lookupObject(Object key) {
+    CacheLookup lookup = delegate.lookupObject(key);
+    Object object = lookup.getValue();
+    return object == null ? lookup : lookup.withValue(serializer.deserialize((byte[]) object));
+  }
+
+  @Override
+  public Object peekObject(Object key) {
+    Object object = delegate.peekObject(key);
+    return object == null ? null : serializer.deserialize((byte[]) object);
+  }
+
+  @Override
+  public EntryMetadata peekMetadata(Object key) {
+    return delegate.peekMetadata(key);
   }
 
   @Override
@@ -90,26 +122,12 @@ public class SerializedCache implements Cache {
     return delegate.equals(obj);
   }
 
-  private byte[] serialize(Serializable value) {
-    try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-         ObjectOutputStream oos = new ObjectOutputStream(bos)) {
-      oos.writeObject(value);
-      oos.flush();
-      return bos.toByteArray();
-    } catch (Exception e) {
-      throw new CacheException("Error serializing object.  Cause: " + e, e);
-    }
-  }
-
-  private Serializable deserialize(byte[] value) {
-    Serializable result;
-    try (ByteArrayInputStream bis = new ByteArrayInputStream(value);
-         ObjectInputStream ois = new CustomObjectInputStream(bis)) {
-      result = (Serializable) ois.readObject();
-    } catch (Exception e) {
-      throw new CacheException("Error deserializing object.  Cause: " + e, e);
+  private byte[] serialize(Object object) {
+    if (object == null || object instanceof Serializable) {
+      return serializer.serialize(object);
+    } else {
+      throw new CacheException("SharedCache failed to make a copy of a non-serializable object: " + object);
     }
-    return result;
   }
 
   public static class CustomObjectInputStream extends ObjectInputStream {
@@ -19,9 +19,11 @@ import java.lang.ref.ReferenceQueue;
 import java.lang.ref.SoftReference;
 import java.util.Deque;
 import java.util.LinkedList;
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
 
 /**
  * Soft Reference cache decorator
@@ -34,6 +36,7 @@ public class SoftCache implements Cache {
   private final ReferenceQueue<Object> queueOfGarbageCollectedEntries;
   private final Cache delegate;
   private int numberOfHardLinks;
+  private CacheMetrics metrics;
 
   public SoftCache(Cache delegate) {
     this.delegate = delegate;
@@ -53,11 +56,24 @@ public class SoftCache implements Cache {
     return delegate.getSize();
   }
 
+  @Override
+  public Set<Object> getKeys() {
+    return delegate.getKeys();
+  }
+
 
   public void setSize(int size) {
     this.numberOfHardLinks = size;
   }
 
+  /**
+   * @param metrics metrics in which the evictions are counted
+   * @since 3.5.0
+   */
+  public void setMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   @Override
   public void putObject(Object key, Object value) {
     removeGarbageCollectedItems();
@@ -72,7 +88,7 @@ public class SoftCache implements Cache {
     if (softReference != null) {
       result = softReference.get();
       if (result == null) {
-        delegate.removeObject(key);
+        evict(key);
       } else {
         // See #586 (and #335) modifications need more than a read lock 
         synchronized (hardLinksToAvoidGarbageCollection) {
@@ -86,6 +102,12 @@ public class SoftCache implements Cache {
     return result;
   }
 
+  @Override
+  public Object peekObject(Object key) {
+    Object softReference = delegate.peekObject(key);
+    return softReference == null ? null : ((SoftReference<?>) softReference).get();
+  }
+
   @Override
   public Object removeObject(Object key) {
     removeGarbageCollectedItems();
@@ -109,7 +131,13 @@ public class SoftCache implements Cache {
   private void removeGarbageCollectedItems() {
     SoftEntry sv;
     while ((sv = (SoftEntry) queueOfGarbageCollectedEntries.poll()) != null) {
-      delegate.removeObject(sv.key);
+      evict(sv.key);
+    }
+  }
+
+  private void evict(Object key) {
+    if (delegate.removeObject(key) != null && metrics != null) {
+      metrics.recordEviction();
     }
   }
 
@@ -15,9 +15,12 @@
  */
 package org.apache.ibatis.cache.decorators;
 
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheLookup;
+import org.apache.ibatis.cache.EntryMetadata;
 
 /**
  * @author Clinton Begin
@@ -40,16 +43,41 @@ public class SynchronizedCache implements Cache {
     return delegate.getSize();
   }
 
+  @Override
+  public synchronized Set<Object> getKeys() {
+    return delegate.getKeys();
+  }
+
   @Override
   public synchronized void putObject(Object key, Object object) {
     delegate.putObject(key, object);
   }
 
+  @Override
+  public synchronized void putObject(Object key, Object object, EntryMetadata metadata) {
+    delegate.putObject(key, object, metadata);
+  }
+
   @Override
   public synchronized Object getObject(Object key) {
     return delegate.getObject(key);
   }
 
+  @Override
+  public synchronized CacheLookup lookupObject(Object key) {
+    return delegate.lookupObject(key);
+  }
+
+  @Override
+  public synchronized Object peekObject(Object key) {
+    return delegate.peekObject(key);
+  }
+
+  @Override
+  public synchronized EntryMetadata peekMetadata(Object key) {
+    return delegate.peekMetadata(key);
+  }
+
   @Override
   public synchronized Object removeObject(Object key) {
     return delegate.removeObject(key);
@@ -0,0 +1,158 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timer wheel that schedules entries by their expiration time in milliseconds.
+ *
+ * Each level has a number of buckets spanning a power of two of milliseconds. An entry is placed on the level whose
+ * range covers its remaining time and is moved to a finer level when the coarse bucket is processed. Advancing the
+ * wheel only visits the buckets whose time has passed, so the cost of expiration is spread over the operations of the
+ * cache and entries expire one by one, not all at once.
+ */
+final class TimerWheel {
+
+  // about 1 second, 1 minute, 1 hour, 1.5 days and 6 days
+  private static final int[] BUCKETS = { 64, 64, 32, 4, 1 };
+  private static final long[] SPANS = { 1L << 10, 1L << 16, 1L << 22, 1L << 27, 1L << 29, 1L << 29 };
+  private static final int[] SHIFT = { 10, 16, 22, 27, 29 };
+
+  private final Node[][] wheel;
+  private long time;
+
+  TimerWheel() {
+    wheel = new Node[BUCKETS.length][];
+    for (int i = 0; i < wheel.length; i++) {
+      wheel[i] = new Node[BUCKETS[i]];
+      for (int j = 0; j < wheel[i].length; j++) {
+        wheel[i][j] = new Node();
+      }
+    }
+  }
+
+  /**
+   * Expires the entries whose time has come and moves the others down to the right buckets.
+   */
+  void advance(long now, Consumer<Node> expired) {
+    long previous = time;
+    if (now <= previous) {
+      return;
+    }
+    time = now;
+    for (int i = 0; i < SHIFT.length; i++) {
+      long previousTicks = previous >>> SHIFT[i];
+      long currentTicks = now >>> SHIFT[i];
+      if (currentTicks == previousTicks) {
+        break;
+      }
+      expire(i, previousTicks, currentTicks - previousTicks, expired);
+    }
+  }
+
+  void schedule(Node node) {
+    Node sentinel = findBucket(node.time);
+    node.prev = sentinel.prev;
+    node.next = sentinel;
+    sentinel.prev.next = node;
+    sentinel.prev = node;
+  }
+
+  void reschedule(Node node) {
+    deschedule(node);
+    schedule(node);
+  }
+
+  void deschedule(Node node) {
+    if (node.next != null) {
+      node.prev.next = node.next;
+      node.next.prev = node.prev;
+      node.next = null;
+      node.prev = null;
+    }
+  }
+
+  void clear() {
+    for (Node[] buckets : wheel) {
+      for (Node sentinel : buckets) {
+        sentinel.prev = sentinel;
+        sentinel.next = sentinel;
+      }
+    }
+  }
+
+  private void expire(int level, long previousTicks, long delta, Consumer<Node> expired) {
+    Node[] buckets = wheel[level];
+    int mask = buckets.length - 1;
+    int steps = (int) Math.min(1 + delta, buckets.length);
+    int start = (int) (previousTicks & mask);
+    for (int i = start; i < start + steps; i++) {
+      Node sentinel = buckets[i & mask];
+      Node node = sentinel.next;
+      sentinel.prev = sentinel;
+      sentinel.next = sentinel;
+      while (node != sentinel) {
+        Node next = node.next;
+        node.prev = null;
+        node.next = null;
+        if (node.time > time) {
+          schedule(node);
+        } else {
+          expired.accept(node);
+        }
+        node = next;
+      }
+    }
+  }
+
+  private Node findBucket(long expirationTime) {
+    long duration = expirationTime - time;
+    int last = wheel.length - 1;
+    for (int i = 0; i < last; i++) {
+      if (duration < SPANS[i + 1]) {
+        long ticks = expirationTime >>> SHIFT[i];
+        return wheel[i][(int) (ticks & (wheel[i].length - 1))];
+      }
+    }
+    return wheel[last][0];
+  }
+
+  static final class Node {
+    final Object key;
+    long time;
+    long writeTime;
+    long writeExpiration;
+    // reset by the refresher threads when a refresh is not made
+    volatile boolean refreshing;
+    Node prev;
+    Node next;
+
+    Node(Object key) {
+      this.key = key;
+    }
+
+    /**
+     * Creates the sentinel of a bucket.
+     */
+    private Node() {
+      this.key = null;
+      this.prev = this;
+      this.next = this;
+    }
+  }
+
+}
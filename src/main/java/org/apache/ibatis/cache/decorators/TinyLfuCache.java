@@ -0,0 +1,439 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
+
+/**
+ * W-TinyLFU (window tiny least frequently used) cache decorator.
+ *
+ * New entries enter a small LRU window. Entries leaving the window compete with the least recently used
+ * entry of the main space and only the one a frequency sketch considers more popular is kept. The main
+ * space is a segmented LRU split into a probation and a protected segment.
+ *
+ * Unlike the other eviction decorators, entries are held by this decorator in a concurrent map instead of
+ * in the delegate, which only supplies the cache identity. Reads never block: they are recorded in lossy
+ * striped buffers and replayed against the eviction policy in batches by whichever thread obtains the
+ * eviction lock. For that reason this cache does not need to be wrapped with a {@link SynchronizedCache}.
+ */
+public class TinyLfuCache implements Cache {
+
+  private static final int NUMBER_OF_READ_BUFFERS = Math.min(64, ceilingPowerOfTwo(Runtime.getRuntime().availableProcessors()));
+  private static final int READ_BUFFER_SIZE = 16;
+  private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+
+  private static final int WINDOW = 0;
+  private static final int PROBATION = 1;
+  private static final int PROTECTED = 2;
+  private static final int NONE = -1;
+
+  private final Cache delegate;
+  private final ConcurrentHashMap<Object, Node> data;
+  private final ReentrantLock evictionLock;
+  private final ReadBuffer[] readBuffers;
+  private final Queue<Runnable> writeBuffer;
+  private CacheMetrics metrics;
+
+  // guarded by evictionLock
+  private final FrequencySketch sketch;
+  private final AccessOrderDeque window;
+  private final AccessOrderDeque probation;
+  private final AccessOrderDeque protectedSegment;
+  private int maximumSize;
+  private int windowMaximum;
+  private int protectedMaximum;
+
+  public TinyLfuCache(Cache delegate) {
+    this.delegate = delegate;
+    this.data = new ConcurrentHashMap<>();
+    this.evictionLock = new ReentrantLock();
+    this.readBuffers = new ReadBuffer[NUMBER_OF_READ_BUFFERS];
+    for (int i = 0; i < readBuffers.length; i++) {
+      readBuffers[i] = new ReadBuffer();
+    }
+    this.writeBuffer = new ConcurrentLinkedQueue<>();
+    this.sketch = new FrequencySketch(1024);
+    this.window = new AccessOrderDeque();
+    this.probation = new AccessOrderDeque();
+    this.protectedSegment = new AccessOrderDeque();
+    setSize(1024);
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return data.size();
+  }
+
+  @Override
+  public Set<Object> getKeys() {
+    return new HashSet<>(data.keySet());
+  }
+
+  public void setSize(final int size) {
+    evictionLock.lock();
+    try {
+      maximumSize = Math.max(size, 0);
+      windowMaximum = maximumSize == 0 ? 0 : Math.max(1, maximumSize / 100);
+      protectedMaximum = (maximumSize - windowMaximum) * 8 / 10;
+      sketch.ensureCapacity(maximumSize);
+      maintenance();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * @param metrics metrics in which the evictions are counted
+   * @since 3.5.0
+   */
+  public void setMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    Node[] added = new Node[1];
+    Node node = data.compute(key, (k, existing) -> {
+      if (existing == null) {
+        added[0] = new Node(k, value);
+        return added[0];
+      }
+      existing.value = value;
+      return existing;
+    });
+    if (added[0] != null) {
+      afterWrite(() -> onAdd(node));
+    } else {
+      afterRead(node);
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Node node = data.get(key);
+    if (node == null) {
+      return null;
+    }
+    afterRead(node);
+    return node.value;
+  }
+
+  @Override
+  public Object peekObject(Object key) {
+    Node node = data.get(key);
+    return node == null ? null : node.value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Node node = data.remove(key);
+    if (node == null) {
+      return null;
+    }
+    node.retired = true;
+    afterWrite(() -> unlink(node));
+    return node.value;
+  }
+
+  @Override
+  public void clear() {
+    evictionLock.lock();
+    try {
+      maintenance();
+      for (Node node : data.values()) {
+        if (data.remove(node.key, node)) {
+          node.retired = true;
+          unlink(node);
+        }
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+    delegate.clear();
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  private void afterRead(Node node) {
+    ReadBuffer buffer = readBuffers[(int) Thread.currentThread().getId() & (readBuffers.length - 1)];
+    if (!buffer.offer(node)) {
+      scheduleDrain();
+    }
+  }
+
+  private void afterWrite(Runnable task) {
+    writeBuffer.add(task);
+    scheduleDrain();
+  }
+
+  private void scheduleDrain() {
+    do {
+      if (!evictionLock.tryLock()) {
+        // the thread holding the lock will pick up our pending work
+        return;
+      }
+      try {
+        maintenance();
+      } finally {
+        evictionLock.unlock();
+      }
+    } while (!writeBuffer.isEmpty());
+  }
+
+  private void maintenance() {
+    for (ReadBuffer buffer : readBuffers) {
+      buffer.drain(this);
+    }
+    Runnable task;
+    while ((task = writeBuffer.poll()) != null) {
+      task.run();
+    }
+    evictEntries();
+  }
+
+  private void onAdd(Node node) {
+    if (node.retired || node.queue != NONE) {
+      return;
+    }
+    sketch.increment(node.key);
+    node.queue = WINDOW;
+    window.addLast(node);
+  }
+
+  private void onAccess(Node node) {
+    if (node.queue == NONE) {
+      return;
+    }
+    sketch.increment(node.key);
+    if (node.queue == WINDOW) {
+      window.moveToBack(node);
+    } else if (node.queue == PROBATION) {
+      probation.remove(node);
+      node.queue = PROTECTED;
+      protectedSegment.addLast(node);
+      while (protectedSegment.size > protectedMaximum) {
+        Node demoted = protectedSegment.pollFirst();
+        demoted.queue = PROBATION;
+        probation.addLast(demoted);
+      }
+    } else {
+      protectedSegment.moveToBack(node);
+    }
+  }
+
+  private void unlink(Node node) {
+    if (node.queue == WINDOW) {
+      window.remove(node);
+    } else if (node.queue == PROBATION) {
+      probation.remove(node);
+    } else if (node.queue == PROTECTED) {
+      protectedSegment.remove(node);
+    }
+    node.queue = NONE;
+  }
+
+  private void evictEntries() {
+    int candidates = 0;
+    while (window.size > windowMaximum) {
+      Node node = window.pollFirst();
+      node.queue = PROBATION;
+      probation.addLast(node);
+      candidates++;
+    }
+    while (window.size + probation.size + protectedSegment.size > maximumSize) {
+      Node victim = probation.peekFirst();
+      if (victim == null) {
+        victim = protectedSegment.size > 0 ? protectedSegment.peekFirst() : window.peekFirst();
+        evict(victim);
+        continue;
+      }
+      Node candidate = candidates > 0 ? probation.peekLast() : null;
+      if (candidate == null || candidate == victim) {
+        evict(victim);
+        candidates = Math.max(0, candidates - 1);
+      } else if (admit(candidate.key, victim.key)) {
+        evict(victim);
+      } else {
+        evict(candidate);
+        candidates--;
+      }
+    }
+  }
+
+  private boolean admit(Object candidateKey, Object victimKey) {
+    int candidateFrequency = sketch.frequency(candidateKey);
+    int victimFrequency = sketch.frequency(victimKey);
+    if (candidateFrequency > victimFrequency) {
+      return true;
+    }
+    if (candidateFrequency <= 5) {
+      return false;
+    }
+    // a warm candidate is occasionally admitted so that an attacker cannot pin the victim by hash flooding
+    return (ThreadLocalRandom.current().nextInt() & 127) == 0;
+  }
+
+  private void evict(Node node) {
+    unlink(node);
+    if (data.remove(node.key, node)) {
+      node.retired = true;
+      if (metrics != null) {
+        metrics.recordEviction();
+      }
+    }
+  }
+
+  private static int ceilingPowerOfTwo(int x) {
+    return x <= 1 ? 1 : 1 << (32 - Integer.numberOfLeadingZeros(x - 1));
+  }
+
+  private static final class Node {
+    private final Object key;
+    private volatile Object value;
+    private volatile boolean retired;
+    // guarded by evictionLock
+    private int queue = NONE;
+    private Node previous;
+    private Node next;
+
+    Node(Object key, Object value) {
+      this.key = key;
+      this.value = value;
+    }
+  }
+
+  /**
+   * Intrusive doubly linked list ordered from least to most recently used.
+   */
+  private static final class AccessOrderDeque {
+    private Node first;
+    private Node last;
+    private int size;
+
+    Node peekFirst() {
+      return first;
+    }
+
+    Node peekLast() {
+      return last;
+    }
+
+    void addLast(Node node) {
+      node.previous = last;
+      node.next = null;
+      if (last == null) {
+        first = node;
+      } else {
+        last.next = node;
+      }
+      last = node;
+      size++;
+    }
+
+    Node pollFirst() {
+      Node node = first;
+      if (node != null) {
+        remove(node);
+      }
+      return node;
+    }
+
+    void moveToBack(Node node) {
+      if (node != last) {
+        remove(node);
+        addLast(node);
+      }
+    }
+
+    void remove(Node node) {
+      if (node.previous == null) {
+        first = node.next;
+      } else {
+        node.previous.next = node.next;
+      }
+      if (node.next == null) {
+        last = node.previous;
+      } else {
+        node.next.previous = node.previous;
+      }
+      node.previous = null;
+      node.next = null;
+      size--;
+    }
+  }
+
+  /**
+   * A bounded, lossy buffer of read events. When the buffer is full or contended the event is simply dropped,
+   * which only makes the eviction policy slightly less precise.
+   */
+  private static final class ReadBuffer {
+    private final AtomicLong writeCounter = new AtomicLong();
+    private final AtomicReferenceArray<Node> buffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    // written only while holding the eviction lock
+    private volatile long readCounter;
+
+    /**
+     * @return false when the buffer is full and should be drained
+     */
+    boolean offer(Node node) {
+      long tail = writeCounter.get();
+      if (tail - readCounter >= READ_BUFFER_SIZE) {
+        return false;
+      }
+      if (writeCounter.compareAndSet(tail, tail + 1)) {
+        buffer.lazySet((int) (tail & READ_BUFFER_MASK), node);
+      }
+      return true;
+    }
+
+    void drain(TinyLfuCache cache) {
+      long head = readCounter;
+      long tail = writeCounter.get();
+      for (; head < tail; head++) {
+        int index = (int) (head & READ_BUFFER_MASK);
+        Node node = buffer.get(index);
+        if (node == null) {
+          // slot claimed but not published yet
+          break;
+        }
+        buffer.lazySet(index, null);
+        cache.onAccess(node);
+      }
+      readCounter = head;
+    }
+  }
+
+}
@@ -19,9 +19,14 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.locks.ReadWriteLock;
 
+import org.apache.ibatis.cache.AsyncCache;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheLookup;
+import org.apache.ibatis.cache.EntryMetadata;
+import org.apache.ibatis.cache.admission.AdmissionPolicy;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 
@@ -41,14 +46,28 @@ public class TransactionalCache implements Cache {
   private static final Log log = LogFactory.getLog(TransactionalCache.class);
 
   private final Cache delegate;
+  private final AdmissionPolicy admissionPolicy;
   private boolean clearOnCommit;
+  private final Set<Object> partitionsToClearOnCommit;
   private final Map<Object, Object> entriesToAddOnCommit;
+  private final Map<Object, EntryMetadata> metadataOnCommit;
   private final Set<Object> entriesMissedInCache;
 
   public TransactionalCache(Cache delegate) {
+    this(delegate, null);
+  }
+
+  /**
+   * @param admissionPolicy the policy deciding which loaded entries are added on commit, may be null to add them all
+   * @since 3.5.0
+   */
+  public TransactionalCache(Cache delegate, AdmissionPolicy admissionPolicy) {
     this.delegate = delegate;
+    this.admissionPolicy = admissionPolicy;
     this.clearOnCommit = false;
+    this.partitionsToClearOnCommit = new HashSet<>();
     this.entriesToAddOnCommit = new HashMap<>();
+    this.metadataOnCommit = new HashMap<>();
     this.entriesMissedInCache = new HashSet<>();
   }
 
@@ -62,18 +81,49 @@ public class TransactionalCache implements Cache {
     return delegate.getSize();
   }
 
+  @Override
+  public Set<Object> getKeys() {
+    return delegate.getKeys();
+  }
+
   @Override
   public Object getObject(Object key) {
+    return afterGet(key, CacheLookup.of(delegate.getObject(key))).getValue();
+  }
+
+  /**
+   * @return the lookup of the object stored in the cache, or a miss if there is none or if the cache will be cleared
+   *     on commit
+   * @since 3.5.0
+   */
+  @Override
+  public CacheLookup lookupObject(Object key) {
+    return afterGet(key, delegate.lookupObject(key));
+  }
+
+  /**
+   * @return a future completed with the lookup of the object stored in the cache, or with a miss if there is none or
+   *     if the cache will be cleared on commit
+   * @since 3.5.0
+   */
+  public CompletableFuture<CacheLookup> lookupObjectAsync(Object key) {
+    return AsyncCache.lookupObjectAsync(delegate, key).thenApply(lookup -> afterGet(key, lookup));
+  }
+
+  private CacheLookup afterGet(Object key, CacheLookup lookup) {
     // issue #116
-    Object object = delegate.getObject(key);
-    if (object == null) {
+    if (lookup.getValue() == null) {
       entriesMissedInCache.add(key);
     }
     // issue #146
-    if (clearOnCommit) {
-      return null;
+    if (clearOnCommit || isClearedOnCommit(key)) {
+      // the session is about to flush the cache, do not reload an entry that may be read by a refresh before that
+      if (lookup.getRefreshRequest() != null) {
+        lookup.getRefreshRequest().cancel();
+      }
+      return CacheLookup.of(null);
     } else {
-      return object;
+      return lookup;
     }
   }
 
@@ -84,7 +134,37 @@ public class TransactionalCache implements Cache {
 
   @Override
   public void putObject(Object key, Object object) {
+    if (!admit(key)) {
+      return;
+    }
+    entriesToAddOnCommit.put(key, object);
+    if (!metadataOnCommit.isEmpty()) {
+      metadataOnCommit.remove(key);
+    }
+  }
+
+  /**
+   * Adds an entry that is put with its metadata on commit, so that its expiration starts then.
+   *
+   * @since 3.5.0
+   */
+  @Override
+  public void putObject(Object key, Object object, EntryMetadata metadata) {
+    if (!admit(key)) {
+      return;
+    }
     entriesToAddOnCommit.put(key, object);
+    metadataOnCommit.put(key, metadata);
+  }
+
+  @Override
+  public Object peekObject(Object key) {
+    return delegate.peekObject(key);
+  }
+
+  @Override
+  public EntryMetadata peekMetadata(Object key) {
+    return delegate.peekMetadata(key);
   }
 
   @Override
@@ -96,11 +176,30 @@ public class TransactionalCache implements Cache {
   public void clear() {
     clearOnCommit = true;
     entriesToAddOnCommit.clear();
+    metadataOnCommit.clear();
+  }
+
+  /**
+   * Clears, on commit, a partition of the cache if it is a {@link PartitionedCache}, or the whole cache otherwise.
+   *
+   * @since 3.5.0
+   */
+  public void clear(Object partition) {
+    if (clearOnCommit) {
+      return;
+    }
+    partitionsToClearOnCommit.add(partition);
+    entriesToAddOnCommit.keySet().removeIf(key -> PartitionedCache.isInPartition(key, partition));
+    metadataOnCommit.keySet().removeIf(key -> PartitionedCache.isInPartition(key, partition));
   }
 
   public void commit() {
     if (clearOnCommit) {
       delegate.clear();
+    } else {
+      for (Object partition : partitionsToClearOnCommit) {
+        PartitionedCache.clear(delegate, partition);
+      }
     }
     flushPendingEntries();
     reset();
@@ -111,15 +210,39 @@ public class TransactionalCache implements Cache {
     reset();
   }
 
+  private boolean admit(Object key) {
+    // an entry already staged was admitted, or is replaced by this session
+    return admissionPolicy == null || entriesToAddOnCommit.containsKey(key) || admissionPolicy.admit(key);
+  }
+
+  private boolean isClearedOnCommit(Object key) {
+    if (partitionsToClearOnCommit.isEmpty()) {
+      return false;
+    }
+    for (Object partition : partitionsToClearOnCommit) {
+      if (PartitionedCache.isInPartition(key, partition)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   private void reset() {
     clearOnCommit = false;
+    partitionsToClearOnCommit.clear();
     entriesToAddOnCommit.clear();
+    metadataOnCommit.clear();
     entriesMissedInCache.clear();
   }
 
   private void flushPendingEntries() {
     for (Map.Entry<Object, Object> entry : entriesToAddOnCommit.entrySet()) {
-      delegate.putObject(entry.getKey(), entry.getValue());
+      EntryMetadata metadata = metadataOnCommit.get(entry.getKey());
+      if (metadata != null) {
+        delegate.putObject(entry.getKey(), entry.getValue(), metadata);
+      } else {
+        delegate.putObject(entry.getKey(), entry.getValue());
+      }
     }
     for (Object entry : entriesMissedInCache) {
       if (!entriesToAddOnCommit.containsKey(entry)) {
@@ -19,9 +19,11 @@ import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.Deque;
 import java.util.LinkedList;
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
 
 /**
  * Weak Reference cache decorator.
@@ -34,6 +36,7 @@ public class WeakCache implements Cache {
   private final ReferenceQueue<Object> queueOfGarbageCollectedEntries;
   private final Cache delegate;
   private int numberOfHardLinks;
+  private CacheMetrics metrics;
 
   public WeakCache(Cache delegate) {
     this.delegate = delegate;
@@ -53,10 +56,23 @@ public class WeakCache implements Cache {
     return delegate.getSize();
   }
 
+  @Override
+  public Set<Object> getKeys() {
+    return delegate.getKeys();
+  }
+
   public void setSize(int size) {
     this.numberOfHardLinks = size;
   }
 
+  /**
+   * @param metrics metrics in which the evictions are counted
+   * @since 3.5.0
+   */
+  public void setMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   @Override
   public void putObject(Object key, Object value) {
     removeGarbageCollectedItems();
@@ -71,7 +87,7 @@ public class WeakCache implements Cache {
     if (weakReference != null) {
       result = weakReference.get();
       if (result == null) {
-        delegate.removeObject(key);
+        evict(key);
       } else {
         hardLinksToAvoidGarbageCollection.addFirst(result);
         if (hardLinksToAvoidGarbageCollection.size() > numberOfHardLinks) {
@@ -82,6 +98,12 @@ public class WeakCache implements Cache {
     return result;
   }
 
+  @Override
+  public Object peekObject(Object key) {
+    Object weakReference = delegate.peekObject(key);
+    return weakReference == null ? null : ((WeakReference<?>) weakReference).get();
+  }
+
   @Override
   public Object removeObject(Object key) {
     removeGarbageCollectedItems();
@@ -103,7 +125,13 @@ public class WeakCache implements Cache {
   private void removeGarbageCollectedItems() {
     WeakEntry sv;
     while ((sv = (WeakEntry) queueOfGarbageCollectedEntries.poll()) != null) {
-      delegate.removeObject(sv.key);
+      evict(sv.key);
+    }
+  }
+
+  private void evict(Object key) {
+    if (delegate.removeObject(key) != null && metrics != null) {
+      metrics.recordEviction();
     }
   }
 
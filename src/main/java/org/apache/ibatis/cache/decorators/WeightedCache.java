@@ -0,0 +1,175 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.decorators;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Consumer;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.weigher.ObjectSizeWeigher;
+import org.apache.ibatis.cache.weigher.Weigher;
+
+/**
+ * Weight based cache decorator: evicts the least recently used entries once the total weight of the cache
+ * goes over {@code maxWeight}.
+ *
+ * The {@code CacheBuilder} applies it directly over the base cache, under the eviction decorator, so that it
+ * sees every entry that is stored and removed. The keys it evicts are passed to the eviction listener, so that the
+ * decorators above stop counting them. With the default {@link ObjectSizeWeigher} the weight is an
+ * estimation of the size of the entries in bytes, which bounds the memory used by the cache.
+ *
+ * @since 3.5.0
+ */
+public class WeightedCache implements Cache {
+
+  private final Cache delegate;
+  private final Map<Object, Integer> weights;
+  private long maxWeight = 64L * 1024 * 1024;
+  private long totalWeight;
+  private Weigher weigher;
+  private CacheMetrics metrics;
+  private Consumer<Object> evictionListener;
+
+  public WeightedCache(Cache delegate) {
+    this.delegate = delegate;
+    this.weights = new LinkedHashMap<>(16, .75F, true);
+    this.weigher = new ObjectSizeWeigher();
+  }
+
+  @Override
+  public String getId() {
+    return delegate.getId();
+  }
+
+  @Override
+  public int getSize() {
+    return delegate.getSize();
+  }
+
+  @Override
+  public Set<Object> getKeys() {
+    return delegate.getKeys();
+  }
+
+  public long getMaxWeight() {
+    return maxWeight;
+  }
+
+  public void setMaxWeight(long maxWeight) {
+    this.maxWeight = maxWeight;
+    evictEntries();
+  }
+
+  public Weigher getWeigher() {
+    return weigher;
+  }
+
+  public void setWeigher(Weigher weigher) {
+    this.weigher = weigher;
+  }
+
+  public long getTotalWeight() {
+    return totalWeight;
+  }
+
+  /**
+   * @param metrics metrics in which the evictions are counted
+   * @since 3.5.0
+   */
+  public void setMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * @param evictionListener receives the keys of the entries evicted because of their weight
+   */
+  public void setEvictionListener(Consumer<Object> evictionListener) {
+    this.evictionListener = evictionListener;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    discard(key);
+    int weight = weigher.weigh(key, value);
+    if (weight > maxWeight) {
+      // would evict everything else and still not fit
+      delegate.removeObject(key);
+      return;
+    }
+    delegate.putObject(key, value);
+    weights.put(key, weight);
+    totalWeight += weight;
+    evictEntries();
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    weights.get(key); // touch
+    return delegate.getObject(key);
+  }
+
+  @Override
+  public Object peekObject(Object key) {
+    return delegate.peekObject(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    discard(key);
+    return delegate.removeObject(key);
+  }
+
+  @Override
+  public void clear() {
+    weights.clear();
+    totalWeight = 0;
+    delegate.clear();
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  private void discard(Object key) {
+    Integer weight = weights.remove(key);
+    if (weight != null) {
+      totalWeight -= weight;
+    }
+  }
+
+  private void evictEntries() {
+    Iterator<Map.Entry<Object, Integer>> eldest = weights.entrySet().iterator();
+    while (totalWeight > maxWeight && eldest.hasNext()) {
+      Map.Entry<Object, Integer> entry = eldest.next();
+      eldest.remove();
+      totalWeight -= entry.getValue();
+      delegate.removeObject(entry.getKey());
+      if (evictionListener != null) {
+        evictionListener.accept(entry.getKey());
+      }
+      if (metrics != null) {
+        metrics.recordEviction();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,304 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Consumer;
+
+import org.apache.ibatis.builder.InitializingObject;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.serializer.JavaSerializer;
+import org.apache.ibatis.cache.serializer.Serializer;
+
+/**
+ * Cache that keeps serialized values outside of the java heap, in direct buffers or in a memory mapped file.
+ *
+ * Memory is taken from a slab allocator in fixed size blocks, up to {@code maxBytes}. When a new value does not
+ * fit, the least recently used entries are evicted until it does. Only keys and block tables stay on the heap.
+ *
+ * <pre>
+ * &lt;cache type="OFF_HEAP"&gt;
+ *   &lt;property name="maxBytes" value="268435456"/&gt;
+ *   &lt;property name="mappedFile" value="/var/cache/app/orders.cache"/&gt;
+ * &lt;/cache&gt;
+ * </pre>
+ *
+ * Like {@link PerpetualCache} it receives the standard decorators from the {@code CacheBuilder}.
+ */
+public class OffHeapCache implements Cache, InitializingObject {
+
+  private final String id;
+
+  private long maxBytes = 64L * 1024 * 1024;
+  private int slabSize = 1024 * 1024;
+  private int blockSize = 256;
+  private String mappedFile;
+  private CacheMetrics metrics;
+  private Consumer<Object> evictionListener;
+
+  private final Serializer serializer = new JavaSerializer();
+  private SlabAllocator allocator;
+  private final Map<Object, Entry> entries = new LinkedHashMap<>();
+
+  public OffHeapCache(String id) {
+    this.id = id;
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public void setMaxBytes(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  public int getSlabSize() {
+    return slabSize;
+  }
+
+  public void setSlabSize(int slabSize) {
+    this.slabSize = slabSize;
+  }
+
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  public void setBlockSize(int blockSize) {
+    this.blockSize = blockSize;
+  }
+
+  public String getMappedFile() {
+    return mappedFile;
+  }
+
+  public void setMappedFile(String mappedFile) {
+    this.mappedFile = mappedFile;
+  }
+
+  /**
+   * @param metrics metrics in which the evictions are counted
+   * @since 3.5.0
+   */
+  public void setMetrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * @param evictionListener receives the keys of the entries evicted to make room for a new value
+   * @since 3.5.0
+   */
+  public void setEvictionListener(Consumer<Object> evictionListener) {
+    this.evictionListener = evictionListener;
+  }
+
+  @Override
+  public synchronized void initialize() {
+    if (blockSize <= 0) {
+      throw new CacheException("The block size of the off-heap cache " + id + " must be positive but was " + blockSize);
+    }
+    if (slabSize < blockSize) {
+      throw new CacheException("The slab size of the off-heap cache " + id + " must not be smaller than its block size");
+    }
+    if (maxBytes < slabSize) {
+      throw new CacheException("The max bytes of the off-heap cache " + id + " must not be smaller than its slab size");
+    }
+    if (mappedFile == null) {
+      allocator = new SlabAllocator(maxBytes, slabSize, blockSize, null);
+    } else {
+      // the mapped slabs stay valid once the file is closed
+      try (RandomAccessFile file = new RandomAccessFile(mappedFile, "rw")) {
+        file.setLength(0);
+        allocator = new SlabAllocator(maxBytes, slabSize, blockSize, file.getChannel());
+      } catch (CacheException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new CacheException("Error opening the mapped file " + mappedFile + " of the off-heap cache " + id + ".  Cause: " + e, e);
+      }
+    }
+    entries.clear();
+  }
+
+  @Override
+  public synchronized int getSize() {
+    return entries.size();
+  }
+
+  @Override
+  public synchronized Set<Object> getKeys() {
+    return new HashSet<>(entries.keySet());
+  }
+
+  /**
+   * @return the number of bytes currently taken by cached values, rounded up to whole blocks
+   */
+  public synchronized long getUsedBytes() {
+    return allocator == null ? 0 : allocator.getUsedBytes();
+  }
+
+  @Override
+  public synchronized void putObject(Object key, Object value) {
+    discard(key);
+    if (value == null) {
+      return;
+    }
+    boolean raw = value instanceof byte[];
+    byte[] bytes = raw ? (byte[]) value : serialize(value);
+    SlabAllocator allocator = allocator();
+    int blockCount = allocator.blocksFor(bytes.length);
+    if (blockCount > allocator.getTotalBlocks()) {
+      // will never fit
+      return;
+    }
+    int[] blocks;
+    while ((blocks = allocator.allocate(blockCount)) == null) {
+      evictEldest();
+    }
+    allocator.write(blocks, bytes);
+    entries.put(key, new Entry(blocks, bytes.length, raw));
+  }
+
+  @Override
+  public synchronized Object getObject(Object key) {
+    Entry entry = entries.remove(key);
+    if (entry == null) {
+      return null;
+    }
+    // moved to the end by hand, so that peekObject does not change the eviction order
+    entries.put(key, entry);
+    return read(entry);
+  }
+
+  @Override
+  public synchronized Object peekObject(Object key) {
+    Entry entry = entries.get(key);
+    return entry == null ? null : read(entry);
+  }
+
+  @Override
+  public synchronized Object removeObject(Object key) {
+    Entry entry = entries.remove(key);
+    if (entry == null) {
+      return null;
+    }
+    Object value = read(entry);
+    allocator.free(entry.blocks);
+    return value;
+  }
+
+  @Override
+  public synchronized void clear() {
+    entries.clear();
+    if (allocator != null) {
+      allocator.reset();
+    }
+  }
+
+  @Override
+  public ReadWriteLock getReadWriteLock() {
+    return null;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Cache)) {
+      return false;
+    }
+
+    Cache otherCache = (Cache) o;
+    return getId().equals(otherCache.getId());
+  }
+
+  @Override
+  public int hashCode() {
+    if (getId() == null) {
+      throw new CacheException("Cache instances require an ID.");
+    }
+    return getId().hashCode();
+  }
+
+  private SlabAllocator allocator() {
+    if (allocator == null) {
+      initialize();
+    }
+    return allocator;
+  }
+
+  private void discard(Object key) {
+    Entry entry = entries.remove(key);
+    if (entry != null) {
+      allocator.free(entry.blocks);
+    }
+  }
+
+  private void evictEldest() {
+    Iterator<Map.Entry<Object, Entry>> iterator = entries.entrySet().iterator();
+    Map.Entry<Object, Entry> eldest = iterator.next();
+    iterator.remove();
+    allocator.free(eldest.getValue().blocks);
+    if (metrics != null) {
+      metrics.recordEviction();
+    }
+    if (evictionListener != null) {
+      evictionListener.accept(eldest.getKey());
+    }
+  }
+
+  private byte[] serialize(Object value) {
+    if (!(value instanceof Serializable)) {
+      throw new CacheException("OffHeapCache failed to serialize a non-serializable object: " + value);
+    }
+    return serializer.serialize(value);
+  }
+
+  private Object read(Entry entry) {
+    byte[] bytes = allocator.read(entry.blocks, entry.length);
+    return entry.raw ? bytes : serializer.deserialize(bytes);
+  }
+
+  private static class Entry {
+    private final int[] blocks;
+    private final int length;
+    private final boolean raw;
+
+    Entry(int[] blocks, int length, boolean raw) {
+      this.blocks = blocks;
+      this.length = length;
+      this.raw = raw;
+    }
+  }
+
+}
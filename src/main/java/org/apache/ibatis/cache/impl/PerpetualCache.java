@@ -16,7 +16,9 @@
 package org.apache.ibatis.cache.impl;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 
 import org.apache.ibatis.cache.Cache;
@@ -45,6 +47,11 @@ public class PerpetualCache implements Cache {
     return cache.size();
   }
 
+  @Override
+  public Set<Object> getKeys() {
+    return new HashSet<>(cache.keySet());
+  }
+
   @Override
   public void putObject(Object key, Object value) {
     cache.put(key, value);
@@ -55,6 +62,11 @@ public class PerpetualCache implements Cache {
     return cache.get(key);
   }
 
+  @Override
+  public Object peekObject(Object key) {
+    return cache.get(key);
+  }
+
   @Override
   public Object removeObject(Object key) {
     return cache.remove(key);
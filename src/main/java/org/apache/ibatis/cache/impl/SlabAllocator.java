@@ -0,0 +1,166 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.cache.CacheException;
+
+/**
+ * Hands out fixed size blocks carved out of slabs of native memory.
+ *
+ * Slabs are either direct buffers or regions of a memory mapped file. They are allocated lazily, one at a time,
+ * until the byte budget is reached and they are never given back: freed blocks are recycled through a free list.
+ * A value larger than a block is spread over several blocks that do not need to be contiguous.
+ *
+ * This class is not thread safe, callers must serialize access to it.
+ */
+final class SlabAllocator {
+
+  private static final int[] NO_BLOCKS = new int[0];
+
+  private final int slabSize;
+  private final int blockSize;
+  private final int blocksPerSlab;
+  private final int maxSlabs;
+  // slabs of the mapped file, mapped up front so that the file can be closed
+  private final List<ByteBuffer> mappedSlabs;
+  private final List<ByteBuffer> slabs;
+  private int[] freeBlocks;
+  private int freeCount;
+
+  SlabAllocator(long capacity, int slabSize, int blockSize, FileChannel channel) {
+    this.blockSize = blockSize;
+    this.blocksPerSlab = slabSize / blockSize;
+    this.slabSize = blocksPerSlab * blockSize;
+    this.maxSlabs = (int) Math.min(capacity / this.slabSize, Integer.MAX_VALUE / blocksPerSlab);
+    this.mappedSlabs = channel == null ? null : map(channel, maxSlabs, this.slabSize);
+    this.slabs = new ArrayList<>();
+    this.freeBlocks = new int[blocksPerSlab];
+    this.freeCount = 0;
+  }
+
+  int blocksFor(int length) {
+    return (length + blockSize - 1) / blockSize;
+  }
+
+  int getTotalBlocks() {
+    return maxSlabs * blocksPerSlab;
+  }
+
+  int getFreeBlocks() {
+    return freeCount + (maxSlabs - slabs.size()) * blocksPerSlab;
+  }
+
+  long getAllocatedBytes() {
+    return (long) slabs.size() * slabSize;
+  }
+
+  long getUsedBytes() {
+    return ((long) slabs.size() * blocksPerSlab - freeCount) * blockSize;
+  }
+
+  /**
+   * @return the allocated block ids or null if there are not enough free blocks
+   */
+  int[] allocate(int count) {
+    if (count == 0) {
+      return NO_BLOCKS;
+    }
+    if (count > getFreeBlocks()) {
+      return null;
+    }
+    while (freeCount < count) {
+      addSlab();
+    }
+    int[] blocks = new int[count];
+    freeCount -= count;
+    System.arraycopy(freeBlocks, freeCount, blocks, 0, count);
+    return blocks;
+  }
+
+  void free(int[] blocks) {
+    for (int block : blocks) {
+      freeBlocks[freeCount++] = block;
+    }
+  }
+
+  void write(int[] blocks, byte[] data) {
+    int offset = 0;
+    for (int block : blocks) {
+      int length = Math.min(blockSize, data.length - offset);
+      ByteBuffer buffer = bufferOf(block);
+      buffer.put(data, offset, length);
+      offset += length;
+    }
+  }
+
+  byte[] read(int[] blocks, int length) {
+    byte[] data = new byte[length];
+    int offset = 0;
+    for (int block : blocks) {
+      int chunk = Math.min(blockSize, length - offset);
+      ByteBuffer buffer = bufferOf(block);
+      buffer.get(data, offset, chunk);
+      offset += chunk;
+    }
+    return data;
+  }
+
+  void reset() {
+    freeCount = 0;
+    for (int block = 0; block < slabs.size() * blocksPerSlab; block++) {
+      freeBlocks[freeCount++] = block;
+    }
+  }
+
+  private ByteBuffer bufferOf(int block) {
+    ByteBuffer slab = slabs.get(block / blocksPerSlab);
+    int position = (block % blocksPerSlab) * blockSize;
+    slab.limit(position + blockSize);
+    slab.position(position);
+    return slab;
+  }
+
+  private void addSlab() {
+    int slab = slabs.size();
+    slabs.add(mappedSlabs == null ? ByteBuffer.allocateDirect(slabSize) : mappedSlabs.get(slab));
+    int[] grown = new int[(slab + 1) * blocksPerSlab];
+    System.arraycopy(freeBlocks, 0, grown, 0, freeCount);
+    freeBlocks = grown;
+    // push in reverse order so that blocks are handed out in ascending order
+    for (int block = (slab + 1) * blocksPerSlab - 1; block >= slab * blocksPerSlab; block--) {
+      freeBlocks[freeCount++] = block;
+    }
+  }
+
+  private static List<ByteBuffer> map(FileChannel channel, int slabCount, int slabSize) {
+    List<ByteBuffer> mapped = new ArrayList<>(slabCount);
+    for (int slab = 0; slab < slabCount; slab++) {
+      try {
+        mapped.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) slab * slabSize, slabSize));
+      } catch (IOException e) {
+        throw new CacheException("Error mapping slab " + slab + " of the off-heap cache.  Cause: " + e, e);
+      }
+    }
+    return mapped;
+  }
+
+}
@@ -0,0 +1,126 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.ibatis.cache.CacheException;
+
+/**
+ * The invalidations committed by a transaction of a node.
+ *
+ * @since 3.5.0
+ */
+public final class Invalidation {
+
+  private static final int FORMAT = 1;
+
+  private final String origin;
+  private final Set<String> clearedCaches;
+  private final Set<String> invalidatedCaches;
+  private final Set<String> tables;
+
+  /**
+   * @param origin the id of the node that committed
+   * @param clearedCaches ids of the caches to clear
+   * @param invalidatedCaches ids of the caches whose entries with unknown tables are invalidated
+   * @param tables the tables whose entries are invalidated in all caches
+   */
+  public Invalidation(String origin, Collection<String> clearedCaches, Collection<String> invalidatedCaches,
+      Collection<String> tables) {
+    this.origin = origin;
+    this.clearedCaches = Collections.unmodifiableSet(new LinkedHashSet<>(clearedCaches));
+    this.invalidatedCaches = Collections.unmodifiableSet(new LinkedHashSet<>(invalidatedCaches));
+    this.tables = Collections.unmodifiableSet(new LinkedHashSet<>(tables));
+  }
+
+  public String getOrigin() {
+    return origin;
+  }
+
+  public Set<String> getClearedCaches() {
+    return clearedCaches;
+  }
+
+  public Set<String> getInvalidatedCaches() {
+    return invalidatedCaches;
+  }
+
+  public Set<String> getTables() {
+    return tables;
+  }
+
+  public byte[] toBytes() {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      out.writeByte(FORMAT);
+      out.writeUTF(origin);
+      writeStrings(out, clearedCaches);
+      writeStrings(out, invalidatedCaches);
+      writeStrings(out, tables);
+      out.flush();
+      return bytes.toByteArray();
+    } catch (IOException e) {
+      throw new CacheException("Error writing invalidation.  Cause: " + e, e);
+    }
+  }
+
+  public static Invalidation fromBytes(byte[] bytes, int offset, int length) {
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, offset, length));
+      int format = in.readByte();
+      if (format != FORMAT) {
+        throw new CacheException("Unknown invalidation format " + format);
+      }
+      String origin = in.readUTF();
+      return new Invalidation(origin, readStrings(in), readStrings(in), readStrings(in));
+    } catch (IOException e) {
+      throw new CacheException("Error reading invalidation.  Cause: " + e, e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "Invalidation[origin=" + origin + ", clearedCaches=" + clearedCaches + ", invalidatedCaches="
+        + invalidatedCaches + ", tables=" + tables + "]";
+  }
+
+  private static void writeStrings(DataOutputStream out, Set<String> strings) throws IOException {
+    out.writeInt(strings.size());
+    for (String string : strings) {
+      out.writeUTF(string);
+    }
+  }
+
+  private static Set<String> readStrings(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    Set<String> strings = new LinkedHashSet<>();
+    for (int i = 0; i < size; i++) {
+      strings.add(in.readUTF());
+    }
+    return strings;
+  }
+
+}
@@ -0,0 +1,102 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * Sends the second level cache invalidations committed on this node to the other nodes, and applies theirs.
+ *
+ * A transaction sends at most one {@link Invalidation} when it commits, with all the caches and tables it
+ * invalidated. A received invalidation clears the caches, and bumps the versions of the tables and caches, with the
+ * same ids on this node.
+ *
+ * @since 3.5.0
+ */
+public class InvalidationBus {
+
+  private static final Log log = LogFactory.getLog(InvalidationBus.class);
+
+  private final Configuration configuration;
+  private final InvalidationTransport transport;
+  private final String nodeId = UUID.randomUUID().toString();
+
+  public InvalidationBus(Configuration configuration, InvalidationTransport transport) {
+    this.configuration = configuration;
+    this.transport = transport;
+    transport.start(this::receive);
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  public InvalidationTransport getTransport() {
+    return transport;
+  }
+
+  /**
+   * Called once per commit. Errors are logged, the transaction is already committed.
+   */
+  public void publish(Collection<String> clearedCaches, Collection<String> invalidatedCaches, Collection<String> tables) {
+    if (clearedCaches.isEmpty() && invalidatedCaches.isEmpty() && tables.isEmpty()) {
+      return;
+    }
+    Invalidation invalidation = new Invalidation(nodeId, clearedCaches, invalidatedCaches, tables);
+    try {
+      transport.send(invalidation);
+    } catch (Exception e) {
+      log.warn("Could not send " + invalidation + ".  Cause: " + e);
+    }
+  }
+
+  /**
+   * Closes the transport. Called by {@link Configuration#shutdown()}.
+   */
+  public void close() {
+    transport.close();
+  }
+
+  protected void receive(Invalidation invalidation) {
+    if (nodeId.equals(invalidation.getOrigin())) {
+      return;
+    }
+    if (log.isDebugEnabled()) {
+      log.debug("Received " + invalidation);
+    }
+    for (String id : invalidation.getClearedCaches()) {
+      if (configuration.hasCache(id)) {
+        configuration.getCache(id).clear();
+      }
+    }
+    List<Cache> caches = new ArrayList<>();
+    for (String id : invalidation.getInvalidatedCaches()) {
+      if (configuration.hasCache(id)) {
+        caches.add(configuration.getCache(id));
+      }
+    }
+    configuration.getTableVersions().increment(caches, invalidation.getTables());
+  }
+
+}
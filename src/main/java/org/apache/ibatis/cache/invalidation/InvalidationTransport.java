@@ -0,0 +1,44 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.util.Properties;
+import java.util.function.Consumer;
+
+/**
+ * Carries the invalidations of an {@link InvalidationBus} to the other nodes and back.
+ *
+ * Transports do not need to be reliable: an invalidation that is lost leaves stale entries on some nodes until they
+ * expire, so caches shared by nodes should also expire their entries.
+ *
+ * @since 3.5.0
+ */
+public interface InvalidationTransport {
+
+  void setProperties(Properties properties);
+
+  /**
+   * Starts receiving the invalidations sent by the other nodes.
+   *
+   * @param receiver called for each received invalidation, from any thread
+   */
+  void start(Consumer<Invalidation> receiver);
+
+  void send(Invalidation invalidation);
+
+  void close();
+
+}
@@ -0,0 +1,77 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+/**
+ * Delivers invalidations synchronously to the transports of the same channel in this JVM, for instance to several
+ * {@code SqlSessionFactory} instances over the same database. The channel is set by the {@code channel} property.
+ *
+ * @since 3.5.0
+ */
+public class LoopbackTransport implements InvalidationTransport {
+
+  private static final Map<String, Set<LoopbackTransport>> channels = new ConcurrentHashMap<>();
+
+  private String channel = "default";
+  private Consumer<Invalidation> receiver;
+
+  public String getChannel() {
+    return channel;
+  }
+
+  public void setChannel(String channel) {
+    this.channel = channel;
+  }
+
+  @Override
+  public void setProperties(Properties properties) {
+    channel = properties.getProperty("channel", channel);
+  }
+
+  @Override
+  public void start(Consumer<Invalidation> receiver) {
+    this.receiver = receiver;
+    channels.computeIfAbsent(channel, k -> new CopyOnWriteArraySet<>()).add(this);
+  }
+
+  @Override
+  public void send(Invalidation invalidation) {
+    Set<LoopbackTransport> transports = channels.get(channel);
+    if (transports != null) {
+      for (LoopbackTransport transport : transports) {
+        if (transport != this) {
+          transport.receiver.accept(invalidation);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    Set<LoopbackTransport> transports = channels.get(channel);
+    if (transports != null) {
+      transports.remove(this);
+    }
+  }
+
+}
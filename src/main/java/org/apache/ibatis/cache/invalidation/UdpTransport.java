@@ -0,0 +1,188 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.invalidation;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * Sends invalidations as UDP datagrams to a list of peers and receives theirs on a local port.
+ *
+ * <pre>
+ * &lt;cacheInvalidation type="UDP_TRANSPORT"&gt;
+ *   &lt;property name="port" value="4446"/&gt;
+ *   &lt;property name="peers" value="node2:4446,node3:4446"/&gt;
+ * &lt;/cacheInvalidation&gt;
+ * </pre>
+ *
+ * Each invalidation is a single datagram, so it must encode in less than 64KB. Datagrams can be lost.
+ * <p>
+ * Only the datagrams sent from the addresses of the peers, resolved when they are set, are applied. Datagrams are
+ * neither authenticated nor encrypted, and their source address can be forged: the port must only be reachable
+ * from a trusted network.
+ *
+ * @since 3.5.0
+ */
+public class UdpTransport implements InvalidationTransport {
+
+  private static final Log log = LogFactory.getLog(UdpTransport.class);
+
+  private static final int MAX_DATAGRAM_SIZE = 65507;
+
+  private String host;
+  private int port;
+  private volatile List<InetSocketAddress> peers = Collections.emptyList();
+  private volatile Set<InetAddress> peerAddresses = Collections.emptySet();
+  private DatagramSocket socket;
+
+  public String getHost() {
+    return host;
+  }
+
+  /**
+   * @param host the address to listen on, all the local addresses if not set
+   */
+  public void setHost(String host) {
+    this.host = host;
+  }
+
+  public int getPort() {
+    return port;
+  }
+
+  /**
+   * @param port the port to listen on, any free port if not set
+   */
+  public void setPort(int port) {
+    this.port = port;
+  }
+
+  /**
+   * @param peers comma separated host:port addresses of the other nodes
+   */
+  public void setPeers(String peers) {
+    List<InetSocketAddress> addresses = new ArrayList<>();
+    for (String peer : peers.split(",")) {
+      String address = peer.trim();
+      if (address.isEmpty()) {
+        continue;
+      }
+      int colon = address.lastIndexOf(':');
+      if (colon < 0) {
+        throw new CacheException("The peer " + address + " of the UDP transport has no port");
+      }
+      addresses.add(new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1))));
+    }
+    Set<InetAddress> resolved = new HashSet<>();
+    for (InetSocketAddress address : addresses) {
+      if (address.isUnresolved()) {
+        log.warn("Could not resolve the peer " + address + " of the UDP transport, its invalidations are ignored");
+      } else {
+        resolved.add(address.getAddress());
+      }
+    }
+    this.peers = addresses;
+    this.peerAddresses = resolved;
+  }
+
+  /**
+   * @return the port the transport listens on, once started
+   */
+  public int getLocalPort() {
+    return socket == null ? -1 : socket.getLocalPort();
+  }
+
+  @Override
+  public void setProperties(Properties properties) {
+    host = properties.getProperty("host", host);
+    port = Integer.parseInt(properties.getProperty("port", String.valueOf(port)));
+    String peerList = properties.getProperty("peers");
+    if (peerList != null) {
+      setPeers(peerList);
+    }
+  }
+
+  @Override
+  public void start(Consumer<Invalidation> receiver) {
+    try {
+      socket = host == null ? new DatagramSocket(port) : new DatagramSocket(new InetSocketAddress(host, port));
+    } catch (SocketException e) {
+      throw new CacheException("Could not listen for invalidations on port " + port + ".  Cause: " + e, e);
+    }
+    Thread receiverThread = new Thread(() -> receive(receiver), "mybatis-invalidation-receiver-" + socket.getLocalPort());
+    receiverThread.setDaemon(true);
+    receiverThread.start();
+  }
+
+  @Override
+  public void send(Invalidation invalidation) {
+    byte[] bytes = invalidation.toBytes();
+    if (bytes.length > MAX_DATAGRAM_SIZE) {
+      throw new CacheException("The invalidation is too large for a datagram: " + bytes.length + " bytes");
+    }
+    for (InetSocketAddress peer : peers) {
+      try {
+        socket.send(new DatagramPacket(bytes, bytes.length, peer));
+      } catch (IOException e) {
+        log.warn("Could not send the invalidation to " + peer + ".  Cause: " + e);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    if (socket != null) {
+      socket.close();
+    }
+  }
+
+  private void receive(Consumer<Invalidation> receiver) {
+    byte[] buffer = new byte[MAX_DATAGRAM_SIZE];
+    while (!socket.isClosed()) {
+      DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+      try {
+        socket.receive(packet);
+        if (!peerAddresses.contains(packet.getAddress())) {
+          log.warn("Ignored an invalidation sent by " + packet.getSocketAddress() + ", which is not a peer");
+          continue;
+        }
+        receiver.accept(Invalidation.fromBytes(packet.getData(), packet.getOffset(), packet.getLength()));
+      } catch (IOException e) {
+        if (!socket.isClosed()) {
+          log.warn("Error receiving an invalidation.  Cause: " + e);
+        }
+      } catch (RuntimeException e) {
+        log.warn("Error applying an invalidation.  Cause: " + e);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,670 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.serializer;
+
+import java.io.Externalizable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
+
+/**
+ * Compact binary serializer driven by the property metadata of {@link Reflector}.
+ *
+ * Result objects are written as their readable and writable properties, in the order of a per-class descriptor,
+ * using a tagged format with variable length integers. Class and property names are written only once per value,
+ * and shared or circular references are preserved. JDK value types, arrays, collections and maps from
+ * {@code java.util} are handled natively.
+ *
+ * Objects that cannot be rebuilt from their properties (no default constructor, custom serialization methods,
+ * lazy loading proxies, other JDK types...) are written with java serialization instead.
+ *
+ * @since 3.5.0
+ */
+public class BinarySerializer implements Serializer {
+
+  private static final byte NULL = 0;
+  private static final byte REFERENCE = 1;
+  private static final byte TRUE = 2;
+  private static final byte FALSE = 3;
+  private static final byte BYTE = 4;
+  private static final byte SHORT = 5;
+  private static final byte INT = 6;
+  private static final byte LONG = 7;
+  private static final byte FLOAT = 8;
+  private static final byte DOUBLE = 9;
+  private static final byte CHAR = 10;
+  private static final byte STRING = 11;
+  private static final byte BIG_DECIMAL = 12;
+  private static final byte BIG_INTEGER = 13;
+  private static final byte DATE = 14;
+  private static final byte SQL_DATE = 15;
+  private static final byte SQL_TIME = 16;
+  private static final byte SQL_TIMESTAMP = 17;
+  private static final byte LOCAL_DATE = 18;
+  private static final byte LOCAL_TIME = 19;
+  private static final byte LOCAL_DATE_TIME = 20;
+  private static final byte INSTANT = 21;
+  private static final byte BYTE_ARRAY = 22;
+  private static final byte OBJECT_ARRAY = 23;
+  private static final byte COLLECTION = 24;
+  private static final byte MAP = 25;
+  private static final byte ENUM = 26;
+  private static final byte BEAN = 27;
+  private static final byte JAVA = 28;
+
+  private static final ReflectorFactory reflectorFactory = new DefaultReflectorFactory();
+  private static final Map<Class<?>, ClassDescriptor> descriptors = new ConcurrentHashMap<>();
+
+  private final Serializer fallback = new JavaSerializer();
+
+  @Override
+  public byte[] serialize(Object value) {
+    Output output = new Output();
+    output.writeObject(value);
+    return output.toByteArray();
+  }
+
+  @Override
+  public Object deserialize(byte[] bytes) {
+    try {
+      return new Input(bytes).readObject();
+    } catch (CacheException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new CacheException("Error deserializing object.  Cause: " + e, e);
+    }
+  }
+
+  private static ClassDescriptor descriptorOf(Class<?> type) {
+    ClassDescriptor descriptor = descriptors.get(type);
+    if (descriptor == null) {
+      descriptor = new ClassDescriptor(type);
+      descriptors.put(type, descriptor);
+    }
+    return descriptor;
+  }
+
+  private static Class<?> classForName(String name) {
+    try {
+      return Resources.classForName(name);
+    } catch (ClassNotFoundException e) {
+      throw new CacheException("Error deserializing object.  Cause: " + e, e);
+    }
+  }
+
+  private final class Output {
+    private byte[] buffer = new byte[256];
+    private int position;
+    private final Map<Object, Integer> references = new IdentityHashMap<>();
+    private final Map<Class<?>, Integer> classes = new HashMap<>();
+    private final Map<Class<?>, Integer> beanClasses = new HashMap<>();
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, position);
+    }
+
+    void writeObject(Object value) {
+      if (value == null) {
+        writeByte(NULL);
+        return;
+      }
+      Class<?> type = value.getClass();
+      if (type == String.class) {
+        writeByte(STRING);
+        writeString((String) value);
+      } else if (type == Integer.class) {
+        writeByte(INT);
+        writeVarLong(zigZag((Integer) value));
+      } else if (type == Long.class) {
+        writeByte(LONG);
+        writeVarLong(zigZag((Long) value));
+      } else if (type == Boolean.class) {
+        writeByte((Boolean) value ? TRUE : FALSE);
+      } else if (type == Double.class) {
+        writeByte(DOUBLE);
+        writeLong(Double.doubleToLongBits((Double) value));
+      } else if (type == Float.class) {
+        writeByte(FLOAT);
+        writeVarLong(Float.floatToIntBits((Float) value) & 0xffffffffL);
+      } else if (type == Short.class) {
+        writeByte(SHORT);
+        writeVarLong(zigZag((Short) value));
+      } else if (type == Byte.class) {
+        writeByte(BYTE);
+        writeByte((Byte) value);
+      } else if (type == Character.class) {
+        writeByte(CHAR);
+        writeVarLong((Character) value);
+      } else if (type == BigDecimal.class) {
+        BigDecimal decimal = (BigDecimal) value;
+        writeByte(BIG_DECIMAL);
+        writeVarLong(zigZag(decimal.scale()));
+        writeBytes(decimal.unscaledValue().toByteArray());
+      } else if (type == BigInteger.class) {
+        writeByte(BIG_INTEGER);
+        writeBytes(((BigInteger) value).toByteArray());
+      } else if (type == Date.class) {
+        writeByte(DATE);
+        writeLong(((Date) value).getTime());
+      } else if (type == java.sql.Date.class) {
+        writeByte(SQL_DATE);
+        writeLong(((Date) value).getTime());
+      } else if (type == Time.class) {
+        writeByte(SQL_TIME);
+        writeLong(((Date) value).getTime());
+      } else if (type == Timestamp.class) {
+        writeByte(SQL_TIMESTAMP);
+        writeLong(((Timestamp) value).getTime());
+        writeVarLong(((Timestamp) value).getNanos());
+      } else if (type == LocalDate.class) {
+        writeByte(LOCAL_DATE);
+        writeVarLong(zigZag(((LocalDate) value).toEpochDay()));
+      } else if (type == LocalTime.class) {
+        writeByte(LOCAL_TIME);
+        writeVarLong(((LocalTime) value).toNanoOfDay());
+      } else if (type == LocalDateTime.class) {
+        LocalDateTime dateTime = (LocalDateTime) value;
+        writeByte(LOCAL_DATE_TIME);
+        writeVarLong(zigZag(dateTime.toLocalDate().toEpochDay()));
+        writeVarLong(dateTime.toLocalTime().toNanoOfDay());
+      } else if (type == Instant.class) {
+        writeByte(INSTANT);
+        writeVarLong(zigZag(((Instant) value).getEpochSecond()));
+        writeVarLong(((Instant) value).getNano());
+      } else if (value instanceof Enum) {
+        writeByte(ENUM);
+        writeClass(((Enum<?>) value).getDeclaringClass());
+        writeString(((Enum<?>) value).name());
+      } else {
+        writeReferenceable(value, type);
+      }
+    }
+
+    private void writeReferenceable(Object value, Class<?> type) {
+      Integer reference = references.get(value);
+      if (reference != null) {
+        writeByte(REFERENCE);
+        writeVarLong(reference);
+        return;
+      }
+      references.put(value, references.size());
+      if (type == byte[].class) {
+        writeByte(BYTE_ARRAY);
+        writeBytes((byte[]) value);
+        return;
+      }
+      if (type.isArray() && !type.getComponentType().isPrimitive()) {
+        Object[] array = (Object[]) value;
+        writeByte(OBJECT_ARRAY);
+        writeClass(type.getComponentType());
+        writeVarLong(array.length);
+        for (Object element : array) {
+          writeObject(element);
+        }
+        return;
+      }
+      ClassDescriptor descriptor = descriptorOf(type);
+      if (descriptor.kind == ClassDescriptor.COLLECTION && !(value instanceof SortedSet && ((SortedSet<?>) value).comparator() != null)) {
+        Collection<?> collection = (Collection<?>) value;
+        writeByte(COLLECTION);
+        writeClass(type);
+        writeVarLong(collection.size());
+        for (Object element : collection) {
+          writeObject(element);
+        }
+      } else if (descriptor.kind == ClassDescriptor.MAP && !(value instanceof SortedMap && ((SortedMap<?, ?>) value).comparator() != null)) {
+        Map<?, ?> map = (Map<?, ?>) value;
+        writeByte(MAP);
+        writeClass(type);
+        writeVarLong(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          writeObject(entry.getKey());
+          writeObject(entry.getValue());
+        }
+      } else if (descriptor.kind == ClassDescriptor.BEAN) {
+        writeByte(BEAN);
+        writeBeanClass(descriptor);
+        for (Invoker getter : descriptor.getters) {
+          try {
+            writeObject(getter.invoke(value, null));
+          } catch (Exception e) {
+            throw new CacheException("Error serializing object.  Cause: " + e, e);
+          }
+        }
+      } else {
+        writeByte(JAVA);
+        writeBytes(fallback.serialize(value));
+      }
+    }
+
+    private void writeClass(Class<?> type) {
+      Integer index = classes.get(type);
+      if (index != null) {
+        writeVarLong(index + 1);
+        return;
+      }
+      classes.put(type, classes.size());
+      writeVarLong(0);
+      writeString(type.getName());
+    }
+
+    private void writeBeanClass(ClassDescriptor descriptor) {
+      Integer index = beanClasses.get(descriptor.type);
+      if (index != null) {
+        writeVarLong(index + 1);
+        return;
+      }
+      beanClasses.put(descriptor.type, beanClasses.size());
+      writeVarLong(0);
+      writeString(descriptor.type.getName());
+      writeVarLong(descriptor.properties.length);
+      for (String property : descriptor.properties) {
+        writeString(property);
+      }
+    }
+
+    private void writeString(String value) {
+      writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void writeBytes(byte[] bytes) {
+      writeVarLong(bytes.length);
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, position, bytes.length);
+      position += bytes.length;
+    }
+
+    private void writeByte(int value) {
+      ensureCapacity(1);
+      buffer[position++] = (byte) value;
+    }
+
+    private void writeLong(long value) {
+      ensureCapacity(8);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        buffer[position++] = (byte) (value >>> shift);
+      }
+    }
+
+    private void writeVarLong(long value) {
+      ensureCapacity(10);
+      while ((value & ~0x7FL) != 0) {
+        buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buffer[position++] = (byte) value;
+    }
+
+    private void ensureCapacity(int length) {
+      if (position + length > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + length));
+      }
+    }
+
+    private long zigZag(long value) {
+      return (value << 1) ^ (value >> 63);
+    }
+  }
+
+  private final class Input {
+    private final byte[] buffer;
+    private int position;
+    private final List<Object> references = new ArrayList<>();
+    private final List<Class<?>> classes = new ArrayList<>();
+    private final List<BeanLayout> beanClasses = new ArrayList<>();
+
+    Input(byte[] buffer) {
+      this.buffer = buffer;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    Object readObject() throws Exception {
+      byte tag = buffer[position++];
+      switch (tag) {
+        case NULL:
+          return null;
+        case REFERENCE:
+          return references.get((int) readVarLong());
+        case TRUE:
+          return Boolean.TRUE;
+        case FALSE:
+          return Boolean.FALSE;
+        case BYTE:
+          return buffer[position++];
+        case SHORT:
+          return (short) unZigZag(readVarLong());
+        case INT:
+          return (int) unZigZag(readVarLong());
+        case LONG:
+          return unZigZag(readVarLong());
+        case FLOAT:
+          return Float.intBitsToFloat((int) readVarLong());
+        case DOUBLE:
+          return Double.longBitsToDouble(readLong());
+        case CHAR:
+          return (char) readVarLong();
+        case STRING:
+          return readString();
+        case BIG_DECIMAL:
+          int scale = (int) unZigZag(readVarLong());
+          return new BigDecimal(new BigInteger(readBytes()), scale);
+        case BIG_INTEGER:
+          return new BigInteger(readBytes());
+        case DATE:
+          return new Date(readLong());
+        case SQL_DATE:
+          return new java.sql.Date(readLong());
+        case SQL_TIME:
+          return new Time(readLong());
+        case SQL_TIMESTAMP:
+          Timestamp timestamp = new Timestamp(readLong());
+          timestamp.setNanos((int) readVarLong());
+          return timestamp;
+        case LOCAL_DATE:
+          return LocalDate.ofEpochDay(unZigZag(readVarLong()));
+        case LOCAL_TIME:
+          return LocalTime.ofNanoOfDay(readVarLong());
+        case LOCAL_DATE_TIME:
+          LocalDate date = LocalDate.ofEpochDay(unZigZag(readVarLong()));
+          return LocalDateTime.of(date, LocalTime.ofNanoOfDay(readVarLong()));
+        case INSTANT:
+          long seconds = unZigZag(readVarLong());
+          return Instant.ofEpochSecond(seconds, readVarLong());
+        case ENUM:
+          Class enumType = readClass();
+          return Enum.valueOf(enumType, readString());
+        case BYTE_ARRAY:
+          byte[] bytes = readBytes();
+          references.add(bytes);
+          return bytes;
+        case OBJECT_ARRAY:
+          return readArray();
+        case COLLECTION:
+          return readCollection();
+        case MAP:
+          return readMap();
+        case BEAN:
+          return readBean();
+        case JAVA:
+          Object object = fallback.deserialize(readBytes());
+          references.add(object);
+          return object;
+        default:
+          throw new CacheException("Error deserializing object.  Cause: unknown tag " + tag + " at position " + (position - 1));
+      }
+    }
+
+    private Object readArray() throws Exception {
+      Class<?> componentType = readClass();
+      Object[] array = (Object[]) java.lang.reflect.Array.newInstance(componentType, (int) readVarLong());
+      references.add(array);
+      for (int i = 0; i < array.length; i++) {
+        array[i] = readObject();
+      }
+      return array;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object readCollection() throws Exception {
+      ClassDescriptor descriptor = descriptorOf(readClass());
+      Collection<Object> collection = (Collection<Object>) descriptor.constructor.newInstance();
+      references.add(collection);
+      int size = (int) readVarLong();
+      for (int i = 0; i < size; i++) {
+        collection.add(readObject());
+      }
+      return collection;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object readMap() throws Exception {
+      ClassDescriptor descriptor = descriptorOf(readClass());
+      Map<Object, Object> map = (Map<Object, Object>) descriptor.constructor.newInstance();
+      references.add(map);
+      int size = (int) readVarLong();
+      for (int i = 0; i < size; i++) {
+        Object key = readObject();
+        map.put(key, readObject());
+      }
+      return map;
+    }
+
+    private Object readBean() throws Exception {
+      BeanLayout layout = readBeanClass();
+      Object bean = layout.descriptor.constructor.newInstance();
+      references.add(bean);
+      for (int i = 0; i < layout.setters.length; i++) {
+        Object value = readObject();
+        Invoker setter = layout.setters[i];
+        if (setter != null && (value != null || !setter.getType().isPrimitive())) {
+          setter.invoke(bean, new Object[] { value });
+        }
+      }
+      return bean;
+    }
+
+    private Class<?> readClass() {
+      int index = (int) readVarLong();
+      if (index > 0) {
+        return classes.get(index - 1);
+      }
+      Class<?> type = classForName(readString());
+      classes.add(type);
+      return type;
+    }
+
+    private BeanLayout readBeanClass() {
+      int index = (int) readVarLong();
+      if (index > 0) {
+        return beanClasses.get(index - 1);
+      }
+      ClassDescriptor descriptor = descriptorOf(classForName(readString()));
+      if (descriptor.kind != ClassDescriptor.BEAN) {
+        throw new CacheException("Error deserializing object.  Cause: " + descriptor.type + " can no longer be rebuilt from its properties");
+      }
+      Invoker[] setters = new Invoker[(int) readVarLong()];
+      for (int i = 0; i < setters.length; i++) {
+        setters[i] = descriptor.setterOf(readString());
+      }
+      BeanLayout layout = new BeanLayout(descriptor, setters);
+      beanClasses.add(layout);
+      return layout;
+    }
+
+    private String readString() {
+      int length = (int) readVarLong();
+      String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+      position += length;
+      return value;
+    }
+
+    private byte[] readBytes() {
+      int length = (int) readVarLong();
+      byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+      position += length;
+      return bytes;
+    }
+
+    private long readLong() {
+      long value = 0;
+      for (int i = 0; i < 8; i++) {
+        value = (value << 8) | (buffer[position++] & 0xFF);
+      }
+      return value;
+    }
+
+    private long readVarLong() {
+      long value = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = buffer[position++];
+        value |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return value;
+    }
+
+    private long unZigZag(long value) {
+      return (value >>> 1) ^ -(value & 1);
+    }
+  }
+
+  private static class BeanLayout {
+    private final ClassDescriptor descriptor;
+    private final Invoker[] setters;
+
+    BeanLayout(ClassDescriptor descriptor, Invoker[] setters) {
+      this.descriptor = descriptor;
+      this.setters = setters;
+    }
+  }
+
+  /**
+   * What this serializer knows about a class: how to instantiate it and, for beans, which properties make its state.
+   */
+  private static class ClassDescriptor {
+    private static final int OTHER = 0;
+    private static final int COLLECTION = 1;
+    private static final int MAP = 2;
+    private static final int BEAN = 3;
+
+    private final Class<?> type;
+    private final int kind;
+    private final Constructor<?> constructor;
+    private final String[] properties;
+    private final Invoker[] getters;
+    private final Reflector reflector;
+
+    ClassDescriptor(Class<?> type) {
+      this.type = type;
+      Constructor<?> defaultConstructor = defaultConstructorOf(type);
+      String[] beanProperties = new String[0];
+      Invoker[] beanGetters = new Invoker[0];
+      Reflector beanReflector = null;
+      if (defaultConstructor == null) {
+        kind = OTHER;
+      } else if (type.getName().startsWith("java.")) {
+        if (type.getName().startsWith("java.util.") && Collection.class.isAssignableFrom(type)) {
+          kind = COLLECTION;
+        } else if (type.getName().startsWith("java.util.") && Map.class.isAssignableFrom(type)) {
+          kind = MAP;
+        } else {
+          kind = OTHER;
+        }
+      } else if (Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type)
+          || Externalizable.class.isAssignableFrom(type) || hasCustomSerialization(type)) {
+        kind = OTHER;
+      } else {
+        kind = BEAN;
+        beanReflector = reflectorFactory.findForClass(type);
+        List<String> names = new ArrayList<>();
+        for (String property : beanReflector.getGetablePropertyNames()) {
+          if (beanReflector.hasSetter(property) && !isStaticOrTransient(type, property)) {
+            names.add(property);
+          }
+        }
+        beanProperties = names.toArray(new String[names.size()]);
+        Arrays.sort(beanProperties);
+        beanGetters = new Invoker[beanProperties.length];
+        for (int i = 0; i < beanProperties.length; i++) {
+          beanGetters[i] = beanReflector.getGetInvoker(beanProperties[i]);
+        }
+      }
+      this.constructor = defaultConstructor;
+      this.properties = beanProperties;
+      this.getters = beanGetters;
+      this.reflector = beanReflector;
+    }
+
+    Invoker setterOf(String property) {
+      return reflector.hasSetter(property) ? reflector.getSetInvoker(property) : null;
+    }
+
+    private static Constructor<?> defaultConstructorOf(Class<?> type) {
+      if (Modifier.isAbstract(type.getModifiers()) || type.isInterface()
+          || (type.getEnclosingClass() != null && !Modifier.isStatic(type.getModifiers()))) {
+        return null;
+      }
+      try {
+        Constructor<?> constructor = type.getDeclaredConstructor();
+        if (!Modifier.isPublic(constructor.getModifiers()) || !Modifier.isPublic(type.getModifiers())) {
+          if (!Reflector.canControlMemberAccessible()) {
+            return null;
+          }
+          constructor.setAccessible(true);
+        }
+        return constructor;
+      } catch (Exception e) {
+        return null;
+      }
+    }
+
+    private static boolean hasCustomSerialization(Class<?> type) {
+      for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+        for (String method : new String[] { "writeObject", "readObject", "writeReplace", "readResolve" }) {
+          for (java.lang.reflect.Method declared : current.getDeclaredMethods()) {
+            if (declared.getName().equals(method)) {
+              return true;
+            }
+          }
+        }
+      }
+      return false;
+    }
+
+    private static boolean isStaticOrTransient(Class<?> type, String property) {
+      for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+        try {
+          Field field = current.getDeclaredField(property);
+          int modifiers = field.getModifiers();
+          return Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers);
+        } catch (NoSuchFieldException e) {
+          // try the super class
+        }
+      }
+      return false;
+    }
+  }
+
+}
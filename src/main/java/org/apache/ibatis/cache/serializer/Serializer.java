@@ -0,0 +1,40 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.serializer;
+
+/**
+ * SPI used by the second level cache to turn cached values into bytes and back.
+ *
+ * Implementations must be thread safe and have a public no-args constructor.
+ *
+ * @since 3.5.0
+ * @see org.apache.ibatis.cache.decorators.SerializedCache
+ */
+public interface Serializer {
+
+  /**
+   * @param value The value to copy, may be null
+   * @return The serialized form of the value
+   */
+  byte[] serialize(Object value);
+
+  /**
+   * @param bytes Bytes produced by {@link #serialize(Object)}
+   * @return A copy of the original value
+   */
+  Object deserialize(byte[] bytes);
+
+}
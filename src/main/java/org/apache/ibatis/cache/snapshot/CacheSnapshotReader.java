@@ -0,0 +1,280 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads a cache snapshot written by a {@link CacheSnapshotWriter}, either from a stream or from a memory mapped file.
+ *
+ * <pre>
+ * while (reader.nextSection()) {
+ *   if (isStale(reader.getCacheId(), reader.getDefinitionHash())) {
+ *     continue; // the entries of the section are skipped
+ *   }
+ *   while (reader.nextEntry()) {
+ *     load(reader.getKey(), reader.getValue(), reader.getWriteTime());
+ *   }
+ * }
+ * </pre>
+ *
+ * @since 3.5.0
+ */
+public class CacheSnapshotReader implements Closeable {
+
+  private final DataInputStream in;
+  private final long timestamp;
+  private Map<String, Long> tableVersions;
+  private Map<String, Long> cacheVersions;
+
+  private String cacheId;
+  private String definitionHash;
+  private boolean inSection;
+  private byte[] key;
+  private byte[] value;
+  private long writeTime;
+
+  public CacheSnapshotReader(InputStream in) throws IOException {
+    this.in = new DataInputStream(in instanceof BufferedInputStream || in instanceof ByteBufferInputStream
+        ? in : new BufferedInputStream(in, 64 * 1024));
+    if (this.in.readInt() != CacheSnapshotWriter.MAGIC) {
+      throw new IOException("Not a cache snapshot");
+    }
+    int version = this.in.readInt();
+    if (version != CacheSnapshotWriter.VERSION) {
+      throw new IOException("Unsupported cache snapshot version " + version);
+    }
+    this.timestamp = this.in.readLong();
+  }
+
+  /**
+   * Opens a snapshot file. Files smaller than 2GB are memory mapped, larger ones are streamed.
+   */
+  public static CacheSnapshotReader open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size <= Integer.MAX_VALUE) {
+        // the mapping stays valid once the channel is closed
+        return new CacheSnapshotReader(new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, size)));
+      }
+    }
+    return new CacheSnapshotReader(Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ)));
+  }
+
+  /**
+   * @return the time the snapshot was taken, in milliseconds since the epoch
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * @return the table versions, only known once {@link #nextSection()} returned false
+   */
+  public Map<String, Long> getTableVersions() {
+    return tableVersions;
+  }
+
+  /**
+   * @return the cache versions, only known once {@link #nextSection()} returned false
+   */
+  public Map<String, Long> getCacheVersions() {
+    return cacheVersions;
+  }
+
+  /**
+   * Moves to the next section, skipping the entries of the current one that were not read.
+   *
+   * @return false when there are no more sections
+   */
+  public boolean nextSection() throws IOException {
+    if (tableVersions != null) {
+      return false;
+    }
+    while (inSection) {
+      skipEntry();
+    }
+    byte marker = in.readByte();
+    if (marker == CacheSnapshotWriter.END) {
+      cacheId = null;
+      definitionHash = null;
+      tableVersions = readVersions();
+      cacheVersions = readVersions();
+      return false;
+    }
+    if (marker != CacheSnapshotWriter.SECTION) {
+      throw new IOException("Corrupt cache snapshot, unexpected marker " + marker);
+    }
+    cacheId = in.readUTF();
+    definitionHash = in.readUTF();
+    inSection = true;
+    return true;
+  }
+
+  public String getCacheId() {
+    return cacheId;
+  }
+
+  public String getDefinitionHash() {
+    return definitionHash;
+  }
+
+  /**
+   * Reads the next entry of the current section.
+   *
+   * @return false when there are no more entries in the section
+   */
+  public boolean nextEntry() throws IOException {
+    if (!inSection) {
+      return false;
+    }
+    int keyLength = in.readInt();
+    if (keyLength == CacheSnapshotWriter.END_OF_SECTION) {
+      inSection = false;
+      key = null;
+      value = null;
+      return false;
+    }
+    key = readBytes(keyLength);
+    value = readBytes(in.readInt());
+    writeTime = in.readLong();
+    return true;
+  }
+
+  /**
+   * @return the serialized key of the current entry
+   */
+  public byte[] getKey() {
+    return key;
+  }
+
+  /**
+   * @return the serialized value of the current entry
+   */
+  public byte[] getValue() {
+    return value;
+  }
+
+  /**
+   * @return the time the current entry was written, or 0 if its cache does not expire it after write
+   */
+  public long getWriteTime() {
+    return writeTime;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  private Map<String, Long> readVersions() throws IOException {
+    int count = in.readInt();
+    if (count == 0) {
+      return Collections.emptyMap();
+    }
+    Map<String, Long> versions = new HashMap<>();
+    for (int i = 0; i < count; i++) {
+      versions.put(in.readUTF(), in.readLong());
+    }
+    return versions;
+  }
+
+  private void skipEntry() throws IOException {
+    int keyLength = in.readInt();
+    if (keyLength == CacheSnapshotWriter.END_OF_SECTION) {
+      inSection = false;
+      return;
+    }
+    skip(keyLength);
+    skip(in.readInt());
+    skip(8);
+  }
+
+  private byte[] readBytes(int length) throws IOException {
+    if (length < 0) {
+      throw new IOException("Corrupt cache snapshot, negative length " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  private void skip(int length) throws IOException {
+    if (length < 0) {
+      throw new IOException("Corrupt cache snapshot, negative length " + length);
+    }
+    int remaining = length;
+    while (remaining > 0) {
+      int skipped = in.skipBytes(remaining);
+      if (skipped <= 0) {
+        throw new EOFException();
+      }
+      remaining -= skipped;
+    }
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int count = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, count);
+      return count;
+    }
+
+    @Override
+    public long skip(long n) {
+      int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+      buffer.position(buffer.position() + count);
+      return count;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+
+}
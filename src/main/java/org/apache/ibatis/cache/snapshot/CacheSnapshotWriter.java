@@ -0,0 +1,128 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.snapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+import org.apache.ibatis.cache.TableVersions;
+
+/**
+ * Writes a cache snapshot to a stream, one entry at a time.
+ *
+ * <pre>
+ * snapshot := MAGIC VERSION timestamp section* END versions(tables) versions(caches)
+ * versions := count (name version)*
+ * section  := SECTION cacheId definitionHash entry* END_OF_SECTION
+ * entry    := keyLength key valueLength value writeTime
+ * </pre>
+ *
+ * Names and hashes are written as modified UTF-8, counts and lengths as ints, versions and times as longs. The write
+ * time of an entry is 0 when its cache does not expire it after write.
+ * Keys and values are serialized objects. Since every entry is length prefixed, the sections of caches that are
+ * gone or have changed can be skipped without deserializing them. The versions of {@link TableVersions} come last so
+ * that they are taken after all the entries, whose keys may include them, were read.
+ *
+ * @see CacheSnapshotReader
+ * @since 3.5.0
+ */
+public class CacheSnapshotWriter implements Closeable {
+
+  static final int MAGIC = 0x4D424353;
+  static final int VERSION = 2;
+  static final byte SECTION = 1;
+  static final byte END = 0;
+  static final int END_OF_SECTION = -1;
+
+  private final DataOutputStream out;
+  private boolean inSection;
+  private boolean finished;
+
+  public CacheSnapshotWriter(OutputStream out, long timestamp) throws IOException {
+    this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+    this.out.writeInt(MAGIC);
+    this.out.writeInt(VERSION);
+    this.out.writeLong(timestamp);
+  }
+
+  public void startSection(String cacheId, String definitionHash) throws IOException {
+    if (inSection) {
+      endSection();
+    }
+    out.writeByte(SECTION);
+    out.writeUTF(cacheId);
+    out.writeUTF(definitionHash);
+    inSection = true;
+  }
+
+  /**
+   * @param writeTime the time the entry was written, or 0 if its cache does not expire it after write
+   */
+  public void writeEntry(byte[] key, byte[] value, long writeTime) throws IOException {
+    if (!inSection) {
+      throw new IllegalStateException("An entry can only be written in a section");
+    }
+    out.writeInt(key.length);
+    out.write(key);
+    out.writeInt(value.length);
+    out.write(value);
+    out.writeLong(writeTime);
+  }
+
+  public void endSection() throws IOException {
+    if (inSection) {
+      out.writeInt(END_OF_SECTION);
+      inSection = false;
+    }
+  }
+
+  /**
+   * Ends the snapshot with the versions that the keys of its entries were stamped with.
+   */
+  public void finish(Map<String, Long> tableVersions, Map<String, Long> cacheVersions) throws IOException {
+    endSection();
+    out.writeByte(END);
+    writeVersions(tableVersions);
+    writeVersions(cacheVersions);
+    out.flush();
+    finished = true;
+  }
+
+  /**
+   * Closes the underlying stream. A snapshot that was not finished is incomplete and cannot be read.
+   */
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  public boolean isFinished() {
+    return finished;
+  }
+
+  private void writeVersions(Map<String, Long> versions) throws IOException {
+    out.writeInt(versions.size());
+    for (Map.Entry<String, Long> version : versions.entrySet()) {
+      out.writeUTF(version.getKey());
+      out.writeLong(version.getValue());
+    }
+  }
+
+}
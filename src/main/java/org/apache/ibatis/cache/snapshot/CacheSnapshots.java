@@ -0,0 +1,352 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.snapshot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.EntryMetadata;
+import org.apache.ibatis.cache.serializer.JavaSerializer;
+import org.apache.ibatis.cache.serializer.Serializer;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * Saves the contents of the second level caches to a local file and loads them back, so that a restarted
+ * application does not start with cold caches.
+ *
+ * When the {@code cacheSnapshotFile} setting is set, the file is loaded when the {@code SqlSessionFactory} is built,
+ * and saved at shutdown and every {@code cacheSnapshotInterval} milliseconds if it is positive. Only the caches that
+ * can list their keys (see {@link Cache#getKeys()}) are saved, with the entries whose key and value are serializable.
+ *
+ * Each cache is saved with a hash of the definitions of the statements that use it: its section is discarded on load
+ * when a mapper file, a mapper class or a result map changed. Entries are read with {@link Cache#peekObject(Object)},
+ * so that saving a snapshot neither counts as a use of the entries nor restarts their expiration. Loaded entries are
+ * as fresh as the snapshot, but keep their write time: they expire after write as if there had been no restart.
+ *
+ * @see CacheSnapshotWriter
+ * @since 3.5.0
+ */
+public class CacheSnapshots {
+
+  private static final Log log = LogFactory.getLog(CacheSnapshots.class);
+
+  private final Configuration configuration;
+  private final Serializer serializer = new JavaSerializer();
+  private Map<String, String> definitionHashes;
+  private ScheduledExecutorService scheduler;
+  private Thread shutdownHook;
+
+  public CacheSnapshots(Configuration configuration) {
+    this.configuration = configuration;
+  }
+
+  /**
+   * Loads the snapshot file, then schedules its saves. Does nothing when there is no snapshot file or when already
+   * started.
+   */
+  public synchronized void start() {
+    String file = configuration.getCacheSnapshotFile();
+    if (file == null || shutdownHook != null) {
+      return;
+    }
+    Path path = Paths.get(file);
+    int loaded = load(path);
+    if (log.isDebugEnabled()) {
+      log.debug("Loaded " + loaded + " cache entries from " + path);
+    }
+    long interval = configuration.getCacheSnapshotInterval();
+    if (interval > 0) {
+      scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "mybatis-cache-snapshot");
+        thread.setDaemon(true);
+        return thread;
+      });
+      scheduler.scheduleWithFixedDelay(() -> saveQuietly(path), interval, interval, TimeUnit.MILLISECONDS);
+    }
+    shutdownHook = new Thread(() -> saveQuietly(path), "mybatis-cache-snapshot-shutdown");
+    Runtime.getRuntime().addShutdownHook(shutdownHook);
+  }
+
+  /**
+   * Cancels the scheduled saves, including the one at shutdown.
+   */
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+    if (shutdownHook != null) {
+      try {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      } catch (IllegalStateException e) {
+        // already shutting down
+      }
+      shutdownHook = null;
+    }
+  }
+
+  /**
+   * Writes all the caches to a temporary file that then replaces the snapshot file.
+   *
+   * @return the number of saved entries
+   */
+  public synchronized int save(Path file) throws IOException {
+    Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+    int count;
+    try {
+      count = write(temporaryFile);
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temporaryFile);
+      throw e;
+    }
+    try {
+      Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+    return count;
+  }
+
+  private int write(Path file) throws IOException {
+    int count = 0;
+    try (CacheSnapshotWriter writer = new CacheSnapshotWriter(Files.newOutputStream(file), System.currentTimeMillis())) {
+      for (Cache cache : caches()) {
+        Set<Object> keys = cache.getKeys();
+        if (keys == null) {
+          continue;
+        }
+        writer.startSection(cache.getId(), definitionHash(cache.getId()));
+        for (Object key : keys) {
+          if (writeEntry(writer, cache, key)) {
+            count++;
+          }
+        }
+        writer.endSection();
+      }
+      writer.finish(configuration.getTableVersions().getTableVersions(), configuration.getTableVersions().getCacheVersions());
+    }
+    return count;
+  }
+
+  /**
+   * Puts the entries of a snapshot file in the caches whose statements did not change. A missing file is ignored,
+   * and the caches that were being loaded are cleared if the file is corrupt.
+   *
+   * @return the number of loaded entries
+   */
+  public synchronized int load(Path file) {
+    if (!Files.isRegularFile(file)) {
+      return 0;
+    }
+    int count = 0;
+    List<Cache> loadedCaches = new ArrayList<>();
+    try (CacheSnapshotReader reader = CacheSnapshotReader.open(file)) {
+      while (reader.nextSection()) {
+        String id = reader.getCacheId();
+        if (!configuration.hasCache(id) || !definitionHash(id).equals(reader.getDefinitionHash())) {
+          if (log.isDebugEnabled()) {
+            log.debug("Discarding the stale snapshot of the cache " + id);
+          }
+          continue;
+        }
+        Cache cache = configuration.getCache(id);
+        loadedCaches.add(cache);
+        while (reader.nextEntry()) {
+          try {
+            Object key = serializer.deserialize(reader.getKey());
+            Object value = serializer.deserialize(reader.getValue());
+            if (reader.getWriteTime() == 0) {
+              cache.putObject(key, value);
+            } else {
+              cache.putObject(key, value, EntryMetadata.writtenAt(reader.getWriteTime()));
+            }
+            count++;
+          } catch (CacheException e) {
+            // a class changed or is gone
+            if (log.isDebugEnabled()) {
+              log.debug("Skipping a snapshot entry of the cache " + id + ".  Cause: " + e);
+            }
+          }
+        }
+      }
+      configuration.getTableVersions().restore(reader.getTableVersions(), reader.getCacheVersions());
+    } catch (IOException e) {
+      log.warn("Could not load the cache snapshot " + file + ".  Cause: " + e);
+      // without their versions, stamped keys could be found again after unrelated writes
+      for (Cache cache : loadedCaches) {
+        cache.clear();
+      }
+      return 0;
+    }
+    return count;
+  }
+
+  /**
+   * @return a hash of the mapper resources, statements and result maps that use the cache
+   */
+  public synchronized String definitionHash(String cacheId) {
+    if (definitionHashes == null) {
+      definitionHashes = hashDefinitions();
+    }
+    String hash = definitionHashes.get(cacheId);
+    return hash == null ? "" : hash;
+  }
+
+  private void saveQuietly(Path file) {
+    try {
+      int saved = save(file);
+      if (log.isDebugEnabled()) {
+        log.debug("Saved " + saved + " cache entries to " + file);
+      }
+    } catch (Exception e) {
+      log.warn("Could not save the cache snapshot " + file + ".  Cause: " + e);
+    }
+  }
+
+  private List<Cache> caches() {
+    Map<String, Cache> caches = new LinkedHashMap<>();
+    for (Object cache : configuration.getCaches()) {
+      // short names may be mapped to ambiguities
+      if (cache instanceof Cache) {
+        caches.putIfAbsent(((Cache) cache).getId(), (Cache) cache);
+      }
+    }
+    return new ArrayList<>(caches.values());
+  }
+
+  private boolean writeEntry(CacheSnapshotWriter writer, Cache cache, Object key) throws IOException {
+    Object value = cache.peekObject(key);
+    if (value == null) {
+      // expired or collected since the keys were listed
+      return false;
+    }
+    EntryMetadata metadata = cache.peekMetadata(key);
+    long writeTime = metadata == null ? 0 : metadata.getWriteTime();
+    byte[] serializedKey;
+    byte[] serializedValue;
+    try {
+      serializedKey = serializer.serialize(key);
+      serializedValue = serializer.serialize(value);
+    } catch (CacheException e) {
+      return false;
+    }
+    writer.writeEntry(serializedKey, serializedValue, writeTime);
+    return true;
+  }
+
+  private Map<String, String> hashDefinitions() {
+    Map<String, SortedMap<String, MappedStatement>> statementsByCache = new HashMap<>();
+    for (Object statement : configuration.getMappedStatements()) {
+      if (statement instanceof MappedStatement && ((MappedStatement) statement).getCache() != null) {
+        MappedStatement ms = (MappedStatement) statement;
+        statementsByCache.computeIfAbsent(ms.getCache().getId(), k -> new TreeMap<>()).put(ms.getId(), ms);
+      }
+    }
+    Map<String, byte[]> resourceHashes = new HashMap<>();
+    Map<String, String> hashes = new HashMap<>();
+    for (Map.Entry<String, SortedMap<String, MappedStatement>> statements : statementsByCache.entrySet()) {
+      MessageDigest digest = newDigest();
+      for (MappedStatement ms : statements.getValue().values()) {
+        update(digest, ms.getId(), ms.getSqlCommandType(), ms.getStatementType(), ms.getSqlSource().getClass().getName());
+        for (ResultMap resultMap : ms.getResultMaps()) {
+          update(digest, resultMap.getId(), resultMap.getType().getName());
+          for (ResultMapping mapping : resultMap.getResultMappings()) {
+            update(digest, mapping.getProperty(), mapping.getColumn(), mapping.getJavaType(),
+                mapping.getNestedQueryId(), mapping.getNestedResultMapId());
+          }
+        }
+        if (ms.getResource() != null) {
+          digest.update(resourceHashes.computeIfAbsent(ms.getResource(), this::hashResource));
+        }
+      }
+      hashes.put(statements.getKey(), toHex(digest.digest()));
+    }
+    return hashes;
+  }
+
+  private byte[] hashResource(String resource) {
+    // annotated mappers are "package/Mapper.java (best guess)", their class file is hashed instead
+    String name = resource.endsWith(" (best guess)") ? resource.substring(0, resource.length() - 13) : resource;
+    if (name.endsWith(".java")) {
+      name = name.substring(0, name.length() - 5) + ".class";
+    }
+    MessageDigest digest = newDigest();
+    try (InputStream in = name.contains(":") ? new URL(name).openStream() : Resources.getResourceAsStream(name)) {
+      byte[] buffer = new byte[8192];
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, n);
+      }
+    } catch (IOException e) {
+      // not a readable resource, only its name is hashed
+      update(digest, resource);
+    }
+    return digest.digest();
+  }
+
+  private static void update(MessageDigest digest, Object... values) {
+    for (Object value : values) {
+      String string = value instanceof Class ? ((Class<?>) value).getName() : String.valueOf(value);
+      digest.update(string.getBytes(StandardCharsets.UTF_8));
+      digest.update((byte) 0);
+    }
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new CacheException("SHA-256 is not available.  Cause: " + e, e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+}
@@ -0,0 +1,240 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.weigher;
+
+import java.lang.ref.Reference;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.loader.ResultLoaderMap;
+import org.apache.ibatis.executor.loader.WriteReplaceInterface;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+
+/**
+ * Estimates the heap size of cached values, typically lists of mapped result objects.
+ *
+ * Only a few elements of large collections are measured and the result is extrapolated to the whole collection,
+ * so weighing a list of thousands of rows costs about the same as weighing a handful. Result objects are measured
+ * through their fields up to a limited depth. Serialized values (byte arrays) are weighed exactly.
+ *
+ * Fields are read directly, never through getters, so weighing a lazy loading proxy does not trigger a load. Only
+ * the fields of the proxied result class are measured, not the loaders behind the proxy. Objects shared by the whole
+ * session factory or session (the configuration, mapped statements, executors, caches, meta objects and the like)
+ * only count as a reference, as do the values of static fields.
+ *
+ * The estimation assumes a 64 bit JVM with compressed references. It is meant to compare entries with each other
+ * and with a memory budget, not to be exact.
+ *
+ * @since 3.5.0
+ */
+public class ObjectSizeWeigher implements Weigher {
+
+  private static final int OBJECT_HEADER = 16;
+  private static final int ARRAY_HEADER = 16;
+  private static final int REFERENCE = 4;
+  private static final int SAMPLE_SIZE = 16;
+  private static final int MAX_DEPTH = 8;
+
+  private static final Class<?>[] SHARED_TYPES = { Configuration.class, MappedStatement.class, MetaObject.class,
+      ResultLoaderMap.class, ObjectFactory.class, Executor.class, SqlSession.class, Cache.class, DataSource.class,
+      ClassLoader.class, Thread.class };
+
+  private static final Map<Class<?>, Field[]> shapes = new ConcurrentHashMap<>();
+
+  @Override
+  public int weigh(Object key, Object value) {
+    long size = estimate(value, 0, new IdentityHashMap<>());
+    return (int) Math.min(size, Integer.MAX_VALUE);
+  }
+
+  private long estimate(Object value, int depth, Map<Object, Object> visited) {
+    if (value == null || value instanceof Enum || value instanceof Class) {
+      return 0;
+    }
+    Class<?> type = value.getClass();
+    if (type == String.class) {
+      return 40 + 2L * ((String) value).length();
+    }
+    if (type == byte[].class) {
+      return align(ARRAY_HEADER + ((byte[]) value).length);
+    }
+    if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+      if (value instanceof BigDecimal) {
+        return 72;
+      }
+      return value instanceof BigInteger ? 56 : OBJECT_HEADER;
+    }
+    if (value instanceof Date || value instanceof Temporal) {
+      return 24;
+    }
+    if (isShared(value)) {
+      return 0;
+    }
+    if (depth >= MAX_DEPTH || visited.put(value, value) != null) {
+      return 0;
+    }
+    if (value instanceof Reference) {
+      return 32 + estimate(((Reference<?>) value).get(), depth + 1, visited);
+    }
+    if (type.isArray()) {
+      return estimateArray(value, type.getComponentType(), depth, visited);
+    }
+    if (value instanceof Collection) {
+      Collection<?> collection = (Collection<?>) value;
+      return 40 + align(ARRAY_HEADER + (long) REFERENCE * collection.size())
+          + estimateElements(collection.iterator(), collection.size(), depth, visited);
+    }
+    if (value instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      return 48 + align(ARRAY_HEADER + (long) REFERENCE * map.size()) + 32L * map.size()
+          + estimateElements(map.keySet().iterator(), map.size(), depth, visited)
+          + estimateElements(map.values().iterator(), map.size(), depth, visited);
+    }
+    if (value instanceof WriteReplaceInterface) {
+      // a lazy loading proxy: skip the fields of the enhanced class, which hold the loaders
+      return estimateFields(value, type.getSuperclass(), depth, visited);
+    }
+    return estimateFields(value, type, depth, visited);
+  }
+
+  private static boolean isShared(Object value) {
+    for (Class<?> sharedType : SHARED_TYPES) {
+      if (sharedType.isInstance(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private long estimateArray(Object array, Class<?> componentType, int depth, Map<Object, Object> visited) {
+    int length = Array.getLength(array);
+    if (componentType.isPrimitive()) {
+      return align(ARRAY_HEADER + (long) length * primitiveSize(componentType));
+    }
+    Object[] elements = (Object[]) array;
+    return align(ARRAY_HEADER + (long) length * REFERENCE)
+        + estimateElements(Arrays.asList(elements).iterator(), length, depth, visited);
+  }
+
+  /**
+   * Measures the first elements and extrapolates to the whole collection.
+   */
+  private long estimateElements(Iterator<?> elements, int size, int depth, Map<Object, Object> visited) {
+    long sampled = 0;
+    int count = 0;
+    while (count < SAMPLE_SIZE && elements.hasNext()) {
+      sampled += estimate(elements.next(), depth + 1, visited);
+      count++;
+    }
+    return count == 0 ? 0 : sampled * size / count;
+  }
+
+  private long estimateFields(Object value, Class<?> type, int depth, Map<Object, Object> visited) {
+    long size = OBJECT_HEADER;
+    for (Field field : shapeOf(type)) {
+      Class<?> fieldType = field.getType();
+      if (fieldType.isPrimitive()) {
+        size += primitiveSize(fieldType);
+      } else {
+        size += REFERENCE;
+        try {
+          size += estimate(field.get(value), depth + 1, visited);
+        } catch (IllegalAccessException e) {
+          // count the reference only
+        }
+      }
+    }
+    return align(size);
+  }
+
+  /**
+   * @return the accessible instance fields of the class and its super classes, or none for JDK classes
+   */
+  private static Field[] shapeOf(Class<?> type) {
+    Field[] shape = shapes.get(type);
+    if (shape == null) {
+      List<Field> fields = new ArrayList<>();
+      for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+        if (current.getName().startsWith("java.")) {
+          break;
+        }
+        for (Field field : current.getDeclaredFields()) {
+          if (!Modifier.isStatic(field.getModifiers()) && makeAccessible(field)) {
+            fields.add(field);
+          }
+        }
+      }
+      shape = fields.toArray(new Field[fields.size()]);
+      shapes.put(type, shape);
+    }
+    return shape;
+  }
+
+  private static boolean makeAccessible(Field field) {
+    if (field.isAccessible()) {
+      return true;
+    }
+    if (!Reflector.canControlMemberAccessible()) {
+      return false;
+    }
+    try {
+      field.setAccessible(true);
+      return true;
+    } catch (RuntimeException e) {
+      return false;
+    }
+  }
+
+  private static int primitiveSize(Class<?> type) {
+    if (type == long.class || type == double.class) {
+      return 8;
+    }
+    if (type == int.class || type == float.class) {
+      return 4;
+    }
+    if (type == short.class || type == char.class) {
+      return 2;
+    }
+    return 1;
+  }
+
+  private static long align(long size) {
+    return (size + 7) & ~7L;
+  }
+
+}
@@ -0,0 +1,35 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.weigher;
+
+/**
+ * SPI used by the second level cache to estimate the memory taken by an entry.
+ *
+ * Implementations must be thread safe and have a public no-args constructor.
+ *
+ * @since 3.5.0
+ * @see org.apache.ibatis.cache.decorators.WeightedCache
+ */
+public interface Weigher {
+
+  /**
+   * @param key The key of the entry
+   * @param value The cached value, may be null
+   * @return The weight of the entry, usually an estimation of its size in bytes, never negative
+   */
+  int weigh(Object key, Object value);
+
+}
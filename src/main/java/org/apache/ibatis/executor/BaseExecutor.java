@@ -23,6 +23,7 @@ import java.sql.Statement;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
+import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.cursor.Cursor;
@@ -65,7 +66,8 @@ public abstract class BaseExecutor implements Executor {
   protected BaseExecutor(Configuration configuration, Transaction transaction) {
     this.transaction = transaction;
     this.deferredLoads = new ConcurrentLinkedQueue<>();
-    this.localCache = new PerpetualCache("LocalCache");
+    this.localCache = newLocalCache(configuration);
+    // never bounded, as the output parameters are not pinned while the query runs
     this.localOutputParameterCache = new PerpetualCache("LocalOutputParameterCache");
     this.closed = false;
     this.configuration = configuration;
@@ -164,6 +166,9 @@ public abstract class BaseExecutor implements Executor {
       }
       // issue #601
       deferredLoads.clear();
+      if (localCache instanceof LocalCache) {
+        ((LocalCache) localCache).unpinAll();
+      }
       if (configuration.getLocalCacheScope() == LocalCacheScope.STATEMENT) {
         // issue #482
         clearLocalCache();
@@ -187,6 +192,8 @@ public abstract class BaseExecutor implements Executor {
     if (deferredLoad.canLoad()) {
       deferredLoad.load();
     } else {
+      // the query is running, keep its result until the deferred loads are done
+      pinLocalCache(key);
       deferredLoads.add(new DeferredLoad(resultObject, property, key, localCache, configuration, targetType));
     }
   }
@@ -203,6 +210,7 @@ public abstract class BaseExecutor implements Executor {
     cacheKey.update(boundSql.getSql());
     List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
     TypeHandlerRegistry typeHandlerRegistry = ms.getConfiguration().getTypeHandlerRegistry();
+    MetaObject metaObject = null;
     // mimic DefaultParameterHandler logic
     for (ParameterMapping parameterMapping : parameterMappings) {
       if (parameterMapping.getMode() != ParameterMode.OUT) {
@@ -215,7 +223,9 @@ public abstract class BaseExecutor implements Executor {
         } else if (typeHandlerRegistry.hasTypeHandler(parameterObject.getClass())) {
           value = parameterObject;
         } else {
-          MetaObject metaObject = configuration.newMetaObject(parameterObject);
+          if (metaObject == null) {
+            metaObject = configuration.newMetaObject(parameterObject);
+          }
           value = metaObject.getValue(propertyName);
         }
         cacheKey.update(value);
@@ -319,19 +329,53 @@ public abstract class BaseExecutor implements Executor {
 
   private <E> List<E> queryFromDatabase(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, CacheKey key, BoundSql boundSql) throws SQLException {
     List<E> list;
-    localCache.putObject(key, EXECUTION_PLACEHOLDER);
+    pinLocalCache(key);
     try {
-      list = doQuery(ms, parameter, rowBounds, resultHandler, boundSql);
+      localCache.putObject(key, EXECUTION_PLACEHOLDER);
+      try {
+        list = doQuery(ms, parameter, rowBounds, resultHandler, boundSql);
+      } finally {
+        localCache.removeObject(key);
+      }
+      localCache.putObject(key, list);
     } finally {
-      localCache.removeObject(key);
+      unpinLocalCache(key);
     }
-    localCache.putObject(key, list);
     if (ms.getStatementType() == StatementType.CALLABLE) {
       localOutputParameterCache.putObject(key, parameter);
     }
     return list;
   }
 
+  private void pinLocalCache(Object key) {
+    if (localCache instanceof LocalCache) {
+      ((LocalCache) localCache).pin(key);
+    }
+  }
+
+  private void unpinLocalCache(Object key) {
+    if (localCache instanceof LocalCache) {
+      ((LocalCache) localCache).unpin(key);
+    }
+  }
+
+  /**
+   * @return a bounded local cache when a bound is configured, a plain {@link PerpetualCache} otherwise
+   */
+  private static PerpetualCache newLocalCache(Configuration configuration) {
+    if (configuration.getLocalCacheSize() == null && configuration.getLocalCacheMaxWeight() == null) {
+      return new PerpetualCache("LocalCache");
+    }
+    LocalCache cache = new LocalCache("LocalCache");
+    if (configuration.getLocalCacheSize() != null) {
+      cache.setMaxSize(configuration.getLocalCacheSize());
+    }
+    if (configuration.getLocalCacheMaxWeight() != null) {
+      cache.setMaxWeight(configuration.getLocalCacheMaxWeight());
+    }
+    return cache;
+  }
+
   protected Connection getConnection(Log statementLog) throws SQLException {
     Connection connection = transaction.getConnection();
     if (statementLog.isDebugEnabled()) {
@@ -352,7 +396,7 @@ public abstract class BaseExecutor implements Executor {
     private final String property;
     private final Class<?> targetType;
     private final CacheKey key;
-    private final PerpetualCache localCache;
+    private final Cache localCache;
     private final ObjectFactory objectFactory;
     private final ResultExtractor resultExtractor;
 
@@ -360,7 +404,7 @@ public abstract class BaseExecutor implements Executor {
     public DeferredLoad(MetaObject resultObject,
                         String property,
                         CacheKey key,
-                        PerpetualCache localCache,
+                        Cache localCache,
                         Configuration configuration,
                         Class<?> targetType) {
       this.resultObject = resultObject;
@@ -17,12 +17,19 @@ package org.apache.ibatis.executor;
 
 import java.sql.BatchUpdateException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.apache.ibatis.cache.TableVersions;
+import org.apache.ibatis.cache.weigher.ObjectSizeWeigher;
+import org.apache.ibatis.cache.weigher.Weigher;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
@@ -30,6 +37,7 @@ import org.apache.ibatis.executor.keygen.NoKeyGenerator;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
@@ -42,13 +50,29 @@ public class BatchExecutor extends BaseExecutor {
 
   public static final int BATCH_UPDATE_RETURN_VALUE = Integer.MIN_VALUE + 1002;
 
+  private static final Weigher PARAMETER_WEIGHER = new ObjectSizeWeigher();
+
   private final List<Statement> statementList = new ArrayList<>();
   private final List<BatchResult> batchResultList = new ArrayList<>();
   private String currentSql;
   private MappedStatement currentStatement;
+  private int pendingExecutions;
+  private long pendingBytes;
+  private boolean automaticFlush;
+  // tables written by each batch, null when unknown or when statements are not grouped
+  private final List<Set<String>> tablesList = new ArrayList<>();
+  // rewriter of each batch, null when its executions are batched as they are
+  private final List<MultiRowInsert> insertList = new ArrayList<>();
+  private final Map<String, Integer> declaredRanks = new HashMap<>();
 
   public BatchExecutor(Configuration configuration, Transaction transaction) {
     super(configuration, transaction);
+    List<String> tableOrder = configuration.getBatchTableOrder();
+    if (tableOrder != null) {
+      for (String table : tableOrder) {
+        declaredRanks.putIfAbsent(TableVersions.normalize(table), declaredRanks.size());
+      }
+    }
   }
 
   @Override
@@ -57,13 +81,27 @@ public class BatchExecutor extends BaseExecutor {
     final StatementHandler handler = configuration.newStatementHandler(this, ms, parameterObject, RowBounds.DEFAULT, null, null);
     final BoundSql boundSql = handler.getBoundSql();
     final String sql = boundSql.getSql();
+    final boolean grouping = configuration.isBatchStatementGrouping();
+    final Set<String> tables = grouping ? configuration.getTableVersions().getTables(ms, boundSql) : null;
+    final int index;
+    if (grouping) {
+      index = groupIndexOf(ms, sql, tables);
+    } else {
+      index = sql.equals(currentSql) && ms.equals(currentStatement) ? statementList.size() - 1 : -1;
+    }
+    final MultiRowInsert insert = index >= 0 ? insertList.get(index)
+        : MultiRowInsert.newInstance(ms, boundSql, configuration.getBatchInsertRows());
+    if (insert != null) {
+      addInsertRow(ms, sql, index, insert, handler, parameterObject, tables);
+      flushIfRequired(ms, parameterObject);
+      return BATCH_UPDATE_RETURN_VALUE;
+    }
     final Statement stmt;
-    if (sql.equals(currentSql) && ms.equals(currentStatement)) {
-      int last = statementList.size() - 1;
-      stmt = statementList.get(last);
+    if (index >= 0) {
+      stmt = statementList.get(index);
       applyTransactionTimeout(stmt);
      handler.parameterize(stmt);//fix Issues 322
-      BatchResult batchResult = batchResultList.get(last);
+      BatchResult batchResult = batchResultList.get(index);
       batchResult.addParameterObject(parameterObject);
     } else {
       Connection connection = getConnection(ms.getStatementLog());
@@ -73,12 +111,116 @@ public class BatchExecutor extends BaseExecutor {
       currentStatement = ms;
       statementList.add(stmt);
       batchResultList.add(new BatchResult(ms, sql, parameterObject));
+      tablesList.add(tables);
+      insertList.add(null);
     }
   // handler.parameterize(stmt);
     handler.batch(stmt);
+    flushIfRequired(ms, parameterObject);
     return BATCH_UPDATE_RETURN_VALUE;
   }
 
+  private void addInsertRow(MappedStatement ms, String sql, int index, MultiRowInsert insert, StatementHandler handler,
+      Object parameterObject, Set<String> tables) throws SQLException {
+    int batchIndex = index;
+    if (batchIndex < 0) {
+      // the multi-row statement is prepared when its first rows are complete
+      batchIndex = statementList.size();
+      currentSql = sql;
+      currentStatement = ms;
+      statementList.add(null);
+      batchResultList.add(new BatchResult(ms, sql));
+      tablesList.add(tables);
+      insertList.add(insert);
+    }
+    if (insert.addRow(handler, transaction.getConnection())) {
+      Statement stmt = statementList.get(batchIndex);
+      if (stmt == null) {
+        stmt = prepareInsert(ms, insert, insert.getRowsPerStatement());
+        statementList.set(batchIndex, stmt);
+      }
+      applyTransactionTimeout(stmt);
+      insert.addBatch((PreparedStatement) stmt);
+    }
+    batchResultList.get(batchIndex).addParameterObject(parameterObject);
+  }
+
+  private Statement prepareInsert(MappedStatement ms, MultiRowInsert insert, int rows) throws SQLException {
+    BoundSql boundSql = new BoundSql(configuration, insert.getSql(rows), Collections.emptyList(), null);
+    StatementHandler handler = configuration.newStatementHandler(this, ms, null, RowBounds.DEFAULT, null, boundSql);
+    return handler.prepare(getConnection(ms.getStatementLog()), transaction.getTimeout());
+  }
+
+  /**
+   * Looks for an open batch of the same statement that this execution can join. Joining a batch moves the execution
+   * before the batches opened after it, so the search stops at the first of them that writes one of its tables, a
+   * table that must be written first, or a table whose order to its tables is not declared by batchTableOrder.
+   *
+   * @return the index of the batch or -1 if a new batch must be opened
+   */
+  private int groupIndexOf(MappedStatement ms, String sql, Set<String> tables) {
+    boolean delete = ms.getSqlCommandType() == SqlCommandType.DELETE;
+    for (int i = batchResultList.size() - 1; i >= 0; i--) {
+      BatchResult batchResult = batchResultList.get(i);
+      if (sql.equals(batchResult.getSql()) && ms.equals(batchResult.getMappedStatement())) {
+        return i;
+      }
+      if (mustPrecede(batchResult.getMappedStatement(), tablesList.get(i), delete, tables)) {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  private boolean mustPrecede(MappedStatement batched, Set<String> batchedTables, boolean delete, Set<String> tables) {
+    if (tables == null || batchedTables == null || delete != (batched.getSqlCommandType() == SqlCommandType.DELETE)) {
+      // unknown tables, or deletes and writes that could depend on each other in any direction
+      return true;
+    }
+    for (String batchedTable : batchedTables) {
+      for (String table : tables) {
+        Integer batchedRank = rank(batchedTable, delete);
+        Integer rank = rank(table, delete);
+        if (batchedTable.equals(table) || batchedRank == null || rank == null || batchedRank < rank) {
+          // tables that are not both declared may reference each other
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Tables are inserted and updated in the declared order, parents first, and deleted in the reverse order.
+   *
+   * @return the rank of the table, null when it is not declared
+   */
+  private Integer rank(String table, boolean delete) {
+    Integer declared = declaredRanks.get(table);
+    if (declared == null) {
+      return null;
+    }
+    return delete ? -declared : declared;
+  }
+
+  private void flushIfRequired(MappedStatement ms, Object parameterObject) throws SQLException {
+    pendingExecutions++;
+    Integer flushSize = ms.getBatchFlushSize() != null ? ms.getBatchFlushSize() : configuration.getBatchFlushSize();
+    Long flushBytes = ms.getBatchFlushBytes() != null ? ms.getBatchFlushBytes() : configuration.getBatchFlushBytes();
+    if (flushBytes != null) {
+      pendingBytes += PARAMETER_WEIGHER.weigh(null, parameterObject);
+    }
+    if ((flushSize != null && pendingExecutions >= flushSize) || (flushBytes != null && pendingBytes >= flushBytes)) {
+      // all pending statements are executed, in order, so that rows this statement depends on are written first
+      automaticFlush = true;
+      try {
+        doFlushStatements(false);
+      } finally {
+        automaticFlush = false;
+      }
+    }
+  }
+
   @Override
   public <E> List<E> doQuery(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql)
       throws SQLException {
@@ -117,20 +259,15 @@ public class BatchExecutor extends BaseExecutor {
       }
       for (int i = 0, n = statementList.size(); i < n; i++) {
         Statement stmt = statementList.get(i);
-        applyTransactionTimeout(stmt);
         BatchResult batchResult = batchResultList.get(i);
+        MultiRowInsert insert = insertList.get(i);
         try {
-          batchResult.setUpdateCounts(stmt.executeBatch());
-          MappedStatement ms = batchResult.getMappedStatement();
-          List<Object> parameterObjects = batchResult.getParameterObjects();
-          KeyGenerator keyGenerator = ms.getKeyGenerator();
-          if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
-            Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
-            jdbc3KeyGenerator.processBatch(ms, stmt, parameterObjects);
-          } else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
-            for (Object parameter : parameterObjects) {
-              keyGenerator.processAfter(this, ms, stmt, parameter);
-            }
+          if (insert != null) {
+            executeInserts(insert, stmt, batchResult);
+          } else {
+            applyTransactionTimeout(stmt);
+            batchResult.setUpdateCounts(stmt.executeBatch());
+            processGeneratedKeys(batchResult.getMappedStatement(), stmt, batchResult.getParameterObjects());
           }
           // Close statement to close cursor #1109
           closeStatement(stmt);
@@ -150,6 +287,10 @@ public class BatchExecutor extends BaseExecutor {
         }
         results.add(batchResult);
       }
+      BatchFlushListener listener = configuration.getBatchFlushListener();
+      if (listener != null && !results.isEmpty()) {
+        listener.flushed(results, automaticFlush);
+      }
       return results;
     } finally {
       for (Statement stmt : statementList) {
@@ -158,6 +299,46 @@ public class BatchExecutor extends BaseExecutor {
       currentSql = null;
       statementList.clear();
       batchResultList.clear();
+      tablesList.clear();
+      insertList.clear();
+      pendingExecutions = 0;
+      pendingBytes = 0;
+    }
+  }
+
+  private void executeInserts(MultiRowInsert insert, Statement stmt, BatchResult batchResult) throws SQLException {
+    MappedStatement ms = batchResult.getMappedStatement();
+    List<Object> parameterObjects = batchResult.getParameterObjects();
+    int rowCount = parameterObjects.size();
+    int pendingRowCount = insert.getPendingRowCount();
+    int[] updateCounts = new int[rowCount];
+    if (stmt != null) {
+      applyTransactionTimeout(stmt);
+      MultiRowInsert.spreadUpdateCounts(stmt.executeBatch(), insert.getRowsPerStatement(), updateCounts, 0);
+      processGeneratedKeys(ms, stmt, parameterObjects.subList(0, rowCount - pendingRowCount));
+    }
+    if (pendingRowCount > 0) {
+      Statement remainder = prepareInsert(ms, insert, pendingRowCount);
+      try {
+        insert.addBatch((PreparedStatement) remainder);
+        MultiRowInsert.spreadUpdateCounts(remainder.executeBatch(), pendingRowCount, updateCounts, rowCount - pendingRowCount);
+        processGeneratedKeys(ms, remainder, parameterObjects.subList(rowCount - pendingRowCount, rowCount));
+      } finally {
+        closeStatement(remainder);
+      }
+    }
+    batchResult.setUpdateCounts(updateCounts);
+  }
+
+  private void processGeneratedKeys(MappedStatement ms, Statement stmt, List<Object> parameterObjects) {
+    KeyGenerator keyGenerator = ms.getKeyGenerator();
+    if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
+      Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
+      jdbc3KeyGenerator.processBatch(ms, stmt, parameterObjects);
+    } else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
+      for (Object parameter : parameterObjects) {
+        keyGenerator.processAfter(this, ms, stmt, parameter);
+      }
     }
   }
 
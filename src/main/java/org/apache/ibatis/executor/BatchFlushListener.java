@@ -0,0 +1,37 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.util.List;
+
+/**
+ * Receives the results of each flush of a {@link BatchExecutor}.
+ *
+ * Results of the automatic flushes triggered by {@code batchFlushSize} or {@code batchFlushBytes} are only reported
+ * here: they are not returned by a later {@code flushStatements()}, so that their parameter objects can be released.
+ *
+ * @since 3.5.0
+ */
+public interface BatchFlushListener {
+
+  /**
+   * @param batchResults the results of the statements executed by the flush, in execution order
+   * @param automatic whether the flush was triggered by a flush threshold rather than by the application,
+   *          a commit or a select
+   */
+  void flushed(List<BatchResult> batchResults, boolean automatic);
+
+}
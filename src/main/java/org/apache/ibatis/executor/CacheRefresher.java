@@ -0,0 +1,136 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.EntryMetadata;
+import org.apache.ibatis.cache.RefreshRequest;
+import org.apache.ibatis.cache.decorators.ExpiringCache;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.TransactionFactory;
+
+/**
+ * Reloads second level cache entries in the background, for caches that refresh ahead.
+ *
+ * Each refresh runs the statement again in its own transaction, so that it only reads committed data, and puts the
+ * result in the cache unless the entry was removed or the cache cleared in the meantime. Refreshes that do not fit
+ * in the queue, fail or are made after {@link #shutdown()} are dropped: their request is canceled so that a later
+ * read asks for them again, and the entry expires as usual if none does.
+ *
+ * @see ExpiringCache
+ * @since 3.5.0
+ */
+public class CacheRefresher {
+
+  private static final Log log = LogFactory.getLog(CacheRefresher.class);
+
+  private static final int MAX_PENDING_REFRESHES = 1024;
+
+  private final Configuration configuration;
+  private final ThreadPoolExecutor loaders;
+
+  public CacheRefresher(Configuration configuration, int threads) {
+    this.configuration = configuration;
+    this.loaders = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(MAX_PENDING_REFRESHES), new LoaderThreadFactory());
+    this.loaders.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Schedules the refresh of a cached query result.
+   *
+   * @param key the key of the query in the local cache
+   * @param cacheKey the key of the result in the second level cache
+   * @param request the request of the refresh, canceled if the refresh is not made
+   */
+  public void refresh(MappedStatement ms, Object parameterObject, RowBounds rowBounds, BoundSql boundSql,
+      CacheKey key, CacheKey cacheKey, RefreshRequest request) {
+    try {
+      loaders.execute(() -> load(ms, parameterObject, rowBounds, boundSql, key, cacheKey, request));
+    } catch (RejectedExecutionException e) {
+      request.cancel();
+    }
+  }
+
+  public void shutdown() {
+    loaders.shutdownNow();
+  }
+
+  protected Executor newExecutor() {
+    final Environment environment = configuration.getEnvironment();
+    if (environment == null) {
+      throw new ExecutorException("CacheRefresher could not refresh.  Environment was not configured.");
+    }
+    final DataSource ds = environment.getDataSource();
+    if (ds == null) {
+      throw new ExecutorException("CacheRefresher could not refresh.  DataSource was not configured.");
+    }
+    final TransactionFactory transactionFactory = environment.getTransactionFactory();
+    final Transaction tx = transactionFactory.newTransaction(ds, null, false);
+    // not a CachingExecutor, that would return the cached result
+    return new SimpleExecutor(configuration, tx);
+  }
+
+  private void load(MappedStatement ms, Object parameterObject, RowBounds rowBounds, BoundSql boundSql,
+      CacheKey key, CacheKey cacheKey, RefreshRequest request) {
+    try {
+      Executor executor = newExecutor();
+      try {
+        if (!key.equals(executor.createCacheKey(ms, parameterObject, rowBounds, boundSql))) {
+          // the parameter object was changed after the query, it does not match the cached result anymore
+          request.cancel();
+          return;
+        }
+        List<Object> list = executor.query(ms, parameterObject, rowBounds, Executor.NO_RESULT_HANDLER, key, boundSql);
+        ms.getCache().putObject(cacheKey, list, EntryMetadata.refreshed(request, ms.getExpireAfterWrite()));
+      } finally {
+        executor.close(false);
+      }
+    } catch (Exception e) {
+      request.cancel();
+      log.warn("Could not refresh the cached result of " + ms.getId() + ".  Cause: " + e);
+    }
+  }
+
+  private static class LoaderThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "mybatis-cache-refresher-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+}
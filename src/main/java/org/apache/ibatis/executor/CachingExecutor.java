@@ -15,12 +15,23 @@
  */
 package org.apache.ibatis.executor;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.CacheLookup;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.TableVersions;
 import org.apache.ibatis.cache.TransactionalCacheManager;
+import org.apache.ibatis.cache.decorators.PartitionedCache;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
@@ -28,6 +39,8 @@ import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
 import org.apache.ibatis.mapping.StatementType;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.CacheInvalidationScope;
+import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.transaction.Transaction;
@@ -38,11 +51,27 @@ import org.apache.ibatis.transaction.Transaction;
  */
 public class CachingExecutor implements Executor {
 
+  private static final Set<Class<?>> IMMUTABLE_SCALARS = new HashSet<>(Arrays.<Class<?>>asList(String.class,
+      Integer.class, Long.class, Short.class, Byte.class, Double.class, Float.class, BigInteger.class, BigDecimal.class,
+      Boolean.class, Character.class, UUID.class));
+
   private final Executor delegate;
-  private final TransactionalCacheManager tcm = new TransactionalCacheManager();
+  private final TransactionalCacheManager tcm;
+  /** the key of the last asynchronous lookup that missed, which the query that follows does not look up again */
+  private CacheKey missedKey;
 
   public CachingExecutor(Executor delegate) {
+    this(delegate, null);
+  }
+
+  /**
+   * @param configuration the configuration providing the invalidation bus and the admission policies of the caches,
+   *          may be null
+   * @since 3.5.0
+   */
+  public CachingExecutor(Executor delegate, Configuration configuration) {
     this.delegate = delegate;
+    this.tcm = new TransactionalCacheManager(configuration);
     delegate.setExecutorWrapper(this);
   }
 
@@ -72,7 +101,11 @@ public class CachingExecutor implements Executor {
 
   @Override
   public int update(MappedStatement ms, Object parameterObject) throws SQLException {
-    flushCacheIfRequired(ms);
+    if (isTableScoped(ms)) {
+      invalidateTablesIfRequired(ms, parameterObject);
+    } else {
+      flushCacheIfRequired(ms, parameterObject);
+    }
     return delegate.update(ms, parameterObject);
   }
 
@@ -85,7 +118,7 @@ public class CachingExecutor implements Executor {
 
   @Override
   public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException {
-    flushCacheIfRequired(ms);
+    flushCacheIfRequired(ms, parameter);
     return delegate.queryCursor(ms, parameter, rowBounds);
   }
 
@@ -94,14 +127,42 @@ public class CachingExecutor implements Executor {
       throws SQLException {
     Cache cache = ms.getCache();
     if (cache != null) {
-      flushCacheIfRequired(ms);
+      flushCacheIfRequired(ms, parameterObject);
       if (ms.isUseCache() && resultHandler == null) {
         ensureNoOutParams(ms, boundSql);
-        @SuppressWarnings("unchecked")
-        List<E> list = (List<E>) tcm.getObject(cache, key);
+        CacheKey cacheKey = key;
+        if (isTableScoped(ms)) {
+          TableVersions tableVersions = ms.getConfiguration().getTableVersions();
+          Set<String> tables = tableVersions.getTables(ms, boundSql);
+          if (tcm.isInvalidated(cache, tables)) {
+            // this session wrote some of the tables, neither read nor populate the cache until commit
+            return delegate.query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
+          }
+          cacheKey = tableVersions.stamp(key, cache, tables);
+        }
+        cacheKey = PartitionedCache.key(cacheKey, partitionOf(ms, cache, parameterObject));
+        List<E> list = null;
+        boolean missed = cacheKey.equals(missedKey);
+        missedKey = null;
+        if (!missed) {
+          CacheLookup lookup = tcm.lookupObject(cache, cacheKey);
+          @SuppressWarnings("unchecked")
+          List<E> cached = (List<E>) lookup.getValue();
+          list = cached;
+          if (lookup.getRefreshRequest() != null) {
+            ms.getConfiguration().getCacheRefresher().refresh(ms, parameterObject, rowBounds, boundSql, key, cacheKey,
+                lookup.getRefreshRequest());
+          }
+        }
         if (list == null) {
+          long start = System.nanoTime();
           list = delegate.query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
-          tcm.putObject(cache, key, list); // issue #578 and #116
+          if (ms.getExpireAfterWrite() != null) {
+            tcm.putObject(cache, cacheKey, list, ms.getExpireAfterWrite());
+          } else {
+            tcm.putObject(cache, cacheKey, list); // issue #578 and #116
+          }
+          recordLoadTime(ms, cache, System.nanoTime() - start);
         }
         return list;
       }
@@ -109,6 +170,45 @@ public class CachingExecutor implements Executor {
     return delegate.query(ms, parameterObject, rowBounds, resultHandler, key, boundSql);
   }
 
+  /**
+   * Looks the result up without blocking if the cache is an {@link org.apache.ibatis.cache.AsyncCache}. On a miss the
+   * session runs the query, which does not look the same key up again.
+   *
+   * @since 3.5.0
+   */
+  @Override
+  public <E> CompletableFuture<List<E>> lookupAsync(MappedStatement ms, Object parameterObject, RowBounds rowBounds) {
+    Cache cache = ms.getCache();
+    if (cache == null || !ms.isUseCache() || ms.isFlushCacheRequired()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    BoundSql boundSql = ms.getBoundSql(parameterObject);
+    CacheKey key = createCacheKey(ms, parameterObject, rowBounds, boundSql);
+    ensureNoOutParams(ms, boundSql);
+    CacheKey cacheKey = key;
+    if (isTableScoped(ms)) {
+      TableVersions tableVersions = ms.getConfiguration().getTableVersions();
+      Set<String> tables = tableVersions.getTables(ms, boundSql);
+      if (tcm.isInvalidated(cache, tables)) {
+        return CompletableFuture.completedFuture(null);
+      }
+      cacheKey = tableVersions.stamp(key, cache, tables);
+    }
+    CacheKey lookupKey = PartitionedCache.key(cacheKey, partitionOf(ms, cache, parameterObject));
+    return tcm.lookupObjectAsync(cache, lookupKey).thenApply(lookup -> {
+      if (lookup.getRefreshRequest() != null) {
+        ms.getConfiguration().getCacheRefresher().refresh(ms, parameterObject, rowBounds, boundSql, key, lookupKey,
+            lookup.getRefreshRequest());
+      }
+      if (lookup.getValue() == null) {
+        missedKey = lookupKey;
+      }
+      @SuppressWarnings("unchecked")
+      List<E> list = (List<E>) lookup.getValue();
+      return list;
+    });
+  }
+
   @Override
   public List<BatchResult> flushStatements() throws SQLException {
     return delegate.flushStatements();
@@ -161,13 +261,76 @@ public class CachingExecutor implements Executor {
     delegate.clearLocalCache();
   }
 
-  private void flushCacheIfRequired(MappedStatement ms) {
+  private void recordLoadTime(MappedStatement ms, Cache cache, long nanos) {
+    CacheMetrics metrics = ms.getConfiguration().getCacheMetrics(cache.getId());
+    if (metrics != null) {
+      metrics.recordLoadTime(nanos);
+    }
+  }
+
+  private boolean isTableScoped(MappedStatement ms) {
+    return ms.getConfiguration().getCacheInvalidationScope() == CacheInvalidationScope.TABLE;
+  }
+
+  private void invalidateTablesIfRequired(MappedStatement ms, Object parameterObject) {
+    if (!ms.isFlushCacheRequired()) {
+      return;
+    }
+    TableVersions tableVersions = ms.getConfiguration().getTableVersions();
+    Set<String> tables = tableVersions.getTables(ms, ms.getBoundSql(parameterObject));
+    if (tables != null) {
+      tcm.invalidate(tableVersions, ms.getCache(), tables);
+    } else if (ms.getCache() != null) {
+      tcm.clear(ms.getCache());
+    }
+  }
+
+  private void flushCacheIfRequired(MappedStatement ms, Object parameterObject) {
     Cache cache = ms.getCache();
-    if (cache != null && ms.isFlushCacheRequired()) {      
-      tcm.clear(cache);
+    if (cache != null && ms.isFlushCacheRequired()) {
+      Object partition = partitionOf(ms, cache, parameterObject);
+      if (partition != null) {
+        tcm.clear(cache, partition);
+      } else {
+        tcm.clear(cache);
+      }
     }
   }
 
+  /**
+   * @return the partition of a partitioned cache selected by the parameter, or null for none
+   */
+  private Object partitionOf(MappedStatement ms, Cache cache, Object parameterObject) {
+    if (!(cache instanceof PartitionedCache)) {
+      return null;
+    }
+    String partitionBy = ((PartitionedCache) cache).getPartitionBy();
+    if ("_databaseId".equals(partitionBy)) {
+      return ms.getConfiguration().getDatabaseId();
+    }
+    if (parameterObject == null) {
+      return null;
+    }
+    Object partition;
+    if ("_parameter".equals(partitionBy)) {
+      partition = parameterObject;
+    } else {
+      MetaObject metaObject = ms.getConfiguration().newMetaObject(parameterObject);
+      partition = metaObject.hasGetter(partitionBy) ? metaObject.getValue(partitionBy) : null;
+    }
+    if (partition != null && !isImmutableScalar(partition)) {
+      // a partition changed after it was used would hold entries of another one
+      throw new ExecutorException("The partition of the cache " + cache.getId() + " must be a string, a number, a "
+          + "boolean, a character, an enum or a UUID, but " + partitionBy + " of " + ms.getId() + " is a "
+          + partition.getClass().getName());
+    }
+    return partition;
+  }
+
+  private static boolean isImmutableScalar(Object value) {
+    return IMMUTABLE_SCALARS.contains(value.getClass()) || value instanceof Enum;
+  }
+
   @Override
   public void setExecutorWrapper(Executor executor) {
     throw new UnsupportedOperationException("This method should not be called");
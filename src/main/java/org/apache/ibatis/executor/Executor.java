@@ -17,6 +17,7 @@ package org.apache.ibatis.executor;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.ibatis.cache.CacheKey;
 import org.apache.ibatis.cursor.Cursor;
@@ -40,6 +41,18 @@ public interface Executor {
 
   <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException;
 
+  /**
+   * Looks the result of the query up in the second level cache without blocking. The asynchronous selects of a
+   * session call it first, and on a miss run {@link #query(MappedStatement, Object, RowBounds, ResultHandler)} on the
+   * asynchronous executor of the configuration.
+   *
+   * @return the cached result, or null when it must be queried
+   * @since 3.5.0
+   */
+  default <E> CompletableFuture<List<E>> lookupAsync(MappedStatement ms, Object parameter, RowBounds rowBounds) {
+    return CompletableFuture.completedFuture(null);
+  }
+
   <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) throws SQLException;
 
   List<BatchResult> flushStatements() throws SQLException;
@@ -0,0 +1,176 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.weigher.ObjectSizeWeigher;
+import org.apache.ibatis.cache.weigher.Weigher;
+
+/**
+ * The session cache of an executor, optionally bounded by a number of entries and/or a total weight.
+ *
+ * Once a bound is exceeded the least recently used entries are evicted. Entries can be pinned so that they stay
+ * in the cache whatever the bounds: the executor pins the queries that are running, whose execution placeholder
+ * resolves circular references, and the queries that deferred loads are waiting for.
+ * <p>
+ * It extends {@link PerpetualCache}, the declared type of the executor caches, but keeps its entries on its own.
+ *
+ * @since 3.5.0
+ */
+public class LocalCache extends PerpetualCache {
+
+  private final Map<Object, Entry> entries = new LinkedHashMap<>(16, .75F, true);
+  private final Map<Object, Integer> pins = new HashMap<>();
+  private int maxSize = Integer.MAX_VALUE;
+  private long maxWeight = Long.MAX_VALUE;
+  private Weigher weigher;
+  private long totalWeight;
+
+  public LocalCache(String id) {
+    super(id);
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public void setMaxSize(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  public long getMaxWeight() {
+    return maxWeight;
+  }
+
+  /**
+   * Entries are only weighed when a max weight is set.
+   */
+  public void setMaxWeight(long maxWeight) {
+    this.maxWeight = maxWeight;
+    if (weigher == null) {
+      weigher = new ObjectSizeWeigher();
+    }
+  }
+
+  public void setWeigher(Weigher weigher) {
+    this.weigher = weigher;
+  }
+
+  public long getTotalWeight() {
+    return totalWeight;
+  }
+
+  @Override
+  public int getSize() {
+    return entries.size();
+  }
+
+  /**
+   * The session cache is not saved in cache snapshots, it neither lists its keys nor peeks its entries.
+   */
+  @Override
+  public Set<Object> getKeys() {
+    return null;
+  }
+
+  @Override
+  public Object peekObject(Object key) {
+    return null;
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    discard(key);
+    int weight = maxWeight == Long.MAX_VALUE || value instanceof ExecutionPlaceholder ? 0 : weigher.weigh(key, value);
+    entries.put(key, new Entry(value, weight));
+    totalWeight += weight;
+    evictEntries();
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    Entry entry = entries.get(key);
+    return entry == null ? null : entry.value;
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Entry entry = discard(key);
+    return entry == null ? null : entry.value;
+  }
+
+  @Override
+  public void clear() {
+    entries.clear();
+    totalWeight = 0;
+  }
+
+  /**
+   * Keeps the entry of the key, current or future, until it is unpinned as many times as it was pinned.
+   */
+  public void pin(Object key) {
+    pins.merge(key, 1, Integer::sum);
+  }
+
+  public void unpin(Object key) {
+    pins.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+    evictEntries();
+  }
+
+  public void unpinAll() {
+    pins.clear();
+    evictEntries();
+  }
+
+  private Entry discard(Object key) {
+    Entry entry = entries.remove(key);
+    if (entry != null) {
+      totalWeight -= entry.weight;
+    }
+    return entry;
+  }
+
+  private void evictEntries() {
+    if (entries.size() <= maxSize && totalWeight <= maxWeight) {
+      return;
+    }
+    Iterator<Map.Entry<Object, Entry>> eldest = entries.entrySet().iterator();
+    while ((entries.size() > maxSize || totalWeight > maxWeight) && eldest.hasNext()) {
+      Map.Entry<Object, Entry> entry = eldest.next();
+      if (!pins.containsKey(entry.getKey())) {
+        eldest.remove();
+        totalWeight -= entry.getValue().weight;
+      }
+    }
+  }
+
+  private static class Entry {
+    private final Object value;
+    private final int weight;
+
+    Entry(Object value, int weight) {
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+
+}
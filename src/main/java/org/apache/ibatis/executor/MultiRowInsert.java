@@ -0,0 +1,236 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+
+/**
+ * Rewrites the batched executions of an {@code INSERT ... VALUES (...)} statement into statements that insert
+ * several rows at once.
+ *
+ * The parameters of each execution are still bound by its statement handler, but on a statement that records them.
+ * They are replayed on the multi-row statement once enough rows are pending, shifted by the parameters of the
+ * preceding rows.
+ */
+class MultiRowInsert {
+
+  private final String prefix;
+  private final String values;
+  private final int parameterCount;
+  private final int rowsPerStatement;
+  private final List<List<Binding>> pendingRows = new ArrayList<>();
+
+  private MultiRowInsert(String prefix, String values, int parameterCount, int rowsPerStatement) {
+    this.prefix = prefix;
+    this.values = values;
+    this.parameterCount = parameterCount;
+    this.rowsPerStatement = rowsPerStatement;
+  }
+
+  /**
+   * @return the rewriter of the statement or null when it is not a prepared insert of a single row, with all its
+   *     placeholders in the VALUES clause, or when rows are not to be grouped
+   */
+  static MultiRowInsert newInstance(MappedStatement ms, BoundSql boundSql, Integer rowsPerStatement) {
+    if (rowsPerStatement == null || rowsPerStatement < 2 || ms.getSqlCommandType() != SqlCommandType.INSERT
+        || ms.getStatementType() != StatementType.PREPARED) {
+      return null;
+    }
+    String sql = boundSql.getSql();
+    char quote = 0;
+    int depth = 0;
+    int placeholders = 0;
+    int valuesEnd = -1;
+    int rowStart = -1;
+    int rowEnd = -1;
+    for (int i = 0; i < sql.length(); i++) {
+      char c = sql.charAt(i);
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (rowEnd >= 0 || (valuesEnd >= 0 && rowStart < 0 && c != '(')) {
+        // only white spaces may follow the VALUES keyword and the row
+        if (!Character.isWhitespace(c)) {
+          return null;
+        }
+      } else if (c == '\'' || c == '"' || c == '`') {
+        quote = c;
+      } else if (c == '?') {
+        if (valuesEnd < 0) {
+          return null;
+        }
+        placeholders++;
+      } else if (c == '(') {
+        if (depth == 0 && valuesEnd >= 0) {
+          rowStart = i;
+        }
+        depth++;
+      } else if (c == ')') {
+        depth--;
+        if (depth == 0 && rowStart >= 0) {
+          rowEnd = i;
+        }
+      } else if (depth == 0 && valuesEnd < 0 && isKeyword(sql, i, "values")) {
+        valuesEnd = i + "values".length();
+        i = valuesEnd - 1;
+      }
+    }
+    if (rowEnd < 0 || quote != 0 || placeholders != boundSql.getParameterMappings().size()) {
+      return null;
+    }
+    return new MultiRowInsert(sql.substring(0, rowStart), sql.substring(rowStart, rowEnd + 1), placeholders, rowsPerStatement);
+  }
+
+  private static boolean isKeyword(String sql, int start, String keyword) {
+    int end = start + keyword.length();
+    return sql.regionMatches(true, start, keyword, 0, keyword.length())
+        && (start == 0 || !Character.isJavaIdentifierPart(sql.charAt(start - 1)))
+        && (end == sql.length() || !Character.isJavaIdentifierPart(sql.charAt(end)));
+  }
+
+  int getRowsPerStatement() {
+    return rowsPerStatement;
+  }
+
+  int getPendingRowCount() {
+    return pendingRows.size();
+  }
+
+  /**
+   * @return the statement inserting the given number of rows
+   */
+  String getSql(int rows) {
+    StringBuilder sql = new StringBuilder(prefix.length() + rows * (values.length() + 2));
+    sql.append(prefix).append(values);
+    for (int i = 1; i < rows; i++) {
+      sql.append(", ").append(values);
+    }
+    return sql.toString();
+  }
+
+  /**
+   * Records the parameters of one more row.
+   *
+   * @return true when a statement of {@link #getRowsPerStatement()} rows can be batched
+   */
+  boolean addRow(StatementHandler handler, Connection connection) throws SQLException {
+    Recorder recorder = new Recorder(connection);
+    handler.parameterize((PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+        new Class<?>[] { PreparedStatement.class }, recorder));
+    pendingRows.add(recorder.bindings);
+    return pendingRows.size() == rowsPerStatement;
+  }
+
+  /**
+   * Binds all the pending rows to a statement of as many rows and adds it to its batch.
+   */
+  void addBatch(PreparedStatement statement) throws SQLException {
+    for (int row = 0; row < pendingRows.size(); row++) {
+      for (Binding binding : pendingRows.get(row)) {
+        binding.apply(statement, row * parameterCount);
+      }
+    }
+    statement.addBatch();
+    pendingRows.clear();
+  }
+
+  /**
+   * Spreads the update counts of multi-row statements over their rows: a row counts 1 when its statement inserted
+   * all its rows and {@link Statement#SUCCESS_NO_INFO} otherwise.
+   *
+   * @return the index of the row after the last one that got a count
+   */
+  static int spreadUpdateCounts(int[] statementCounts, int rowsPerStatement, int[] rowCounts, int firstRow) {
+    int row = firstRow;
+    for (int statementCount : statementCounts) {
+      int rowCount = statementCount == rowsPerStatement ? 1 : Statement.SUCCESS_NO_INFO;
+      for (int i = 0; i < rowsPerStatement; i++) {
+        rowCounts[row++] = rowCount;
+      }
+    }
+    return row;
+  }
+
+  private static class Binding {
+    private final Method method;
+    private final Object[] args;
+
+    Binding(Method method, Object[] args) {
+      this.method = method;
+      this.args = args;
+    }
+
+    void apply(PreparedStatement statement, int offset) throws SQLException {
+      Object[] shiftedArgs = args.clone();
+      shiftedArgs[0] = (Integer) args[0] + offset;
+      try {
+        method.invoke(statement, shiftedArgs);
+      } catch (InvocationTargetException e) {
+        Throwable cause = e.getTargetException();
+        if (cause instanceof SQLException) {
+          throw (SQLException) cause;
+        }
+        throw new ExecutorException("Error binding a row of a multi-row insert.  Cause: " + cause, cause);
+      } catch (IllegalAccessException e) {
+        throw new ExecutorException("Error binding a row of a multi-row insert.  Cause: " + e, e);
+      }
+    }
+  }
+
+  private static class Recorder implements InvocationHandler {
+    private final Connection connection;
+    private final List<Binding> bindings = new ArrayList<>();
+
+    Recorder(Connection connection) {
+      this.connection = connection;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      String name = method.getName();
+      if (Object.class.equals(method.getDeclaringClass())) {
+        return method.invoke(this, args);
+      } else if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+        bindings.add(new Binding(method, args));
+        return null;
+      } else if ("clearParameters".equals(name)) {
+        bindings.clear();
+        return null;
+      } else if ("getConnection".equals(name)) {
+        // type handlers use it to create arrays and lobs
+        return connection;
+      }
+      throw new ExecutorException("Method " + name + " is not supported while binding a row of a multi-row insert.");
+    }
+  }
+
+}
@@ -0,0 +1,249 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.TableVersions;
+import org.apache.ibatis.cache.TransactionalCacheManager;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.jdbc.ConnectionLogger;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.CacheInvalidationScope;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.Transaction;
+import org.apache.ibatis.transaction.TransactionFactory;
+import org.apache.ibatis.transaction.managed.ManagedTransactionFactory;
+
+/**
+ * Executor of the stateless sessions, used by one thread at a time and shared by a statement with its nested selects.
+ *
+ * Each statement runs in its own auto-commit transaction, opened when it starts and closed when it ends, nested
+ * selects included, so the executor holds no state between statements and is reused for the next one. There is no local cache and no deferred load, and the second level cache is neither read nor
+ * populated. Statements that flush the cache clear it as soon as they complete.
+ *
+ * @since 3.5.0
+ */
+public class StatelessExecutor implements Executor {
+
+  private final Configuration configuration;
+  private Executor wrapper;
+  private Transaction transaction;
+  private int depth;
+
+  public StatelessExecutor(Configuration configuration) {
+    this.configuration = configuration;
+    this.wrapper = this;
+  }
+
+  @Override
+  public int update(MappedStatement ms, Object parameter) throws SQLException {
+    Statement stmt = null;
+    begin();
+    try {
+      StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, RowBounds.DEFAULT, null, null);
+      stmt = prepareStatement(handler, ms.getStatementLog());
+      int updated = handler.update(stmt);
+      invalidateCacheIfRequired(ms, parameter);
+      return updated;
+    } finally {
+      closeStatement(stmt);
+      end();
+    }
+  }
+
+  @Override
+  public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler) throws SQLException {
+    return query(ms, parameter, rowBounds, resultHandler, CacheKey.NULL_CACHE_KEY, ms.getBoundSql(parameter));
+  }
+
+  @Override
+  public <E> List<E> query(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, CacheKey key, BoundSql boundSql) throws SQLException {
+    Statement stmt = null;
+    begin();
+    try {
+      if (depth == 1) {
+        flushCacheIfRequired(ms);
+      }
+      StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, resultHandler, boundSql);
+      stmt = prepareStatement(handler, ms.getStatementLog());
+      return handler.query(stmt, resultHandler);
+    } finally {
+      closeStatement(stmt);
+      end();
+    }
+  }
+
+  /**
+   * Not supported, a cursor would keep the connection after the statement ended.
+   */
+  @Override
+  public <E> Cursor<E> queryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds) {
+    throw new ExecutorException("Cursors are not supported by stateless sessions.");
+  }
+
+  @Override
+  public List<BatchResult> flushStatements() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public void commit(boolean required) {
+    // every statement was committed when it completed
+  }
+
+  @Override
+  public void rollback(boolean required) {
+    // every statement was committed when it completed
+  }
+
+  /**
+   * @return the unused key {@link CacheKey#NULL_CACHE_KEY}, since nothing is cached
+   */
+  @Override
+  public CacheKey createCacheKey(MappedStatement ms, Object parameterObject, RowBounds rowBounds, BoundSql boundSql) {
+    return CacheKey.NULL_CACHE_KEY;
+  }
+
+  @Override
+  public boolean isCached(MappedStatement ms, CacheKey key) {
+    return false;
+  }
+
+  @Override
+  public void clearLocalCache() {
+    // no local cache
+  }
+
+  /**
+   * Not supported, there is no local cache to load from. Never called since {@link #isCached} is always false.
+   */
+  @Override
+  public void deferLoad(MappedStatement ms, MetaObject resultObject, String property, CacheKey key, Class<?> targetType) {
+    throw new ExecutorException("Stateless sessions cannot defer the load of the property " + property + " of "
+        + ms.getId() + ", nested selects that refer to each other must be lazy.");
+  }
+
+  /**
+   * @return the transaction of the running statement, null between statements
+   */
+  @Override
+  public Transaction getTransaction() {
+    return transaction;
+  }
+
+  @Override
+  public void close(boolean forceRollback) {
+    // the transaction is closed when the statement ends
+  }
+
+  @Override
+  public boolean isClosed() {
+    return false;
+  }
+
+  @Override
+  public void setExecutorWrapper(Executor wrapper) {
+    this.wrapper = wrapper;
+  }
+
+  private void begin() {
+    if (depth == 0) {
+      Environment environment = configuration.getEnvironment();
+      if (environment == null) {
+        throw new ExecutorException("Stateless sessions require an environment.");
+      }
+      TransactionFactory transactionFactory = environment.getTransactionFactory() == null
+          ? new ManagedTransactionFactory() : environment.getTransactionFactory();
+      DataSource dataSource = environment.getDataSource();
+      transaction = transactionFactory.newTransaction(dataSource, null, true);
+    }
+    depth++;
+  }
+
+  private void end() throws SQLException {
+    if (--depth == 0) {
+      Transaction ended = transaction;
+      transaction = null;
+      ended.close();
+    }
+  }
+
+  private Statement prepareStatement(StatementHandler handler, Log statementLog) throws SQLException {
+    Connection connection = transaction.getConnection();
+    if (statementLog.isDebugEnabled()) {
+      connection = ConnectionLogger.newInstance(connection, statementLog, depth);
+    }
+    Statement stmt = handler.prepare(connection, transaction.getTimeout());
+    handler.parameterize(stmt);
+    return stmt;
+  }
+
+  private void closeStatement(Statement statement) {
+    if (statement != null) {
+      try {
+        statement.close();
+      } catch (SQLException e) {
+        // ignore
+      }
+    }
+  }
+
+  private void flushCacheIfRequired(MappedStatement ms) {
+    Cache cache = ms.getCache();
+    if (cache != null && ms.isFlushCacheRequired() && configuration.isCacheEnabled()) {
+      TransactionalCacheManager tcm = new TransactionalCacheManager(configuration);
+      tcm.clear(cache);
+      tcm.commit();
+    }
+  }
+
+  private void invalidateCacheIfRequired(MappedStatement ms, Object parameter) {
+    if (!ms.isFlushCacheRequired() || !configuration.isCacheEnabled()) {
+      return;
+    }
+    TransactionalCacheManager tcm = new TransactionalCacheManager(configuration);
+    if (configuration.getCacheInvalidationScope() == CacheInvalidationScope.TABLE) {
+      TableVersions tableVersions = configuration.getTableVersions();
+      Set<String> tables = tableVersions.getTables(ms, ms.getBoundSql(parameter));
+      if (tables != null) {
+        tcm.invalidate(tableVersions, ms.getCache(), tables);
+      } else if (ms.getCache() != null) {
+        tcm.clear(ms.getCache());
+      }
+    } else if (ms.getCache() != null) {
+      tcm.clear(ms.getCache());
+    }
+    tcm.commit();
+  }
+
+}
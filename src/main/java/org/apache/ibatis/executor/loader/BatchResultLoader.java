@@ -0,0 +1,270 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.ResultExtractor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.defaults.DefaultSqlSession.StrictMap;
+
+/**
+ * Loads a nested select for many result objects with a few queries instead of one query per object.
+ *
+ * The nested statement receives the distinct parameters of the collected objects as a list, available as
+ * {@code list} and {@code collection} like a list passed to {@code selectList}, at most
+ * {@code nestedQueryBatchSize} of them per execution. Each returned row is handed back to the objects whose
+ * parameter matches the values of the {@code foreignColumn} of the mapping in that row, compared with
+ * {@link #normalize(Object)}.
+ *
+ * @since 3.5.0
+ */
+public class BatchResultLoader {
+
+  private final Configuration configuration;
+  private final Executor executor;
+  private final MappedStatement mappedStatement;
+  private final ResultMapping resultMapping;
+  private final ResultExtractor resultExtractor;
+
+  private final Map<List<Object>, Object> parameters = new LinkedHashMap<>();
+  private final Map<List<Object>, List<MetaObject>> targets = new HashMap<>();
+  private String[] foreignProperties;
+
+  public BatchResultLoader(Configuration configuration, Executor executor, MappedStatement mappedStatement, ResultMapping resultMapping) {
+    this.configuration = configuration;
+    this.executor = executor;
+    this.mappedStatement = mappedStatement;
+    this.resultMapping = resultMapping;
+    this.resultExtractor = new ResultExtractor(configuration, configuration.getObjectFactory());
+  }
+
+  public MappedStatement getMappedStatement() {
+    return mappedStatement;
+  }
+
+  public ResultMapping getResultMapping() {
+    return resultMapping;
+  }
+
+  /**
+   * Registers an object whose property must be loaded.
+   *
+   * @param metaObject the object the property belongs to
+   * @param parameterObject the parameter the nested select would have been called with for this object
+   */
+  public void addTarget(MetaObject metaObject, Object parameterObject) {
+    List<Object> key = parameterKey(parameterObject);
+    parameters.putIfAbsent(key, parameterObject);
+    targets.computeIfAbsent(key, k -> new ArrayList<>()).add(metaObject);
+  }
+
+  public boolean isEmpty() {
+    return targets.isEmpty();
+  }
+
+  public void load() throws SQLException {
+    List<List<Object>> keys = new ArrayList<>(parameters.keySet());
+    int batchSize = Math.max(1, configuration.getNestedQueryBatchSize());
+    for (int i = 0; i < keys.size(); i += batchSize) {
+      load(keys.subList(i, Math.min(i + batchSize, keys.size())));
+    }
+    parameters.clear();
+    targets.clear();
+  }
+
+  private void load(List<List<Object>> keys) throws SQLException {
+    List<Object> batch = new ArrayList<>(keys.size());
+    Map<List<Object>, List<MetaObject>> batchTargets = new LinkedHashMap<>();
+    for (List<Object> key : keys) {
+      batch.add(parameters.get(key));
+      batchTargets.put(key, targets.get(key));
+    }
+    Object parameterObject = wrapParameters(batch);
+    BoundSql boundSql = mappedStatement.getBoundSql(parameterObject);
+    CacheKey cacheKey = executor.createCacheKey(mappedStatement, parameterObject, RowBounds.DEFAULT, boundSql);
+    Batch loadedBatch = new Batch(batchTargets);
+    if (executor.isCached(mappedStatement, cacheKey)) {
+      // the same batch is being loaded further up in the stack (circular references)
+      executor.deferLoad(mappedStatement, configuration.newMetaObject(loadedBatch), "rows", cacheKey, List.class);
+    } else {
+      loadedBatch.setRows(executor.query(mappedStatement, parameterObject, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER, cacheKey, boundSql));
+    }
+  }
+
+  /**
+   * @return the parameter object of one execution of a batched nested select
+   */
+  static Object wrapParameters(List<Object> parameters) {
+    StrictMap<Object> parameterObject = new StrictMap<>();
+    parameterObject.put("collection", parameters);
+    parameterObject.put("list", parameters);
+    return parameterObject;
+  }
+
+  private void distribute(Map<List<Object>, List<MetaObject>> batchTargets, List<Object> rows) {
+    Map<List<Object>, List<Object>> rowsByKey = new HashMap<>();
+    for (Object row : rows) {
+      if (row != null) {
+        rowsByKey.computeIfAbsent(rowKey(configuration.newMetaObject(row)), k -> new ArrayList<>()).add(row);
+      }
+    }
+    final String property = resultMapping.getProperty();
+    for (Map.Entry<List<Object>, List<MetaObject>> entry : batchTargets.entrySet()) {
+      List<Object> matchingRows = rowsByKey.getOrDefault(entry.getKey(), Collections.emptyList());
+      for (MetaObject target : entry.getValue()) {
+        Object value = resultExtractor.extractObjectFromList(new ArrayList<>(matchingRows), resultMapping.getJavaType());
+        if (value != null || (configuration.isCallSettersOnNulls() && !target.getSetterType(property).isPrimitive())) {
+          target.setValue(property, value);
+        }
+      }
+    }
+  }
+
+  private List<Object> parameterKey(Object parameterObject) {
+    if (!resultMapping.isCompositeResult()) {
+      return Collections.singletonList(normalize(parameterObject));
+    }
+    MetaObject metaParameter = configuration.newMetaObject(parameterObject);
+    List<Object> key = new ArrayList<>();
+    for (ResultMapping composite : resultMapping.getComposites()) {
+      key.add(normalize(metaParameter.getValue(composite.getProperty())));
+    }
+    return key;
+  }
+
+  private List<Object> rowKey(MetaObject row) {
+    if (foreignProperties == null) {
+      foreignProperties = resolveForeignProperties(row);
+    }
+    List<Object> key = new ArrayList<>(foreignProperties.length);
+    for (String foreignProperty : foreignProperties) {
+      key.add(normalize(row.getValue(foreignProperty)));
+    }
+    return key;
+  }
+
+  /**
+   * The parameter values come from the columns of the parent rows and the foreign values from the nested rows, which
+   * may be read as different java types: numbers are compared by value, binary values and UUIDs by their bytes, and
+   * JDBC dates and times as their {@code java.time} equivalent.
+   */
+  static Object normalize(Object value) {
+    if (value instanceof Number) {
+      BigDecimal decimal = toBigDecimal((Number) value);
+      return decimal == null ? value : decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+    } else if (value instanceof byte[]) {
+      return ByteBuffer.wrap((byte[]) value);
+    } else if (value instanceof UUID) {
+      UUID uuid = (UUID) value;
+      byte[] bytes = new byte[16];
+      ByteBuffer.wrap(bytes).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+      return ByteBuffer.wrap(bytes);
+    } else if (value instanceof Timestamp) {
+      return ((Timestamp) value).toLocalDateTime();
+    } else if (value instanceof java.sql.Date) {
+      return ((java.sql.Date) value).toLocalDate();
+    } else if (value instanceof Time) {
+      return ((Time) value).toLocalTime();
+    } else if (value instanceof Date) {
+      return ((Date) value).toInstant();
+    }
+    return value;
+  }
+
+  private static BigDecimal toBigDecimal(Number number) {
+    if (number instanceof BigDecimal) {
+      return (BigDecimal) number;
+    } else if (number instanceof BigInteger) {
+      return new BigDecimal((BigInteger) number);
+    } else if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+      return BigDecimal.valueOf(number.longValue());
+    } else if ((number instanceof Double || number instanceof Float) && !Double.isNaN(number.doubleValue())
+        && !Double.isInfinite(number.doubleValue())) {
+      return new BigDecimal(number.toString());
+    }
+    return null;
+  }
+
+  private String[] resolveForeignProperties(MetaObject row) {
+    String[] foreignColumns = resultMapping.getForeignColumn().split(",");
+    String[] properties = new String[foreignColumns.length];
+    for (int i = 0; i < foreignColumns.length; i++) {
+      String column = foreignColumns[i].trim();
+      String property = mappedProperty(column);
+      if (property == null) {
+        property = row.findProperty(column, configuration.isMapUnderscoreToCamelCase());
+      }
+      if (property == null || !row.hasGetter(property)) {
+        throw new ExecutorException("Cannot find a property for the foreign column '" + column + "' in the results of the nested query '"
+            + mappedStatement.getId() + "' of property '" + resultMapping.getProperty() + "'.");
+      }
+      properties[i] = property;
+    }
+    return properties;
+  }
+
+  private String mappedProperty(String column) {
+    for (ResultMap resultMap : mappedStatement.getResultMaps()) {
+      for (ResultMapping mapping : resultMap.getPropertyResultMappings()) {
+        if (mapping.getColumn() != null && mapping.getProperty() != null
+            && column.toUpperCase(Locale.ENGLISH).equals(mapping.getColumn().toUpperCase(Locale.ENGLISH))) {
+          return mapping.getProperty();
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Receives the rows of one execution, either right away or as a deferred load of the local cache.
+   */
+  private class Batch {
+    private final Map<List<Object>, List<MetaObject>> targets;
+
+    Batch(Map<List<Object>, List<MetaObject>> targets) {
+      this.targets = targets;
+    }
+
+    public void setRows(List<Object> rows) {
+      distribute(targets, rows);
+    }
+  }
+
+}
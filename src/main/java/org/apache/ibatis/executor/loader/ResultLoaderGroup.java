@@ -0,0 +1,139 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * Lazy loaders of the same batched nested select created for the rows of one result set.
+ *
+ * When the property of one member is first read, the property is loaded with a single execution of the nested
+ * select for that member and for up to {@code lazyLoadBatchSize - 1} other members that were not loaded yet. The
+ * values of the other members are kept until their own properties are read, so loading never touches the other
+ * result objects.
+ *
+ * @since 3.5.0
+ */
+public class ResultLoaderGroup {
+
+  private final Configuration configuration;
+  private final Executor executor;
+  private final MappedStatement mappedStatement;
+  private final ResultMapping resultMapping;
+  private final long creatorThreadId;
+
+  private final Set<Member> unloaded = new LinkedHashSet<>();
+
+  public ResultLoaderGroup(Configuration configuration, Executor executor, MappedStatement mappedStatement, ResultMapping resultMapping) {
+    this.configuration = configuration;
+    this.executor = executor;
+    this.mappedStatement = mappedStatement;
+    this.resultMapping = resultMapping;
+    this.creatorThreadId = Thread.currentThread().getId();
+  }
+
+  /**
+   * @param parameterObject the parameter the nested select would have been called with for one result object
+   * @return the loader of the property of that result object
+   */
+  public synchronized ResultLoader newResultLoader(Object parameterObject) {
+    Member member = new Member(parameterObject);
+    unloaded.add(member);
+    return member;
+  }
+
+  public synchronized int getUnloadedCount() {
+    return unloaded.size();
+  }
+
+  static boolean isGrouped(ResultLoader resultLoader) {
+    return resultLoader instanceof Member;
+  }
+
+  private synchronized Object load(Member member) throws SQLException {
+    if (member.loadedValues == null) {
+      List<Member> batch = new ArrayList<>();
+      batch.add(member);
+      int batchSize = Math.max(1, configuration.getLazyLoadBatchSize());
+      Iterator<Member> iterator = unloaded.iterator();
+      while (iterator.hasNext() && batch.size() < batchSize) {
+        Member sibling = iterator.next();
+        if (sibling != member) {
+          batch.add(sibling);
+        }
+      }
+      Executor localExecutor = executor;
+      if (Thread.currentThread().getId() != creatorThreadId || localExecutor.isClosed()) {
+        localExecutor = ResultLoader.newExecutor(configuration);
+      }
+      try {
+        BatchResultLoader batchResultLoader = new BatchResultLoader(configuration, localExecutor, mappedStatement, resultMapping);
+        for (Member each : batch) {
+          each.loadedValues = configuration.newMetaObject(new HashMap<String, Object>());
+          batchResultLoader.addTarget(each.loadedValues, each.parameterObject);
+        }
+        batchResultLoader.load();
+      } catch (SQLException | RuntimeException e) {
+        for (Member each : batch) {
+          each.loadedValues = null;
+        }
+        throw e;
+      } finally {
+        if (localExecutor != executor) {
+          localExecutor.close(false);
+        }
+      }
+      unloaded.removeAll(batch);
+    }
+    Object value = member.loadedValues.getValue(resultMapping.getProperty());
+    // the owner keeps the value from now on
+    member.loadedValues = null;
+    member.taken = true;
+    return value;
+  }
+
+  private class Member extends ResultLoader {
+    private MetaObject loadedValues;
+    private boolean taken;
+
+    Member(Object parameterObject) {
+      super(ResultLoaderGroup.this.configuration, ResultLoaderGroup.this.executor, ResultLoaderGroup.this.mappedStatement, parameterObject,
+          ResultLoaderGroup.this.resultMapping.getJavaType(), null, null);
+    }
+
+    @Override
+    public Object loadResult() throws SQLException {
+      if (taken) {
+        return resultObject;
+      }
+      resultObject = load(this);
+      return resultObject;
+    }
+  }
+
+}
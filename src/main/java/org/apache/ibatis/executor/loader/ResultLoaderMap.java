@@ -22,6 +22,7 @@ import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -143,11 +144,16 @@ public class ResultLoaderMap {
      * Parameter of the sql statement.
      */
     private Serializable mappedParameter;
+    /**
+     * Whether the sql statement expects a list of parameters.
+     */
+    private boolean batch;
 
     private LoadPair(final String property, MetaObject metaResultObject, ResultLoader resultLoader) {
       this.property = property;
       this.metaResultObject = metaResultObject;
       this.resultLoader = resultLoader;
+      this.batch = ResultLoaderGroup.isGrouped(resultLoader);
 
       /* Save required information only if original object can be serialized. */
       if (metaResultObject != null && metaResultObject.getOriginalObject() instanceof Serializable) {
@@ -202,7 +208,9 @@ public class ResultLoaderMap {
         }
 
         this.metaResultObject = config.newMetaObject(userObject);
-        this.resultLoader = new ResultLoader(config, new ClosedExecutor(), ms, this.mappedParameter,
+        final Object parameterObject = this.batch
+                ? BatchResultLoader.wrapParameters(Collections.<Object>singletonList(this.mappedParameter)) : this.mappedParameter;
+        this.resultLoader = new ResultLoader(config, new ClosedExecutor(), ms, parameterObject,
                 metaResultObject.getSetterType(this.property), null, null);
       }
 
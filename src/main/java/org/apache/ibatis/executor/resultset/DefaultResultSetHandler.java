@@ -23,7 +23,9 @@ import org.apache.ibatis.cursor.defaults.DefaultCursor;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.loader.BatchResultLoader;
 import org.apache.ibatis.executor.loader.ResultLoader;
+import org.apache.ibatis.executor.loader.ResultLoaderGroup;
 import org.apache.ibatis.executor.loader.ResultLoaderMap;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.result.DefaultResultContext;
@@ -57,6 +59,7 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -92,6 +95,10 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   private final Map<String, ResultMapping> nextResultMaps = new HashMap<>();
   private final Map<CacheKey, List<PendingRelation>> pendingRelations = new HashMap<>();
 
+  // batched nested queries
+  private final Map<ResultMapping, BatchResultLoader> batchResultLoaders = new IdentityHashMap<>();
+  private final Map<ResultMapping, ResultLoaderGroup> resultLoaderGroups = new IdentityHashMap<>();
+
   // Cached Automappings
   private final Map<String, List<UnMappedColumnAutoMapping>> autoMappingsCache = new HashMap<>();
 
@@ -327,6 +334,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     } else {
       handleRowValuesForSimpleResultMap(rsw, resultMap, resultHandler, rowBounds, parentMapping);
     }
+    loadBatchedNestedQueries();
   }
 
   private void ensureNoRowBounds() {
@@ -741,7 +749,20 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     final Class<?> nestedQueryParameterType = nestedQuery.getParameterMap().getType();
     final Object nestedQueryParameterObject = prepareParameterForNestedQuery(rs, propertyMapping, nestedQueryParameterType, columnPrefix);
     Object value = null;
-    if (nestedQueryParameterObject != null) {
+    if (nestedQueryParameterObject != null && propertyMapping.isBatch() && propertyMapping.isLazy()) {
+      ResultLoaderGroup group = resultLoaderGroups.computeIfAbsent(propertyMapping,
+          m -> new ResultLoaderGroup(configuration, executor, nestedQuery, m));
+      lazyLoader.addLoader(property, metaResultObject, group.newResultLoader(nestedQueryParameterObject));
+      value = DEFERRED;
+    } else if (nestedQueryParameterObject != null && propertyMapping.isBatch()) {
+      batchResultLoaders.computeIfAbsent(propertyMapping, m -> new BatchResultLoader(configuration, executor, nestedQuery, m))
+          .addTarget(metaResultObject, nestedQueryParameterObject);
+      if (resultHandler != null) {
+        // a custom result handler receives every row as soon as it is mapped
+        loadBatchedNestedQueries();
+      }
+      value = DEFERRED;
+    } else if (nestedQueryParameterObject != null) {
       final BoundSql nestedBoundSql = nestedQuery.getBoundSql(nestedQueryParameterObject);
       final CacheKey key = executor.createCacheKey(nestedQuery, nestedQueryParameterObject, RowBounds.DEFAULT, nestedBoundSql);
       final Class<?> targetType = propertyMapping.getJavaType();
@@ -761,6 +782,16 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return value;
   }
 
+  private void loadBatchedNestedQueries() throws SQLException {
+    if (!batchResultLoaders.isEmpty()) {
+      List<BatchResultLoader> loaders = new ArrayList<>(batchResultLoaders.values());
+      batchResultLoaders.clear();
+      for (BatchResultLoader loader : loaders) {
+        loader.load();
+      }
+    }
+  }
+
   private Object prepareParameterForNestedQuery(ResultSet rs, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
     if (resultMapping.isCompositeResult()) {
       return prepareCompositeKeyParameter(rs, resultMapping, parameterType, columnPrefix);
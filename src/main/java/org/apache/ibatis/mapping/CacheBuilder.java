@@ -17,20 +17,35 @@ package org.apache.ibatis.mapping;
 
 import java.lang.reflect.Constructor;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.function.LongSupplier;
 
 import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.cache.CacheException;
+import org.apache.ibatis.cache.CacheMetrics;
 import org.apache.ibatis.builder.InitializingObject;
+import org.apache.ibatis.cache.compressor.Compressor;
 import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.decorators.CompressedCache;
+import org.apache.ibatis.cache.decorators.ExpiringCache;
 import org.apache.ibatis.cache.decorators.LoggingCache;
 import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.PartitionedCache;
+import org.apache.ibatis.cache.decorators.ReclaimingCache;
 import org.apache.ibatis.cache.decorators.ScheduledCache;
 import org.apache.ibatis.cache.decorators.SerializedCache;
 import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.decorators.TinyLfuCache;
+import org.apache.ibatis.cache.decorators.WeightedCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.serializer.JavaSerializer;
+import org.apache.ibatis.cache.serializer.Serializer;
+import org.apache.ibatis.cache.weigher.ObjectSizeWeigher;
+import org.apache.ibatis.cache.weigher.Weigher;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.SystemMetaObject;
 
@@ -42,10 +57,22 @@ public class CacheBuilder {
   private Class<? extends Cache> implementation;
   private final List<Class<? extends Cache>> decorators;
   private Integer size;
+  private Long maxWeight;
+  private Class<? extends Weigher> weigher;
   private Long clearInterval;
+  private Long expireAfterWrite;
+  private Long expireAfterAccess;
+  private Long refreshAhead;
+  private Long maxStale;
   private boolean readWrite;
+  private Class<? extends Serializer> serializer;
+  private Class<? extends Compressor> compressor;
+  private Integer compressionThreshold;
   private Properties properties;
   private boolean blocking;
+  private String partitionBy;
+  private Integer maxPartitions;
+  private CacheMetrics metrics;
 
   public CacheBuilder(String id) {
     this.id = id;
@@ -69,43 +96,202 @@ public class CacheBuilder {
     return this;
   }
 
+  /**
+   * @param maxWeight Total weight of the entries over which the least recently used ones are evicted
+   * @since 3.5.0
+   */
+  public CacheBuilder maxWeight(Long maxWeight) {
+    this.maxWeight = maxWeight;
+    return this;
+  }
+
+  /**
+   * @param weigher Weigher used when a max weight is set, defaults to {@link ObjectSizeWeigher}
+   * @since 3.5.0
+   */
+  public CacheBuilder weigher(Class<? extends Weigher> weigher) {
+    this.weigher = weigher;
+    return this;
+  }
+
   public CacheBuilder clearInterval(Long clearInterval) {
     this.clearInterval = clearInterval;
     return this;
   }
 
+  /**
+   * @param expireAfterWrite Milliseconds after which an entry expires once written
+   * @since 3.5.0
+   */
+  public CacheBuilder expireAfterWrite(Long expireAfterWrite) {
+    this.expireAfterWrite = expireAfterWrite;
+    return this;
+  }
+
+  /**
+   * @param expireAfterAccess Milliseconds after which an entry expires once it was last read or written
+   * @since 3.5.0
+   */
+  public CacheBuilder expireAfterAccess(Long expireAfterAccess) {
+    this.expireAfterAccess = expireAfterAccess;
+    return this;
+  }
+
+  /**
+   * @param refreshAhead Milliseconds before the write expiration of an entry from which a read reloads it in the
+   *          background
+   * @since 3.5.0
+   */
+  public CacheBuilder refreshAhead(Long refreshAhead) {
+    this.refreshAhead = refreshAhead;
+    return this;
+  }
+
+  /**
+   * @param maxStale Milliseconds after the write expiration of an entry during which it is still returned while it
+   *          is reloaded in the background
+   * @since 3.5.0
+   */
+  public CacheBuilder maxStale(Long maxStale) {
+    this.maxStale = maxStale;
+    return this;
+  }
+
   public CacheBuilder readWrite(boolean readWrite) {
     this.readWrite = readWrite;
     return this;
   }
 
+  public CacheBuilder serializer(Class<? extends Serializer> serializer) {
+    this.serializer = serializer;
+    return this;
+  }
+
+  /**
+   * @param compressor Compressor of the serialized values of a read-write cache, null for none
+   * @since 3.5.0
+   */
+  public CacheBuilder compressor(Class<? extends Compressor> compressor) {
+    this.compressor = compressor;
+    return this;
+  }
+
+  /**
+   * @param compressionThreshold Size in bytes from which serialized values are compressed
+   * @since 3.5.0
+   */
+  public CacheBuilder compressionThreshold(Integer compressionThreshold) {
+    this.compressionThreshold = compressionThreshold;
+    return this;
+  }
+
   public CacheBuilder blocking(boolean blocking) {
     this.blocking = blocking;
     return this;
   }
   
+  /**
+   * @param partitionBy Parameter property whose value selects the partition of the entries, or {@code _databaseId},
+   *          null for an unpartitioned cache
+   * @since 3.5.0
+   */
+  public CacheBuilder partitionBy(String partitionBy) {
+    this.partitionBy = partitionBy;
+    return this;
+  }
+
+  /**
+   * @param maxPartitions Number of partitions, besides the default one, over which the least recently used partition
+   *          is dropped, 1000 if null
+   * @since 3.5.0
+   */
+  public CacheBuilder maxPartitions(Integer maxPartitions) {
+    this.maxPartitions = maxPartitions;
+    return this;
+  }
+
   public CacheBuilder properties(Properties properties) {
     this.properties = properties;
     return this;
   }
 
+  /**
+   * @param metrics Metrics fed by the cache, a new instance is used if none is given
+   * @since 3.5.0
+   */
+  public CacheBuilder metrics(CacheMetrics metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
   public Cache build() {
     setDefaultImplementations();
+    if (metrics == null) {
+      metrics = new CacheMetrics(id);
+    }
+    if (compressor != null && !readWrite) {
+      throw new CacheException("The cache " + id + " cannot be compressed because it is read-only");
+    }
+    if (partitionBy == null) {
+      return newCache();
+    }
+    if (OffHeapCache.class.equals(implementation) && properties != null && properties.getProperty("mappedFile") != null) {
+      throw new CacheException("The cache " + id + " cannot be partitioned because its partitions would share a mapped file");
+    }
+    PartitionedCache partitionedCache = new PartitionedCache(id, partitionBy, partition -> newCache());
+    if (maxPartitions != null) {
+      partitionedCache.setMaxPartitions(maxPartitions);
+    }
+    CacheMetrics cacheMetrics = metrics;
+    cacheMetrics.setEstimatedBytes(() -> partitionedCache.getSize() * cacheMetrics.getAverageEntryBytes());
+    return partitionedCache;
+  }
+
+  private Cache newCache() {
     Cache cache = newBaseCacheInstance(implementation, id);
     setCacheProperties(cache);
     // issue #352, do not apply decorators to custom caches
-    if (PerpetualCache.class.equals(cache.getClass())) {
+    if (isStandardImplementation(cache)) {
+      setCacheMetrics(cache);
+      LongSupplier footprint = null;
+      OffHeapCache offHeapCache = null;
+      if (cache instanceof OffHeapCache) {
+        offHeapCache = (OffHeapCache) cache;
+        footprint = offHeapCache::getUsedBytes;
+      }
+      WeightedCache weightedCache = null;
+      if (maxWeight != null) {
+        weightedCache = newWeightedCache(cache);
+        if (weightedCache.getWeigher() instanceof ObjectSizeWeigher) {
+          footprint = weightedCache::getTotalWeight;
+        }
+        cache = weightedCache;
+      }
       for (Class<? extends Cache> decorator : decorators) {
         cache = newCacheDecoratorInstance(decorator, cache);
         setCacheProperties(cache);
+        setCacheMetrics(cache);
+      }
+      if (weightedCache != null && cache != weightedCache) {
+        // the eviction decorators must forget the entries evicted by weight or they would still count them
+        weightedCache.setEvictionListener(cache::removeObject);
+      }
+      if (offHeapCache != null && cache != offHeapCache) {
+        // same for the entries evicted to make room in native memory
+        offHeapCache.setEvictionListener(cache::removeObject);
       }
-      cache = setStandardDecorators(cache);
+      cache = setStandardDecorators(cache, footprint);
     } else if (!LoggingCache.class.isAssignableFrom(cache.getClass())) {
-      cache = new LoggingCache(cache);
+      cache = new LoggingCache(cache, metrics);
+      setEstimatedBytes(cache, null);
     }
     return cache;
   }
 
+  private boolean isStandardImplementation(Cache cache) {
+    return PerpetualCache.class.equals(cache.getClass()) || OffHeapCache.class.equals(cache.getClass());
+  }
+
   private void setDefaultImplementations() {
     if (implementation == null) {
       implementation = PerpetualCache.class;
@@ -115,8 +301,10 @@ public class CacheBuilder {
     }
   }
 
-  private Cache setStandardDecorators(Cache cache) {
+  private Cache setStandardDecorators(Cache cache, LongSupplier footprint) {
     try {
+      boolean expiring = expireAfterWrite != null || expireAfterAccess != null;
+      boolean threadSafe = isThreadSafe(cache) && !expiring;
       MetaObject metaCache = SystemMetaObject.forObject(cache);
       if (size != null && metaCache.hasSetter("size")) {
         metaCache.setValue("size", size);
@@ -125,13 +313,33 @@ public class CacheBuilder {
         cache = new ScheduledCache(cache);
         ((ScheduledCache) cache).setClearInterval(clearInterval);
       }
+      if (expiring) {
+        cache = new ExpiringCache(cache);
+        ((ExpiringCache) cache).setExpireAfterWrite(expireAfterWrite == null ? 0 : expireAfterWrite);
+        ((ExpiringCache) cache).setExpireAfterAccess(expireAfterAccess == null ? 0 : expireAfterAccess);
+        ((ExpiringCache) cache).setRefreshAhead(refreshAhead == null ? 0 : refreshAhead);
+        ((ExpiringCache) cache).setMaxStale(maxStale == null ? 0 : maxStale);
+        ((ExpiringCache) cache).setMetrics(metrics);
+      }
+      if (compressor != null) {
+        Cache compressedCache = newCompressedCache(cache);
+        if (footprint == null) {
+          CacheMetrics cacheMetrics = metrics;
+          footprint = () -> compressedCache.getSize() * cacheMetrics.getAverageCompressedBytes();
+        }
+        cache = compressedCache;
+      }
       if (readWrite) {
-        cache = new SerializedCache(cache);
+        cache = new SerializedCache(cache, newSerializerInstance());
+      }
+      cache = new LoggingCache(cache, metrics);
+      setEstimatedBytes(cache, footprint);
+      if (!threadSafe) {
+        cache = new SynchronizedCache(cache);
       }
-      cache = new LoggingCache(cache);
-      cache = new SynchronizedCache(cache);
       if (blocking) {
         cache = new BlockingCache(cache);
+        setCacheProperties(cache);
       }
       return cache;
     } catch (Exception e) {
@@ -139,6 +347,10 @@ public class CacheBuilder {
     }
   }
 
+  private boolean isThreadSafe(Cache cache) {
+    return cache instanceof TinyLfuCache || cache instanceof ReclaimingCache;
+  }
+
   private void setCacheProperties(Cache cache) {
     if (properties != null) {
       MetaObject metaCache = SystemMetaObject.forObject(cache);
@@ -186,6 +398,70 @@ public class CacheBuilder {
     }
   }
 
+  private void setCacheMetrics(Cache cache) {
+    MetaObject metaCache = SystemMetaObject.forObject(cache);
+    if (metaCache.hasSetter("metrics") && CacheMetrics.class.equals(metaCache.getSetterType("metrics"))) {
+      metaCache.setValue("metrics", metrics);
+    }
+  }
+
+  private void setEstimatedBytes(Cache cache, LongSupplier footprint) {
+    if (partitionBy != null) {
+      // estimated for all the partitions
+      return;
+    }
+    if (footprint != null) {
+      metrics.setEstimatedBytes(footprint);
+    } else {
+      CacheMetrics cacheMetrics = metrics;
+      cacheMetrics.setEstimatedBytes(() -> cache.getSize() * cacheMetrics.getAverageEntryBytes());
+    }
+  }
+
+  private WeightedCache newWeightedCache(Cache base) {
+    for (Class<? extends Cache> decorator : Arrays.asList(TinyLfuCache.class, ReclaimingCache.class)) {
+      if (decorators.contains(decorator)) {
+        throw new CacheException("The cache " + id + " cannot have a max weight because " + decorator.getSimpleName()
+            + " keeps the entries itself");
+      }
+    }
+    WeightedCache weightedCache = new WeightedCache(base);
+    if (weigher != null) {
+      try {
+        weightedCache.setWeigher(weigher.getConstructor().newInstance());
+      } catch (Exception e) {
+        throw new CacheException("Could not instantiate cache weigher (" + weigher + "). Cause: " + e, e);
+      }
+    }
+    weightedCache.setMaxWeight(maxWeight);
+    weightedCache.setMetrics(metrics);
+    return weightedCache;
+  }
+
+  private Cache newCompressedCache(Cache cache) {
+    Compressor compressorInstance;
+    try {
+      compressorInstance = compressor.getConstructor().newInstance();
+    } catch (Exception e) {
+      throw new CacheException("Could not instantiate cache compressor (" + compressor + "). Cause: " + e, e);
+    }
+    CompressedCache compressedCache = new CompressedCache(cache, compressorInstance);
+    if (compressionThreshold != null) {
+      compressedCache.setThreshold(compressionThreshold);
+    }
+    compressedCache.setMetrics(metrics);
+    return compressedCache;
+  }
+
+  private Serializer newSerializerInstance() {
+    Class<? extends Serializer> serializerClass = serializer == null ? JavaSerializer.class : serializer;
+    try {
+      return serializerClass.getConstructor().newInstance();
+    } catch (Exception e) {
+      throw new CacheException("Could not instantiate cache serializer (" + serializerClass + "). Cause: " + e, e);
+    }
+  }
+
   private Cache newBaseCacheInstance(Class<? extends Cache> cacheClass, String id) {
     Constructor<? extends Cache> cacheConstructor = getBaseCacheConstructor(cacheClass);
     try {
@@ -19,5 +19,11 @@ package org.apache.ibatis.mapping;
  * @author Eduardo Macarron
  */
 public enum FetchType {
-  LAZY, EAGER, DEFAULT
+  LAZY, EAGER, DEFAULT,
+  /**
+   * Runs the nested select once for all the rows of a result set or, when lazy loading is enabled, for a group of
+   * result objects. Requires a {@code foreignColumn}.
+   * @since 3.5.0
+   */
+  BATCH
 }
@@ -56,6 +56,10 @@ public final class MappedStatement {
   private Log statementLog;
   private LanguageDriver lang;
   private String[] resultSets;
+  private String[] tables;
+  private Long expireAfterWrite;
+  private Integer batchFlushSize;
+  private Long batchFlushBytes;
 
   MappedStatement() {
     // constructor disabled
@@ -174,6 +178,45 @@ public final class MappedStatement {
       return this;
     }
 
+    /**
+     * @param tables comma separated names of the tables the statement reads, or writes if it is not a select
+     * @since 3.5.0
+     */
+    public Builder tables(String tables) {
+      mappedStatement.tables = delimitedStringToArray(tables);
+      return this;
+    }
+
+    /**
+     * @param expireAfterWrite milliseconds after which the results cached by the statement expire, overriding the
+     *          expire after write time of the cache
+     * @since 3.5.0
+     */
+    public Builder expireAfterWrite(Long expireAfterWrite) {
+      mappedStatement.expireAfterWrite = expireAfterWrite;
+      return this;
+    }
+
+    /**
+     * @param batchFlushSize number of batched executions after which the batch executor flushes, overriding the
+     *          {@code batchFlushSize} setting
+     * @since 3.5.0
+     */
+    public Builder batchFlushSize(Integer batchFlushSize) {
+      mappedStatement.batchFlushSize = batchFlushSize;
+      return this;
+    }
+
+    /**
+     * @param batchFlushBytes estimated bytes of batched parameters after which the batch executor flushes,
+     *          overriding the {@code batchFlushBytes} setting
+     * @since 3.5.0
+     */
+    public Builder batchFlushBytes(Long batchFlushBytes) {
+      mappedStatement.batchFlushBytes = batchFlushBytes;
+      return this;
+    }
+
     /** @deprecated Use {@link #resultSets} */
     @Deprecated
     public Builder resulSets(String resultSet) {
@@ -283,6 +326,38 @@ public final class MappedStatement {
     return resultSets;
   }
 
+  /**
+   * @return the declared tables of the statement or null if they must be found in its SQL
+   * @since 3.5.0
+   */
+  public String[] getTables() {
+    return tables;
+  }
+
+  /**
+   * @return the time to live of the results cached by the statement or null to use the one of the cache
+   * @since 3.5.0
+   */
+  public Long getExpireAfterWrite() {
+    return expireAfterWrite;
+  }
+
+  /**
+   * @return the number of batched executions after which the batch executor flushes or null to use the setting
+   * @since 3.5.0
+   */
+  public Integer getBatchFlushSize() {
+    return batchFlushSize;
+  }
+
+  /**
+   * @return the estimated bytes of batched parameters after which the batch executor flushes or null to use the setting
+   * @since 3.5.0
+   */
+  public Long getBatchFlushBytes() {
+    return batchFlushBytes;
+  }
+
   /** @deprecated Use {@link #getResultSets()} */
   @Deprecated
   public String[] getResulSets() {
@@ -45,6 +45,7 @@ public class ResultMapping {
   private String resultSet;
   private String foreignColumn;
   private boolean lazy;
+  private boolean batch;
 
   ResultMapping() {
   }
@@ -131,6 +132,14 @@ public class ResultMapping {
       resultMapping.lazy = lazy;
       return this;
     }
+
+    /**
+     * @since 3.5.0
+     */
+    public Builder batch(boolean batch) {
+      resultMapping.batch = batch;
+      return this;
+    }
     
     public ResultMapping build() {
       // lock down collections
@@ -154,7 +163,7 @@ public class ResultMapping {
       if (resultMapping.nestedResultMapId == null && resultMapping.column == null && resultMapping.composites.isEmpty()) {
         throw new IllegalStateException("Mapping is missing column attribute for property " + resultMapping.property);
       }
-      if (resultMapping.getResultSet() != null) {
+      if (resultMapping.getResultSet() != null || (resultMapping.batch && resultMapping.nestedQueryId != null)) {
         int numColumns = 0;
         if (resultMapping.column != null) {
           numColumns = resultMapping.column.split(",").length;
@@ -250,6 +259,21 @@ public class ResultMapping {
   public void setLazy(boolean lazy) {
     this.lazy = lazy;
   }
+
+  /**
+   * @return whether the nested select of this mapping is run once for all the rows of a result set
+   * @since 3.5.0
+   */
+  public boolean isBatch() {
+    return batch;
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public void setBatch(boolean batch) {
+    this.batch = batch;
+  }
   
   @Override
   public boolean equals(Object o) {
@@ -298,6 +322,7 @@ public class ResultMapping {
     sb.append(", resultSet='").append(resultSet).append('\'');
     sb.append(", foreignColumn='").append(foreignColumn).append('\'');
     sb.append(", lazy=").append(lazy);
+    sb.append(", batch=").append(batch);
     sb.append('}');
     return sb.toString();
   }
@@ -25,6 +25,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 
 import org.apache.ibatis.binding.MapperRegistry;
@@ -34,19 +40,38 @@ import org.apache.ibatis.builder.ResultMapResolver;
 import org.apache.ibatis.builder.annotation.MethodResolver;
 import org.apache.ibatis.builder.xml.XMLStatementBuilder;
 import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheMetrics;
+import org.apache.ibatis.cache.TableVersions;
+import org.apache.ibatis.cache.admission.AdmissionPolicy;
+import org.apache.ibatis.cache.admission.FrequencyAdmission;
+import org.apache.ibatis.cache.compressor.DeflateCompressor;
+import org.apache.ibatis.cache.compressor.LzCompressor;
 import org.apache.ibatis.cache.decorators.FifoCache;
 import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.ReclaimingCache;
 import org.apache.ibatis.cache.decorators.SoftCache;
+import org.apache.ibatis.cache.decorators.TinyLfuCache;
 import org.apache.ibatis.cache.decorators.WeakCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.invalidation.InvalidationBus;
+import org.apache.ibatis.cache.invalidation.LoopbackTransport;
+import org.apache.ibatis.cache.invalidation.UdpTransport;
+import org.apache.ibatis.cache.serializer.BinarySerializer;
+import org.apache.ibatis.cache.serializer.JavaSerializer;
+import org.apache.ibatis.cache.snapshot.CacheSnapshots;
+import org.apache.ibatis.cache.weigher.ObjectSizeWeigher;
 import org.apache.ibatis.datasource.jndi.JndiDataSourceFactory;
 import org.apache.ibatis.datasource.pooled.PooledDataSourceFactory;
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSourceFactory;
 import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.BatchFlushListener;
+import org.apache.ibatis.executor.CacheRefresher;
 import org.apache.ibatis.executor.CachingExecutor;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ReuseExecutor;
 import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.executor.StatelessExecutor;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.loader.ProxyFactory;
 import org.apache.ibatis.executor.loader.cglib.CglibProxyFactory;
@@ -117,10 +142,26 @@ public class Configuration {
   protected Class <? extends Log> logImpl;
   protected Class <? extends VFS> vfsImpl;
   protected LocalCacheScope localCacheScope = LocalCacheScope.SESSION;
+  protected Integer localCacheSize;
+  protected Long localCacheMaxWeight;
+  protected CacheInvalidationScope cacheInvalidationScope = CacheInvalidationScope.NAMESPACE;
+  protected int cacheRefreshThreads = 2;
+  protected String cacheSnapshotFile;
+  protected long cacheSnapshotInterval;
+  protected int asyncQueryThreads = 8;
+  protected boolean asyncVirtualThreads;
+  protected int nestedQueryBatchSize = 500;
+  protected int lazyLoadBatchSize = 100;
   protected JdbcType jdbcTypeForNull = JdbcType.OTHER;
   protected Set<String> lazyLoadTriggerMethods = new HashSet<>(Arrays.asList("equals", "clone", "hashCode", "toString"));
   protected Integer defaultStatementTimeout;
   protected Integer defaultFetchSize;
+  protected Integer batchFlushSize;
+  protected Long batchFlushBytes;
+  protected BatchFlushListener batchFlushListener;
+  protected boolean batchStatementGrouping;
+  protected List<String> batchTableOrder;
+  protected Integer batchInsertRows;
   protected ExecutorType defaultExecutorType = ExecutorType.SIMPLE;
   protected AutoMappingBehavior autoMappingBehavior = AutoMappingBehavior.PARTIAL;
   protected AutoMappingUnknownColumnBehavior autoMappingUnknownColumnBehavior = AutoMappingUnknownColumnBehavior.NONE;
@@ -152,6 +193,15 @@ public class Configuration {
       .conflictMessageProducer((savedValue, targetValue) ->
           ". please check " + savedValue.getResource() + " and " + targetValue.getResource());
   protected final Map<String, Cache> caches = new StrictMap<>("Caches collection");
+  protected final Map<String, CacheMetrics> cacheMetrics = new HashMap<>();
+  protected final Map<String, AdmissionPolicy> cacheAdmissionPolicies = new HashMap<>();
+  protected final TableVersions tableVersions = new TableVersions();
+  protected CacheRefresher cacheRefresher;
+  protected InvalidationBus invalidationBus;
+  protected CacheSnapshots cacheSnapshots;
+  protected java.util.concurrent.Executor asyncExecutor;
+  // the async executor created by the configuration, stopped by shutdown()
+  private ExecutorService defaultAsyncExecutor;
   protected final Map<String, ResultMap> resultMaps = new StrictMap<>("Result Maps collection");
   protected final Map<String, ParameterMap> parameterMaps = new StrictMap<>("Parameter Maps collection");
   protected final Map<String, KeyGenerator> keyGenerators = new StrictMap<>("Key Generators collection");
@@ -185,10 +235,23 @@ public class Configuration {
     typeAliasRegistry.registerAlias("UNPOOLED", UnpooledDataSourceFactory.class);
 
     typeAliasRegistry.registerAlias("PERPETUAL", PerpetualCache.class);
+    typeAliasRegistry.registerAlias("OFF_HEAP", OffHeapCache.class);
     typeAliasRegistry.registerAlias("FIFO", FifoCache.class);
     typeAliasRegistry.registerAlias("LRU", LruCache.class);
     typeAliasRegistry.registerAlias("SOFT", SoftCache.class);
     typeAliasRegistry.registerAlias("WEAK", WeakCache.class);
+    typeAliasRegistry.registerAlias("TINYLFU", TinyLfuCache.class);
+    typeAliasRegistry.registerAlias("RECLAIMING", ReclaimingCache.class);
+
+    typeAliasRegistry.registerAlias("JAVA_SERIALIZER", JavaSerializer.class);
+    typeAliasRegistry.registerAlias("BINARY_SERIALIZER", BinarySerializer.class);
+    typeAliasRegistry.registerAlias("OBJECT_SIZE_WEIGHER", ObjectSizeWeigher.class);
+    typeAliasRegistry.registerAlias("LZ_COMPRESSOR", LzCompressor.class);
+    typeAliasRegistry.registerAlias("DEFLATE_COMPRESSOR", DeflateCompressor.class);
+    typeAliasRegistry.registerAlias("FREQUENCY_ADMISSION", FrequencyAdmission.class);
+
+    typeAliasRegistry.registerAlias("LOOPBACK_TRANSPORT", LoopbackTransport.class);
+    typeAliasRegistry.registerAlias("UDP_TRANSPORT", UdpTransport.class);
 
     typeAliasRegistry.registerAlias("DB_VENDOR", VendorDatabaseIdProvider.class);
 
@@ -350,6 +413,38 @@ public class Configuration {
     this.lazyLoadingEnabled = lazyLoadingEnabled;
   }
 
+  /**
+   * @since 3.5.0
+   */
+  public int getNestedQueryBatchSize() {
+    return nestedQueryBatchSize;
+  }
+
+  /**
+   * @param nestedQueryBatchSize the maximum number of parameters passed to one execution of a
+   *     {@code fetchType="batch"} nested select
+   * @since 3.5.0
+   */
+  public void setNestedQueryBatchSize(int nestedQueryBatchSize) {
+    this.nestedQueryBatchSize = nestedQueryBatchSize;
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public int getLazyLoadBatchSize() {
+    return lazyLoadBatchSize;
+  }
+
+  /**
+   * @param lazyLoadBatchSize the maximum number of result objects whose lazy property is loaded together when the
+   *     property of one of them is read, for nested selects with the batch fetch type when lazy loading is enabled
+   * @since 3.5.0
+   */
+  public void setLazyLoadBatchSize(int lazyLoadBatchSize) {
+    this.lazyLoadBatchSize = lazyLoadBatchSize;
+  }
+
   public ProxyFactory getProxyFactory() {
     return proxyFactory;
   }
@@ -431,6 +526,101 @@ public class Configuration {
     this.defaultFetchSize = defaultFetchSize;
   }
 
+  /**
+   * @since 3.5.0
+   */
+  public Integer getBatchFlushSize() {
+    return batchFlushSize;
+  }
+
+  /**
+   * @param batchFlushSize number of batched executions after which the batch executor flushes, or null to only
+   *     flush when asked to
+   * @since 3.5.0
+   */
+  public void setBatchFlushSize(Integer batchFlushSize) {
+    this.batchFlushSize = batchFlushSize;
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public Long getBatchFlushBytes() {
+    return batchFlushBytes;
+  }
+
+  /**
+   * @param batchFlushBytes estimated heap size of the batched parameter objects after which the batch executor
+   *     flushes, or null to only flush when asked to
+   * @since 3.5.0
+   */
+  public void setBatchFlushBytes(Long batchFlushBytes) {
+    this.batchFlushBytes = batchFlushBytes;
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public BatchFlushListener getBatchFlushListener() {
+    return batchFlushListener;
+  }
+
+  /**
+   * @param batchFlushListener listener that receives the results of every flush of the batch executors
+   * @since 3.5.0
+   */
+  public void setBatchFlushListener(BatchFlushListener batchFlushListener) {
+    this.batchFlushListener = batchFlushListener;
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public boolean isBatchStatementGrouping() {
+    return batchStatementGrouping;
+  }
+
+  /**
+   * @param batchStatementGrouping whether the batch executor keeps one batched statement per distinct SQL until
+   *     it flushes, instead of starting a new one each time the SQL changes
+   * @since 3.5.0
+   */
+  public void setBatchStatementGrouping(boolean batchStatementGrouping) {
+    this.batchStatementGrouping = batchStatementGrouping;
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public List<String> getBatchTableOrder() {
+    return batchTableOrder;
+  }
+
+  /**
+   * @param batchTableOrder tables in the order they must be inserted and updated, parents first; grouped batches
+   *     never move an execution past the batch of a table that is not declared
+   * @since 3.5.0
+   */
+  public void setBatchTableOrder(List<String> batchTableOrder) {
+    this.batchTableOrder = batchTableOrder;
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public Integer getBatchInsertRows() {
+    return batchInsertRows;
+  }
+
+  /**
+   * @param batchInsertRows number of rows of the multi-row statements into which the batch executor rewrites the
+   *     executions of an {@code INSERT ... VALUES (...)} statement, or null to batch them as they are
+   * @since 3.5.0
+   */
+  public void setBatchInsertRows(Integer batchInsertRows) {
+    this.batchInsertRows = batchInsertRows;
+  }
+
   public boolean isUseColumnLabel() {
     return useColumnLabel;
   }
@@ -447,6 +637,169 @@ public class Configuration {
     this.localCacheScope = localCacheScope;
   }
 
+  /**
+   * @since 3.5.0
+   */
+  public Integer getLocalCacheSize() {
+    return localCacheSize;
+  }
+
+  /**
+   * @param localCacheSize the max number of queries kept in the local cache of a session, null for no limit
+   * @since 3.5.0
+   */
+  public void setLocalCacheSize(Integer localCacheSize) {
+    this.localCacheSize = localCacheSize;
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public Long getLocalCacheMaxWeight() {
+    return localCacheMaxWeight;
+  }
+
+  /**
+   * @param localCacheMaxWeight the max estimated size in bytes of the local cache of a session, null for no limit
+   * @since 3.5.0
+   */
+  public void setLocalCacheMaxWeight(Long localCacheMaxWeight) {
+    this.localCacheMaxWeight = localCacheMaxWeight;
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public CacheInvalidationScope getCacheInvalidationScope() {
+    return cacheInvalidationScope;
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public void setCacheInvalidationScope(CacheInvalidationScope cacheInvalidationScope) {
+    this.cacheInvalidationScope = cacheInvalidationScope;
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public int getCacheRefreshThreads() {
+    return cacheRefreshThreads;
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public void setCacheRefreshThreads(int cacheRefreshThreads) {
+    this.cacheRefreshThreads = cacheRefreshThreads;
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public String getCacheSnapshotFile() {
+    return cacheSnapshotFile;
+  }
+
+  /**
+   * @param cacheSnapshotFile the file the second level caches are saved to and loaded from, null for none
+   * @since 3.5.0
+   */
+  public void setCacheSnapshotFile(String cacheSnapshotFile) {
+    this.cacheSnapshotFile = cacheSnapshotFile;
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public long getCacheSnapshotInterval() {
+    return cacheSnapshotInterval;
+  }
+
+  /**
+   * @param cacheSnapshotInterval the milliseconds between two saves of the cache snapshot, 0 to only save it at
+   *          shutdown
+   * @since 3.5.0
+   */
+  public void setCacheSnapshotInterval(long cacheSnapshotInterval) {
+    this.cacheSnapshotInterval = cacheSnapshotInterval;
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public int getAsyncQueryThreads() {
+    return asyncQueryThreads;
+  }
+
+  /**
+   * @param asyncQueryThreads the number of threads of the default asynchronous executor, which bounds the number of
+   *          asynchronous queries running at once
+   * @since 3.5.0
+   */
+  public void setAsyncQueryThreads(int asyncQueryThreads) {
+    this.asyncQueryThreads = asyncQueryThreads;
+  }
+
+  /**
+   * @return the executor running the database queries of the asynchronous selects, a pool of
+   *     {@code asyncQueryThreads} daemon threads unless another one was set
+   * @since 3.5.0
+   */
+  public synchronized java.util.concurrent.Executor getAsyncExecutor() {
+    if (asyncExecutor == null && asyncVirtualThreads) {
+      defaultAsyncExecutor = newVirtualThreadExecutor();
+      asyncExecutor = defaultAsyncExecutor;
+    }
+    if (asyncExecutor == null) {
+      AtomicInteger threadCount = new AtomicInteger();
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(asyncQueryThreads, asyncQueryThreads, 60, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "mybatis-async-query-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+          });
+      pool.allowCoreThreadTimeOut(true);
+      defaultAsyncExecutor = pool;
+      asyncExecutor = pool;
+    }
+    return asyncExecutor;
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public synchronized void setAsyncExecutor(java.util.concurrent.Executor asyncExecutor) {
+    this.asyncExecutor = asyncExecutor;
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public boolean isAsyncVirtualThreads() {
+    return asyncVirtualThreads;
+  }
+
+  /**
+   * @param asyncVirtualThreads true to run each asynchronous statement on its own virtual thread when the JVM supports
+   *          them (Java 21 or later), instead of on a pool of {@code asyncQueryThreads} threads
+   * @since 3.5.0
+   */
+  public void setAsyncVirtualThreads(boolean asyncVirtualThreads) {
+    this.asyncVirtualThreads = asyncVirtualThreads;
+  }
+
+  private static ExecutorService newVirtualThreadExecutor() {
+    try {
+      // looked up by reflection, the code is compiled for Java 8
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      LogFactory.getLog(Configuration.class).debug("Virtual threads are not available, using a thread pool instead.");
+      return null;
+    }
+  }
+
   public JdbcType getJdbcTypeForNull() {
     return jdbcTypeForNull;
   }
@@ -581,12 +934,20 @@ public class Configuration {
       executor = new SimpleExecutor(this, transaction);
     }
     if (cacheEnabled) {
-      executor = new CachingExecutor(executor);
+      executor = new CachingExecutor(executor, this);
     }
     executor = (Executor) interceptorChain.pluginAll(executor);
     return executor;
   }
 
+  /**
+   * @return a new executor for the statements of a stateless session, to be used by one thread at a time
+   * @since 3.5.0
+   */
+  public Executor newStatelessExecutor() {
+    return (Executor) interceptorChain.pluginAll(new StatelessExecutor(this));
+  }
+
   public void addKeyGenerator(String id, KeyGenerator keyGenerator) {
     keyGenerators.put(id, keyGenerator);
   }
@@ -623,6 +984,110 @@ public class Configuration {
     return caches.get(id);
   }
 
+  /**
+   * @since 3.5.0
+   */
+  public void addCacheMetrics(CacheMetrics metrics) {
+    cacheMetrics.put(metrics.getId(), metrics);
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public Collection<CacheMetrics> getCacheMetrics() {
+    return cacheMetrics.values();
+  }
+
+  /**
+   * @param id the id of a cache, which is the namespace of the mapper that declared it
+   * @return the metrics of the cache or null if it was not built by a mapper
+   * @since 3.5.0
+   */
+  public CacheMetrics getCacheMetrics(String id) {
+    return cacheMetrics.get(id);
+  }
+
+  /**
+   * @param id the id of the cache whose entries are filtered by the policy
+   * @since 3.5.0
+   */
+  public void addCacheAdmissionPolicy(String id, AdmissionPolicy admissionPolicy) {
+    cacheAdmissionPolicies.put(id, admissionPolicy);
+  }
+
+  /**
+   * @return the admission policy of the cache or null if every loaded entry is cached
+   * @since 3.5.0
+   */
+  public AdmissionPolicy getCacheAdmissionPolicy(String id) {
+    return cacheAdmissionPolicies.get(id);
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public TableVersions getTableVersions() {
+    return tableVersions;
+  }
+
+  /**
+   * @return the background loaders of the caches that refresh ahead, started on first use
+   * @since 3.5.0
+   */
+  public synchronized CacheRefresher getCacheRefresher() {
+    if (cacheRefresher == null) {
+      cacheRefresher = new CacheRefresher(this, cacheRefreshThreads);
+    }
+    return cacheRefresher;
+  }
+
+  /**
+   * Stops the background threads started for this configuration and closes its invalidation bus. Sessions can
+   * still be opened afterwards, but the caches are no longer refreshed ahead nor invalidated by the other nodes, and
+   * the asynchronous calls are rejected unless another async executor is set. The asynchronous calls already
+   * submitted still run. An async executor set with {@link #setAsyncExecutor} is left to its owner.
+   *
+   * @since 3.5.0
+   */
+  public synchronized void shutdown() {
+    if (cacheRefresher != null) {
+      cacheRefresher.shutdown();
+    }
+    if (defaultAsyncExecutor != null) {
+      defaultAsyncExecutor.shutdown();
+    }
+    if (invalidationBus != null) {
+      invalidationBus.close();
+    }
+  }
+
+  /**
+   * @return the snapshots of the second level caches
+   * @since 3.5.0
+   */
+  public synchronized CacheSnapshots getCacheSnapshots() {
+    if (cacheSnapshots == null) {
+      cacheSnapshots = new CacheSnapshots(this);
+    }
+    return cacheSnapshots;
+  }
+
+  /**
+   * @since 3.5.0
+   */
+  public InvalidationBus getInvalidationBus() {
+    return invalidationBus;
+  }
+
+  /**
+   * @param invalidationBus the bus that shares the second level cache invalidations with other nodes, used by the
+   *          executors created afterwards
+   * @since 3.5.0
+   */
+  public void setInvalidationBus(InvalidationBus invalidationBus) {
+    this.invalidationBus = invalidationBus;
+  }
+
   public boolean hasCache(String id) {
     return caches.containsKey(id);
   }
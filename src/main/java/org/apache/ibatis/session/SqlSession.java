@@ -19,8 +19,10 @@ import java.io.Closeable;
 import java.sql.Connection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.exceptions.TooManyResultsException;
 import org.apache.ibatis.executor.BatchResult;
 
 /**
@@ -76,6 +78,84 @@ public interface SqlSession extends Closeable {
    */
   <E> List<E> selectList(String statement, Object parameter, RowBounds rowBounds);
 
+  /**
+   * Retrieve a single row mapped from the statement key, without blocking the calling thread.
+   * @param <T> the returned object type
+   * @param statement Unique identifier matching the statement to use.
+   * @return A future completed with the mapped object
+   * @see #selectListAsync(String, Object, RowBounds)
+   * @since 3.5.0
+   */
+  default <T> CompletableFuture<T> selectOneAsync(String statement) {
+    return this.<T>selectOneAsync(statement, null);
+  }
+
+  /**
+   * Retrieve a single row mapped from the statement key and parameter, without blocking the calling thread.
+   * @param <T> the returned object type
+   * @param statement Unique identifier matching the statement to use.
+   * @param parameter A parameter object to pass to the statement.
+   * @return A future completed with the mapped object
+   * @see #selectListAsync(String, Object, RowBounds)
+   * @since 3.5.0
+   */
+  default <T> CompletableFuture<T> selectOneAsync(String statement, Object parameter) {
+    return this.<T>selectListAsync(statement, parameter, RowBounds.DEFAULT).thenApply(list -> {
+      if (list.size() > 1) {
+        throw new TooManyResultsException("Expected one result (or null) to be returned by selectOneAsync(), but found: " + list.size());
+      }
+      return list.isEmpty() ? null : list.get(0);
+    });
+  }
+
+  /**
+   * Retrieve a list of mapped objects from the statement key, without blocking the calling thread.
+   * @param <E> the returned list element type
+   * @param statement Unique identifier matching the statement to use.
+   * @return A future completed with the list of mapped objects
+   * @see #selectListAsync(String, Object, RowBounds)
+   * @since 3.5.0
+   */
+  default <E> CompletableFuture<List<E>> selectListAsync(String statement) {
+    return this.<E>selectListAsync(statement, null, RowBounds.DEFAULT);
+  }
+
+  /**
+   * Retrieve a list of mapped objects from the statement key and parameter, without blocking the calling thread.
+   * @param <E> the returned list element type
+   * @param statement Unique identifier matching the statement to use.
+   * @param parameter A parameter object to pass to the statement.
+   * @return A future completed with the list of mapped objects
+   * @see #selectListAsync(String, Object, RowBounds)
+   * @since 3.5.0
+   */
+  default <E> CompletableFuture<List<E>> selectListAsync(String statement, Object parameter) {
+    return this.<E>selectListAsync(statement, parameter, RowBounds.DEFAULT);
+  }
+
+  /**
+   * Retrieve a list of mapped objects from the statement key and parameter, within the specified row bounds, without
+   * blocking the calling thread. The second level cache is looked up asynchronously when it is an
+   * {@link org.apache.ibatis.cache.AsyncCache}, and the database is queried on the asynchronous executor of the
+   * configuration. The asynchronous calls of a session run one after the other, and its other methods wait for them.
+   * This default implementation runs the select synchronously.
+   * @param <E> the returned list element type
+   * @param statement Unique identifier matching the statement to use.
+   * @param parameter A parameter object to pass to the statement.
+   * @param rowBounds  Bounds to limit object retrieval
+   * @return A future completed with the list of mapped objects
+   * @since 3.5.0
+   */
+  default <E> CompletableFuture<List<E>> selectListAsync(String statement, Object parameter, RowBounds rowBounds) {
+    CompletableFuture<List<E>> future = new CompletableFuture<>();
+    try {
+      future.complete(this.<E>selectList(statement, parameter, rowBounds));
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
   /**
    * The selectMap is a special case in that it is designed to convert a list
    * of results into a Map based on one of the properties in the resulting
@@ -216,6 +296,49 @@ public interface SqlSession extends Closeable {
    */
   int delete(String statement, Object parameter);
 
+  /**
+   * Execute an insert statement with the given parameter object, without blocking the calling thread.
+   * @param statement Unique identifier matching the statement to execute.
+   * @param parameter A parameter object to pass to the statement.
+   * @return A future completed with the number of rows affected by the insert.
+   * @see #updateAsync(String, Object)
+   * @since 3.5.0
+   */
+  default CompletableFuture<Integer> insertAsync(String statement, Object parameter) {
+    return updateAsync(statement, parameter);
+  }
+
+  /**
+   * Execute an update statement, without blocking the calling thread. The statement runs on the asynchronous executor
+   * of the configuration, in the transaction of the session, after its previous asynchronous calls. The session must
+   * still be committed, which waits for the pending calls. This default implementation runs the update synchronously.
+   * @param statement Unique identifier matching the statement to execute.
+   * @param parameter A parameter object to pass to the statement.
+   * @return A future completed with the number of rows affected by the update.
+   * @since 3.5.0
+   */
+  default CompletableFuture<Integer> updateAsync(String statement, Object parameter) {
+    CompletableFuture<Integer> future = new CompletableFuture<>();
+    try {
+      future.complete(update(statement, parameter));
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  /**
+   * Execute a delete statement, without blocking the calling thread.
+   * @param statement Unique identifier matching the statement to execute.
+   * @param parameter A parameter object to pass to the statement.
+   * @return A future completed with the number of rows affected by the delete.
+   * @see #updateAsync(String, Object)
+   * @since 3.5.0
+   */
+  default CompletableFuture<Integer> deleteAsync(String statement, Object parameter) {
+    return updateAsync(statement, parameter);
+  }
+
   /**
    * Flushes batch statements and commits database connection.
    * Note that database connection will not be committed if no updates/deletes/inserts were called.
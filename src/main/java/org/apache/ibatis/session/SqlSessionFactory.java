@@ -35,6 +35,19 @@ public interface SqlSessionFactory {
   SqlSession openSession(ExecutorType execType, TransactionIsolationLevel level);
   SqlSession openSession(ExecutorType execType, Connection connection);
 
+  /**
+   * Opens a stateless session. The default implementation throws an {@link UnsupportedOperationException} so that
+   * existing implementations keep compiling: {@link org.apache.ibatis.session.defaults.DefaultSqlSessionFactory}
+   * overrides it, other implementations must override it to support stateless sessions.
+   *
+   * @return a thread safe session that runs each statement in its own transaction and keeps no state
+   * @throws UnsupportedOperationException if this factory does not support stateless sessions
+   * @since 3.5.0
+   */
+  default StatelessSqlSession openStatelessSession() {
+    throw new UnsupportedOperationException("Stateless sessions are not supported by " + getClass().getName());
+  }
+
   Configuration getConfiguration();
 
 }
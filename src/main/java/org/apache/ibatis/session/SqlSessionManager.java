@@ -24,6 +24,7 @@ import java.sql.Connection;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.BatchResult;
@@ -136,6 +137,11 @@ public class SqlSessionManager implements SqlSessionFactory, SqlSession {
     return sqlSessionFactory.openSession(execType);
   }
 
+  @Override
+  public StatelessSqlSession openStatelessSession() {
+    return sqlSessionFactory.openStatelessSession();
+  }
+
   @Override
   public SqlSession openSession(ExecutorType execType, boolean autoCommit) {
     return sqlSessionFactory.openSession(execType, autoCommit);
@@ -211,6 +217,11 @@ public class SqlSessionManager implements SqlSessionFactory, SqlSession {
     return sqlSessionProxy.<E> selectList(statement, parameter, rowBounds);
   }
 
+  @Override
+  public <E> CompletableFuture<List<E>> selectListAsync(String statement, Object parameter, RowBounds rowBounds) {
+    return sqlSessionProxy.<E> selectListAsync(statement, parameter, rowBounds);
+  }
+
   @Override
   public void select(String statement, ResultHandler handler) {
     sqlSessionProxy.select(statement, handler);
@@ -256,6 +267,11 @@ public class SqlSessionManager implements SqlSessionFactory, SqlSession {
     return sqlSessionProxy.delete(statement, parameter);
   }
 
+  @Override
+  public CompletableFuture<Integer> updateAsync(String statement, Object parameter) {
+    return sqlSessionProxy.updateAsync(statement, parameter);
+  }
+
   @Override
   public <T> T getMapper(Class<T> type) {
     return getConfiguration().getMapper(type, this);
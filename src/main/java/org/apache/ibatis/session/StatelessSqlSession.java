@@ -0,0 +1,39 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+/**
+ * Session for high throughput reads and single statement writes, that keeps no state between statements.
+ *
+ * Each statement runs in its own auto-commit transaction, so {@link #commit()} and {@link #rollback()} do nothing.
+ * There is no local cache, the second level cache is not used, and nested selects are loaded immediately or lazily
+ * but never deferred: circular nested selects must be lazy. Cursors and {@link #getConnection()} are not supported.
+ *
+ * A stateless session is thread safe and can be kept for the life of the application. Each thread reuses its own
+ * executor, so a call allocates little more than the JDBC objects.
+ *
+ * @see SqlSessionFactory#openStatelessSession()
+ * @since 3.5.0
+ */
+public interface StatelessSqlSession extends SqlSession {
+
+  /**
+   * Does nothing, a stateless session holds no resource between statements.
+   */
+  @Override
+  void close();
+
+}
@@ -23,10 +23,14 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
 import org.apache.ibatis.binding.BindingException;
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.exceptions.ExceptionFactory;
+import org.apache.ibatis.exceptions.PersistenceException;
 import org.apache.ibatis.exceptions.TooManyResultsException;
 import org.apache.ibatis.executor.BatchResult;
 import org.apache.ibatis.executor.ErrorContext;
@@ -54,6 +58,8 @@ public class DefaultSqlSession implements SqlSession {
   private final boolean autoCommit;
   private boolean dirty;
   private List<Cursor<?>> cursorList;
+  private volatile CompletableFuture<?> lastAsyncCall;
+  private volatile PersistenceException asyncFailure;
 
   public DefaultSqlSession(Configuration configuration, Executor executor, boolean autoCommit) {
     this.configuration = configuration;
@@ -119,6 +125,7 @@ public class DefaultSqlSession implements SqlSession {
 
   @Override
   public <T> Cursor<T> selectCursor(String statement, Object parameter, RowBounds rowBounds) {
+    awaitAsyncCalls();
     try {
       MappedStatement ms = configuration.getMappedStatement(statement);
       Cursor<T> cursor = executor.queryCursor(ms, wrapCollection(parameter), rowBounds);
@@ -143,6 +150,7 @@ public class DefaultSqlSession implements SqlSession {
 
   @Override
   public <E> List<E> selectList(String statement, Object parameter, RowBounds rowBounds) {
+    awaitAsyncCalls();
     try {
       MappedStatement ms = configuration.getMappedStatement(statement);
       return executor.query(ms, wrapCollection(parameter), rowBounds, Executor.NO_RESULT_HANDLER);
@@ -153,6 +161,29 @@ public class DefaultSqlSession implements SqlSession {
     }
   }
 
+  @Override
+  public <E> CompletableFuture<List<E>> selectListAsync(String statement, Object parameter, RowBounds rowBounds) {
+    return callAsync(() -> {
+      MappedStatement ms = configuration.getMappedStatement(statement);
+      Object wrappedParameter = wrapCollection(parameter);
+      return executor.<E>lookupAsync(ms, wrappedParameter, rowBounds).thenCompose(cached -> {
+        if (cached != null) {
+          return CompletableFuture.completedFuture(cached);
+        }
+        // through the plugins of the executor, as the synchronous selects
+        return CompletableFuture.supplyAsync(() -> {
+          // the context is kept on failure, for the caller to report it
+          ErrorContext.instance().reset();
+          try {
+            return executor.<E>query(ms, wrappedParameter, rowBounds, Executor.NO_RESULT_HANDLER);
+          } catch (SQLException e) {
+            throw new CompletionException(e);
+          }
+        }, configuration.getAsyncExecutor());
+      });
+    }, "Error querying database.  Cause: ");
+  }
+
   @Override
   public void select(String statement, Object parameter, ResultHandler handler) {
     select(statement, parameter, RowBounds.DEFAULT, handler);
@@ -165,6 +196,7 @@ public class DefaultSqlSession implements SqlSession {
 
   @Override
   public void select(String statement, Object parameter, RowBounds rowBounds, ResultHandler handler) {
+    awaitAsyncCalls();
     try {
       MappedStatement ms = configuration.getMappedStatement(statement);
       executor.query(ms, wrapCollection(parameter), rowBounds, handler);
@@ -192,6 +224,7 @@ public class DefaultSqlSession implements SqlSession {
 
   @Override
   public int update(String statement, Object parameter) {
+    awaitAsyncCalls();
     try {
       dirty = true;
       MappedStatement ms = configuration.getMappedStatement(statement);
@@ -203,6 +236,24 @@ public class DefaultSqlSession implements SqlSession {
     }
   }
 
+  @Override
+  public CompletableFuture<Integer> updateAsync(String statement, Object parameter) {
+    dirty = true;
+    return callAsync(() -> {
+      MappedStatement ms = configuration.getMappedStatement(statement);
+      Object wrappedParameter = wrapCollection(parameter);
+      return CompletableFuture.supplyAsync(() -> {
+        // the context is kept on failure, for the caller to report it
+        ErrorContext.instance().reset();
+        try {
+          return executor.update(ms, wrappedParameter);
+        } catch (SQLException e) {
+          throw new CompletionException(e);
+        }
+      }, configuration.getAsyncExecutor());
+    }, "Error updating database.  Cause: ");
+  }
+
   @Override
   public int delete(String statement) {
     return update(statement, null);
@@ -220,6 +271,8 @@ public class DefaultSqlSession implements SqlSession {
 
   @Override
   public void commit(boolean force) {
+    awaitAsyncCalls();
+    checkAsyncFailure("commit");
     try {
       executor.commit(isCommitOrRollbackRequired(force));
       dirty = false;
@@ -237,18 +290,22 @@ public class DefaultSqlSession implements SqlSession {
 
   @Override
   public void rollback(boolean force) {
+    awaitAsyncCalls();
     try {
       executor.rollback(isCommitOrRollbackRequired(force));
       dirty = false;
     } catch (Exception e) {
       throw ExceptionFactory.wrapException("Error rolling back transaction.  Cause: " + e, e);
     } finally {
+      asyncFailure = null;
       ErrorContext.instance().reset();
     }
   }
 
   @Override
   public List<BatchResult> flushStatements() {
+    awaitAsyncCalls();
+    checkAsyncFailure("flush the statements");
     try {
       return executor.flushStatements();
     } catch (Exception e) {
@@ -260,11 +317,13 @@ public class DefaultSqlSession implements SqlSession {
 
   @Override
   public void close() {
+    awaitAsyncCalls();
     try {
       executor.close(isCommitOrRollbackRequired(false));
       closeCursors();
       dirty = false;
     } finally {
+      asyncFailure = null;
       ErrorContext.instance().reset();
     }
   }
@@ -294,6 +353,8 @@ public class DefaultSqlSession implements SqlSession {
 
   @Override
   public Connection getConnection() {
+    // the connection is not safe to share with a running asynchronous call
+    awaitAsyncCalls();
     try {
       return executor.getTransaction().getConnection();
     } catch (SQLException e) {
@@ -303,9 +364,76 @@ public class DefaultSqlSession implements SqlSession {
 
   @Override
   public void clearCache() {
+    awaitAsyncCalls();
     executor.clearLocalCache();
   }
 
+  /**
+   * Chains an asynchronous call after the previous ones, since the executor is not thread safe.
+   *
+   * Once a call fails, the session is failed: the following calls are skipped and fail with the same cause, and commit
+   * and flushStatements throw, until the session is rolled back or closed.
+   */
+  private <T> CompletableFuture<T> callAsync(Supplier<CompletableFuture<T>> call, String errorMessage) {
+    CompletableFuture<?> previous = lastAsyncCall;
+    if (previous == null) {
+      previous = CompletableFuture.completedFuture(null);
+    }
+    CompletableFuture<T> result = previous.handle((value, failure) -> null)
+        .thenCompose(ignored -> {
+          PersistenceException failed = asyncFailure;
+          if (failed != null) {
+            CompletableFuture<T> skipped = new CompletableFuture<>();
+            skipped.completeExceptionally(new PersistenceException(
+                "Skipped since a previous asynchronous call of the session failed.  Cause: " + failed, failed));
+            return skipped;
+          }
+          CompletableFuture<T> called;
+          try {
+            called = call.get();
+          } catch (RuntimeException e) {
+            called = new CompletableFuture<>();
+            called.completeExceptionally(e);
+          }
+          return called.handle((value, failure) -> {
+            if (failure == null) {
+              return value;
+            }
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            if (cause instanceof Error) {
+              asyncFailure = new PersistenceException(errorMessage + cause, cause);
+              throw (Error) cause;
+            }
+            try {
+              RuntimeException wrapped = ExceptionFactory.wrapException(errorMessage + cause, (Exception) cause);
+              asyncFailure = (PersistenceException) wrapped;
+              throw wrapped;
+            } finally {
+              ErrorContext.instance().reset();
+            }
+          });
+        });
+    lastAsyncCall = result;
+    return result;
+  }
+
+  private void checkAsyncFailure(String action) {
+    PersistenceException failed = asyncFailure;
+    if (failed != null) {
+      throw new PersistenceException("Cannot " + action + " since an asynchronous call of the session failed, "
+          + "the session must be rolled back.  Cause: " + failed, failed);
+    }
+  }
+
+  private void awaitAsyncCalls() {
+    CompletableFuture<?> last = lastAsyncCall;
+    if (last != null) {
+      // failures were reported to the callers
+      last.handle((value, failure) -> null).join();
+      lastAsyncCall = null;
+    }
+  }
+
   private <T> void registerCursor(Cursor<T> cursor) {
     if (cursorList == null) {
       cursorList = new ArrayList<>();
@@ -317,7 +445,7 @@ public class DefaultSqlSession implements SqlSession {
     return (!autoCommit && dirty) || force;
   }
 
-  private Object wrapCollection(final Object object) {
+  static Object wrapCollection(final Object object) {
     if (object instanceof Collection) {
       StrictMap<Object> map = new StrictMap<>();
       map.put("collection", object);
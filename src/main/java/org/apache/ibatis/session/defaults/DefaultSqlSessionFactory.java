@@ -26,6 +26,7 @@ import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ExecutorType;
 import org.apache.ibatis.session.SqlSession;
 import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.StatelessSqlSession;
 import org.apache.ibatis.session.TransactionIsolationLevel;
 import org.apache.ibatis.transaction.Transaction;
 import org.apache.ibatis.transaction.TransactionFactory;
@@ -37,9 +38,11 @@ import org.apache.ibatis.transaction.managed.ManagedTransactionFactory;
 public class DefaultSqlSessionFactory implements SqlSessionFactory {
 
   private final Configuration configuration;
+  private final StatelessSqlSession statelessSession;
 
   public DefaultSqlSessionFactory(Configuration configuration) {
     this.configuration = configuration;
+    this.statelessSession = new DefaultStatelessSqlSession(configuration);
   }
 
   @Override
@@ -82,6 +85,14 @@ public class DefaultSqlSessionFactory implements SqlSessionFactory {
     return openSessionFromConnection(execType, connection);
   }
 
+  /**
+   * @return the stateless session of the factory, which is shared by all the threads
+   */
+  @Override
+  public StatelessSqlSession openStatelessSession() {
+    return statelessSession;
+  }
+
   @Override
   public Configuration getConfiguration() {
     return configuration;
@@ -0,0 +1,271 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session.defaults;
+
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.exceptions.ExceptionFactory;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.exceptions.TooManyResultsException;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.ErrorContext;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.result.DefaultMapResultHandler;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.StatelessSqlSession;
+
+/**
+ * The default implementation for {@link StatelessSqlSession}, thread safe.
+ *
+ * Each thread runs its statements with a {@link org.apache.ibatis.executor.StatelessExecutor} of its own, created with
+ * its plugins on the first statement and shared with the nested selects. It holds nothing between statements, the
+ * transaction of a statement is closed when it completes. The error context is only filled and reset when a
+ * statement fails.
+ *
+ * @since 3.5.0
+ */
+public class DefaultStatelessSqlSession implements StatelessSqlSession {
+
+  private final Configuration configuration;
+  private final ThreadLocal<Executor> executors;
+
+  public DefaultStatelessSqlSession(Configuration configuration) {
+    this.configuration = configuration;
+    this.executors = ThreadLocal.withInitial(configuration::newStatelessExecutor);
+  }
+
+  @Override
+  public <T> T selectOne(String statement) {
+    return this.<T>selectOne(statement, null);
+  }
+
+  @Override
+  public <T> T selectOne(String statement, Object parameter) {
+    List<T> list = this.selectList(statement, parameter);
+    if (list.size() == 1) {
+      return list.get(0);
+    } else if (list.size() > 1) {
+      throw new TooManyResultsException("Expected one result (or null) to be returned by selectOne(), but found: " + list.size());
+    } else {
+      return null;
+    }
+  }
+
+  @Override
+  public <K, V> Map<K, V> selectMap(String statement, String mapKey) {
+    return this.selectMap(statement, null, mapKey, RowBounds.DEFAULT);
+  }
+
+  @Override
+  public <K, V> Map<K, V> selectMap(String statement, Object parameter, String mapKey) {
+    return this.selectMap(statement, parameter, mapKey, RowBounds.DEFAULT);
+  }
+
+  @Override
+  public <K, V> Map<K, V> selectMap(String statement, Object parameter, String mapKey, RowBounds rowBounds) {
+    final List<? extends V> list = selectList(statement, parameter, rowBounds);
+    final DefaultMapResultHandler<K, V> mapResultHandler = new DefaultMapResultHandler<>(mapKey,
+            configuration.getObjectFactory(), configuration.getObjectWrapperFactory(), configuration.getReflectorFactory());
+    final DefaultResultContext<V> context = new DefaultResultContext<>();
+    for (V o : list) {
+      context.nextResultObject(o);
+      mapResultHandler.handleResult(context);
+    }
+    return mapResultHandler.getMappedResults();
+  }
+
+  @Override
+  public <T> Cursor<T> selectCursor(String statement) {
+    return selectCursor(statement, null);
+  }
+
+  @Override
+  public <T> Cursor<T> selectCursor(String statement, Object parameter) {
+    return selectCursor(statement, parameter, RowBounds.DEFAULT);
+  }
+
+  @Override
+  public <T> Cursor<T> selectCursor(String statement, Object parameter, RowBounds rowBounds) {
+    throw new PersistenceException("Cursors are not supported by stateless sessions.");
+  }
+
+  @Override
+  public <E> List<E> selectList(String statement) {
+    return this.selectList(statement, null);
+  }
+
+  @Override
+  public <E> List<E> selectList(String statement, Object parameter) {
+    return this.selectList(statement, parameter, RowBounds.DEFAULT);
+  }
+
+  @Override
+  public <E> List<E> selectList(String statement, Object parameter, RowBounds rowBounds) {
+    MappedStatement ms = null;
+    try {
+      ms = configuration.getMappedStatement(statement);
+      return executors.get().query(ms, DefaultSqlSession.wrapCollection(parameter), rowBounds, Executor.NO_RESULT_HANDLER);
+    } catch (Exception e) {
+      throw wrapException("Error querying database.  Cause: ", "executing a query", ms, e);
+    }
+  }
+
+  /**
+   * Runs the select on the asynchronous executor of the configuration, with the stateless executor of its thread.
+   */
+  @Override
+  public <E> CompletableFuture<List<E>> selectListAsync(String statement, Object parameter, RowBounds rowBounds) {
+    return CompletableFuture.supplyAsync(() -> this.<E>selectList(statement, parameter, rowBounds),
+        configuration.getAsyncExecutor());
+  }
+
+  @Override
+  public void select(String statement, Object parameter, ResultHandler handler) {
+    select(statement, parameter, RowBounds.DEFAULT, handler);
+  }
+
+  @Override
+  public void select(String statement, ResultHandler handler) {
+    select(statement, null, RowBounds.DEFAULT, handler);
+  }
+
+  @Override
+  public void select(String statement, Object parameter, RowBounds rowBounds, ResultHandler handler) {
+    MappedStatement ms = null;
+    try {
+      ms = configuration.getMappedStatement(statement);
+      executors.get().query(ms, DefaultSqlSession.wrapCollection(parameter), rowBounds, handler);
+    } catch (Exception e) {
+      throw wrapException("Error querying database.  Cause: ", "executing a query", ms, e);
+    }
+  }
+
+  @Override
+  public int insert(String statement) {
+    return insert(statement, null);
+  }
+
+  @Override
+  public int insert(String statement, Object parameter) {
+    return update(statement, parameter);
+  }
+
+  @Override
+  public int update(String statement) {
+    return update(statement, null);
+  }
+
+  @Override
+  public int update(String statement, Object parameter) {
+    MappedStatement ms = null;
+    try {
+      ms = configuration.getMappedStatement(statement);
+      return executors.get().update(ms, DefaultSqlSession.wrapCollection(parameter));
+    } catch (Exception e) {
+      throw wrapException("Error updating database.  Cause: ", "executing an update", ms, e);
+    }
+  }
+
+  /**
+   * Runs the update on the asynchronous executor of the configuration, with the stateless executor of its thread.
+   */
+  @Override
+  public CompletableFuture<Integer> updateAsync(String statement, Object parameter) {
+    return CompletableFuture.supplyAsync(() -> update(statement, parameter), configuration.getAsyncExecutor());
+  }
+
+  @Override
+  public int delete(String statement) {
+    return update(statement, null);
+  }
+
+  @Override
+  public int delete(String statement, Object parameter) {
+    return update(statement, parameter);
+  }
+
+  @Override
+  public void commit() {
+    // every statement was committed when it completed
+  }
+
+  @Override
+  public void commit(boolean force) {
+    // every statement was committed when it completed
+  }
+
+  @Override
+  public void rollback() {
+    // every statement was committed when it completed
+  }
+
+  @Override
+  public void rollback(boolean force) {
+    // every statement was committed when it completed
+  }
+
+  @Override
+  public List<BatchResult> flushStatements() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public void close() {
+    // nothing is held between statements
+  }
+
+  @Override
+  public void clearCache() {
+    // no local cache
+  }
+
+  @Override
+  public Configuration getConfiguration() {
+    return configuration;
+  }
+
+  @Override
+  public <T> T getMapper(Class<T> type) {
+    return configuration.<T>getMapper(type, this);
+  }
+
+  @Override
+  public Connection getConnection() {
+    throw new PersistenceException("Stateless sessions do not hold a connection.");
+  }
+
+  private RuntimeException wrapException(String message, String activity, MappedStatement ms, Exception e) {
+    try {
+      ErrorContext context = ErrorContext.instance().activity(activity);
+      if (ms != null) {
+        context.resource(ms.getResource()).object(ms.getId());
+      }
+      return ExceptionFactory.wrapException(message + e, e);
+    } finally {
+      ErrorContext.instance().reset();
+    }
+  }
+
+}
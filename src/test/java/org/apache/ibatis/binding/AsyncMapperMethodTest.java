@@ -0,0 +1,167 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.binding;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.annotations.MapKey;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BaseExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.Test;
+
+public class AsyncMapperMethodTest {
+
+  private final List<String> calls = Collections.synchronizedList(new ArrayList<>());
+  private boolean committed;
+
+  public interface AsyncMapper {
+    @Select("select name from item")
+    CompletableFuture<List<String>> selectNames();
+
+    @Select("select name from item")
+    CompletableFuture<Set<String>> selectNameSet();
+
+    @Select("select name from item where id = #{id}")
+    CompletableFuture<String> selectName(int id);
+
+    @Select("select name from item where id = #{id}")
+    CompletableFuture<Optional<String>> selectOptionalName(int id);
+
+    @MapKey("bytes")
+    @Select("select name from item")
+    CompletableFuture<Map<byte[], String>> selectNamesByBytes();
+
+    @Update("update item set name = #{name} where id = #{id}")
+    CompletableFuture<Integer> rename(@Param("id") int id, @Param("name") String name);
+
+    @Update("update item set name = #{name}")
+    CompletableFuture<Void> renameAll(String name);
+
+    @Select("select name from item")
+    CompletableFuture<Cursor<String>> selectCursor();
+  }
+
+  @Test
+  public void shouldReturnFuturesOfTheDeclaredResultTypes() throws Exception {
+    SqlSession session = newSession();
+    AsyncMapper mapper = session.getMapper(AsyncMapper.class);
+    assertEquals(Arrays.asList("one", "three"), mapper.selectNames().get(5, TimeUnit.SECONDS));
+    assertEquals(2, mapper.selectNameSet().get(5, TimeUnit.SECONDS).size());
+    assertEquals("one", mapper.selectName(1).get(5, TimeUnit.SECONDS));
+    assertEquals(Optional.empty(), mapper.selectOptionalName(0).get(5, TimeUnit.SECONDS));
+    assertEquals(2, mapper.selectNamesByBytes().get(5, TimeUnit.SECONDS).size());
+    assertEquals(Integer.valueOf(1), mapper.rename(1, "uno").get(5, TimeUnit.SECONDS));
+    assertNull(mapper.renameAll("x").get(5, TimeUnit.SECONDS));
+    session.close();
+  }
+
+  @Test
+  public void shouldRunTheCallsOfASessionInOrderBeforeTheCommit() throws Exception {
+    SqlSession session = newSession();
+    AsyncMapper mapper = session.getMapper(AsyncMapper.class);
+    CompletableFuture<Integer> update = mapper.rename(1, "uno");
+    CompletableFuture<String> select = mapper.selectName(1);
+    session.commit();
+    assertTrue(update.isDone());
+    assertTrue(select.isDone());
+    assertTrue(committed);
+    assertEquals(Arrays.asList("update", "query"), calls);
+    session.close();
+  }
+
+  @Test
+  public void shouldRejectCursorsWhenTheMethodIsFirstCalled() {
+    SqlSession session = newSession();
+    try {
+      session.getMapper(AsyncMapper.class).selectCursor();
+      fail();
+    } catch (BindingException e) {
+      assertTrue(e.getMessage().contains("cannot return a CompletableFuture"));
+    }
+    session.close();
+  }
+
+  private SqlSession newSession() {
+    Configuration configuration = new Configuration();
+    configuration.addMapper(AsyncMapper.class);
+    BaseExecutor executor = new BaseExecutor(configuration, new JdbcTransaction(null, null, false)) {
+      @Override
+      protected int doUpdate(MappedStatement ms, Object parameter) {
+        calls.add("update");
+        return 1;
+      }
+
+      @Override
+      protected List<BatchResult> doFlushStatements(boolean isRollback) {
+        return new ArrayList<>();
+      }
+
+      @Override
+      protected <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
+        calls.add("query");
+        List<Object> list = new ArrayList<>();
+        if (parameter == null) {
+          list.add("one");
+          list.add("three");
+        } else if (!Integer.valueOf(0).equals(parameter)) {
+          list.add("one");
+        }
+        @SuppressWarnings("unchecked")
+        List<E> result = (List<E>) list;
+        return result;
+      }
+
+      @Override
+      protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void commit(boolean required) {
+        committed = required;
+      }
+
+      @Override
+      public void close(boolean forceRollback) {
+        // no connection
+      }
+    };
+    return new DefaultSqlSession(configuration, executor);
+  }
+
+}
@@ -0,0 +1,106 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.apache.ibatis.cache.admission.FrequencyAdmission;
+import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.session.Configuration;
+import org.junit.Test;
+
+public class AdmissionPolicyTest {
+
+  @Test
+  public void shouldAdmitKeysLoadedAtLeastThresholdTimes() {
+    FrequencyAdmission admission = new FrequencyAdmission();
+    assertFalse(admission.admit("a"));
+    assertTrue(admission.admit("a"));
+    assertFalse(admission.admit("b"));
+
+    admission.setThreshold(3);
+    assertFalse(admission.admit("c"));
+    assertFalse(admission.admit("c"));
+    assertTrue(admission.admit("c"));
+    assertTrue(admission.admit("c"));
+  }
+
+  @Test
+  public void shouldForgetKeysOutsideOfTheWindow() {
+    FrequencyAdmission admission = new FrequencyAdmission();
+    admission.setWindow(100);
+    assertFalse(admission.admit("hot"));
+    for (int i = 0; i < 200; i++) {
+      admission.admit(i);
+    }
+    assertFalse(admission.admit("hot"));
+    assertTrue(admission.admit("hot"));
+  }
+
+  @Test
+  public void shouldRejectMostOneHitWonders() {
+    FrequencyAdmission admission = new FrequencyAdmission();
+    int admitted = 0;
+    for (int i = 0; i < 5000; i++) {
+      if (admission.admit("search" + i)) {
+        admitted++;
+      }
+    }
+    assertTrue("admitted " + admitted, admitted < 100);
+  }
+
+  @Test
+  public void shouldOnlyStageAdmittedEntries() {
+    Cache cache = new PerpetualCache("blog");
+    FrequencyAdmission admission = new FrequencyAdmission();
+    for (int i = 0; i < 2; i++) {
+      TransactionalCache transactionalCache = new TransactionalCache(cache, admission);
+      assertNull(transactionalCache.getObject("key"));
+      transactionalCache.putObject("key", "value");
+      transactionalCache.putObject("unique" + i, "value");
+      transactionalCache.commit();
+    }
+    assertEquals("value", cache.getObject("key"));
+    assertNull(cache.getObject("unique0"));
+    assertNull(cache.getObject("unique1"));
+  }
+
+  @Test
+  public void shouldRegisterTheAdmissionPolicyOfANamespace() {
+    Configuration configuration = new Configuration();
+    MapperBuilderAssistant assistant = new MapperBuilderAssistant(configuration, "resource");
+    assistant.setCurrentNamespace("blog");
+    Cache cache = assistant.useNewCache(assistant.newCacheBuilder().readWrite(true));
+    assistant.useCacheAdmission(null, 3, 500);
+    FrequencyAdmission admission = (FrequencyAdmission) configuration.getCacheAdmissionPolicy("blog");
+    assertEquals(3, admission.getThreshold());
+    assertEquals(500, admission.getWindow());
+
+    TransactionalCacheManager tcm = new TransactionalCacheManager(configuration);
+    CacheKey key = new CacheKey(new Object[] {"selectBlog", 1});
+    for (int i = 0; i < 2; i++) {
+      tcm.putObject(cache, key, "value");
+      tcm.commit();
+    }
+    assertNull(cache.getObject(key));
+    tcm.putObject(cache, key, "value");
+    tcm.commit();
+    assertEquals("value", cache.getObject(key));
+  }
+
+}
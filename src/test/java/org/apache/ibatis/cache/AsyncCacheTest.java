@@ -0,0 +1,345 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.exceptions.TooManyResultsException;
+import org.apache.ibatis.executor.BaseExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.CachingExecutor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Plugin;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.LocalCacheScope;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.defaults.DefaultSqlSession;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.Test;
+
+public class AsyncCacheTest {
+
+  private final AtomicInteger queries = new AtomicInteger();
+  private final AtomicInteger running = new AtomicInteger();
+  private final AtomicInteger maxRunning = new AtomicInteger();
+
+  @Test
+  public void shouldLookUpTheCacheWithoutBlocking() throws Exception {
+    RemoteCache remoteCache = new RemoteCache("blog");
+    Configuration configuration = newConfiguration(new LoggingCache(remoteCache));
+
+    SqlSession session = newSession(configuration);
+    CompletableFuture<List<String>> first = session.selectListAsync("blog.selectBlogs");
+    assertFalse(first.isDone());
+    assertEquals(0, queries.get());
+    remoteCache.completeLookups();
+    assertEquals(Arrays.asList("row"), first.get(5, TimeUnit.SECONDS));
+    assertEquals(1, queries.get());
+    session.commit();
+    session.close();
+
+    session = newSession(configuration);
+    CompletableFuture<List<String>> second = session.selectListAsync("blog.selectBlogs");
+    remoteCache.completeLookups();
+    assertEquals(Arrays.asList("row"), second.get(5, TimeUnit.SECONDS));
+    assertEquals(1, queries.get());
+    session.close();
+  }
+
+  @Test
+  public void shouldQueryThroughThePluginsOfTheExecutor() throws Exception {
+    RemoteCache remoteCache = new RemoteCache("blog");
+    Configuration configuration = newConfiguration(remoteCache);
+    QueryCounter counter = new QueryCounter();
+    configuration.addInterceptor(counter);
+
+    SqlSession session = newSession(configuration);
+    CompletableFuture<List<String>> miss = session.selectListAsync("blog.selectBlogs");
+    remoteCache.completeLookups();
+    assertEquals(Arrays.asList("row"), miss.get(5, TimeUnit.SECONDS));
+    assertEquals(1, counter.queries.get());
+    assertEquals(1, queries.get());
+    CompletableFuture<List<String>> uncached = session.selectListAsync("blog.selectTwoBlogs");
+    assertEquals(2, uncached.get(5, TimeUnit.SECONDS).size());
+    assertEquals(2, counter.queries.get());
+    session.close();
+  }
+
+  @Test
+  public void shouldRunTheAsyncCallsOfASessionOneAfterTheOther() throws Exception {
+    Configuration configuration = newConfiguration(null);
+    configuration.setLocalCacheScope(LocalCacheScope.STATEMENT);
+    SqlSession session = newSession(configuration);
+    List<CompletableFuture<List<String>>> futures = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      futures.add(session.selectListAsync("blog.selectBlogs", i));
+    }
+    // waits for the pending calls
+    session.close();
+    for (CompletableFuture<List<String>> future : futures) {
+      assertTrue(future.isDone());
+    }
+    assertEquals(5, queries.get());
+    assertEquals(1, maxRunning.get());
+  }
+
+  @Test
+  public void shouldReportFailuresAsPersistenceExceptions() throws Exception {
+    Configuration configuration = newConfiguration(null);
+    SqlSession session = newSession(configuration);
+    try {
+      session.selectListAsync("blog.unknown").get(5, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof PersistenceException);
+    }
+    session.rollback();
+    try {
+      session.selectOneAsync("blog.selectTwoBlogs").get(5, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof TooManyResultsException);
+    }
+    session.close();
+  }
+
+  @Test
+  public void shouldFailTheSessionOnceAnAsyncCallFailed() throws Exception {
+    Configuration configuration = newConfiguration(null);
+    SqlSession session = newSession(configuration);
+    CompletableFuture<List<String>> failed = session.selectListAsync("blog.unknown");
+    CompletableFuture<List<String>> skipped = session.selectListAsync("blog.selectBlogs");
+    try {
+      skipped.get(5, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause().getMessage().startsWith("Skipped"));
+    }
+    assertTrue(failed.isCompletedExceptionally());
+    assertEquals(0, queries.get());
+    try {
+      session.commit();
+      fail();
+    } catch (PersistenceException e) {
+      assertTrue(e.getMessage().startsWith("Cannot commit"));
+    }
+    try {
+      session.flushStatements();
+      fail();
+    } catch (PersistenceException e) {
+      assertTrue(e.getMessage().startsWith("Cannot flush the statements"));
+    }
+
+    session.rollback();
+    assertEquals(Arrays.asList("row"), session.selectListAsync("blog.selectBlogs").get(5, TimeUnit.SECONDS));
+    session.commit();
+    session.close();
+  }
+
+  @Test
+  public void shouldStopTheDefaultAsyncExecutorOnShutdown() throws Exception {
+    Configuration configuration = newConfiguration(null);
+    SqlSession session = newSession(configuration);
+    CompletableFuture<List<String>> pending = session.selectListAsync("blog.selectBlogs");
+    configuration.shutdown();
+    assertTrue(((ExecutorService) configuration.getAsyncExecutor()).isShutdown());
+    // submitted calls still run
+    assertEquals(Arrays.asList("row"), pending.get(5, TimeUnit.SECONDS));
+    try {
+      session.selectListAsync("blog.selectBlogs").get(5, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof PersistenceException);
+    }
+    session.close();
+  }
+
+  private Configuration newConfiguration(Cache cache) {
+    Configuration configuration = new Configuration();
+    configuration.addMappedStatement(new MappedStatement.Builder(configuration, "blog.selectBlogs",
+        new StaticSqlSource(configuration, "select * from blog"), SqlCommandType.SELECT).useCache(true).cache(cache).build());
+    configuration.addMappedStatement(new MappedStatement.Builder(configuration, "blog.selectTwoBlogs",
+        new StaticSqlSource(configuration, "select * from blog limit 2"), SqlCommandType.SELECT).build());
+    return configuration;
+  }
+
+  private SqlSession newSession(Configuration configuration) {
+    BaseExecutor executor = new BaseExecutor(configuration, new JdbcTransaction(null, null, false)) {
+      @Override
+      protected int doUpdate(MappedStatement ms, Object parameter) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      protected List<BatchResult> doFlushStatements(boolean isRollback) {
+        return new ArrayList<>();
+      }
+
+      @Override
+      protected <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
+        queries.incrementAndGet();
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+          Thread.sleep(10);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          running.decrementAndGet();
+        }
+        List<E> list = new ArrayList<>();
+        int rows = ms.getId().endsWith("TwoBlogs") ? 2 : 1;
+        for (int i = 0; i < rows; i++) {
+          @SuppressWarnings("unchecked")
+          E row = (E) "row";
+          list.add(row);
+        }
+        return list;
+      }
+
+      @Override
+      protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void commit(boolean required) {
+        // no connection
+      }
+
+      @Override
+      public void close(boolean forceRollback) {
+        // no connection
+      }
+    };
+    Executor cachingExecutor = new CachingExecutor(executor, configuration);
+    for (Interceptor interceptor : configuration.getInterceptors()) {
+      cachingExecutor = (Executor) interceptor.plugin(cachingExecutor);
+    }
+    return new DefaultSqlSession(configuration, cachingExecutor);
+  }
+
+  @Intercepts(@Signature(type = Executor.class, method = "query", args = { MappedStatement.class, Object.class,
+      RowBounds.class, ResultHandler.class }))
+  public static class QueryCounter implements Interceptor {
+    private final AtomicInteger queries = new AtomicInteger();
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      queries.incrementAndGet();
+      return invocation.proceed();
+    }
+
+    @Override
+    public Object plugin(Object target) {
+      return Plugin.wrap(target, this);
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+    }
+  }
+
+  public static class RemoteCache implements AsyncCache {
+    private final String id;
+    private final Map<Object, Object> entries = new ConcurrentHashMap<>();
+    private final List<Runnable> pendingLookups = new ArrayList<>();
+
+    public RemoteCache(String id) {
+      this.id = id;
+    }
+
+    @Override
+    public CompletableFuture<Object> getObjectAsync(Object key) {
+      CompletableFuture<Object> lookup = new CompletableFuture<>();
+      synchronized (pendingLookups) {
+        pendingLookups.add(() -> lookup.complete(entries.get(key)));
+      }
+      return lookup;
+    }
+
+    void completeLookups() {
+      List<Runnable> lookups;
+      synchronized (pendingLookups) {
+        lookups = new ArrayList<>(pendingLookups);
+        pendingLookups.clear();
+      }
+      lookups.forEach(Runnable::run);
+    }
+
+    @Override
+    public String getId() {
+      return id;
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+      if (value != null) {
+        entries.put(key, value);
+      }
+    }
+
+    @Override
+    public Object getObject(Object key) {
+      throw new UnsupportedOperationException("Should be looked up asynchronously");
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+      return entries.remove(key);
+    }
+
+    @Override
+    public void clear() {
+      entries.clear();
+    }
+
+    @Override
+    public int getSize() {
+      return entries.size();
+    }
+
+    @Override
+    public java.util.concurrent.locks.ReadWriteLock getReadWriteLock() {
+      return null;
+    }
+  }
+
+}
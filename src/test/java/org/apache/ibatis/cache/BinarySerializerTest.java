@@ -0,0 +1,130 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.serializer.BinarySerializer;
+import org.apache.ibatis.cache.serializer.JavaSerializer;
+import org.apache.ibatis.cache.serializer.Serializer;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Blog;
+import org.apache.ibatis.domain.blog.Post;
+import org.apache.ibatis.domain.blog.Section;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.Test;
+
+public class BinarySerializerTest {
+
+  private final Serializer serializer = new BinarySerializer();
+
+  @Test
+  public void shouldRoundTripJdkValues() {
+    Timestamp timestamp = new Timestamp(1234567890123L);
+    timestamp.setNanos(123456789);
+    Object[] values = { null, "text", "\u00e9t\u00e9", 0, -1, Integer.MAX_VALUE, Long.MIN_VALUE, 1.5d, 2.5f, (short) -7,
+        (byte) 3, 'c', true, false, new BigDecimal("-12345678901234567890.123"), new Date(42L),
+        new java.sql.Date(86400000L), timestamp, LocalDateTime.of(2018, 3, 4, 5, 6, 7, 8), Section.NEWS };
+    for (Object value : values) {
+      assertEquals(value, serializer.deserialize(serializer.serialize(value)));
+    }
+  }
+
+  @Test
+  public void shouldRoundTripBeansAndCollections() {
+    Author author = new Author(101, "jim", "********", "jim@ibatis.apache.org", "", Section.NEWS);
+    Map<String, Object> row = new HashMap<>();
+    row.put("author", author);
+    row.put("tags", new TreeMap<>(Collections.singletonMap("a", 1L)));
+    List<Object> result = new ArrayList<>();
+    result.add(row);
+    result.add(author);
+
+    @SuppressWarnings("unchecked")
+    List<Object> copy = (List<Object>) serializer.deserialize(serializer.serialize(result));
+
+    assertEquals(result, copy);
+    assertNotSame(author, copy.get(1));
+    // shared references stay shared
+    assertSame(copy.get(1), ((Map<?, ?>) copy.get(0)).get("author"));
+  }
+
+  @Test
+  public void shouldPreserveCycles() {
+    Blog blog = new Blog();
+    blog.setId(1);
+    blog.setTitle("Jim Business");
+    Post post = new Post();
+    post.setId(2);
+    post.setBlog(blog);
+    post.setCreatedOn(new Date(1000L));
+    List<Post> posts = new ArrayList<>();
+    posts.add(post);
+    blog.setPosts(posts);
+
+    Blog copy = (Blog) serializer.deserialize(serializer.serialize(blog));
+
+    assertEquals("Jim Business", copy.getTitle());
+    assertEquals(1, copy.getPosts().size());
+    assertEquals(new Date(1000L), copy.getPosts().get(0).getCreatedOn());
+    assertSame(copy, copy.getPosts().get(0).getBlog());
+  }
+
+  @Test
+  public void shouldFallBackToJavaSerialization() {
+    AtomicLong value = new AtomicLong(7);
+    assertEquals(7L, ((AtomicLong) serializer.deserialize(serializer.serialize(value))).get());
+  }
+
+  @Test
+  public void shouldBeSmallerThanJavaSerialization() {
+    List<Author> authors = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      authors.add(new Author(i, "user" + i, "secret", "user" + i + "@example.com", "bio", Section.NEWS));
+    }
+    assertTrue(serializer.serialize(authors).length < new JavaSerializer().serialize(authors).length);
+  }
+
+  @Test
+  public void shouldCopyThroughSerializedCache() {
+    Cache cache = new CacheBuilder("default").serializer(BinarySerializer.class).readWrite(true).build();
+    Author author = new Author(101, "jim", "********", "jim@ibatis.apache.org", "", Section.NEWS);
+    cache.putObject("key", author);
+    assertEquals(author, cache.getObject("key"));
+    assertNotSame(author, cache.getObject("key"));
+  }
+
+  @Test(expected = CacheException.class)
+  public void shouldStillRequireSerializableValues() {
+    Cache cache = new SerializedCache(new PerpetualCache("default"), serializer);
+    cache.putObject("key", new Blog());
+  }
+
+}
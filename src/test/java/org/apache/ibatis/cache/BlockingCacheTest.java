@@ -0,0 +1,139 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.decorators.BlockingCache;
+import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.Test;
+
+public class BlockingCacheTest {
+
+  @Test
+  public void shouldMakeConcurrentReadersWaitForTheFirstMiss() throws Exception {
+    BlockingCache cache = new BlockingCache(new SynchronizedCache(new PerpetualCache("default")));
+    assertNull(cache.getObject("key"));
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      CountDownLatch started = new CountDownLatch(1);
+      Future<Object> reader = executor.submit(() -> {
+        started.countDown();
+        return cache.getObject("key");
+      });
+      started.await();
+      Thread.sleep(100);
+      assertFalse(reader.isDone());
+      cache.putObject("key", "value");
+      assertEquals("value", reader.get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+    assertEquals(0, inFlights(cache).size());
+  }
+
+  @Test
+  public void shouldNotBlockReadersOfOtherKeys() throws Exception {
+    BlockingCache cache = new BlockingCache(new SynchronizedCache(new PerpetualCache("default")));
+    assertNull(cache.getObject("key1"));
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Object> reader = executor.submit(() -> cache.getObject("key2"));
+      assertNull(reader.get(5, TimeUnit.SECONDS));
+      cache.removeObject("key2");
+    } finally {
+      executor.shutdownNow();
+    }
+    cache.removeObject("key1");
+    assertEquals(0, inFlights(cache).size());
+  }
+
+  @Test
+  public void shouldLetAnotherThreadCompleteTheMiss() throws Exception {
+    BlockingCache cache = new BlockingCache(new SynchronizedCache(new PerpetualCache("default")));
+    assertNull(cache.getObject("key"));
+
+    Thread committer = new Thread(() -> cache.putObject("key", "value"));
+    committer.start();
+    committer.join();
+
+    assertEquals(0, inFlights(cache).size());
+    assertEquals("value", cache.getObject("key"));
+  }
+
+  @Test
+  public void shouldLetTheLoadingThreadAskAgain() throws Exception {
+    BlockingCache cache = new BlockingCache(new PerpetualCache("default"));
+    cache.setTimeout(1000);
+    assertNull(cache.getObject("key"));
+    assertNull(cache.getObject("key"));
+    cache.putObject("key", "value");
+    assertEquals(0, inFlights(cache).size());
+  }
+
+  @Test
+  public void shouldNotRetainEntriesForCompletedKeys() throws Exception {
+    BlockingCache cache = new BlockingCache(new PerpetualCache("default"));
+    for (int i = 0; i < 1000; i++) {
+      if (cache.getObject(i) == null) {
+        cache.putObject(i, i);
+      }
+      assertEquals(i, cache.getObject(i));
+    }
+    assertEquals(0, inFlights(cache).size());
+  }
+
+  @Test
+  public void shouldTimeOutWaitingForAnotherThread() throws Exception {
+    BlockingCache cache = new BlockingCache(new SynchronizedCache(new PerpetualCache("default")));
+    cache.setTimeout(100);
+    assertNull(cache.getObject("key"));
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Object> reader = executor.submit(() -> cache.getObject("key"));
+      try {
+        reader.get(5, TimeUnit.SECONDS);
+        fail("Should have timed out");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof CacheException);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    cache.removeObject("key");
+    assertEquals(0, inFlights(cache).size());
+  }
+
+  private Map<?, ?> inFlights(BlockingCache cache) throws Exception {
+    Field field = BlockingCache.class.getDeclaredField("inFlights");
+    field.setAccessible(true);
+    return (Map<?, ?>) field.get(cache);
+  }
+
+}
@@ -28,7 +28,14 @@ import java.io.IOException;
 import java.io.NotSerializableException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 public class CacheKeyTest {
 
@@ -90,6 +97,89 @@ public class CacheKeyTest {
     assertTrue(key1.equals(key2));
   }
 
+  @Test
+  public void shouldTestCacheKeysWithLargeCollections() throws Exception {
+    List<Integer> ids1 = new ArrayList<>();
+    List<Integer> ids2 = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      ids1.add(i);
+      ids2.add(i);
+    }
+    CacheKey key1 = new CacheKey(new Object[] { "select", ids1 });
+    CacheKey key2 = new CacheKey(new Object[] { "select", ids2 });
+    assertEquals(key1, key2);
+    assertEquals(key1.hashCode(), key2.hashCode());
+    assertFalse(key1.toString().contains("999"));
+    ids2.set(500, -1);
+    assertNotEquals(key1, new CacheKey(new Object[] { "select", ids2 }));
+    assertEquals(key1, serialize(key1));
+  }
+
+  @Test
+  public void shouldCompareLargeCollectionsByDigestOfTheirContent() throws Exception {
+    List<Integer> ids = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      ids.add(i);
+    }
+    CacheKey key = new CacheKey(new Object[] { ids });
+    assertTrue(key.toString().contains("sha256:"));
+    assertNotEquals(key, new CacheKey(new Object[] { ids.subList(0, 999) }));
+    assertNotEquals(new CacheKey(new Object[] { new byte[100] }), new CacheKey(new Object[] { new byte[101] }));
+    byte[] bytes = new byte[100];
+    bytes[99] = 1;
+    assertNotEquals(new CacheKey(new Object[] { new byte[100] }), new CacheKey(new Object[] { bytes }));
+  }
+
+  @Test
+  public void shouldTestListsRegardlessOfTheirImplementation() {
+    List<String> arrayList = new ArrayList<>();
+    List<String> linkedList = new LinkedList<>();
+    for (int i = 0; i < 100; i++) {
+      arrayList.add("value" + i);
+      linkedList.add("value" + i);
+    }
+    assertEquals(new CacheKey(new Object[] { arrayList }), new CacheKey(new Object[] { linkedList }));
+    assertEquals(new CacheKey(new Object[] { arrayList.subList(0, 3) }), new CacheKey(new Object[] { linkedList.subList(0, 3) }));
+  }
+
+  @Test
+  public void shouldTestSetsRegardlessOfTheirOrder() {
+    for (int size : new int[] { 3, 100 }) {
+      Set<Integer> ascending = new LinkedHashSet<>();
+      Set<Integer> descending = new LinkedHashSet<>();
+      for (int i = 0; i < size; i++) {
+        ascending.add(i);
+        descending.add(size - 1 - i);
+      }
+      CacheKey key = new CacheKey(new Object[] { ascending });
+      assertEquals(key, new CacheKey(new Object[] { descending }));
+      assertEquals(key.hashCode(), new CacheKey(new Object[] { descending }).hashCode());
+      assertEquals(key, new CacheKey(new Object[] { new TreeSet<>(descending) }));
+      assertEquals(key, new CacheKey(new Object[] { new HashSet<>(descending) }));
+      descending.remove(0);
+      descending.add(size);
+      assertNotEquals(key, new CacheKey(new Object[] { descending }));
+    }
+  }
+
+  @Test
+  public void shouldTestCacheKeysNotEqualDueToType() {
+    assertNotEquals(new CacheKey(new Object[] { 1 }), new CacheKey(new Object[] { 1L }));
+    assertNotEquals(new CacheKey(new Object[] { "1" }), new CacheKey(new Object[] { 1 }));
+    assertNotEquals(new CacheKey(new Object[] { "ab", "c" }), new CacheKey(new Object[] { "a", "bc" }));
+  }
+
+  @Test
+  public void shouldCloneCacheKeysIndependently() throws Exception {
+    CacheKey key1 = new CacheKey(new Object[] { "hello" });
+    CacheKey key2 = key1.clone();
+    assertEquals(key1, key2);
+    key2.update("world");
+    assertNotEquals(key1, key2);
+    assertEquals(1, key1.getUpdateCount());
+    assertEquals(2, key2.getUpdateCount());
+  }
+
   @Test (expected = NotSerializableException.class)
   public void serializationExceptionTest() throws Exception {
     CacheKey cacheKey = new CacheKey();
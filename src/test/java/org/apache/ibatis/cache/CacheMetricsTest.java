@@ -0,0 +1,192 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.decorators.ExpiringCache;
+import org.apache.ibatis.cache.decorators.FifoCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BaseExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.CachingExecutor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.Test;
+
+public class CacheMetricsTest {
+
+  @Test
+  public void shouldCountHitsMissesPutsAndEvictions() {
+    CacheMetrics metrics = new CacheMetrics("blog");
+    Cache cache = new CacheBuilder("blog").size(2).metrics(metrics).build();
+    cache.putObject("a", "A");
+    cache.putObject("b", "B");
+    cache.putObject("c", "C");
+    assertNull(cache.getObject("a"));
+    assertEquals("C", cache.getObject("c"));
+    assertEquals("B", cache.getObject("b"));
+    assertEquals(3, metrics.getPutCount());
+    assertEquals(2, metrics.getHitCount());
+    assertEquals(1, metrics.getMissCount());
+    assertEquals(1, metrics.getEvictionCount());
+    assertEquals(2.0 / 3, metrics.getHitRatio(), 0.001);
+  }
+
+  @Test
+  public void shouldCountEvictionsOfCustomDecorators() {
+    CacheMetrics metrics = new CacheMetrics("blog");
+    Cache cache = new CacheBuilder("blog").addDecorator(FifoCache.class).size(1).metrics(metrics).build();
+    cache.putObject("a", "A");
+    cache.putObject("b", "B");
+    assertEquals(1, metrics.getEvictionCount());
+  }
+
+  @Test
+  public void shouldCountExpirations() {
+    CacheMetrics metrics = new CacheMetrics("blog");
+    ClockedCache cache = new ClockedCache(new PerpetualCache("blog"));
+    cache.setExpireAfterWrite(1000);
+    cache.setMetrics(metrics);
+    cache.putObject("a", "A");
+    cache.sleep(5000);
+    assertNull(cache.getObject("a"));
+    assertEquals(1, metrics.getExpirationCount());
+    assertEquals(0, metrics.getEvictionCount());
+  }
+
+  @Test
+  public void shouldEstimateBytes() {
+    CacheMetrics sampled = new CacheMetrics("sampled");
+    Cache cache = new CacheBuilder("sampled").metrics(sampled).build();
+    CacheMetrics weighed = new CacheMetrics("weighed");
+    Cache weightedCache = new CacheBuilder("weighed").maxWeight(1024L * 1024).metrics(weighed).build();
+    for (int i = 0; i < 100; i++) {
+      List<String> value = Collections.nCopies(10, "value" + i);
+      cache.putObject(i, value);
+      weightedCache.putObject(i, value);
+    }
+    assertTrue(sampled.getAverageEntryBytes() > 0);
+    assertEquals(100 * sampled.getAverageEntryBytes(), sampled.getEstimatedBytes());
+    assertTrue(weighed.getEstimatedBytes() > 0);
+    cache.clear();
+    weightedCache.clear();
+    assertEquals(0, sampled.getEstimatedBytes());
+    assertEquals(0, weighed.getEstimatedBytes());
+  }
+
+  @Test
+  public void shouldRecordLoadTimesOfMisses() throws Exception {
+    Configuration configuration = new Configuration();
+    MapperBuilderAssistant assistant = new MapperBuilderAssistant(configuration, "resource");
+    assistant.setCurrentNamespace("blog");
+    Cache cache = assistant.useNewCache(null, null, null, null, false, false, null);
+    MappedStatement selectBlog = new MappedStatement.Builder(configuration, "blog.selectBlog",
+        new StaticSqlSource(configuration, "select * from blog"), SqlCommandType.SELECT).useCache(true).cache(cache).build();
+
+    for (int i = 0; i < 3; i++) {
+      Executor executor = newExecutor(configuration);
+      executor.query(selectBlog, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+      executor.commit(true);
+    }
+    CacheMetrics metrics = configuration.getCacheMetrics("blog");
+    assertEquals(1, metrics.getLoadTimes().getCount());
+    assertTrue(metrics.getLoadTimes().getMaxTime() >= 10000000);
+    assertEquals(2, metrics.getHitCount());
+    assertEquals(1, metrics.getPutCount());
+  }
+
+  @Test
+  public void shouldReportPercentilesByPowerOfTwoBuckets() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 99; i++) {
+      histogram.record(1000);
+    }
+    histogram.record(1000000);
+    assertEquals(100, histogram.getCount());
+    assertEquals(1023, histogram.getPercentile(50));
+    assertEquals(1023, histogram.getPercentile(99));
+    assertEquals(1000000, histogram.getPercentile(100));
+    assertEquals(1000000, histogram.getMaxTime());
+    assertEquals((99 * 1000 + 1000000) / 100, histogram.getMeanTime());
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getPercentile(99));
+  }
+
+  private static class ClockedCache extends ExpiringCache {
+    private long time = 1000000L;
+
+    ClockedCache(Cache delegate) {
+      super(delegate);
+    }
+
+    @Override
+    protected long currentTimeMillis() {
+      return time;
+    }
+
+    void sleep(long millis) {
+      time += millis;
+    }
+  }
+
+  private Executor newExecutor(Configuration configuration) {
+    return new CachingExecutor(new BaseExecutor(configuration, new JdbcTransaction(null, null, false)) {
+      @Override
+      protected int doUpdate(MappedStatement ms, Object parameter) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      protected List<BatchResult> doFlushStatements(boolean isRollback) {
+        return new ArrayList<>();
+      }
+
+      @Override
+      protected <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
+        try {
+          Thread.sleep(10);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        List<E> list = new ArrayList<>();
+        list.add(null);
+        return list;
+      }
+
+      @Override
+      protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) {
+        throw new UnsupportedOperationException();
+      }
+    });
+  }
+
+}
@@ -0,0 +1,197 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.snapshot.CacheSnapshotReader;
+import org.apache.ibatis.cache.snapshot.CacheSnapshotWriter;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.Test;
+
+public class CacheSnapshotsTest {
+
+  @Test
+  public void shouldSaveAndLoadCaches() throws Exception {
+    Path file = newSnapshotFile();
+    Configuration configuration = newConfiguration(false);
+    Cache cache = configuration.getCache("blog");
+    cache.putObject(key(1), new ArrayList<>(Arrays.asList("Blog 1")));
+    cache.putObject(key(2), new ArrayList<>(Arrays.asList("Blog 2")));
+    configuration.getTableVersions().increment("author");
+    configuration.getTableVersions().increment("author");
+    assertEquals(2, configuration.getCacheSnapshots().save(file));
+
+    Configuration restarted = newConfiguration(false);
+    assertEquals(2, restarted.getCacheSnapshots().load(file));
+    assertEquals(Arrays.asList("Blog 1"), restarted.getCache("blog").getObject(key(1)));
+    assertEquals(Arrays.asList("Blog 2"), restarted.getCache("blog").getObject(key(2)));
+    assertEquals(2, restarted.getTableVersions().getVersion("author"));
+  }
+
+  @Test
+  public void shouldDiscardSnapshotsOfChangedStatements() throws Exception {
+    Path file = newSnapshotFile();
+    Configuration configuration = newConfiguration(false);
+    configuration.getCache("blog").putObject(key(1), new ArrayList<>(Arrays.asList("Blog 1")));
+    configuration.getCacheSnapshots().save(file);
+
+    Configuration changed = newConfiguration(true);
+    assertNotEquals(configuration.getCacheSnapshots().definitionHash("blog"), changed.getCacheSnapshots().definitionHash("blog"));
+    assertEquals(0, changed.getCacheSnapshots().load(file));
+    assertEquals(0, changed.getCache("blog").getSize());
+  }
+
+  @Test
+  public void shouldIgnoreMissingAndCorruptSnapshots() throws Exception {
+    Path file = newSnapshotFile();
+    Configuration configuration = newConfiguration(false);
+    assertEquals(0, configuration.getCacheSnapshots().load(file.resolveSibling(file.getFileName() + ".missing")));
+
+    configuration.getCache("blog").putObject(key(1), new ArrayList<>(Arrays.asList("Blog 1")));
+    configuration.getCacheSnapshots().save(file);
+    byte[] bytes = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(bytes, bytes.length - 4));
+
+    Configuration restarted = newConfiguration(false);
+    assertEquals(0, restarted.getCacheSnapshots().load(file));
+    assertEquals(0, restarted.getCache("blog").getSize());
+  }
+
+  @Test
+  public void shouldLoadSnapshotWhenTheFactoryIsBuilt() throws Exception {
+    Path file = newSnapshotFile();
+    Configuration configuration = newConfiguration(false);
+    configuration.getCache("blog").putObject(key(1), new ArrayList<>(Arrays.asList("Blog 1")));
+    configuration.getCacheSnapshots().save(file);
+
+    Configuration restarted = newConfiguration(false);
+    restarted.setCacheSnapshotFile(file.toString());
+    new SqlSessionFactoryBuilder().build(restarted);
+    try {
+      assertEquals(Arrays.asList("Blog 1"), restarted.getCache("blog").getObject(key(1)));
+    } finally {
+      restarted.getCacheSnapshots().stop();
+    }
+  }
+
+  @Test
+  public void shouldNotReadEntriesWhenSaving() throws Exception {
+    Path file = newSnapshotFile();
+    Configuration configuration = new Configuration();
+    CacheMetrics metrics = new CacheMetrics("blog");
+    configuration.addCache(new LoggingCache(new PerpetualCache("blog"), metrics));
+    configuration.getCache("blog").putObject(key(1), new ArrayList<>(Arrays.asList("Blog 1")));
+    assertEquals(1, configuration.getCacheSnapshots().save(file));
+    assertEquals(0, metrics.getRequestCount());
+  }
+
+  @Test
+  public void shouldKeepTheWriteTimeOfLoadedEntries() throws Exception {
+    Path file = newSnapshotFile();
+    Configuration configuration = new Configuration();
+    configuration.addCache(new CacheBuilder("blog").expireAfterWrite(1000L).build());
+    configuration.getCache("blog").putObject(key(1), new ArrayList<>(Arrays.asList("Blog 1")));
+    Thread.sleep(700);
+    assertEquals(1, configuration.getCacheSnapshots().save(file));
+
+    Configuration restarted = new Configuration();
+    restarted.addCache(new CacheBuilder("blog").expireAfterWrite(1000L).build());
+    assertEquals(1, restarted.getCacheSnapshots().load(file));
+    assertEquals(Arrays.asList("Blog 1"), restarted.getCache("blog").getObject(key(1)));
+    Thread.sleep(500);
+    // expired a second after it was first written, not after it was loaded
+    assertNull(restarted.getCache("blog").getObject(key(1)));
+  }
+
+  @Test
+  public void shouldSkipUnreadSections() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (CacheSnapshotWriter writer = new CacheSnapshotWriter(out, 42L)) {
+      writer.startSection("first", "hash1");
+      writer.writeEntry(bytes("k1"), bytes("v1"), 0L);
+      writer.writeEntry(bytes("k2"), bytes("v2"), 0L);
+      writer.startSection("second", "hash2");
+      writer.writeEntry(bytes("k3"), bytes("v3"), 41L);
+      writer.finish(Collections.singletonMap("author", 3L), Collections.singletonMap("blog", 1L));
+    }
+
+    try (CacheSnapshotReader reader = new CacheSnapshotReader(new ByteArrayInputStream(out.toByteArray()))) {
+      assertEquals(42L, reader.getTimestamp());
+      assertTrue(reader.nextSection());
+      assertEquals("first", reader.getCacheId());
+      assertTrue(reader.nextSection());
+      assertEquals("second", reader.getCacheId());
+      assertEquals("hash2", reader.getDefinitionHash());
+      assertTrue(reader.nextEntry());
+      assertEquals("k3", new String(reader.getKey(), StandardCharsets.UTF_8));
+      assertEquals("v3", new String(reader.getValue(), StandardCharsets.UTF_8));
+      assertEquals(41L, reader.getWriteTime());
+      assertFalse(reader.nextEntry());
+      assertFalse(reader.nextSection());
+      assertEquals(Long.valueOf(3L), reader.getTableVersions().get("author"));
+      assertEquals(Long.valueOf(1L), reader.getCacheVersions().get("blog"));
+    }
+  }
+
+  private static Configuration newConfiguration(boolean withInsert) {
+    Configuration configuration = new Configuration();
+    MapperBuilderAssistant assistant = new MapperBuilderAssistant(configuration, "resource");
+    assistant.setCurrentNamespace("blog");
+    Cache cache = assistant.useNewCache(null, null, null, null, true, false, null);
+    configuration.addMappedStatement(new MappedStatement.Builder(configuration, "blog.selectBlog",
+        new StaticSqlSource(configuration, "select * from blog"), SqlCommandType.SELECT).cache(cache).build());
+    if (withInsert) {
+      configuration.addMappedStatement(new MappedStatement.Builder(configuration, "blog.insertBlog",
+          new StaticSqlSource(configuration, "insert into blog values (?)"), SqlCommandType.INSERT).cache(cache).build());
+    }
+    return configuration;
+  }
+
+  private static CacheKey key(int id) {
+    return new CacheKey(new Object[] { "blog.selectBlog", id });
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static Path newSnapshotFile() throws Exception {
+    File file = File.createTempFile("mybatis-snapshot", ".cache");
+    file.deleteOnExit();
+    Files.delete(file.toPath());
+    return file.toPath();
+  }
+
+}
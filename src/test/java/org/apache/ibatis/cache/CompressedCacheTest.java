@@ -0,0 +1,115 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.ibatis.cache.compressor.Compressor;
+import org.apache.ibatis.cache.compressor.DeflateCompressor;
+import org.apache.ibatis.cache.compressor.LzCompressor;
+import org.apache.ibatis.cache.decorators.CompressedCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.Test;
+
+public class CompressedCacheTest {
+
+  @Test
+  public void shouldRoundTripWithLzCompressor() {
+    assertRoundTrips(new LzCompressor());
+  }
+
+  @Test
+  public void shouldRoundTripWithDeflateCompressor() {
+    assertRoundTrips(new DeflateCompressor());
+  }
+
+  @Test
+  public void shouldOnlyCompressValuesOverTheThreshold() {
+    CacheMetrics metrics = new CacheMetrics("default");
+    PerpetualCache base = new PerpetualCache("default");
+    CompressedCache cache = new CompressedCache(base, new LzCompressor());
+    cache.setThreshold(100);
+    cache.setMetrics(metrics);
+    byte[] small = new byte[99];
+    byte[] large = new byte[1000];
+    cache.putObject("small", small);
+    cache.putObject("large", large);
+    assertEquals(100, ((byte[]) base.getObject("small")).length);
+    assertTrue(((byte[]) base.getObject("large")).length < 100);
+    assertArrayEquals(small, (byte[]) cache.getObject("small"));
+    assertArrayEquals(large, (byte[]) cache.getObject("large"));
+    assertTrue(metrics.getCompressionRatio() > 5);
+  }
+
+  @Test
+  public void shouldKeepIncompressibleValuesAsTheyAre() {
+    PerpetualCache base = new PerpetualCache("default");
+    CompressedCache cache = new CompressedCache(base, new LzCompressor());
+    byte[] random = new byte[4096];
+    new Random(1).nextBytes(random);
+    cache.putObject("random", random);
+    assertEquals(random.length + 1, ((byte[]) base.getObject("random")).length);
+    assertArrayEquals(random, (byte[]) cache.getObject("random"));
+  }
+
+  @Test
+  public void shouldCompressSerializedResultLists() {
+    CacheMetrics metrics = new CacheMetrics("report");
+    Cache cache = new CacheBuilder("report").readWrite(true).compressor(DeflateCompressor.class)
+        .compressionThreshold(512).metrics(metrics).build();
+    List<String> rows = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      rows.add("row " + i + " of the quarterly sales report");
+    }
+    cache.putObject("report", rows);
+    assertEquals(rows, cache.getObject("report"));
+    assertTrue(metrics.getCompressionRatio() > 3);
+    assertTrue(metrics.getEstimatedBytes() > 0);
+    assertTrue(metrics.getEstimatedBytes() < 20000);
+  }
+
+  @Test(expected = CacheException.class)
+  public void shouldRejectCompressionOfReadOnlyCaches() {
+    new CacheBuilder("report").readWrite(false).compressor(LzCompressor.class).build();
+  }
+
+  private void assertRoundTrips(Compressor compressor) {
+    Random random = new Random(42);
+    for (int length : new int[] {0, 1, 4, 8, 9, 15, 16, 300, 4096, 70000, 200000}) {
+      byte[] repetitive = new byte[length];
+      for (int i = 0; i < length; i++) {
+        repetitive[i] = (byte) "select * from blog where id = ?".charAt((i * 7 + i / 100) % 31);
+      }
+      byte[] noisy = new byte[length];
+      random.nextBytes(noisy);
+      for (int i = 0; i < length; i += 1 + random.nextInt(40)) {
+        noisy[i] = 0;
+      }
+      for (byte[] bytes : new byte[][] {repetitive, noisy, new byte[length]}) {
+        byte[] compressed = compressor.compress(bytes);
+        byte[] framed = new byte[compressed.length + 3];
+        System.arraycopy(compressed, 0, framed, 3, compressed.length);
+        assertArrayEquals(bytes, compressor.decompress(framed, 3, compressed.length, bytes.length));
+      }
+    }
+  }
+
+}
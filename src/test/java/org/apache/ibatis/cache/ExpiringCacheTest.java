@@ -0,0 +1,250 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import org.apache.ibatis.cache.decorators.ExpiringCache;
+import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.Test;
+
+public class ExpiringCacheTest {
+
+  private static class ClockedCache extends ExpiringCache {
+    private long time = 1000000L;
+
+    ClockedCache(Cache delegate) {
+      super(delegate);
+    }
+
+    @Override
+    protected long currentTimeMillis() {
+      return time;
+    }
+
+    void sleep(long millis) {
+      time += millis;
+    }
+  }
+
+  @Test
+  public void shouldExpireEntriesAfterWrite() {
+    Cache base = new PerpetualCache("default");
+    ClockedCache cache = new ClockedCache(base);
+    cache.setExpireAfterWrite(5000);
+    cache.putObject("a", "A");
+    cache.sleep(3000);
+    cache.putObject("b", "B");
+    assertEquals("A", cache.getObject("a"));
+    cache.sleep(2500);
+    assertNull(cache.getObject("a"));
+    assertEquals("B", cache.getObject("b"));
+    cache.sleep(2500);
+    assertNull(cache.getObject("b"));
+    assertEquals(0, base.getSize());
+  }
+
+  @Test
+  public void shouldRemoveExpiredEntriesWithoutReadingThem() {
+    Cache base = new PerpetualCache("default");
+    ClockedCache cache = new ClockedCache(base);
+    cache.setExpireAfterWrite(60000);
+    for (int i = 0; i < 100; i++) {
+      cache.putObject(i, i);
+      cache.sleep(1000);
+    }
+    // the wheel processes expired entries by buckets of about a second
+    assertBetween(59, 60, cache.getSize());
+    cache.sleep(30000);
+    assertBetween(29, 30, cache.getSize());
+    cache.sleep(3L * 24 * 60 * 60 * 1000);
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void shouldExpireEntriesAfterAccess() {
+    ClockedCache cache = new ClockedCache(new PerpetualCache("default"));
+    cache.setExpireAfterAccess(5000);
+    cache.putObject("hot", "H");
+    cache.putObject("cold", "C");
+    for (int i = 0; i < 10; i++) {
+      cache.sleep(3000);
+      assertEquals("H", cache.getObject("hot"));
+    }
+    assertNull(cache.getObject("cold"));
+  }
+
+  @Test
+  public void shouldCapAccessTimeByWriteTime() {
+    ClockedCache cache = new ClockedCache(new PerpetualCache("default"));
+    cache.setExpireAfterWrite(10000);
+    cache.setExpireAfterAccess(5000);
+    cache.putObject("a", "A");
+    for (int i = 0; i < 3; i++) {
+      cache.sleep(3000);
+      assertEquals("A", cache.getObject("a"));
+    }
+    cache.sleep(3000);
+    assertNull(cache.getObject("a"));
+  }
+
+  @Test
+  public void shouldOverrideExpireAfterWritePerEntry() {
+    ClockedCache cache = new ClockedCache(new PerpetualCache("default"));
+    cache.setExpireAfterWrite(5000);
+    TransactionalCache transactionalCache = new TransactionalCache(cache);
+    transactionalCache.putObject("short", "S");
+    transactionalCache.putObject("long", "L", EntryMetadata.expireAfterWrite(3600000));
+    transactionalCache.commit();
+    cache.sleep(60000);
+    assertNull(cache.getObject("short"));
+    assertEquals("L", cache.getObject("long"));
+    cache.sleep(3600000);
+    assertNull(cache.getObject("long"));
+  }
+
+  @Test
+  public void shouldRemoveAndClearEntries() {
+    ClockedCache cache = new ClockedCache(new PerpetualCache("default"));
+    cache.setExpireAfterWrite(5000);
+    cache.putObject("a", "A");
+    cache.putObject("b", "B");
+    cache.removeObject("a");
+    assertNull(cache.getObject("a"));
+    cache.clear();
+    assertNull(cache.getObject("b"));
+    cache.putObject("a", "A");
+    cache.sleep(6000);
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void shouldRequestRefreshAheadOfExpiration() {
+    ClockedCache cache = new ClockedCache(new PerpetualCache("default"));
+    cache.setExpireAfterWrite(10000);
+    cache.setRefreshAhead(2000);
+    cache.putObject("a", "A");
+    cache.sleep(7000);
+    CacheLookup lookup = cache.lookupObject("a");
+    assertEquals("A", lookup.getValue());
+    assertNull(lookup.getRefreshRequest());
+    cache.sleep(2000);
+    // plain reads never ask for a refresh
+    assertEquals("A", cache.getObject("a"));
+    lookup = cache.lookupObject("a");
+    assertEquals("A", lookup.getValue());
+    assertNotNull(lookup.getRefreshRequest());
+    // only once until the entry is refreshed
+    CacheLookup other = cache.lookupObject("a");
+    assertEquals("A", other.getValue());
+    assertNull(other.getRefreshRequest());
+    cache.putObject("a", "A2", EntryMetadata.refreshed(lookup.getRefreshRequest(), null));
+    cache.sleep(5000);
+    other = cache.lookupObject("a");
+    assertEquals("A2", other.getValue());
+    assertNull(other.getRefreshRequest());
+  }
+
+  @Test
+  public void shouldRequestRefreshAgainOnceCanceled() {
+    ClockedCache cache = new ClockedCache(new PerpetualCache("default"));
+    cache.setExpireAfterWrite(10000);
+    cache.setRefreshAhead(2000);
+    cache.putObject("a", "A");
+    cache.sleep(9000);
+    CacheLookup lookup = cache.lookupObject("a");
+    assertEquals("A", lookup.getValue());
+    assertNotNull(lookup.getRefreshRequest());
+    lookup.getRefreshRequest().cancel();
+    CacheLookup other = cache.lookupObject("a");
+    assertEquals("A", other.getValue());
+    assertNotNull(other.getRefreshRequest());
+  }
+
+  @Test
+  public void shouldReturnStaleEntriesWhileRefreshing() {
+    ClockedCache cache = new ClockedCache(new PerpetualCache("default"));
+    cache.setExpireAfterWrite(10000);
+    cache.setMaxStale(5000);
+    cache.putObject("a", "A");
+    cache.sleep(11000);
+    CacheLookup lookup = cache.lookupObject("a");
+    assertEquals("A", lookup.getValue());
+    assertNotNull(lookup.getRefreshRequest());
+    cache.sleep(3000);
+    CacheLookup other = cache.lookupObject("a");
+    assertEquals("A", other.getValue());
+    assertNull(other.getRefreshRequest());
+    cache.sleep(2000);
+    assertNull(cache.getObject("a"));
+  }
+
+  @Test
+  public void shouldDropRefreshedEntriesFlushedDuringTheRefresh() {
+    ClockedCache cache = new ClockedCache(new PerpetualCache("default"));
+    cache.setExpireAfterWrite(10000);
+    cache.setMaxStale(5000);
+    cache.putObject("a", "A");
+    cache.sleep(11000);
+    RefreshRequest request = cache.lookupObject("a").getRefreshRequest();
+    assertNotNull(request);
+    cache.clear();
+    cache.putObject("a", "A2", EntryMetadata.refreshed(request, null));
+    assertNull(cache.getObject("a"));
+    // refreshed entries that were not requested are dropped too
+    cache.putObject("b", "B");
+    cache.putObject("b", "B2", EntryMetadata.refreshed(request, null));
+    assertEquals("B", cache.getObject("b"));
+  }
+
+  @Test
+  public void shouldRestoreEntriesWithTheirWriteTime() {
+    ClockedCache cache = new ClockedCache(new PerpetualCache("default"));
+    cache.setExpireAfterWrite(10000);
+    cache.putObject("a", "A");
+    assertEquals("A", cache.peekObject("a"));
+    EntryMetadata metadata = cache.peekMetadata("a");
+    assertEquals(cache.currentTimeMillis(), metadata.getWriteTime());
+    cache.sleep(6000);
+    cache.putObject("b", "B", metadata);
+    cache.putObject("c", "C", EntryMetadata.writtenAt(metadata.getWriteTime() - 5000));
+    assertEquals("B", cache.getObject("b"));
+    assertNull(cache.getObject("c"));
+    assertEquals(2, cache.getSize());
+    cache.sleep(4000);
+    assertNull(cache.getObject("b"));
+  }
+
+  @Test
+  public void shouldPassEntryMetadataThroughTheStandardDecorators() {
+    Cache cache = new CacheBuilder("default").expireAfterWrite(60000L).readWrite(true).blocking(true).build();
+    long writeTime = System.currentTimeMillis() - 1000;
+    cache.putObject("a", "A", EntryMetadata.writtenAt(writeTime));
+    cache.putObject("b", "B", EntryMetadata.writtenAt(writeTime - 60000));
+    assertEquals(writeTime, cache.peekMetadata("a").getWriteTime());
+    assertEquals("A", cache.getObject("a"));
+    assertNull(cache.peekObject("b"));
+    assertNull(cache.peekMetadata("b"));
+    assertEquals(1, cache.getSize());
+  }
+
+  private static void assertBetween(int min, int max, int actual) {
+    assertTrue("expected between " + min + " and " + max + " but was " + actual, actual >= min && actual <= max);
+  }
+
+}
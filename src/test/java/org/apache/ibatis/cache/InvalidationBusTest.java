@@ -0,0 +1,206 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.invalidation.Invalidation;
+import org.apache.ibatis.cache.invalidation.InvalidationBus;
+import org.apache.ibatis.cache.invalidation.LoopbackTransport;
+import org.apache.ibatis.cache.invalidation.UdpTransport;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BaseExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.CachingExecutor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.CacheInvalidationScope;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.Test;
+
+public class InvalidationBusTest {
+
+  @Test
+  public void shouldClearCachesOfOtherNodesOnCommit() throws Exception {
+    Node node1 = new Node("clear");
+    Node node2 = new Node("clear");
+    node2.cache.putObject("key", "value");
+
+    Executor executor = node1.newExecutor();
+    executor.update(node1.updateAuthor, null);
+    assertEquals("value", node2.cache.getObject("key"));
+    executor.commit(true);
+    assertNull(node2.cache.getObject("key"));
+  }
+
+  @Test
+  public void shouldNotSendRolledBackInvalidations() throws Exception {
+    Node node1 = new Node("rollback");
+    Node node2 = new Node("rollback");
+    node2.cache.putObject("key", "value");
+
+    Executor executor = node1.newExecutor();
+    executor.update(node1.updateAuthor, null);
+    executor.rollback(true);
+    executor.commit(true);
+    assertEquals("value", node2.cache.getObject("key"));
+  }
+
+  @Test
+  public void shouldSendOneInvalidationPerCommit() throws Exception {
+    Node node1 = new Node("batch");
+    List<Invalidation> received = new ArrayList<>();
+    LoopbackTransport listener = new LoopbackTransport();
+    listener.setChannel("batch");
+    listener.start(received::add);
+    try {
+      node1.configuration.setCacheInvalidationScope(CacheInvalidationScope.TABLE);
+      Executor executor = node1.newExecutor();
+      executor.update(node1.updateAuthor, null);
+      executor.update(node1.updateAuthor, null);
+      executor.update(node1.updateBlog, null);
+      executor.commit(true);
+      assertEquals(1, received.size());
+      assertEquals(new HashSet<>(Arrays.asList("author", "blog")), received.get(0).getTables());
+    } finally {
+      listener.close();
+    }
+  }
+
+  @Test
+  public void shouldInvalidateTablesOfOtherNodes() throws Exception {
+    Node node1 = new Node("tables");
+    Node node2 = new Node("tables");
+    node1.configuration.setCacheInvalidationScope(CacheInvalidationScope.TABLE);
+
+    Executor executor = node1.newExecutor();
+    executor.update(node1.updateAuthor, null);
+    executor.commit(true);
+    assertEquals(1, node2.configuration.getTableVersions().getVersion("author"));
+    assertEquals(0, node2.configuration.getTableVersions().getVersion("blog"));
+  }
+
+  @Test
+  public void shouldSendInvalidationsOverUdp() throws Exception {
+    BlockingQueue<Invalidation> received = new ArrayBlockingQueue<>(10);
+    UdpTransport sender = new UdpTransport();
+    UdpTransport receiver = new UdpTransport();
+    Properties properties = new Properties();
+    properties.setProperty("host", "127.0.0.1");
+    sender.setProperties(properties);
+    receiver.setProperties(properties);
+    sender.start(received::add);
+    receiver.start(received::add);
+    try {
+      sender.setPeers("127.0.0.1:" + receiver.getLocalPort());
+      receiver.setPeers("127.0.0.1:" + sender.getLocalPort());
+      sender.send(new Invalidation("node1", Collections.singleton("blog"), Collections.<String>emptySet(),
+          Arrays.asList("author", "post")));
+      Invalidation invalidation = received.poll(5, TimeUnit.SECONDS);
+      assertNotNull(invalidation);
+      assertEquals("node1", invalidation.getOrigin());
+      assertEquals(Collections.singleton("blog"), invalidation.getClearedCaches());
+      assertTrue(invalidation.getInvalidatedCaches().isEmpty());
+      assertEquals(Arrays.asList("author", "post"), new ArrayList<>(invalidation.getTables()));
+    } finally {
+      sender.close();
+      receiver.close();
+    }
+  }
+
+  @Test
+  public void shouldIgnoreDatagramsOfOtherSendersThanThePeers() throws Exception {
+    BlockingQueue<Invalidation> received = new ArrayBlockingQueue<>(10);
+    UdpTransport sender = new UdpTransport();
+    UdpTransport receiver = new UdpTransport();
+    Properties properties = new Properties();
+    properties.setProperty("host", "127.0.0.1");
+    sender.setProperties(properties);
+    receiver.setProperties(properties);
+    sender.start(received::add);
+    receiver.start(received::add);
+    try {
+      sender.setPeers("127.0.0.1:" + receiver.getLocalPort());
+      receiver.setPeers("127.0.0.2:" + sender.getLocalPort());
+      sender.send(new Invalidation("node1", Collections.singleton("blog"), Collections.<String>emptySet(),
+          Collections.<String>emptySet()));
+      assertNull(received.poll(500, TimeUnit.MILLISECONDS));
+    } finally {
+      sender.close();
+      receiver.close();
+    }
+  }
+
+  private static class Node {
+    private final Configuration configuration = new Configuration();
+    private final Cache cache = new CacheBuilder("blog").build();
+    private final MappedStatement updateAuthor;
+    private final MappedStatement updateBlog;
+
+    Node(String channel) {
+      configuration.addCache(cache);
+      LoopbackTransport transport = new LoopbackTransport();
+      transport.setChannel(channel);
+      configuration.setInvalidationBus(new InvalidationBus(configuration, transport));
+      updateAuthor = new MappedStatement.Builder(configuration, "blog.updateAuthor",
+          new StaticSqlSource(configuration, "update author set bio = null"), SqlCommandType.UPDATE).flushCacheRequired(true).cache(cache).build();
+      updateBlog = new MappedStatement.Builder(configuration, "blog.updateBlog",
+          new StaticSqlSource(configuration, "update blog set title = null"), SqlCommandType.UPDATE).flushCacheRequired(true).cache(cache).build();
+    }
+
+    Executor newExecutor() {
+      return new CachingExecutor(new BaseExecutor(configuration, new JdbcTransaction(null, null, false)) {
+        @Override
+        protected int doUpdate(MappedStatement ms, Object parameter) {
+          return 1;
+        }
+
+        @Override
+        protected List<BatchResult> doFlushStatements(boolean isRollback) {
+          return new ArrayList<>();
+        }
+
+        @Override
+        protected <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
+          throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) {
+          throw new UnsupportedOperationException();
+        }
+      }, configuration);
+    }
+  }
+
+}
@@ -0,0 +1,173 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.impl.OffHeapCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.junit.Test;
+
+public class OffHeapCacheTest {
+
+  @Test
+  public void shouldStoreAndReturnCopies() {
+    OffHeapCache cache = new OffHeapCache("default");
+    List<String> value = new ArrayList<>(Arrays.asList("a", "b", "c"));
+    cache.putObject(1, value);
+    Object copy = cache.getObject(1);
+    assertEquals(value, copy);
+    assertNotSame(value, copy);
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  public void shouldStoreBytesAsIs() {
+    OffHeapCache cache = new OffHeapCache("default");
+    byte[] value = new byte[1000];
+    Arrays.fill(value, (byte) 7);
+    cache.putObject(1, value);
+    assertArrayEquals(value, (byte[]) cache.getObject(1));
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedEntriesWhenBudgetIsReached() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setMaxBytes(4096);
+    cache.setSlabSize(1024);
+    cache.setBlockSize(128);
+    cache.initialize();
+    for (int i = 0; i < 32; i++) {
+      cache.putObject(i, new byte[200]);
+      assertNotNull(cache.getObject(0));
+    }
+    assertEquals(16, cache.getSize());
+    assertEquals(4096, cache.getUsedBytes());
+    assertNotNull(cache.getObject(0));
+    assertNull(cache.getObject(1));
+    assertNotNull(cache.getObject(31));
+  }
+
+  @Test
+  public void shouldIgnoreValuesLargerThanTheBudget() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setMaxBytes(1024);
+    cache.setSlabSize(1024);
+    cache.putObject(1, new byte[100]);
+    cache.putObject(2, new byte[2000]);
+    assertNotNull(cache.getObject(1));
+    assertNull(cache.getObject(2));
+  }
+
+  @Test
+  public void shouldRemoveItemOnDemand() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.putObject(0, 0);
+    assertNotNull(cache.getObject(0));
+    cache.removeObject(0);
+    assertNull(cache.getObject(0));
+    assertEquals(0, cache.getUsedBytes());
+  }
+
+  @Test
+  public void shouldReturnTheRemovedValue() {
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.putObject(0, "zero");
+    assertEquals("zero", cache.removeObject(0));
+    assertNull(cache.removeObject(0));
+  }
+
+  @Test
+  public void shouldReportEvictionsToTheEvictionDecorators() {
+    Properties properties = new Properties();
+    properties.setProperty("maxBytes", "4096");
+    properties.setProperty("slabSize", "1024");
+    properties.setProperty("blockSize", "128");
+    Cache cache = new CacheBuilder("default")
+        .implementation(OffHeapCache.class)
+        .addDecorator(LruCache.class)
+        .properties(properties)
+        .build();
+    for (int i = 0; i < 32; i++) {
+      cache.putObject(i, new byte[200]);
+    }
+    assertEquals(16, cache.getSize());
+    Object decorator = cache;
+    while (!(decorator instanceof LruCache)) {
+      decorator = SystemMetaObject.forObject(decorator).getValue("delegate");
+    }
+    assertEquals(16, ((Map<?, ?>) SystemMetaObject.forObject(decorator).getValue("keyMap")).size());
+  }
+
+  @Test
+  public void shouldFlushAllItemsOnDemand() {
+    OffHeapCache cache = new OffHeapCache("default");
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    assertNotNull(cache.getObject(0));
+    assertNotNull(cache.getObject(4));
+    cache.clear();
+    assertNull(cache.getObject(0));
+    assertNull(cache.getObject(4));
+    assertEquals(0, cache.getUsedBytes());
+  }
+
+  @Test
+  public void shouldUseMemoryMappedFile() throws Exception {
+    File file = File.createTempFile("mybatis-offheap", ".cache");
+    file.deleteOnExit();
+    OffHeapCache cache = new OffHeapCache("default");
+    cache.setMappedFile(file.getAbsolutePath());
+    cache.setMaxBytes(1024 * 1024);
+    cache.setSlabSize(64 * 1024);
+    cache.initialize();
+    for (int i = 0; i < 100; i++) {
+      cache.putObject(i, "value" + i);
+    }
+    for (int i = 0; i < 100; i++) {
+      assertEquals("value" + i, cache.getObject(i));
+    }
+    assertTrue(file.length() > 0);
+  }
+
+  @Test
+  public void shouldReceiveStandardDecoratorsAndProperties() {
+    Properties properties = new Properties();
+    properties.setProperty("maxBytes", "2097152");
+    Cache cache = new CacheBuilder("default")
+        .implementation(OffHeapCache.class)
+        .addDecorator(LruCache.class)
+        .readWrite(true)
+        .properties(properties)
+        .build();
+    assertTrue(cache instanceof SynchronizedCache);
+    cache.putObject(1, "one");
+    assertEquals("one", cache.getObject(1));
+    assertEquals(1, cache.getSize());
+  }
+
+}
@@ -0,0 +1,190 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.decorators.PartitionedCache;
+import org.apache.ibatis.cache.decorators.TransactionalCache;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BaseExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.CachingExecutor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.Test;
+
+public class PartitionedCacheTest {
+
+  @Test
+  public void shouldEvictOnlyWithinAPartition() {
+    PartitionedCache cache = (PartitionedCache) new CacheBuilder("tenants").partitionBy("tenantId").size(2).build();
+    CacheKey small = PartitionedCache.key(new CacheKey(new Object[] { 0 }), "small");
+    cache.putObject(small, "small");
+    for (int i = 0; i < 10; i++) {
+      cache.putObject(PartitionedCache.key(new CacheKey(new Object[] { i }), "large"), "large" + i);
+    }
+    assertEquals(2, cache.getSize("large"));
+    assertEquals(1, cache.getSize("small"));
+    assertEquals("small", cache.getObject(small));
+    assertEquals(3, cache.getSize());
+    assertEquals(new HashSet<>(Arrays.asList("small", "large")), cache.getPartitions());
+  }
+
+  @Test
+  public void shouldKeepPartitionsApart() {
+    PartitionedCache cache = (PartitionedCache) new CacheBuilder("tenants").partitionBy("tenantId").build();
+    CacheKey key = new CacheKey(new Object[] { "select", 1 });
+    cache.putObject(PartitionedCache.key(key, "a"), "a");
+    cache.putObject(PartitionedCache.key(key, "b"), "b");
+    cache.putObject(key, "default");
+    assertEquals("a", cache.getObject(PartitionedCache.key(key, "a")));
+    assertEquals("b", cache.getObject(PartitionedCache.key(key, "b")));
+    assertEquals("default", cache.getObject(key));
+    assertEquals(3, cache.getKeys().size());
+
+    cache.clear("a");
+    assertNull(cache.getObject(PartitionedCache.key(key, "a")));
+    assertEquals("b", cache.getObject(PartitionedCache.key(key, "b")));
+    assertEquals("default", cache.getObject(key));
+  }
+
+  @Test
+  public void shouldClearAPartitionOnCommit() {
+    PartitionedCache cache = (PartitionedCache) new CacheBuilder("tenants").partitionBy("tenantId").build();
+    CacheKey keyA = PartitionedCache.key(new CacheKey(new Object[] { 1 }), "a");
+    CacheKey keyB = PartitionedCache.key(new CacheKey(new Object[] { 1 }), "b");
+    cache.putObject(keyA, "a");
+    cache.putObject(keyB, "b");
+
+    TransactionalCache txCache = new TransactionalCache(cache);
+    txCache.clear("a");
+    assertNull(txCache.getObject(keyA));
+    assertEquals("b", txCache.getObject(keyB));
+    assertEquals("a", cache.getObject(keyA));
+    txCache.commit();
+    assertNull(cache.getObject(keyA));
+    assertEquals("b", cache.getObject(keyB));
+  }
+
+  @Test
+  public void shouldSelectThePartitionFromTheParameter() throws Exception {
+    Configuration configuration = new Configuration();
+    Cache cache = new CacheBuilder("tenants").partitionBy("tenantId").build();
+    MappedStatement select = new MappedStatement.Builder(configuration, "tenants.select",
+        new StaticSqlSource(configuration, "select * from item"), SqlCommandType.SELECT).useCache(true).cache(cache).build();
+    MappedStatement update = new MappedStatement.Builder(configuration, "tenants.update",
+        new StaticSqlSource(configuration, "update item set name = null"), SqlCommandType.UPDATE).flushCacheRequired(true)
+        .cache(cache).build();
+
+    Executor executor = newExecutor(configuration);
+    executor.query(select, Collections.singletonMap("tenantId", "a"), RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+    executor.query(select, Collections.singletonMap("tenantId", "b"), RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+    executor.commit(true);
+    assertEquals(new HashSet<>(Arrays.asList("a", "b")), ((PartitionedCache) cache).getPartitions());
+    assertEquals(1, ((PartitionedCache) cache).getSize("a"));
+    assertEquals(1, ((PartitionedCache) cache).getSize("b"));
+
+    Map<String, Object> parameter = new HashMap<>();
+    parameter.put("tenantId", "a");
+    executor.update(update, parameter);
+    executor.commit(true);
+    assertEquals(0, ((PartitionedCache) cache).getSize("a"));
+    assertEquals(1, ((PartitionedCache) cache).getSize("b"));
+  }
+
+  @Test
+  public void shouldDropTheLeastRecentlyUsedPartitionOverTheMaximum() throws Exception {
+    PartitionedCache cache = (PartitionedCache) new CacheBuilder("tenants").partitionBy("tenantId").maxPartitions(2).build();
+    CacheKey key = new CacheKey(new Object[] { 1 });
+    cache.putObject(key, "default");
+    cache.putObject(PartitionedCache.key(key, "a"), "a");
+    Thread.sleep(1);
+    cache.putObject(PartitionedCache.key(key, "b"), "b");
+    Thread.sleep(1);
+    assertEquals("a", cache.getObject(PartitionedCache.key(key, "a")));
+    Thread.sleep(1);
+    cache.putObject(PartitionedCache.key(key, "c"), "c");
+    assertEquals(new HashSet<>(Arrays.asList("a", "c")), cache.getPartitions());
+    assertNull(cache.getObject(PartitionedCache.key(key, "b")));
+    assertEquals("default", cache.getObject(key));
+  }
+
+  @Test
+  public void shouldRejectPartitionValuesThatAreNotScalars() throws Exception {
+    Configuration configuration = new Configuration();
+    Cache cache = new CacheBuilder("tenants").partitionBy("tenantId").build();
+    MappedStatement select = new MappedStatement.Builder(configuration, "tenants.select",
+        new StaticSqlSource(configuration, "select * from item"), SqlCommandType.SELECT).useCache(true).cache(cache).build();
+
+    Executor executor = newExecutor(configuration);
+    try {
+      executor.query(select, Collections.singletonMap("tenantId", new ArrayList<>(Arrays.asList("a"))), RowBounds.DEFAULT,
+          Executor.NO_RESULT_HANDLER);
+      fail("Should have thrown an ExecutorException");
+    } catch (ExecutorException e) {
+      assertTrue(e.getMessage().contains("tenantId of tenants.select"));
+    }
+  }
+
+  private Executor newExecutor(Configuration configuration) {
+    BaseExecutor executor = new BaseExecutor(configuration, new JdbcTransaction(null, null, false)) {
+      @Override
+      protected int doUpdate(MappedStatement ms, Object parameter) {
+        return 1;
+      }
+
+      @Override
+      protected List<BatchResult> doFlushStatements(boolean isRollback) {
+        return new ArrayList<>();
+      }
+
+      @Override
+      protected <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
+        return new ArrayList<>();
+      }
+
+      @Override
+      protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public void commit(boolean required) {
+        // no connection
+      }
+    };
+    return new CachingExecutor(executor, configuration);
+  }
+
+}
@@ -0,0 +1,109 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.decorators.ReclaimingCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.Test;
+
+public class ReclaimingCacheTest {
+
+  @Test
+  public void shouldReclaimCollectedValuesInTheBackground() throws Exception {
+    CacheMetrics metrics = new CacheMetrics("default");
+    ReclaimingCache cache = new ReclaimingCache(new PerpetualCache("default"));
+    cache.setWeakReferences(true);
+    cache.setSize(0);
+    cache.setMetrics(metrics);
+    for (int i = 0; i < 100; i++) {
+      cache.putObject(i, new Object());
+    }
+    // only the reclaimer thread removes entries here
+    awaitSize(cache, 0);
+    assertEquals(100, cache.getReclaimedCount());
+    assertEquals(100, metrics.getEvictionCount());
+  }
+
+  @Test
+  public void shouldRestartTheReclaimerOnWriteOnceStopped() throws Exception {
+    ReclaimingCache cache = new ReclaimingCache(new PerpetualCache("default"));
+    cache.setWeakReferences(true);
+    cache.setSize(0);
+    cache.putObject(0, new Object());
+    ReclaimingCache.stopReclaimer();
+    for (int i = 1; i < 100; i++) {
+      cache.putObject(i, new Object());
+    }
+    awaitSize(cache, 0);
+    assertEquals(100, cache.getReclaimedCount());
+  }
+
+  @Test
+  public void shouldKeepRecentlyUsedValuesStronglyReachable() throws Exception {
+    ReclaimingCache cache = new ReclaimingCache(new PerpetualCache("default"));
+    cache.setWeakReferences(true);
+    cache.setSize(2);
+    for (int i = 0; i < 10; i++) {
+      cache.putObject(i, new Object());
+    }
+    awaitSize(cache, 2);
+    assertNotNull(cache.getObject(8));
+    assertNotNull(cache.getObject(9));
+    assertEquals(8, cache.getReclaimedCount());
+  }
+
+  @Test
+  public void shouldRemoveItemOnDemand() {
+    Cache cache = new ReclaimingCache(new PerpetualCache("default"));
+    cache.putObject(0, 0);
+    assertNotNull(cache.getObject(0));
+    assertEquals(0, cache.removeObject(0));
+    assertNull(cache.getObject(0));
+  }
+
+  @Test
+  public void shouldFlushAllItemsOnDemand() {
+    Cache cache = new ReclaimingCache(new PerpetualCache("default"));
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    assertEquals(5, cache.getSize());
+    cache.clear();
+    assertNull(cache.getObject(0));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void shouldNotBeSynchronized() {
+    Cache cache = new CacheBuilder("default").addDecorator(ReclaimingCache.class).size(16).build();
+    assertTrue(cache instanceof LoggingCache);
+    cache.putObject("key", "value");
+    assertEquals("value", cache.getObject("key"));
+  }
+
+  private static void awaitSize(Cache cache, int size) throws InterruptedException {
+    for (int i = 0; i < 100 && cache.getSize() > size; i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    assertEquals(size, cache.getSize());
+  }
+
+}
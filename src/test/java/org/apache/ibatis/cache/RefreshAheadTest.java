@@ -0,0 +1,172 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BaseExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.CacheRefresher;
+import org.apache.ibatis.executor.CachingExecutor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RefreshAheadTest {
+
+  private final AtomicInteger databaseQueries = new AtomicInteger();
+  private final AtomicInteger failingRefreshes = new AtomicInteger();
+  private Configuration configuration;
+  private MappedStatement selectAuthor;
+  private MappedStatement updateAuthor;
+
+  @Before
+  public void setUp() {
+    configuration = new Configuration() {
+      {
+        cacheRefresher = new CacheRefresher(this, 1) {
+          @Override
+          protected Executor newExecutor() {
+            if (failingRefreshes.getAndDecrement() > 0) {
+              throw new ExecutorException("Refresh failed.");
+            }
+            return newBaseExecutor();
+          }
+        };
+      }
+    };
+    Cache cache = new CacheBuilder("blog").expireAfterWrite(10000L).refreshAhead(9500L).maxStale(5000L).build();
+    configuration.addCache(cache);
+    selectAuthor = new MappedStatement.Builder(configuration, "blog.selectAuthor",
+        new StaticSqlSource(configuration, "select * from author"), SqlCommandType.SELECT).useCache(true).cache(cache).build();
+    updateAuthor = new MappedStatement.Builder(configuration, "blog.updateAuthor",
+        new StaticSqlSource(configuration, "update author set bio = null"), SqlCommandType.UPDATE).flushCacheRequired(true).cache(cache).build();
+  }
+
+  @After
+  public void tearDown() {
+    configuration.shutdown();
+  }
+
+  @Test
+  public void shouldReturnCachedValueAndRefreshInBackground() throws Exception {
+    assertEquals(1, query());
+    Thread.sleep(600);
+    // close to expiry: the cached value is returned and reloaded in the background
+    assertEquals(1, query());
+    awaitQueries(2);
+    assertEquals(2, query());
+    assertEquals(2, databaseQueries.get());
+  }
+
+  @Test
+  public void shouldRequestRefreshAgainAfterAFailedRefresh() throws Exception {
+    failingRefreshes.set(1);
+    assertEquals(1, query());
+    Thread.sleep(600);
+    assertEquals(1, query());
+    Thread.sleep(100);
+    // the failed refresh does not keep the entry from being refreshed
+    assertEquals(1, query());
+    awaitQueries(2);
+    assertEquals(2, query());
+  }
+
+  @Test
+  public void shouldNotRefreshAfterShutdown() throws Exception {
+    assertEquals(1, query());
+    configuration.shutdown();
+    Thread.sleep(600);
+    assertEquals(1, query());
+    Thread.sleep(100);
+    assertEquals(1, databaseQueries.get());
+  }
+
+  @Test
+  public void shouldNotRefreshEntriesFlushedByTheSession() throws Exception {
+    assertEquals(1, query());
+    Thread.sleep(600);
+    Executor writer = new CachingExecutor(newBaseExecutor());
+    writer.update(updateAuthor, null);
+    // the session that wrote does not trigger refreshes
+    writer.query(selectAuthor, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+    writer.commit(true);
+    Thread.sleep(100);
+    assertEquals(2, query());
+    assertEquals(2, databaseQueries.get());
+  }
+
+  private int query() throws SQLException {
+    Executor executor = new CachingExecutor(newBaseExecutor());
+    List<Integer> result = executor.query(selectAuthor, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+    executor.commit(true);
+    return result.get(0);
+  }
+
+  private void awaitQueries(int expected) throws InterruptedException {
+    for (int i = 0; i < 100 && databaseQueries.get() < expected; i++) {
+      Thread.sleep(20);
+    }
+    assertEquals(expected, databaseQueries.get());
+    // let the refresher put the value
+    Thread.sleep(100);
+  }
+
+  private Executor newBaseExecutor() {
+    return new BaseExecutor(configuration, new JdbcTransaction(null, null, false)) {
+      @Override
+      protected int doUpdate(MappedStatement ms, Object parameter) {
+        return 1;
+      }
+
+      @Override
+      protected List<BatchResult> doFlushStatements(boolean isRollback) {
+        return new ArrayList<>();
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      protected <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
+        List<E> result = new ArrayList<>();
+        result.add((E) Integer.valueOf(databaseQueries.incrementAndGet()));
+        return result;
+      }
+
+      @Override
+      protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+}
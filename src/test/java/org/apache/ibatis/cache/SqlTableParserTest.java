@@ -0,0 +1,78 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class SqlTableParserTest {
+
+  @Test
+  public void shouldFindTablesOfSelect() {
+    assertEquals(tables("author"), SqlTableParser.readTables("select * from author where id = ?"));
+    assertEquals(tables("blog", "author", "post"), SqlTableParser.readTables(
+        "SELECT b.id FROM Blog b INNER JOIN author a ON a.id = b.author_id LEFT OUTER JOIN post AS p ON p.blog_id = b.id"));
+    assertEquals(tables("blog", "author"), SqlTableParser.readTables("select * from blog b, author a where b.author_id = a.id"));
+    assertEquals(tables("post", "comment"), SqlTableParser.readTables(
+        "select * from (select * from post where id in (select post_id from comment)) p"));
+  }
+
+  @Test
+  public void shouldRemoveSchemaAndQuotes() {
+    assertEquals(tables("author"), SqlTableParser.readTables("select * from blogs.\"AUTHOR\""));
+    assertEquals(tables("order details"), SqlTableParser.readTables("select * from [dbo].[Order Details]"));
+    assertEquals(tables("author"), SqlTableParser.readTables("select * from `author`"));
+  }
+
+  @Test
+  public void shouldIgnoreLiteralsAndComments() {
+    assertEquals(tables("author"), SqlTableParser.readTables(
+        "select 'from blog' as text /* join post */ from author -- join comment\n where bio <> 'update tag'"));
+  }
+
+  @Test
+  public void shouldFindWrittenTables() {
+    assertEquals(tables("author"), SqlTableParser.writtenTables("insert into author (id, username) values (?, ?)"));
+    assertEquals(tables("author"), SqlTableParser.writtenTables("update author set bio = ? where id = ?"));
+    assertEquals(tables("author"), SqlTableParser.writtenTables("delete from author where id = ?"));
+    assertEquals(tables("post", "comment"), SqlTableParser.writtenTables("delete post, comment from post join comment on comment.post_id = post.id"));
+    assertEquals(tables("author"), SqlTableParser.writtenTables("truncate table author"));
+    assertEquals(tables("archive"), SqlTableParser.writtenTables("insert into archive select * from post where created_on < ?"));
+    assertEquals(tables("blog", "post"), SqlTableParser.writtenTables("update blog set title = ?; delete from post where blog_id = ?"));
+  }
+
+  @Test
+  public void shouldNotReportReadTablesAsWritten() {
+    assertEquals(tables("post"), SqlTableParser.writtenTables("update post p set subject = a.username from author a where a.id = p.author_id"));
+    assertEquals(tables("author"), SqlTableParser.readTables("update post p set subject = a.username from author a where a.id = p.author_id"));
+  }
+
+  @Test
+  public void shouldReturnNoTablesWhenNoneCanBeFound() {
+    assertTrue(SqlTableParser.writtenTables("{call purge_authors(?)}").isEmpty());
+    assertTrue(SqlTableParser.readTables("select 1").isEmpty());
+  }
+
+  private Set<String> tables(String... names) {
+    return new HashSet<>(Arrays.asList(names));
+  }
+
+}
@@ -0,0 +1,207 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BaseExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.CachingExecutor;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.session.CacheInvalidationScope;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TableInvalidationTest {
+
+  private Configuration configuration;
+  private MappedStatement selectAuthor;
+  private MappedStatement selectBlog;
+  private MappedStatement selectNow;
+  private MappedStatement updateAuthor;
+  private MappedStatement purgeAuthors;
+  private MappedStatement deleteAuthorElsewhere;
+  private int databaseQueries;
+
+  @Before
+  public void setUp() {
+    configuration = new Configuration();
+    configuration.setCacheInvalidationScope(CacheInvalidationScope.TABLE);
+    Cache cache = new CacheBuilder("blog").build();
+    configuration.addCache(cache);
+    selectAuthor = statement("blog.selectAuthor", "select * from author where id = ?", SqlCommandType.SELECT, cache);
+    selectBlog = statement("blog.selectBlog", "select * from blog b join post p on p.blog_id = b.id", SqlCommandType.SELECT, cache);
+    selectNow = statement("blog.selectNow", "select current_timestamp", SqlCommandType.SELECT, cache);
+    updateAuthor = statement("blog.updateAuthor", "update author set bio = ? where id = ?", SqlCommandType.UPDATE, cache);
+    purgeAuthors = new MappedStatement.Builder(configuration, "blog.purgeAuthors",
+        new StaticSqlSource(configuration, "{call purge_authors()}"), SqlCommandType.UPDATE)
+        .statementType(StatementType.CALLABLE).flushCacheRequired(true).cache(cache).build();
+    deleteAuthorElsewhere = statement("admin.deleteAuthor", "delete from author where id = ?", SqlCommandType.DELETE, null);
+  }
+
+  @Test
+  public void shouldOnlyInvalidateEntriesOfWrittenTables() throws SQLException {
+    populate();
+    Executor executor = newExecutor();
+    executor.update(updateAuthor, null);
+    executor.commit(true);
+
+    assertQueries(1, selectAuthor);
+    assertQueries(0, selectBlog);
+  }
+
+  @Test
+  public void shouldInvalidateQueriesWithUnknownTablesOnAnyWriteOfTheNamespace() throws SQLException {
+    populate();
+    Executor executor = newExecutor();
+    executor.update(updateAuthor, null);
+    executor.commit(true);
+
+    assertQueries(1, selectNow);
+  }
+
+  @Test
+  public void shouldInvalidateEntriesOfOtherNamespaces() throws SQLException {
+    populate();
+    Executor executor = newExecutor();
+    executor.update(deleteAuthorElsewhere, null);
+    executor.commit(true);
+
+    assertQueries(1, selectAuthor);
+    assertQueries(0, selectBlog);
+    assertQueries(0, selectNow);
+  }
+
+  @Test
+  public void shouldBypassCacheForTablesWrittenByTheSession() throws SQLException {
+    populate();
+    Executor executor = newExecutor();
+    executor.update(updateAuthor, null);
+    int before = databaseQueries;
+    executor.query(selectAuthor, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+    executor.query(selectBlog, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+    assertEquals(before + 1, databaseQueries);
+    executor.rollback(true);
+
+    // the write was rolled back so the cached entry is still valid
+    assertQueries(0, selectAuthor);
+  }
+
+  @Test
+  public void shouldClearNamespaceWhenWrittenTablesAreUnknown() throws SQLException {
+    populate();
+    Executor executor = newExecutor();
+    executor.update(purgeAuthors, null);
+    executor.commit(true);
+
+    assertQueries(1, selectAuthor);
+    assertQueries(1, selectBlog);
+  }
+
+  @Test
+  public void shouldUseDeclaredTables() throws SQLException {
+    Cache cache = configuration.getCache("blog");
+    MappedStatement selectView = new MappedStatement.Builder(configuration, "blog.selectView",
+        new StaticSqlSource(configuration, "select * from author_view"), SqlCommandType.SELECT)
+        .tables("AUTHOR, blog").useCache(true).cache(cache).build();
+    assertQueries(1, selectView);
+    assertQueries(0, selectView);
+
+    Executor executor = newExecutor();
+    executor.update(updateAuthor, null);
+    executor.commit(true);
+
+    assertQueries(1, selectView);
+  }
+
+  @Test
+  public void shouldClearWholeNamespaceByDefault() throws SQLException {
+    configuration.setCacheInvalidationScope(CacheInvalidationScope.NAMESPACE);
+    populate();
+    Executor executor = newExecutor();
+    executor.update(updateAuthor, null);
+    executor.commit(true);
+
+    assertQueries(1, selectBlog);
+  }
+
+  private void populate() throws SQLException {
+    assertQueries(1, selectAuthor);
+    assertQueries(1, selectBlog);
+    assertQueries(1, selectNow);
+    assertQueries(0, selectAuthor);
+    assertQueries(0, selectBlog);
+    assertQueries(0, selectNow);
+  }
+
+  private void assertQueries(int expected, MappedStatement ms) throws SQLException {
+    int before = databaseQueries;
+    Executor executor = newExecutor();
+    List<Object> result = executor.query(ms, null, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER);
+    executor.commit(true);
+    assertEquals(1, result.size());
+    assertEquals(expected, databaseQueries - before);
+  }
+
+  private MappedStatement statement(String id, String sql, SqlCommandType commandType, Cache cache) {
+    boolean isSelect = commandType == SqlCommandType.SELECT;
+    return new MappedStatement.Builder(configuration, id, new StaticSqlSource(configuration, sql), commandType)
+        .useCache(isSelect).flushCacheRequired(!isSelect).cache(cache).build();
+  }
+
+  private Executor newExecutor() {
+    return new CachingExecutor(new BaseExecutor(configuration, new JdbcTransaction(null, null, false)) {
+      @Override
+      protected int doUpdate(MappedStatement ms, Object parameter) {
+        return 1;
+      }
+
+      @Override
+      protected List<BatchResult> doFlushStatements(boolean isRollback) {
+        return new ArrayList<>();
+      }
+
+      @Override
+      protected <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
+        databaseQueries++;
+        List<E> result = new ArrayList<>();
+        result.add(null);
+        return result;
+      }
+
+      @Override
+      protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) {
+        throw new UnsupportedOperationException();
+      }
+    });
+  }
+
+}
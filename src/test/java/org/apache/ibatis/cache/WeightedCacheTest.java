@@ -0,0 +1,179 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.ibatis.cache.decorators.TinyLfuCache;
+import org.apache.ibatis.cache.decorators.WeightedCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.cache.weigher.ObjectSizeWeigher;
+import org.apache.ibatis.cache.weigher.Weigher;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Section;
+import org.apache.ibatis.executor.loader.ResultLoader;
+import org.apache.ibatis.executor.loader.ResultLoaderMap;
+import org.apache.ibatis.executor.loader.javassist.JavassistProxyFactory;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
+import org.apache.ibatis.session.Configuration;
+import org.junit.Test;
+
+public class WeightedCacheTest {
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedEntriesOverMaxWeight() {
+    WeightedCache cache = new WeightedCache(new PerpetualCache("default"));
+    cache.setWeigher(new LengthWeigher());
+    cache.setMaxWeight(100);
+    cache.putObject("a", new byte[40]);
+    cache.putObject("b", new byte[40]);
+    cache.getObject("a");
+    cache.putObject("c", new byte[40]);
+    assertNotNull(cache.getObject("a"));
+    assertNull(cache.getObject("b"));
+    assertNotNull(cache.getObject("c"));
+    assertEquals(80, cache.getTotalWeight());
+  }
+
+  @Test
+  public void shouldNotCacheEntriesHeavierThanMaxWeight() {
+    WeightedCache cache = new WeightedCache(new PerpetualCache("default"));
+    cache.setWeigher(new LengthWeigher());
+    cache.setMaxWeight(100);
+    cache.putObject("a", new byte[40]);
+    cache.putObject("b", new byte[101]);
+    assertNotNull(cache.getObject("a"));
+    assertNull(cache.getObject("b"));
+    assertEquals(40, cache.getTotalWeight());
+  }
+
+  @Test
+  public void shouldTrackWeightOnReplaceRemoveAndClear() {
+    WeightedCache cache = new WeightedCache(new PerpetualCache("default"));
+    cache.setWeigher(new LengthWeigher());
+    cache.putObject("a", new byte[40]);
+    cache.putObject("a", new byte[10]);
+    assertEquals(10, cache.getTotalWeight());
+    cache.removeObject("a");
+    assertEquals(0, cache.getTotalWeight());
+    cache.putObject("a", new byte[40]);
+    cache.clear();
+    assertEquals(0, cache.getTotalWeight());
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  public void shouldWeighLargeListsMoreThanSmallOnes() {
+    Weigher weigher = new ObjectSizeWeigher();
+    List<Author> one = authors(1);
+    List<Author> many = authors(5000);
+    int small = weigher.weigh("key", one);
+    int large = weigher.weigh("key", many);
+    assertTrue(small > 0);
+    assertTrue(large > small * 1000);
+    assertEquals(0, weigher.weigh("key", null));
+    assertEquals(1040, weigher.weigh("key", new byte[1024]));
+  }
+
+  @Test
+  public void shouldBoundCacheBuiltWithMaxWeight() {
+    Cache cache = new CacheBuilder("default").maxWeight(10000L).size(100000).build();
+    for (int i = 0; i < 1000; i++) {
+      cache.putObject(i, authors(10));
+    }
+    assertTrue(cache.getSize() < 1000);
+    assertNotNull(cache.getObject(999));
+    assertNull(cache.getObject(0));
+  }
+
+  @Test
+  public void shouldNotCountEntriesEvictedByWeightInTheLruSize() {
+    Cache cache = new CacheBuilder("default").size(3).maxWeight(100L).weigher(LengthWeigher.class).build();
+    cache.putObject("a", new byte[60]);
+    cache.putObject("b", new byte[60]);
+    assertNull(cache.getObject("a"));
+    cache.putObject("c", new byte[10]);
+    cache.putObject("d", new byte[10]);
+    assertNotNull(cache.getObject("b"));
+    assertNotNull(cache.getObject("c"));
+    assertNotNull(cache.getObject("d"));
+  }
+
+  @Test
+  public void shouldWeighLazyLoadedResultsWithoutLoadingThem() {
+    Configuration configuration = new Configuration();
+    final int[] loads = { 0 };
+    ResultLoader bioLoader = new ResultLoader(configuration, null, null, null, String.class, null, null) {
+      @Override
+      public Object loadResult() throws SQLException {
+        loads[0]++;
+        return "loaded";
+      }
+    };
+    Author author = new Author(1, "user1", "secret", "user1@example.com", null, Section.NEWS);
+    ResultLoaderMap lazyLoader = new ResultLoaderMap();
+    lazyLoader.addLoader("bio", configuration.newMetaObject(author), bioLoader);
+    Object proxy = new JavassistProxyFactory().createProxy(author, lazyLoader, configuration, new DefaultObjectFactory(),
+        new ArrayList<>(), new ArrayList<>());
+
+    WeightedCache cache = new WeightedCache(new PerpetualCache("default"));
+    cache.putObject("lazy", Collections.singletonList(proxy));
+    cache.putObject("plain", Collections.singletonList(author));
+    assertEquals(0, loads[0]);
+    assertTrue(lazyLoader.hasLoader("bio"));
+    assertEquals(2 * new ObjectSizeWeigher().weigh("plain", Collections.singletonList(author)), cache.getTotalWeight());
+  }
+
+  @Test
+  public void shouldNotWeighTheConfiguration() {
+    Weigher weigher = new ObjectSizeWeigher();
+    Holder holder = new Holder();
+    int empty = weigher.weigh("key", holder);
+    holder.value = new Configuration();
+    assertEquals(empty, weigher.weigh("key", holder));
+  }
+
+  @Test(expected = CacheException.class)
+  public void shouldRejectMaxWeightWithTinyLfu() {
+    new CacheBuilder("default").addDecorator(TinyLfuCache.class).maxWeight(10000L).build();
+  }
+
+  private List<Author> authors(int count) {
+    List<Author> authors = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      authors.add(new Author(i, "user" + i, "secret", "user" + i + "@example.com", "bio", Section.NEWS));
+    }
+    return authors;
+  }
+
+  static class Holder {
+    Object value;
+  }
+
+  public static class LengthWeigher implements Weigher {
+    @Override
+    public int weigh(Object key, Object value) {
+      return ((byte[]) value).length;
+    }
+  }
+
+}
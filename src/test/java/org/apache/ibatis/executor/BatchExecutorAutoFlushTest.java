@@ -0,0 +1,104 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchExecutorAutoFlushTest {
+
+  private final List<Integer> executedBatches = new ArrayList<>();
+  private final List<String> flushes = new ArrayList<>();
+  private Configuration configuration;
+  private BatchExecutor executor;
+
+  public interface ItemMapper {
+    @Insert("insert into item (name) values (#{name})")
+    int insert(String name);
+
+    @Options(batchFlushSize = 3)
+    @Insert("insert into item_history (name) values (#{name})")
+    int insertHistory(String name);
+  }
+
+  @Before
+  public void setUp() {
+    configuration = new Configuration();
+    configuration.addMapper(ItemMapper.class);
+    configuration.setBatchFlushListener((results, automatic) -> {
+      StringBuilder flush = new StringBuilder(automatic ? "auto" : "manual");
+      for (BatchResult result : results) {
+        flush.append(' ').append(result.getParameterObjects().size());
+      }
+      flushes.add(flush.toString());
+    });
+    Connection connection = JdbcStubs.newConnection(sql -> JdbcStubs.newBatchStatement(executedBatches::add));
+    executor = new BatchExecutor(configuration, new JdbcTransaction(connection));
+  }
+
+  @Test
+  public void shouldFlushEveryBatchFlushSizeExecutions() throws Exception {
+    configuration.setBatchFlushSize(2);
+    for (int i = 0; i < 5; i++) {
+      executor.update(statement("insert"), "item" + i);
+    }
+    assertEquals(Arrays.asList(2, 2), executedBatches);
+    assertEquals(Arrays.asList("auto 2", "auto 2"), flushes);
+
+    List<BatchResult> results = executor.flushStatements();
+    assertEquals(1, results.size());
+    assertEquals(1, results.get(0).getParameterObjects().size());
+    assertEquals(Arrays.asList("auto 2", "auto 2", "manual 1"), flushes);
+  }
+
+  @Test
+  public void shouldCountAllPendingExecutionsAgainstTheLimitOfTheStatement() throws Exception {
+    executor.update(statement("insert"), "a");
+    executor.update(statement("insertHistory"), "a");
+    assertTrue(executedBatches.isEmpty());
+    executor.update(statement("insertHistory"), "b");
+    assertEquals(Arrays.asList(1, 2), executedBatches);
+    assertEquals(Arrays.asList("auto 1 2"), flushes);
+    executor.update(statement("insert"), "b");
+    assertEquals(2, executedBatches.size());
+  }
+
+  @Test
+  public void shouldFlushWhenTheEstimatedBytesAreReached() throws Exception {
+    configuration.setBatchFlushBytes(100L);
+    executor.update(statement("insert"), "a");
+    assertTrue(executedBatches.isEmpty());
+    executor.update(statement("insert"), "a much longer name that takes some more bytes");
+    assertEquals(Arrays.asList(2), executedBatches);
+  }
+
+  private MappedStatement statement(String method) {
+    return configuration.getMappedStatement(ItemMapper.class.getName() + "." + method);
+  }
+
+}
@@ -0,0 +1,142 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.Assert.*;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchExecutorGroupingTest {
+
+  private final List<String> executedBatches = new ArrayList<>();
+  private Configuration configuration;
+
+  public interface OrderMapper {
+    @Insert("insert into orders (id) values (#{id})")
+    int insertOrder(int id);
+
+    @Insert("insert into order_line (order_id) values (#{id})")
+    int insertLine(int id);
+
+    @Delete("delete from orders where id = #{id}")
+    int deleteOrder(int id);
+
+    @Delete("delete from order_line where order_id = #{id}")
+    int deleteLines(int id);
+  }
+
+  @Before
+  public void setUp() {
+    configuration = new Configuration();
+    configuration.addMapper(OrderMapper.class);
+    configuration.setBatchStatementGrouping(true);
+  }
+
+  @Test
+  public void shouldKeepOneBatchPerStatementWhenTheyAreInterleaved() throws Exception {
+    configuration.setBatchTableOrder(Arrays.asList("orders", "order_line"));
+    BatchExecutor executor = newExecutor();
+    for (int i = 0; i < 3; i++) {
+      executor.update(statement("insertOrder"), i);
+      executor.update(statement("insertLine"), i);
+    }
+    List<BatchResult> results = executor.flushStatements();
+    assertEquals(Arrays.asList("insert into orders 3", "insert into order_line 3"), executedBatches);
+    assertEquals(Arrays.asList(0, 1, 2), results.get(0).getParameterObjects());
+  }
+
+  @Test
+  public void shouldNotMoveAnExecutionBeforeATableItDependsOn() throws Exception {
+    configuration.setBatchTableOrder(Arrays.asList("ORDERS", "order_line"));
+    BatchExecutor executor = newExecutor();
+    // the line of an existing order is written first
+    executor.update(statement("insertLine"), 0);
+    executor.update(statement("insertOrder"), 1);
+    executor.update(statement("insertLine"), 1);
+    executor.update(statement("insertOrder"), 2);
+    executor.flushStatements();
+    assertEquals(Arrays.asList("insert into order_line 1", "insert into orders 2", "insert into order_line 1"), executedBatches);
+  }
+
+  @Test
+  public void shouldNotMoveAnExecutionPastATableWhoseOrderIsNotDeclared() throws Exception {
+    BatchExecutor executor = newExecutor();
+    executor.update(statement("insertLine"), 0);
+    executor.update(statement("insertOrder"), 1);
+    executor.update(statement("insertLine"), 1);
+    executor.flushStatements();
+    assertEquals(Arrays.asList("insert into order_line 1", "insert into orders 1", "insert into order_line 1"), executedBatches);
+  }
+
+  @Test
+  public void shouldDeleteInTheReverseOrder() throws Exception {
+    configuration.setBatchTableOrder(Arrays.asList("orders", "order_line"));
+    BatchExecutor executor = newExecutor();
+    for (int i = 0; i < 3; i++) {
+      executor.update(statement("deleteLines"), i);
+      executor.update(statement("deleteOrder"), i);
+    }
+    executor.flushStatements();
+    assertEquals(Arrays.asList("delete from order_line 3", "delete from orders 3"), executedBatches);
+  }
+
+  @Test
+  public void shouldNotGroupAcrossStatementsOfTheSameTable() throws Exception {
+    BatchExecutor executor = newExecutor();
+    executor.update(statement("insertOrder"), 1);
+    executor.update(statement("deleteOrder"), 1);
+    executor.update(statement("insertOrder"), 1);
+    executor.flushStatements();
+    assertEquals(Arrays.asList("insert into orders 1", "delete from orders 1", "insert into orders 1"), executedBatches);
+  }
+
+  @Test
+  public void shouldStartANewBatchForEachChangeOfStatementByDefault() throws Exception {
+    configuration.setBatchStatementGrouping(false);
+    BatchExecutor executor = newExecutor();
+    for (int i = 0; i < 2; i++) {
+      executor.update(statement("insertOrder"), i);
+      executor.update(statement("insertLine"), i);
+    }
+    executor.flushStatements();
+    assertEquals(4, executedBatches.size());
+  }
+
+  private BatchExecutor newExecutor() {
+    return new BatchExecutor(configuration, new JdbcTransaction(JdbcStubs.newConnection(this::newStatement)));
+  }
+
+  private MappedStatement statement(String method) {
+    return configuration.getMappedStatement(OrderMapper.class.getName() + "." + method);
+  }
+
+  private PreparedStatement newStatement(String sql) {
+    final String prefix = sql.substring(0, sql.indexOf(sql.startsWith("insert") ? " (" : " where"));
+    return JdbcStubs.newBatchStatement(rows -> executedBatches.add(prefix + " " + rows));
+  }
+
+}
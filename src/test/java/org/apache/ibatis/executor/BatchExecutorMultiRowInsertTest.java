@@ -0,0 +1,214 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.Assert.*;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchExecutorMultiRowInsertTest {
+
+  // the SQL of each prepared statement, followed by the parameters of each of its batched executions
+  private final List<List<Object>> preparedStatements = new ArrayList<>();
+  private int nextKey = 100;
+  private Configuration configuration;
+  private BatchExecutor executor;
+
+  public static class Item {
+    private Integer id;
+    private String name;
+
+    public Item(String name) {
+      this.name = name;
+    }
+
+    public Integer getId() {
+      return id;
+    }
+
+    public void setId(Integer id) {
+      this.id = id;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+  }
+
+  public interface ItemMapper {
+    @Options(useGeneratedKeys = true, keyProperty = "id")
+    @Insert("insert into item (name, code) values (#{name}, 'a''(?)')")
+    int insert(Item item);
+
+    @Insert("insert into item (name) select name from item where name = #{name}")
+    int copy(Item item);
+  }
+
+  @Before
+  public void setUp() {
+    configuration = new Configuration();
+    configuration.addMapper(ItemMapper.class);
+    configuration.setBatchInsertRows(2);
+    executor = new BatchExecutor(configuration, new JdbcTransaction(JdbcStubs.newConnection(this::newStatement)));
+  }
+
+  @Test
+  public void shouldInsertSeveralRowsPerStatement() throws Exception {
+    List<Item> items = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      items.add(new Item("item" + i));
+      executor.update(statement("insert"), items.get(i));
+    }
+    List<BatchResult> results = executor.flushStatements();
+
+    assertEquals(2, preparedStatements.size());
+    assertEquals(Arrays.asList("insert into item (name, code) values (?, 'a''(?)'), (?, 'a''(?)')",
+        Arrays.asList("item0", "item1"), Arrays.asList("item2", "item3")), preparedStatements.get(0));
+    assertEquals(Arrays.asList("insert into item (name, code) values (?, 'a''(?)')",
+        Arrays.asList("item4")), preparedStatements.get(1));
+
+    assertEquals(1, results.size());
+    assertEquals(items, results.get(0).getParameterObjects());
+    assertEquals("[1, 1, 1, 1, 1]", Arrays.toString(results.get(0).getUpdateCounts()));
+    for (int i = 0; i < 5; i++) {
+      assertEquals(Integer.valueOf(100 + i), items.get(i).getId());
+    }
+  }
+
+  @Test
+  public void shouldBatchOtherStatementsAsTheyAre() throws Exception {
+    executor.update(statement("copy"), new Item("a"));
+    executor.update(statement("copy"), new Item("b"));
+    executor.flushStatements();
+    assertEquals(1, preparedStatements.size());
+    assertEquals(Arrays.asList("insert into item (name) select name from item where name = ?",
+        Arrays.asList("a"), Arrays.asList("b")), preparedStatements.get(0));
+  }
+
+  @Test
+  public void shouldOnlyRewriteInsertsOfASingleRow() {
+    assertNotNull(rewrite("insert into t (a, b) values (?, ?)"));
+    assertNotNull(rewrite("INSERT INTO t(a,b) VALUES(?, coalesce(?, 0)) "));
+    assertNull(rewrite("insert into t (a, b) values (?, ?), (1, 2)"));
+    assertNull(rewrite("insert into t (a, b) values (?, ?) on duplicate key update b = 1"));
+    assertNull(rewrite("insert into t (a, b) select ?, ? from dual"));
+    assertNull(rewrite("insert into t (a, b) values (?, ?) returning id"));
+    assertEquals("insert into t (a, b) values (?, ?), (?, ?), (?, ?)", rewrite("insert into t (a, b) values (?, ?)").getSql(3));
+  }
+
+  private MultiRowInsert rewrite(String sql) {
+    MappedStatement ms = new MappedStatement.Builder(configuration, "rewrite",
+        parameterObject -> new BoundSql(configuration, sql, parameterMappings(sql), parameterObject),
+        SqlCommandType.INSERT).build();
+    return MultiRowInsert.newInstance(ms, ms.getBoundSql(null), 10);
+  }
+
+  private List<ParameterMapping> parameterMappings(String sql) {
+    List<ParameterMapping> mappings = new ArrayList<>();
+    for (int i = sql.indexOf('?'); i >= 0; i = sql.indexOf('?', i + 1)) {
+      mappings.add(new ParameterMapping.Builder(configuration, "p" + i, Object.class).build());
+    }
+    return mappings;
+  }
+
+  private MappedStatement statement(String method) {
+    return configuration.getMappedStatement(ItemMapper.class.getName() + "." + method);
+  }
+
+  private PreparedStatement newStatement(String sql) {
+    final List<Object> prepared = new ArrayList<>();
+    prepared.add(sql);
+    preparedStatements.add(prepared);
+    final TreeMap<Integer, Object> parameters = new TreeMap<>();
+    final List<Integer> rowsPerBatch = new ArrayList<>();
+    return JdbcStubs.newStub(PreparedStatement.class, (method, args) -> {
+      switch (method) {
+        case "setString":
+          parameters.put((Integer) args[0], args[1]);
+          return null;
+        case "addBatch":
+          prepared.add(new ArrayList<>(parameters.values()));
+          rowsPerBatch.add(parameters.size());
+          parameters.clear();
+          return null;
+        case "executeBatch":
+          int[] counts = new int[rowsPerBatch.size()];
+          for (int i = 0; i < counts.length; i++) {
+            counts[i] = rowsPerBatch.get(i);
+          }
+          return counts;
+        case "getGeneratedKeys":
+          int keyCount = 0;
+          for (int rows : rowsPerBatch) {
+            keyCount += rows;
+          }
+          return newKeys(keyCount);
+        default:
+          return JdbcStubs.DEFAULT;
+      }
+    });
+  }
+
+  private ResultSet newKeys(int count) {
+    final int[] remaining = { count };
+    final int[] key = { 0 };
+    final ResultSetMetaData metaData = JdbcStubs.newStub(ResultSetMetaData.class, (method, args) -> {
+      if ("getColumnType".equals(method)) {
+        return Types.INTEGER;
+      }
+      return "getColumnCount".equals(method) ? 1 : JdbcStubs.DEFAULT;
+    });
+    return JdbcStubs.newStub(ResultSet.class, (method, args) -> {
+      switch (method) {
+        case "getMetaData":
+          return metaData;
+        case "next":
+          if (remaining[0]-- > 0) {
+            key[0] = nextKey++;
+            return true;
+          }
+          return false;
+        case "getInt":
+          return key[0];
+        default:
+          return JdbcStubs.DEFAULT;
+      }
+    });
+  }
+
+}
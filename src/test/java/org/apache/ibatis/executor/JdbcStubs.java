@@ -0,0 +1,88 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * JDBC objects for the batch executor tests, without a database.
+ */
+final class JdbcStubs {
+
+  /**
+   * Returned by an {@link Answer} for the methods it does not handle.
+   */
+  static final Object DEFAULT = new Object();
+
+  interface Answer {
+    Object answer(String method, Object[] args) throws Throwable;
+  }
+
+  private JdbcStubs() {
+  }
+
+  /**
+   * @return a stub whose methods return the value of the answer, or false, 0 or null when it answers {@link #DEFAULT}
+   */
+  static <T> T newStub(Class<T> type, Answer answer) {
+    return type.cast(Proxy.newProxyInstance(JdbcStubs.class.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+      Object value = answer.answer(method.getName(), args);
+      return value == DEFAULT ? defaultValue(method.getReturnType()) : value;
+    }));
+  }
+
+  /**
+   * @return a connection that prepares its statements with the given function, called with their SQL
+   */
+  static Connection newConnection(Function<String, PreparedStatement> statements) {
+    return newStub(Connection.class, (method, args) -> "prepareStatement".equals(method) ? statements.apply((String) args[0]) : DEFAULT);
+  }
+
+  /**
+   * @return a statement that reports the number of rows of each batch it executes
+   */
+  static PreparedStatement newBatchStatement(IntConsumer executedBatches) {
+    final int[] batched = { 0 };
+    return newStub(PreparedStatement.class, (method, args) -> {
+      switch (method) {
+        case "addBatch":
+          batched[0]++;
+          return null;
+        case "executeBatch":
+          executedBatches.accept(batched[0]);
+          return new int[batched[0]];
+        default:
+          return DEFAULT;
+      }
+    });
+  }
+
+  private static Object defaultValue(Class<?> type) {
+    if (type == boolean.class) {
+      return false;
+    } else if (type == int.class) {
+      return 0;
+    } else if (type == long.class) {
+      return 0L;
+    }
+    return null;
+  }
+
+}
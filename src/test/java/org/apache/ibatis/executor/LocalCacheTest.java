@@ -0,0 +1,100 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.Test;
+
+public class LocalCacheTest {
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedEntriesOverMaxSize() {
+    LocalCache cache = new LocalCache("local");
+    cache.setMaxSize(2);
+    cache.putObject(1, "1");
+    cache.putObject(2, "2");
+    cache.getObject(1);
+    cache.putObject(3, "3");
+    assertEquals(2, cache.getSize());
+    assertEquals("1", cache.getObject(1));
+    assertNull(cache.getObject(2));
+    assertEquals("3", cache.getObject(3));
+  }
+
+  @Test
+  public void shouldEvictEntriesOverMaxWeight() {
+    LocalCache cache = new LocalCache("local");
+    cache.setMaxWeight(1000);
+    cache.setWeigher((key, value) -> ((byte[]) value).length);
+    cache.putObject(1, new byte[400]);
+    cache.putObject(2, new byte[400]);
+    cache.putObject(3, new byte[400]);
+    assertNull(cache.getObject(1));
+    assertNotNull(cache.getObject(2));
+    assertEquals(800, cache.getTotalWeight());
+    cache.removeObject(2);
+    assertEquals(400, cache.getTotalWeight());
+  }
+
+  @Test
+  public void shouldKeepPinnedEntries() {
+    LocalCache cache = new LocalCache("local");
+    cache.setMaxSize(1);
+    cache.pin(1);
+    cache.putObject(1, ExecutionPlaceholder.EXECUTION_PLACEHOLDER);
+    cache.putObject(2, Arrays.asList("2"));
+    assertEquals(ExecutionPlaceholder.EXECUTION_PLACEHOLDER, cache.getObject(1));
+    cache.removeObject(1);
+    cache.putObject(1, Arrays.asList("1"));
+    cache.pin(1);
+    cache.unpin(1);
+    cache.putObject(3, Arrays.asList("3"));
+    assertEquals(Arrays.asList("1"), cache.getObject(1));
+    assertNull(cache.getObject(3));
+    cache.unpinAll();
+    assertEquals(1, cache.getSize());
+  }
+
+  @Test
+  public void shouldNotWeighPlaceholders() {
+    LocalCache cache = new LocalCache("local");
+    cache.setMaxWeight(10);
+    cache.setWeigher((key, value) -> {
+      throw new AssertionError("weighed " + value);
+    });
+    cache.putObject(1, ExecutionPlaceholder.EXECUTION_PLACEHOLDER);
+    assertEquals(0, cache.getTotalWeight());
+  }
+
+  @Test
+  public void shouldOnlyBoundTheLocalCacheWhenConfigured() {
+    Configuration configuration = new Configuration();
+    BaseExecutor executor = new SimpleExecutor(configuration, new JdbcTransaction(null, null, false));
+    assertEquals(PerpetualCache.class, executor.localCache.getClass());
+
+    configuration.setLocalCacheSize(10);
+    executor = new SimpleExecutor(configuration, new JdbcTransaction(null, null, false));
+    assertEquals(LocalCache.class, executor.localCache.getClass());
+    assertEquals(PerpetualCache.class, executor.localOutputParameterCache.getClass());
+  }
+
+}
@@ -0,0 +1,284 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.ibatis.annotations.Many;
+import org.apache.ibatis.annotations.Result;
+import org.apache.ibatis.annotations.Results;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BaseExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.FetchType;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.LocalCacheScope;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchResultLoaderTest {
+
+  private final List<List<Object>> executions = new ArrayList<>();
+  private Configuration configuration;
+  private Executor executor;
+
+  public static class Blog {
+    private int id;
+    private List<Post> posts;
+    private Post latestPost;
+
+    Blog(int id) {
+      this.id = id;
+    }
+
+    public int getId() {
+      return id;
+    }
+
+    public List<Post> getPosts() {
+      return posts;
+    }
+
+    public void setPosts(List<Post> posts) {
+      this.posts = posts;
+    }
+
+    public Post getLatestPost() {
+      return latestPost;
+    }
+
+    public void setLatestPost(Post latestPost) {
+      this.latestPost = latestPost;
+    }
+  }
+
+  public static class Post {
+    private int id;
+    private int blogId;
+
+    public Post() {
+    }
+
+    Post(int id, int blogId) {
+      this.id = id;
+      this.blogId = blogId;
+    }
+
+    public int getId() {
+      return id;
+    }
+
+    public int getBlogId() {
+      return blogId;
+    }
+  }
+
+  public interface BlogMapper {
+    // the executor below only returns the posts of the blogs in the list
+    @Select("select id, blog_id from post")
+    List<Post> selectPostsOfBlogs(List<Integer> blogIds);
+
+    @Results({
+        @Result(property = "id", column = "id", id = true),
+        @Result(property = "posts", column = "id", javaType = List.class,
+            many = @Many(select = "selectPostsOfBlogs", fetchType = FetchType.BATCH, foreignColumn = "blog_id"))
+    })
+    @Select("select id from blog")
+    List<Blog> selectBlogs();
+
+    @Select("select id, blog_id from post where blog_id = #{blogId}")
+    List<Post> selectPostsOfBlog(int blogId);
+
+    @Results({
+        @Result(property = "id", column = "id", id = true),
+        @Result(property = "posts", column = "id", javaType = List.class,
+            many = @Many(select = "selectPostsOfBlog", fetchType = FetchType.LAZY, foreignColumn = "blog_id"))
+    })
+    @Select("select id from blog")
+    List<Blog> selectBlogsLazily();
+  }
+
+  @Before
+  public void setUp() {
+    configuration = new Configuration();
+    configuration.setMapUnderscoreToCamelCase(true);
+    configuration.setNestedQueryBatchSize(2);
+    // the static sql gives every chunk the same cache key
+    configuration.setLocalCacheScope(LocalCacheScope.STATEMENT);
+    configuration.addMapper(BlogMapper.class);
+    executor = new BaseExecutor(configuration, new JdbcTransaction(null, null, false)) {
+      @Override
+      protected int doUpdate(MappedStatement ms, Object parameter) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      protected List<BatchResult> doFlushStatements(boolean isRollback) {
+        return new ArrayList<>();
+      }
+
+      @Override
+      protected <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
+        @SuppressWarnings("unchecked")
+        List<Object> blogIds = (List<Object>) ((Map<String, Object>) parameter).get("list");
+        executions.add(blogIds);
+        List<Object> posts = new ArrayList<>();
+        for (Object blogId : blogIds) {
+          int id = ((Number) blogId).intValue();
+          for (int i = 0; i < 3 - id; i++) {
+            posts.add(new Post(id * 10 + i, id));
+          }
+        }
+        @SuppressWarnings("unchecked")
+        List<E> result = (List<E>) posts;
+        return result;
+      }
+
+      @Override
+      protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Test
+  public void shouldParseBatchFetchTypeFromAnnotations() {
+    ResultMapping posts = configuration.getMappedStatement(BlogMapper.class.getName() + ".selectBlogs")
+        .getResultMaps().get(0).getPropertyResultMappings().get(1);
+    assertTrue(posts.isBatch());
+    assertFalse(posts.isLazy());
+    assertEquals("blog_id", posts.getForeignColumn());
+  }
+
+  @Test
+  public void shouldOnlyBatchANestedSelectWithTheBatchFetchType() {
+    ResultMapping posts = configuration.getMappedStatement(BlogMapper.class.getName() + ".selectBlogsLazily")
+        .getResultMaps().get(0).getPropertyResultMappings().get(1);
+    assertFalse(posts.isBatch());
+    assertTrue(posts.isLazy());
+  }
+
+  @Test
+  public void shouldLoadBatchesLazilyWhenLazyLoadingIsEnabled() {
+    Configuration lazyConfiguration = new Configuration();
+    lazyConfiguration.setLazyLoadingEnabled(true);
+    lazyConfiguration.addMapper(BlogMapper.class);
+    ResultMapping posts = lazyConfiguration.getMappedStatement(BlogMapper.class.getName() + ".selectBlogs")
+        .getResultMaps().get(0).getPropertyResultMappings().get(1);
+    assertTrue(posts.isBatch());
+    assertTrue(posts.isLazy());
+  }
+
+  @Test
+  public void shouldLoadACollectionForAllTargetsInChunks() throws Exception {
+    List<Blog> blogs = Arrays.asList(new Blog(1), new Blog(2), new Blog(3), new Blog(1));
+    BatchResultLoader loader = newLoader("posts", List.class);
+    for (Blog blog : blogs) {
+      loader.addTarget(configuration.newMetaObject(blog), blog.getId());
+    }
+    loader.load();
+
+    assertEquals(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3)), executions);
+    assertEquals(2, blogs.get(0).getPosts().size());
+    assertEquals(1, blogs.get(1).getPosts().size());
+    assertEquals(20, blogs.get(1).getPosts().get(0).getId());
+    assertTrue(blogs.get(2).getPosts().isEmpty());
+    assertEquals(2, blogs.get(3).getPosts().size());
+    assertTrue(loader.isEmpty());
+  }
+
+  @Test
+  public void shouldLoadASingleObjectAndLeaveMissingOnesUnset() throws Exception {
+    Blog second = new Blog(2);
+    Blog third = new Blog(3);
+    BatchResultLoader loader = newLoader("latestPost", Post.class);
+    loader.addTarget(configuration.newMetaObject(second), 2);
+    loader.addTarget(configuration.newMetaObject(third), 3);
+    loader.load();
+
+    assertEquals(1, executions.size());
+    assertEquals(20, second.getLatestPost().getId());
+    assertNull(third.getLatestPost());
+  }
+
+  @Test
+  public void shouldMatchParametersAndRowsOfDifferentTypes() throws Exception {
+    Blog blog = new Blog(2);
+    BatchResultLoader loader = newLoader("posts", List.class);
+    loader.addTarget(configuration.newMetaObject(blog), new BigDecimal("2.0"));
+    loader.load();
+    assertEquals(1, blog.getPosts().size());
+  }
+
+  @Test
+  public void shouldNormalizeKeyValues() {
+    assertEquals(BatchResultLoader.normalize(1), BatchResultLoader.normalize(new BigDecimal("1.00")));
+    assertEquals(BatchResultLoader.normalize(1L), BatchResultLoader.normalize(BigInteger.ONE));
+    assertEquals(BatchResultLoader.normalize(0), BatchResultLoader.normalize(new BigDecimal("0.0")));
+    assertNotEquals(BatchResultLoader.normalize(1), BatchResultLoader.normalize(1.5));
+    UUID uuid = UUID.randomUUID();
+    byte[] bytes = ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+    assertEquals(BatchResultLoader.normalize(uuid), BatchResultLoader.normalize(bytes.clone()));
+    long now = System.currentTimeMillis();
+    assertEquals(BatchResultLoader.normalize(new Timestamp(now)), BatchResultLoader.normalize(new Timestamp(now).toLocalDateTime()));
+    assertNull(BatchResultLoader.normalize(null));
+  }
+
+  @Test
+  public void shouldFailWhenTheForeignColumnIsNotMapped() throws Exception {
+    Blog blog = new Blog(1);
+    BatchResultLoader loader = new BatchResultLoader(configuration, executor, postsStatement(),
+        new ResultMapping.Builder(configuration, "posts", "id", List.class).nestedQueryId(postsStatement().getId())
+            .foreignColumn("author_id").batch(true).build());
+    loader.addTarget(configuration.newMetaObject(blog), 1);
+    try {
+      loader.load();
+      fail();
+    } catch (ExecutorException e) {
+      assertTrue(e.getMessage().contains("author_id"));
+    }
+  }
+
+  private BatchResultLoader newLoader(String property, Class<?> javaType) {
+    ResultMapping resultMapping = new ResultMapping.Builder(configuration, property, "id", javaType)
+        .nestedQueryId(postsStatement().getId()).foreignColumn("blog_id").batch(true).build();
+    return new BatchResultLoader(configuration, executor, postsStatement(), resultMapping);
+  }
+
+  private MappedStatement postsStatement() {
+    return configuration.getMappedStatement(BlogMapper.class.getName() + ".selectPostsOfBlogs");
+  }
+
+}
@@ -0,0 +1,125 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BaseExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.loader.BatchResultLoaderTest.BlogMapper;
+import org.apache.ibatis.executor.loader.BatchResultLoaderTest.Post;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.LocalCacheScope;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResultLoaderGroupTest {
+
+  private final List<List<Object>> executions = new ArrayList<>();
+  private Configuration configuration;
+  private ResultLoaderGroup group;
+
+  @Before
+  public void setUp() {
+    configuration = new Configuration();
+    configuration.setMapUnderscoreToCamelCase(true);
+    configuration.setLazyLoadBatchSize(3);
+    configuration.setLocalCacheScope(LocalCacheScope.STATEMENT);
+    configuration.addMapper(BlogMapper.class);
+    Executor executor = new BaseExecutor(configuration, new JdbcTransaction(null, null, false)) {
+      @Override
+      protected int doUpdate(MappedStatement ms, Object parameter) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      protected List<BatchResult> doFlushStatements(boolean isRollback) {
+        return new ArrayList<>();
+      }
+
+      @Override
+      protected <E> List<E> doQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
+        @SuppressWarnings("unchecked")
+        List<Object> blogIds = (List<Object>) ((Map<String, Object>) parameter).get("list");
+        executions.add(blogIds);
+        List<Object> posts = new ArrayList<>();
+        for (Object blogId : blogIds) {
+          posts.add(new Post((Integer) blogId * 10, (Integer) blogId));
+        }
+        @SuppressWarnings("unchecked")
+        List<E> result = (List<E>) posts;
+        return result;
+      }
+
+      @Override
+      protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) {
+        throw new UnsupportedOperationException();
+      }
+    };
+    MappedStatement postsStatement = configuration.getMappedStatement(BlogMapper.class.getName() + ".selectPostsOfBlogs");
+    ResultMapping resultMapping = new ResultMapping.Builder(configuration, "posts", "id", List.class)
+        .nestedQueryId(postsStatement.getId()).foreignColumn("blog_id").lazy(true).batch(true).build();
+    group = new ResultLoaderGroup(configuration, executor, postsStatement, resultMapping);
+  }
+
+  @Test
+  public void shouldLoadTheUnloadedSiblingsWithTheFirstMemberThatIsRead() throws Exception {
+    List<ResultLoader> loaders = new ArrayList<>();
+    for (int blogId = 1; blogId <= 5; blogId++) {
+      loaders.add(group.newResultLoader(blogId));
+    }
+
+    assertEquals(30, firstPostId(loaders.get(2).loadResult()));
+    assertEquals(Arrays.asList(Arrays.<Object>asList(3, 1, 2)), executions);
+    assertEquals(2, group.getUnloadedCount());
+
+    assertEquals(10, firstPostId(loaders.get(0).loadResult()));
+    assertEquals(20, firstPostId(loaders.get(1).loadResult()));
+    assertEquals(1, executions.size());
+
+    assertEquals(50, firstPostId(loaders.get(4).loadResult()));
+    assertEquals(Arrays.<Object>asList(5, 4), executions.get(1));
+    assertEquals(40, firstPostId(loaders.get(3).loadResult()));
+    assertEquals(2, executions.size());
+    assertEquals(0, group.getUnloadedCount());
+  }
+
+  @Test
+  public void shouldReturnTheSameValueWhenReadAgain() throws Exception {
+    ResultLoader loader = group.newResultLoader(1);
+    Object posts = loader.loadResult();
+    assertSame(posts, loader.loadResult());
+    assertEquals(1, executions.size());
+  }
+
+  private static int firstPostId(Object posts) {
+    return ((Post) ((List<?>) posts).get(0)).getId();
+  }
+
+}
@@ -0,0 +1,150 @@
+/**
+ *    Copyright 2009-2018 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+import static org.junit.Assert.*;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Blog;
+import org.apache.ibatis.domain.blog.mappers.AuthorMapper;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Invocation;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class StatelessSqlSessionTest extends BaseDataTest {
+
+  private static SqlSessionFactory sqlMapper;
+
+  @BeforeClass
+  public static void setup() throws Exception {
+    createBlogDataSource();
+    final String resource = "org/apache/ibatis/builder/MapperConfig.xml";
+    final Reader reader = Resources.getResourceAsReader(resource);
+    sqlMapper = new SqlSessionFactoryBuilder().build(reader);
+  }
+
+  @Test
+  public void shouldSelectWithAMapper() {
+    StatelessSqlSession session = sqlMapper.openStatelessSession();
+    AuthorMapper mapper = session.getMapper(AuthorMapper.class);
+    Author author = mapper.selectAuthor(101);
+    assertEquals(101, author.getId());
+    assertEquals("jim", author.getUsername());
+  }
+
+  @Test
+  public void shouldSelectNestedResultsInTheSameTransaction() {
+    StatelessSqlSession session = sqlMapper.openStatelessSession();
+    Blog blog = session.selectOne("org.apache.ibatis.domain.blog.mappers.BlogMapper.selectBlogWithPostsUsingSubSelect", 1);
+    assertEquals("Jim Business", blog.getTitle());
+    assertEquals(101, blog.getAuthor().getId());
+    assertEquals(2, blog.getPosts().size());
+  }
+
+  @Test
+  public void shouldCommitEachStatement() {
+    StatelessSqlSession session = sqlMapper.openStatelessSession();
+    Author expected = new Author(600, "stateless", "******", "stateless@somewhere.com", "Something...", null);
+    session.insert("org.apache.ibatis.domain.blog.mappers.AuthorMapper.insertAuthor", expected);
+    session.rollback();
+    try (SqlSession other = sqlMapper.openSession()) {
+      Author actual = other.selectOne("org.apache.ibatis.domain.blog.mappers.AuthorMapper.selectAuthor", 600);
+      assertEquals("stateless", actual.getUsername());
+    }
+    assertEquals(1, session.delete("org.apache.ibatis.domain.blog.mappers.AuthorMapper.deleteAuthor", 600));
+  }
+
+  @Test
+  public void shouldBeSharedByThreads() throws Exception {
+    StatelessSqlSession session = sqlMapper.openStatelessSession();
+    assertSame(session, sqlMapper.openStatelessSession());
+    ExecutorService threads = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Author>> authors = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        authors.add(threads.submit(() -> session.<Author>selectOne("org.apache.ibatis.domain.blog.mappers.AuthorMapper.selectAuthor", 101)));
+      }
+      for (Future<Author> author : authors) {
+        assertEquals(101, author.get().getId());
+      }
+    } finally {
+      threads.shutdown();
+    }
+  }
+
+  @Test
+  public void shouldReuseTheExecutorOfAThread() throws Exception {
+    final Reader reader = Resources.getResourceAsReader("org/apache/ibatis/builder/MapperConfig.xml");
+    SqlSessionFactory factory = new SqlSessionFactoryBuilder().build(reader);
+    final AtomicInteger executors = new AtomicInteger();
+    factory.getConfiguration().addInterceptor(new Interceptor() {
+      @Override
+      public Object intercept(Invocation invocation) throws Throwable {
+        return invocation.proceed();
+      }
+
+      @Override
+      public Object plugin(Object target) {
+        if (target instanceof Executor) {
+          executors.incrementAndGet();
+        }
+        return target;
+      }
+
+      @Override
+      public void setProperties(Properties properties) {
+      }
+    });
+    StatelessSqlSession session = factory.openStatelessSession();
+    for (int i = 0; i < 3; i++) {
+      Blog blog = session.selectOne("org.apache.ibatis.domain.blog.mappers.BlogMapper.selectBlogWithPostsUsingSubSelect", 1);
+      assertEquals(2, blog.getPosts().size());
+    }
+    assertEquals(1, executors.get());
+  }
+
+  @Test
+  public void shouldReportTheFailingStatement() {
+    StatelessSqlSession session = sqlMapper.openStatelessSession();
+    try {
+      session.selectList("ThisStatementDoesNotExist");
+      fail("Expected exception to be thrown due to statement that does not exist.");
+    } catch (PersistenceException e) {
+      assertTrue(e.getMessage().contains("does not contain value for ThisStatementDoesNotExist"));
+    }
+    try {
+      session.selectCursor("org.apache.ibatis.domain.blog.mappers.AuthorMapper.selectAllAuthors");
+      fail("Expected exception to be thrown because cursors are not supported.");
+    } catch (PersistenceException e) {
+      assertTrue(e.getMessage().contains("not supported"));
+    }
+  }
+
+}